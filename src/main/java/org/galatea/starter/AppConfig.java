@@ -1,10 +1,19 @@
 package org.galatea.starter;
 
+import com.google.common.collect.Lists;
 import feign.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.service.AgreementMissions;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.service.MissionHistoryService;
+import org.galatea.starter.utils.concurrent.GroupCommitter;
+import org.galatea.starter.utils.lock.StripedLocks;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -15,6 +24,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Slf4j
 @Configuration
@@ -35,21 +47,81 @@ public class AppConfig {
    * Returns an anonymous class implementing the IAgreementTransformer interface. Demonstrates the
    * use of a lambda function which can stand in as an anonymous class with a single method:
    * https://docs.oracle.com/javase/tutorial/java/javaOO/lambdaexpressions.html
+   *
+   * <p>The mapping itself lives in AgreementMissions, which the protobuf translators also use to
+   * build missions without going through a TradeAgreement.
    */
   @Bean
   public IAgreementTransformer agreementTransformer() {
-    return agreement -> SettlementMission.builder().instrument(agreement.getInstrument())
-        .externalParty(agreement.getExternalParty()).depot("DTC").qty(agreement.getQty())
-        .direction("B".equals(agreement.getBuySell()) ? "REC" : "DEL").version(0L).build();
+    return agreement -> AgreementMissions.missionFor(agreement.getInstrument(),
+        agreement.getExternalParty(), agreement.getBuySell(), agreement.getQty());
+  }
+
+  /**
+   * Lock stripes keyed by mission id, used to serialize in-process mutations of the same mission.
+   * More stripes means fewer unrelated missions sharing a lock.
+   */
+  @Bean
+  public StripedLocks missionLocks(
+      @Value("${settlement.mission-lock-stripes}") final int missionLockStripes,
+      final MeterRegistry meterRegistry) {
+    return new StripedLocks("missions", missionLockStripes, meterRegistry);
+  }
+
+  /**
+   * Group committer for newly spawned missions. Concurrent settle requests are collected for up to
+   * max-wait-micros or max-agreements, whichever comes first, and saved in one transaction along
+   * with the start of their history.
+   */
+  @Bean
+  public GroupCommitter<SettlementMission, SettlementMission> missionGroupCommitter(
+      final ISettlementMissionRpsy missionrpsy, final MissionHistoryService missionHistoryService,
+      final PlatformTransactionManager transactionManager,
+      @Value("${settlement.group-commit.max-agreements}") final int maxAgreements,
+      @Value("${settlement.group-commit.max-wait-micros}") final long maxWaitMicros,
+      final MeterRegistry meterRegistry) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    return new GroupCommitter<>("missions",
+        missions -> transactionTemplate.execute(status -> {
+          List<SettlementMission> saved = Lists.newArrayList(missionrpsy.saveAll(missions));
+          missionHistoryService.recordCreation(saved);
+          return saved;
+        }),
+        maxAgreements, maxWaitMicros, meterRegistry);
+  }
+
+  /**
+   * Executor that writes mission audit records off the updating thread. When the writers fall
+   * behind and the queue fills up, the updating thread writes its own records instead of dropping
+   * them.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor missionAuditExecutor(
+      @Value("${settlement.audit.writer-threads}") final int writerThreads,
+      @Value("${settlement.audit.queue-capacity}") final int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("mission-audit-");
+    executor.setCorePoolSize(writerThreads);
+    executor.setMaxPoolSize(writerThreads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    return executor;
   }
 
   /**
    * CacheManager that contains the Cache Configuration. Spring will use this cache if any
    * cache annotations are used.
+   *
+   * <p>The manager is transaction-aware: puts and evictions made inside a transaction only take
+   * effect once it commits, and are dropped if it rolls back.
    */
   @Bean
   public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean) {
-    return new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+    EhCacheCacheManager cacheManager =
+        new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+    cacheManager.setTransactionAware(true);
+    return cacheManager;
   }
 
   /**
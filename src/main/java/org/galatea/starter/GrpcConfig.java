@@ -0,0 +1,26 @@
+package org.galatea.starter;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.galatea.starter.entrypoint.SettlementGrpcService;
+import org.galatea.starter.utils.grpc.GrpcServerLifecycle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GrpcConfig {
+
+  /**
+   * Returns the gRPC server that serves the settlement engine service on grpc.port, separately
+   * from the REST endpoints.
+   */
+  @Bean
+  public GrpcServerLifecycle grpcServer(final SettlementGrpcService settlementGrpcService,
+      @Value("${grpc.port}") final int port,
+      @Value("${grpc.max-inbound-message-bytes}") final int maxInboundMessageBytes,
+      @Value("${grpc.shutdown-grace-millis}") final long shutdownGraceMillis) {
+    return new GrpcServerLifecycle(NettyServerBuilder.forPort(port)
+        .addService(settlementGrpcService).maxMessageSize(maxInboundMessageBytes).build(),
+        shutdownGraceMillis);
+  }
+}
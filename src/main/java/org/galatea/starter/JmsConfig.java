@@ -1,17 +1,38 @@
 package org.galatea.starter;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.SQLException;
 import java.util.function.BiConsumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
+import javax.sql.DataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.jms.ActiveMqQueueStatistics;
+import org.galatea.starter.utils.jms.AdaptiveConcurrencyController;
+import org.galatea.starter.utils.jms.AimdConcurrencyPolicy;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.galatea.starter.utils.jms.DelayedRedeliveryHandler;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.jms.JmsReplier;
+import org.galatea.starter.utils.jms.ListenerExecutorSettings;
+import org.galatea.starter.utils.jms.PartitionKeyExtractor;
+import org.galatea.starter.utils.jms.PayloadCompression;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.annotation.JmsListenerConfigurer;
 import org.springframework.jms.config.JmsListenerContainerFactory;
 import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
@@ -24,12 +45,49 @@ import org.springframework.messaging.handler.annotation.support.MessageHandlerMe
 public class JmsConfig implements JmsListenerConfigurer {
 
   /**
-   * Returns an implementation of failed message consumer that simply logs the message.
+   * Returns the failed message consumer, which schedules failed messages to be redelivered with
+   * exponential backoff and moves them to the dead letter queue once they run out of attempts.
    */
   @Bean
-  public BiConsumer<Message, Exception> failedMessageConsumer() {
-    return (msg, err) -> log.error(
-        "Message {} failed to process after retries.  Removing message from queue", msg, err);
+  public BiConsumer<Message, Exception> failedMessageConsumer(final JmsTemplate jmsTemplate,
+      final MeterRegistry meterRegistry,
+      @Value("${jms.redelivery.max-attempts}") final int maxAttempts,
+      @Value("${jms.redelivery.initial-delay-millis}") final long initialDelayMillis,
+      @Value("${jms.redelivery.multiplier}") final double multiplier,
+      @Value("${jms.redelivery.max-delay-millis}") final long maxDelayMillis) {
+    return new DelayedRedeliveryHandler(jmsTemplate, maxAttempts, initialDelayMillis, multiplier,
+        maxDelayMillis, meterRegistry);
+  }
+
+  /**
+   * Returns the compression of message bodies: compressed agreement messages are decompressed
+   * before translation, and replies to them are compressed too.
+   */
+  @Bean
+  public PayloadCompression payloadCompression(final MeterRegistry meterRegistry,
+      @Value("${jms.compression.min-bytes}") final int minBytes) {
+    return new PayloadCompression(minBytes, meterRegistry);
+  }
+
+  /**
+   * Returns the replier used to answer requests that carry a JMSReplyTo.
+   */
+  @Bean
+  public JmsReplier jmsReplier(final JmsTemplate jmsTemplate,
+      final PayloadCompression payloadCompression) {
+    return new JmsReplier(jmsTemplate, payloadCompression);
+  }
+
+  /**
+   * Returns the replayer used to move dead letters back to their queue. It uses its own template
+   * since it needs transacted sessions.
+   */
+  @Bean
+  public DeadLetterReplayer deadLetterReplayer(final ConnectionFactory queueConnectionFactory,
+      final MeterRegistry meterRegistry) {
+    JmsTemplate transactedTemplate = new JmsTemplate(queueConnectionFactory);
+    transactedTemplate.setSessionTransacted(true);
+    return new DeadLetterReplayer(transactedTemplate, meterRegistry);
   }
 
   /**
@@ -45,6 +103,9 @@ public class JmsConfig implements JmsListenerConfigurer {
    * listener container which adds tracing of how the message is handled. We also manually set the
    * message converter to ensure that it is using the correct message format.
    *
+   * <p>Containers for batch listeners receive up to max-messages messages at a time, waiting at
+   * most max-wait-millis for a batch to fill up.
+   *
    * @param queueConnectionFactory injected by spring
    * @param configurer injected by spring
    * @return the factory.
@@ -53,10 +114,61 @@ public class JmsConfig implements JmsListenerConfigurer {
   public JmsListenerContainerFactory<DefaultMessageListenerContainer> jmsListenerContainerFactory(
       final ConnectionFactory queueConnectionFactory,
       final DefaultJmsListenerContainerFactoryConfigurer configurer,
-      final BiConsumer<Message, Exception> failedMessageConsumer) {
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final MeterRegistry meterRegistry, final Environment environment,
+      @Value("${jms.batch.max-messages}") final int maxBatchMessages,
+      @Value("${jms.batch.max-wait-millis}") final long maxBatchWaitMillis) {
+
+    FuseJmsListenerContainerFactory listenerFactory = fuseListenerFactory(queueConnectionFactory,
+        configurer, failedMessageConsumer, meterRegistry, environment);
+    listenerFactory.setMaxBatchMessages(maxBatchMessages);
+    listenerFactory.setMaxBatchWaitMillis(maxBatchWaitMillis);
+
+    // TODO: override any defaults in the listener factory before we return the object
+    return listenerFactory;
+  }
 
+  /**
+   * Returns the listener container factory of the agreement listeners. Its containers process
+   * messages on lanes, routing each message by its JMSXGroupID or else by the instrument of its
+   * agreement (see AgreementPartitionKeys), so that the agreements of an instrument are settled in
+   * order while the lanes run in parallel. The instrument is only kept in order with a single
+   * consumer, so the containers must not run more than one. Each consumer receives up to
+   * max-messages messages at a time to spread over the lanes of its container, waiting at most
+   * max-wait-millis for them.
+   */
+  @Bean
+  public JmsListenerContainerFactory<DefaultMessageListenerContainer>
+      agreementJmsListenerContainerFactory(final ConnectionFactory queueConnectionFactory,
+      final DefaultJmsListenerContainerFactoryConfigurer configurer,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final PartitionKeyExtractor agreementPartitionKeys, final MeterRegistry meterRegistry,
+      final Environment environment, @Value("${jms.partitioning.lanes}") final int lanes,
+      @Value("${jms.partitioning.max-messages}") final int maxMessages,
+      @Value("${jms.partitioning.max-wait-millis}") final long maxWaitMillis) {
+
+    FuseJmsListenerContainerFactory listenerFactory = fuseListenerFactory(queueConnectionFactory,
+        configurer, failedMessageConsumer, meterRegistry, environment);
+    listenerFactory.setPartitionLanes(lanes);
+    listenerFactory.setPartitionKeyExtractor(agreementPartitionKeys);
+    listenerFactory.setMaxBatchMessages(maxMessages);
+    listenerFactory.setMaxBatchWaitMillis(maxWaitMillis);
+    return listenerFactory;
+  }
+
+  /*
+   * Every listener runs its consumers on a thread pool of its own, sized by
+   * jms.listener-executors.[listener id].* where set and by jms.listener-executor.* otherwise.
+   */
+  private static FuseJmsListenerContainerFactory fuseListenerFactory(
+      final ConnectionFactory queueConnectionFactory,
+      final DefaultJmsListenerContainerFactoryConfigurer configurer,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final MeterRegistry meterRegistry, final Environment environment) {
     FuseJmsListenerContainerFactory listenerFactory =
         new FuseJmsListenerContainerFactory(failedMessageConsumer);
+    listenerFactory.setMeterRegistry(meterRegistry);
+    listenerFactory.setListenerExecutorSettings(listenerExecutorSettings(environment));
 
     // This provides all boot's default to this factory, including the message converter
     // Note that we don't use a caching connection factory due to this:
@@ -64,11 +176,94 @@ public class JmsConfig implements JmsListenerConfigurer {
     // http://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/
     // jms/listener/DefaultMessageListenerContainer.html
     configurer.configure(listenerFactory, queueConnectionFactory);
-
-    // TODO: override any defaults in the listener factory before we return the object
     return listenerFactory;
   }
 
+  private static Function<String, ListenerExecutorSettings> listenerExecutorSettings(
+      final Environment environment) {
+    return listenerId -> ListenerExecutorSettings.builder()
+        .threads(executorProperty(environment, listenerId, "threads"))
+        .queueCapacity(executorProperty(environment, listenerId, "queue-capacity"))
+        .threadPriority(executorProperty(environment, listenerId, "thread-priority")).build();
+  }
+
+  private static int executorProperty(final Environment environment, final String listenerId,
+      final String name) {
+    Integer value =
+        environment.getProperty("jms.listener-executors." + listenerId + "." + name, Integer.class);
+    return value != null ? value
+        : environment.getRequiredProperty("jms.listener-executor." + name, Integer.class);
+  }
+
+  /**
+   * Returns the policy used to resize the listener containers when adaptive concurrency is on.
+   */
+  @Bean
+  @ConditionalOnProperty("jms.adaptive-concurrency.enabled")
+  public AimdConcurrencyPolicy aimdConcurrencyPolicy(
+      @Value("${jms.adaptive-concurrency.min-consumers}") final int minConsumers,
+      @Value("${jms.adaptive-concurrency.max-consumers}") final int maxConsumers,
+      @Value("${jms.adaptive-concurrency.increase-step}") final int increaseStep,
+      @Value("${jms.adaptive-concurrency.decrease-factor}") final double decreaseFactor,
+      @Value("${jms.adaptive-concurrency.max-latency-millis}") final double maxLatencyMillis,
+      @Value("${jms.adaptive-concurrency.max-db-pool-utilisation}")
+      final double maxDbPoolUtilisation,
+      @Value("${jms.adaptive-concurrency.backlog-per-consumer}") final long backlogPerConsumer) {
+    return AimdConcurrencyPolicy.builder().minConsumers(minConsumers).maxConsumers(maxConsumers)
+        .increaseStep(increaseStep).decreaseFactor(decreaseFactor)
+        .maxLatencyMillis(maxLatencyMillis).maxDbPoolUtilisation(maxDbPoolUtilisation)
+        .backlogPerConsumer(backlogPerConsumer).build();
+  }
+
+  /**
+   * Returns a controller that grows and shrinks the consumers of the listener containers based on
+   * the depth of their queue, their processing latency and how busy the DB connection pool is.
+   *
+   * <p>The queue depth comes from the broker's statistics plugin. Brokers without it (such as the
+   * embedded one) never answer, in which case the controller goes by how busy the consumers are.
+   */
+  @Bean
+  @ConditionalOnProperty("jms.adaptive-concurrency.enabled")
+  public AdaptiveConcurrencyController adaptiveConcurrencyController(
+      final JmsListenerEndpointRegistry registry, final AimdConcurrencyPolicy policy,
+      final ConnectionFactory queueConnectionFactory, final DataSource dataSource,
+      final MeterRegistry meterRegistry,
+      @Value("${jms.adaptive-concurrency.interval-millis}") final long intervalMillis,
+      @Value("${jms.adaptive-concurrency.probe-timeout-millis}") final long probeTimeoutMillis) {
+    return new AdaptiveConcurrencyController(registry, policy,
+        new ActiveMqQueueStatistics(queueConnectionFactory, probeTimeoutMillis),
+        dbPoolUtilisation(dataSource), intervalMillis, meterRegistry);
+  }
+
+  /*
+   * Share of the Hikari pool's connections in use. Threads waiting for a connection mean the pool
+   * is exhausted. Other pools are reported as idle.
+   */
+  private static DoubleSupplier dbPoolUtilisation(final DataSource dataSource) {
+    HikariDataSource hikari;
+    try {
+      if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+        log.warn("Not a Hikari data source, so the DB pool is not sampled: {}", dataSource);
+        return () -> 0;
+      }
+      hikari = dataSource.unwrap(HikariDataSource.class);
+    } catch (SQLException e) {
+      log.warn("Could not unwrap data source {}", dataSource, e);
+      return () -> 0;
+    }
+
+    return () -> {
+      HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+      if (pool == null) {
+        return 0;
+      }
+      if (pool.getThreadsAwaitingConnection() > 0) {
+        return 1;
+      }
+      return pool.getActiveConnections() / (double) hikari.getMaximumPoolSize();
+    };
+  }
+
   /**
    * For JSON messages we want to use the spring messaging converter instead of the spring jms
    * converter. The spring jms converter expects the type of object to deserialize the json to being
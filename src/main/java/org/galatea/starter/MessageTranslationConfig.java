@@ -1,13 +1,22 @@
 package org.galatea.starter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.utils.jms.MessageBodies;
+import org.galatea.starter.utils.jms.PayloadCompression;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -67,4 +76,26 @@ public class MessageTranslationConfig {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Returns a translator to convert JSON JMS messages to TradeAgreements. The body is bound with a
+   * reader created once for TradeAgreementMessage, straight from the raw bytes of bytes messages.
+   * Compressed bodies are decompressed first.
+   */
+  @Bean
+  public ITranslator<Message, List<TradeAgreement>> tradeAgreementsJmsJsonTranslator(
+      final ObjectMapper objectMapper,
+      final ITranslator<TradeAgreementMessage, TradeAgreement> translator,
+      final PayloadCompression payloadCompression) {
+    ObjectReader reader = objectMapper.readerFor(TradeAgreementMessage.class);
+    return message -> {
+      TradeAgreementMessage agreementMessage;
+      try {
+        agreementMessage = MessageBodies.readJson(reader, message, payloadCompression);
+      } catch (IOException | JMSException e) {
+        throw new TranslationException("Could not translate the message to a trade agreement.", e);
+      }
+      return Collections.singletonList(translator.translate(agreementMessage));
+    };
+  }
+
 }
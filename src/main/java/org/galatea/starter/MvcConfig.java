@@ -2,12 +2,24 @@ package org.galatea.starter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexSymbol;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
+import org.galatea.starter.utils.http.converter.CsvHttpMessageConverter;
+import org.galatea.starter.utils.http.converter.ParquetHttpMessageConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.rest.ContentCoding;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
+import org.galatea.starter.utils.rest.ResponseCompressionFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.Include;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
@@ -15,8 +27,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
@@ -33,6 +47,33 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  public static final MediaType APPLICATION_PARQUET =
+      new MediaType("application", "vnd.apache.parquet");
+  public static final String APPLICATION_PARQUET_VALUE = "application/vnd.apache.parquet";
+
+  /* Binary JSON, for clients that want the JSON model without the size and parsing cost of text */
+  public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+  public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+  public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+  public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+  /* Protobuf messages written one after another, each preceded by its varint length */
+  public static final MediaType APPLICATION_PROTOBUF_DELIMITED =
+      new MediaType("application", "x-protobuf-delimited");
+  public static final String APPLICATION_PROTOBUF_DELIMITED_VALUE =
+      "application/x-protobuf-delimited";
+
+  /* A batch of trade agreements in the fixed-layout binary encoding of TradeAgreementsSchema */
+  public static final MediaType APPLICATION_FUSE_SBE = new MediaType("application", "x-fuse-sbe");
+  public static final String APPLICATION_FUSE_SBE_VALUE = "application/x-fuse-sbe";
+
+  @Value("${mvc.parquet.row-group-bytes}")
+  private int parquetRowGroupBytes;
+
+  @Value("${mvc.parquet.compression}")
+  private CompressionCodecName parquetCompression;
+
   /**
    * This is used to trace web requests and store that trace info.
    *
@@ -41,7 +82,26 @@ public class MvcConfig implements WebMvcConfigurer {
   @Bean
   public HttpTraceFilter httpTraceFilter() {
     return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+        path -> path.startsWith("/trace"),
+        Arrays.asList(APPLICATION_PROTOBUF_DELIMITED, APPLICATION_PARQUET));
+  }
+
+  /**
+   * Compresses responses with the content codings that clients accept, as they are written.
+   *
+   * @return the compression filter
+   */
+  @Bean
+  public ResponseCompressionFilter responseCompressionFilter(
+      @Value("${mvc.compression.encodings}") final String[] encodings,
+      @Value("${mvc.compression.min-bytes}") final int minBytes,
+      @Value("${mvc.compression.excluded-media-types}") final String excludedMediaTypes) {
+    List<ContentCoding> codings = new ArrayList<>();
+    for (String encoding : encodings) {
+      codings.add(ContentCoding.valueOf(encoding.trim().toUpperCase(Locale.ROOT)));
+    }
+    return new ResponseCompressionFilter(codings, minBytes,
+        MediaType.parseMediaTypes(excludedMediaTypes));
   }
 
   /**
@@ -78,6 +138,9 @@ public class MvcConfig implements WebMvcConfigurer {
     configurer.mediaType("xml", MediaType.APPLICATION_XML);
     configurer.mediaType("csv", TEXT_CSV);
     configurer.mediaType("xlsx", APPLICATION_EXCEL);
+    configurer.mediaType("smile", APPLICATION_SMILE);
+    configurer.mediaType("cbor", APPLICATION_CBOR);
+    configurer.mediaType("parquet", APPLICATION_PARQUET);
 
   }
 
@@ -87,9 +150,14 @@ public class MvcConfig implements WebMvcConfigurer {
     // protobuf to JSON conversion (and will of course, fail).
     converters.add(new ProtobufHttpMessageConverter()); // Protobuf, XML & JSON supported
     converters.add(new MappingJackson2HttpMessageConverter()); // JSON
+    converters.add(new MappingJackson2SmileHttpMessageConverter()); // Smile
+    converters.add(new MappingJackson2CborHttpMessageConverter()); // CBOR
     converters.add(new Jaxb2RootElementHttpMessageConverter()); // XML
     converters.add(new SettlementMissionCsvConverter());
+    converters.add(new CsvHttpMessageConverter(IexSymbol.class, IexLastTradedPrice.class,
+        IexHistoricalPrice.class));
     converters.add(new SettlementMissionXlsxConverter());
+    converters.add(new ParquetHttpMessageConverter(parquetRowGroupBytes, parquetCompression));
   }
 
 }
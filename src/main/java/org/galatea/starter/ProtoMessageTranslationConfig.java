@@ -1,13 +1,41 @@
 package org.galatea.starter;
 
+import static com.google.common.base.Strings.nullToEmpty;
+
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexSymbol;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.SettlementJmsListener;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexHistoricalPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexLastTradedPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexSymbolProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.AgreementConstraints;
+import org.galatea.starter.service.AgreementMissions;
+import org.galatea.starter.utils.jms.MessageBodies;
+import org.galatea.starter.utils.jms.PayloadCompression;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.context.annotation.Bean;
@@ -16,6 +44,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ProtoMessageTranslationConfig {
 
+  /**
+   * The number of decimal places that IEX prices are scaled by in protobuf messages. IEX quotes
+   * prices to at most four.
+   */
+  public static final int IEX_PRICE_SCALE = 4;
+
   /**
    * Implements a translator to convert binary protobuf messages to TradeAgreements
    *
@@ -41,6 +75,85 @@ public class ProtoMessageTranslationConfig {
     };
   }
 
+  /**
+   * Implements a translator to convert protobuf JMS messages straight to SettlementMissions,
+   * without any TradeAgreements in between.
+   *
+   * <p>This translator is used for the protobuf JMS listeners. It parses the body of the message in
+   * place instead of having the listener adapter copy it into a byte[] first. A message whose
+   * JMSType is {@value SettlementJmsListener#AGREEMENTS_PROTO_TYPE} holds a serialized
+   * TradeAgreementProtoMessages, any other message a single TradeAgreementProtoMessage. Compressed
+   * bodies are decompressed first.
+   */
+  @Bean
+  public ITranslator<Message, List<SettlementMission>> tradeAgreementsJmsProtobufMissionTranslator(
+      final ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+          tradeAgreementProtoMissionTranslator,
+      final PayloadCompression payloadCompression) {
+    return msg -> {
+      List<TradeAgreementProtoMessage> messages;
+      try {
+        CodedInputStream input = MessageBodies.codedInput((BytesMessage) msg, payloadCompression);
+        if (SettlementJmsListener.AGREEMENTS_PROTO_TYPE.equals(msg.getJMSType())) {
+          messages = TradeAgreementProtoMessages.parseFrom(input).getMessageList();
+        } else {
+          messages = Collections.singletonList(TradeAgreementProtoMessage.parseFrom(input));
+        }
+      } catch (IOException | JMSException | ClassCastException e) {
+        throw new TranslationException("Could not translate the message to trade agreements.", e);
+      }
+
+      return tradeAgreementProtoMissionTranslator.translate(messages);
+    };
+  }
+
+  /**
+   * Implements a translator to convert TradeAgreement protobuf messages straight to the
+   * SettlementMissions that settle them. This is our hottest path, so it skips the TradeAgreement
+   * and its builder: the fields are read off the messages once, checked against the TradeAgreement
+   * constraints and handed to AgreementMissions.
+   *
+   * <p>The agreements are held to the same constraints, with the same messages, as when
+   * SettlementService validates TradeAgreements. As there, all the violations of all the
+   * agreements are reported together in a ConstraintViolationException.
+   */
+  @Bean
+  public ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+      tradeAgreementProtoMissionTranslator(final AgreementConstraints agreementConstraints) {
+    return messages -> {
+      Set<ConstraintViolation<?>> violations = null;
+      List<SettlementMission> missions = new ArrayList<>(messages.size());
+      for (TradeAgreementProtoMessage msg : messages) {
+        double qty = msg.getQty();
+        Set<ConstraintViolation<TradeAgreement>> invalid =
+            agreementConstraints.validate(msg.getBuySell(), qty);
+        if (!invalid.isEmpty()) {
+          if (violations == null) {
+            violations = new LinkedHashSet<>();
+          }
+          violations.addAll(invalid);
+        } else if (violations == null) {
+          missions.add(AgreementMissions.missionFor(msg.getInstrument(), msg.getExternalParty(),
+              msg.getBuySell(), qty));
+        }
+      }
+
+      if (violations != null) {
+        throw new ConstraintViolationException(violations);
+      }
+      return missions;
+    };
+  }
+
+  /**
+   * Checks agreements against the TradeAgreement constraints for the translators that skip the
+   * TradeAgreement, with the app's validator.
+   */
+  @Bean
+  public AgreementConstraints agreementConstraints(final Validator validator) {
+    return new AgreementConstraints(validator);
+  }
+
   /**
    * Implements a translator to convert TradeAgreement protobuf messages to TradeAgreement domain
    * objects.
@@ -65,6 +178,21 @@ public class ProtoMessageTranslationConfig {
         .setQty(msg.getQty()).setVersion(msg.getVersion()).build();
   }
 
+  /**
+   * Implements a translator to convert a list of domain SettlementMission objects to a
+   * SettlementMission protobuf collection.
+   */
+  @Bean
+  public ITranslator<List<SettlementMission>, SettlementMissionProtoMessages>
+      settlementMissionsProtoTranslator(
+      final ITranslator<SettlementMission, SettlementMissionProtoMessage> translator) {
+    return missions -> {
+      SettlementMissionProtoMessages.Builder messages = SettlementMissionProtoMessages.newBuilder();
+      missions.forEach(mission -> messages.addMessage(translator.translate(mission)));
+      return messages.build();
+    };
+  }
+
   /**
    * Implements a translator to convert a TradeAgreement protobuf collection to a list of
    * TradeAgreement domain objects.
@@ -76,4 +204,76 @@ public class ProtoMessageTranslationConfig {
     return msg -> msg.getMessageList().stream().map(translator::translate)
         .collect(Collectors.toList());
   }
+
+  /**
+   * Implements a translator to convert a list of domain IexSymbol objects to an IexSymbol protobuf
+   * collection.
+   */
+  @Bean
+  public ITranslator<List<IexSymbol>, IexSymbolProtoMessages> iexSymbolsProtoTranslator() {
+    return symbols -> {
+      IexSymbolProtoMessages.Builder messages = IexSymbolProtoMessages.newBuilder();
+      for (IexSymbol symbol : symbols) {
+        messages.addMessageBuilder().setSymbol(nullToEmpty(symbol.getSymbol()))
+            .setName(nullToEmpty(symbol.getName()))
+            .setDate(symbol.getDate() == null ? 0 : symbol.getDate().getTime())
+            .setEnabled(symbol.isEnabled()).setType(nullToEmpty(symbol.getType()))
+            .setIexId(nullToEmpty(symbol.getIexId()));
+      }
+      return messages.build();
+    };
+  }
+
+  /**
+   * Implements a translator to convert a list of domain IexLastTradedPrice objects to an
+   * IexLastTradedPrice protobuf collection, with the prices scaled by {@value #IEX_PRICE_SCALE}
+   * decimal places.
+   */
+  @Bean
+  public ITranslator<List<IexLastTradedPrice>, IexLastTradedPriceProtoMessages>
+      iexLastTradedPricesProtoTranslator() {
+    return prices -> {
+      IexLastTradedPriceProtoMessages.Builder messages =
+          IexLastTradedPriceProtoMessages.newBuilder().setPriceScale(IEX_PRICE_SCALE);
+      for (IexLastTradedPrice price : prices) {
+        messages.addMessageBuilder().setSymbol(nullToEmpty(price.getSymbol()))
+            .setPrice(scaledPrice(price.getPrice()))
+            .setSize(price.getSize() == null ? 0 : price.getSize()).setTime(price.getTime());
+      }
+      return messages.build();
+    };
+  }
+
+  /**
+   * Implements a translator to convert a list of domain IexHistoricalPrice objects to an
+   * IexHistoricalPrice protobuf collection, with the prices scaled by {@value #IEX_PRICE_SCALE}
+   * decimal places.
+   */
+  @Bean
+  public ITranslator<List<IexHistoricalPrice>, IexHistoricalPriceProtoMessages>
+      iexHistoricalPricesProtoTranslator() {
+    return prices -> {
+      IexHistoricalPriceProtoMessages.Builder messages =
+          IexHistoricalPriceProtoMessages.newBuilder().setPriceScale(IEX_PRICE_SCALE);
+      for (IexHistoricalPrice price : prices) {
+        messages.addMessageBuilder().setSymbol(nullToEmpty(price.getSymbol()))
+            .setDate(nullToEmpty(price.getDate())).setOpen(scaledPrice(price.getOpen()))
+            .setLow(scaledPrice(price.getLow())).setHigh(scaledPrice(price.getHigh()))
+            .setClose(scaledPrice(price.getClose()))
+            .setVolume(price.getVolume() == null ? 0 : price.getVolume());
+      }
+      return messages.build();
+    };
+  }
+
+  /*
+   * Returns the price as a whole number of 10^-IEX_PRICE_SCALE units, rounding half to even, or 0
+   * for no price.
+   */
+  private static long scaledPrice(final BigDecimal price) {
+    if (price == null) {
+      return 0;
+    }
+    return price.setScale(IEX_PRICE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+  }
 }
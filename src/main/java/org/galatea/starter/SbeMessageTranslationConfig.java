@@ -0,0 +1,100 @@
+package org.galatea.starter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsDecoder;
+import org.galatea.starter.service.AgreementConstraints;
+import org.galatea.starter.service.AgreementMissions;
+import org.galatea.starter.utils.jms.MessageBodies;
+import org.galatea.starter.utils.jms.PayloadCompression;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SbeMessageTranslationConfig {
+
+  /* Decoders are flyweights with a scratch array, so each thread keeps reusing its own */
+  private static final ThreadLocal<TradeAgreementsDecoder> DECODERS =
+      ThreadLocal.withInitial(TradeAgreementsDecoder::new);
+
+  /**
+   * Implements a translator to convert a batch of agreements in the fixed-layout binary encoding
+   * (see TradeAgreementsSchema) straight to the SettlementMissions that settle them, between the
+   * position and limit of the buffer.
+   *
+   * <p>Like ProtoMessageTranslationConfig#tradeAgreementProtoMissionTranslator, the agreements are
+   * checked against the TradeAgreement constraints and all their violations reported together in
+   * a ConstraintViolationException. The fields are read off the buffer in place, so a valid
+   * agreement allocates nothing but its mission (and the Strings in it).
+   */
+  @Bean
+  public ITranslator<ByteBuffer, List<SettlementMission>> tradeAgreementSbeMissionTranslator(
+      final AgreementConstraints agreementConstraints) {
+    return buffer -> {
+      TradeAgreementsDecoder decoder = DECODERS.get();
+      Set<ConstraintViolation<?>> violations = null;
+      List<SettlementMission> missions;
+      try {
+        decoder.wrap(buffer, buffer.position(), buffer.remaining());
+        missions = new ArrayList<>(decoder.count());
+        while (decoder.hasNext()) {
+          decoder.next();
+          String buySell = decoder.buySell();
+          double qty = decoder.qty();
+          Set<ConstraintViolation<TradeAgreement>> invalid =
+              agreementConstraints.validate(buySell, qty);
+          if (!invalid.isEmpty()) {
+            if (violations == null) {
+              violations = new LinkedHashSet<>();
+            }
+            violations.addAll(invalid);
+          } else if (violations == null) {
+            missions.add(AgreementMissions.missionFor(decoder.instrument(),
+                decoder.externalParty(), buySell, qty));
+          }
+        }
+      } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+        throw new TranslationException("Could not translate the message to trade agreements.", e);
+      }
+
+      if (violations != null) {
+        throw new ConstraintViolationException(violations);
+      }
+      return missions;
+    };
+  }
+
+  /**
+   * Implements a translator to convert JMS messages holding a batch of agreements in the
+   * fixed-layout binary encoding straight to SettlementMissions. The body is decoded in place, and
+   * decompressed first if it is compressed.
+   */
+  @Bean
+  public ITranslator<Message, List<SettlementMission>> tradeAgreementsJmsSbeMissionTranslator(
+      final ITranslator<ByteBuffer, List<SettlementMission>> tradeAgreementSbeMissionTranslator,
+      final PayloadCompression payloadCompression) {
+    return msg -> {
+      ByteBuffer body;
+      try {
+        body = MessageBodies.byteBuffer((BytesMessage) msg, payloadCompression);
+      } catch (IOException | JMSException | ClassCastException e) {
+        throw new TranslationException("Could not translate the message to trade agreements.", e);
+      }
+
+      return tradeAgreementSbeMissionTranslator.translate(body);
+    };
+  }
+}
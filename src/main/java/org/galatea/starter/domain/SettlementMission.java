@@ -18,7 +18,7 @@ import org.galatea.starter.utils.validation.StringEnumeration;
 /* For builder since we explicitly want to make the all args ctor private */
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
-@Builder
+@Builder(toBuilder = true)
 @Data
 @Entity
 @XmlRootElement(name = "settlementMission")
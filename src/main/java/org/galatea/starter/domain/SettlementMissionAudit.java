@@ -0,0 +1,49 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Audit record of a single field of a settlement mission that was changed by an update. An update
+ * that changes several fields produces one record per field, all with the same version.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_mission_audit_mission", columnList = "missionId,version"))
+public class SettlementMissionAudit {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.AUTO)
+  protected Long id;
+
+  @NonNull
+  protected Long missionId;
+
+  /* The mission version the update produced */
+  @NonNull
+  protected Long version;
+
+  @NonNull
+  protected String field;
+
+  protected String oldValue;
+
+  protected String newValue;
+
+  @NonNull
+  protected Instant changedAt;
+}
@@ -0,0 +1,53 @@
+package org.galatea.starter.domain;
+
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * One entry in the append-only version history of a settlement mission.
+ *
+ * <p>A snapshot entry holds the complete mission as JSON. Every other entry holds only the fields
+ * that changed since the entry before it, so a version is rebuilt by starting from the closest
+ * snapshot at or below it and applying the deltas that follow in version order.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+@Entity
+@Table(indexes = @Index(name = "idx_mission_history_version", columnList = "missionId,version"))
+public class SettlementMissionHistory {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.AUTO)
+  protected Long id;
+
+  @NonNull
+  protected Long missionId;
+
+  /* The mission version this entry brings the mission to */
+  @NonNull
+  protected Long version;
+
+  @NonNull
+  protected Instant recordedAt;
+
+  protected boolean snapshot;
+
+  /* Full mission JSON for snapshots, JSON object of changed fields for deltas */
+  @NonNull
+  @Column(length = 4000)
+  protected String payload;
+}
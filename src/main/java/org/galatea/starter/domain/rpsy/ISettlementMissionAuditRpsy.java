@@ -0,0 +1,14 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import org.galatea.starter.domain.SettlementMissionAudit;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ISettlementMissionAuditRpsy
+    extends CrudRepository<SettlementMissionAudit, Long> {
+
+  /**
+   * Retrieves the audit records of the mission, oldest first.
+   */
+  List<SettlementMissionAudit> findByMissionIdOrderByVersionAscIdAsc(Long missionId);
+}
@@ -0,0 +1,38 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.galatea.starter.domain.SettlementMissionHistory;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ISettlementMissionHistoryRpsy
+    extends CrudRepository<SettlementMissionHistory, Long> {
+
+  /**
+   * Retrieves the most recent history entry of the mission.
+   */
+  Optional<SettlementMissionHistory> findTopByMissionIdOrderByVersionDesc(Long missionId);
+
+  /**
+   * Retrieves the most recent snapshot of the mission at or below the given version.
+   */
+  Optional<SettlementMissionHistory>
+      findTopByMissionIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(Long missionId,
+      Long version);
+
+  /**
+   * Retrieves the history entries of the mission after fromVersion up to and including toVersion,
+   * oldest first.
+   */
+  List<SettlementMissionHistory>
+      findByMissionIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(Long missionId,
+      Long fromVersion, Long toVersion);
+
+  /**
+   * Retrieves the most recent history entry of the mission recorded at or before the given time.
+   */
+  Optional<SettlementMissionHistory>
+      findTopByMissionIdAndRecordedAtLessThanEqualOrderByVersionDesc(Long missionId,
+      Instant recordedAt);
+}
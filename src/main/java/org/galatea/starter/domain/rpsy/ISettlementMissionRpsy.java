@@ -29,4 +29,11 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
   @Override
   @CacheEvict(cacheNames = "missions", key = "#p0.getId()")
   <S extends SettlementMission> S save(S entity);
+
+  /**
+   * Saves the entity and flushes it straight away, so that its version is bumped by the time this
+   * returns. Implemented by the JPA repository this interface is backed by.
+   */
+  @CacheEvict(cacheNames = "missions", key = "#p0.getId()")
+  <S extends SettlementMission> S saveAndFlush(S entity);
 }
@@ -0,0 +1,167 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsDecoder;
+import org.galatea.starter.utils.jms.MessageBodies;
+import org.galatea.starter.utils.jms.PartitionKeyExtractor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keys the messages on the agreement queues by the instrument of their agreement, so that the
+ * agreements of an instrument are settled in the order they were sent.
+ *
+ * <p>The instrument is read straight from the message body, without decoding the agreement: the
+ * body is scanned in place up to the first instrument field, and the rest of it is left to the
+ * listener. Only compressed bodies are decompressed first. A
+ * {@value SettlementJmsListener#AGREEMENTS_PROTO_TYPE} message, like any message in the
+ * fixed-layout binary encoding, is keyed by the instrument of its first agreement. Producers that
+ * wrap agreements of several instruments and need them ordered should set a JMSXGroupID instead.
+ */
+@Slf4j
+@Component
+public class AgreementPartitionKeys implements PartitionKeyExtractor {
+
+  private static final String INSTRUMENT = "instrument";
+
+  /* Keys are extracted on the consumer thread of each container */
+  private static final ThreadLocal<TradeAgreementsDecoder> SBE_DECODERS =
+      ThreadLocal.withInitial(TradeAgreementsDecoder::new);
+
+  private final JsonFactory jsonFactory;
+
+  private final String jsonQueueName;
+
+  private final String sbeQueueName;
+
+  /**
+   * Creates the extractor.
+   *
+   * @param jsonQueueName messages from this queue hold JSON
+   * @param sbeQueueName messages from this queue hold the fixed-layout binary encoding, from any
+   *     other protobuf
+   */
+  public AgreementPartitionKeys(final ObjectMapper objectMapper,
+      @Value("${jms.agreement-queue-json}") final String jsonQueueName,
+      @Value("${jms.agreement-queue-sbe}") final String sbeQueueName) {
+    this.jsonFactory = objectMapper.getFactory();
+    this.jsonQueueName = jsonQueueName;
+    this.sbeQueueName = sbeQueueName;
+  }
+
+  @Override
+  public Object partitionKey(final Message message) throws JMSException {
+    try {
+      String queueName = queueName(message);
+      if (jsonQueueName.equals(queueName)) {
+        return jsonInstrument(message);
+      }
+
+      if (message instanceof BytesMessage && sbeQueueName.equals(queueName)) {
+        return sbeInstrument(MessageBodies.byteBuffer((BytesMessage) message, null));
+      }
+
+      if (message instanceof BytesMessage) {
+        return protoInstrument(MessageBodies.codedInput((BytesMessage) message),
+            SettlementJmsListener.AGREEMENTS_PROTO_TYPE.equals(message.getJMSType()));
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      log.debug("Could not read the instrument of message {}", message.getJMSMessageID(), e);
+    }
+
+    return null;
+  }
+
+  private static String queueName(final Message message) throws JMSException {
+    Destination destination = message.getJMSDestination();
+    return destination instanceof Queue ? ((Queue) destination).getQueueName() : null;
+  }
+
+  private String jsonInstrument(final Message message) throws JMSException, IOException {
+    if (message instanceof TextMessage) {
+      try (JsonParser parser = jsonFactory.createParser(((TextMessage) message).getText())) {
+        return jsonInstrument(parser);
+      }
+    }
+
+    if (message instanceof BytesMessage) {
+      ByteBuffer body = MessageBodies.byteBuffer((BytesMessage) message, null);
+      try (JsonParser parser = jsonFactory.createParser(body.array(),
+          body.arrayOffset() + body.position(), body.remaining())) {
+        return jsonInstrument(parser);
+      }
+    }
+
+    return null;
+  }
+
+  /*
+   * Reads the top-level fields up to the instrument, skipping the values of the others.
+   */
+  private static String jsonInstrument(final JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return null;
+    }
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (INSTRUMENT.equals(name)) {
+        return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+      }
+      parser.skipChildren();
+    }
+    return null;
+  }
+
+  private static String sbeInstrument(final ByteBuffer body) {
+    TradeAgreementsDecoder decoder =
+        SBE_DECODERS.get().wrap(body, body.position(), body.remaining());
+    return decoder.hasNext() ? decoder.next().instrument() : null;
+  }
+
+  /*
+   * Skips the fields up to the instrument of the (first) agreement without parsing any of them.
+   */
+  private static String protoInstrument(final CodedInputStream body, final boolean wrapped)
+      throws IOException {
+    if (wrapped) {
+      if (!skipTo(body, TradeAgreementProtoMessages.MESSAGE_FIELD_NUMBER)) {
+        return null;
+      }
+      body.pushLimit(body.readRawVarint32());
+    }
+
+    return skipTo(body, TradeAgreementProtoMessage.INSTRUMENT_FIELD_NUMBER)
+        ? body.readStringRequireUtf8() : null;
+  }
+
+  private static boolean skipTo(final CodedInputStream body, final int fieldNumber)
+      throws IOException {
+    int tag = body.readTag();
+    while (tag != 0) {
+      if (WireFormat.getTagFieldNumber(tag) == fieldNumber) {
+        return true;
+      }
+      body.skipField(tag);
+      tag = body.readTag();
+    }
+    return false;
+  }
+}
@@ -1,5 +1,6 @@
 package org.galatea.starter.entrypoint;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -11,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.service.SettlementService;
 
@@ -37,6 +39,18 @@ public abstract class BaseSettlementRestController extends BaseRestController {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * Invokes the settlement service to save missions that were built straight from agreement
+   * messages.
+   */
+  protected Set<String> settleMissionsInternal(final List<SettlementMission> missions,
+      final String getMissionPath) {
+
+    List<Long> missionIds = settlementService.spawnTransformedMissions(missions);
+    return missionIds.stream().map(id -> getMissionPath + id)
+        .collect(Collectors.toSet());
+  }
+
   /**
    * Retrieves settlement missions from the settlement service.
    */
@@ -53,6 +67,25 @@ public abstract class BaseSettlementRestController extends BaseRestController {
     return settlementService.findMissions(ids);
   }
 
+  /**
+   * Retrieves a past version of a settlement mission from the settlement service. If a version is
+   * given it takes precedence over the point in time.
+   */
+  protected Optional<SettlementMission> getMissionHistoryInternal(final Long id,
+      final Long version, final Instant asOf) {
+    if (version != null) {
+      return settlementService.findMissionAtVersion(id, version);
+    }
+    return settlementService.findMissionAsOf(id, asOf == null ? Instant.now() : asOf);
+  }
+
+  /**
+   * Retrieves the audit trail of a settlement mission from the settlement service.
+   */
+  protected List<SettlementMissionAudit> getMissionAuditsInternal(final Long id) {
+    return settlementService.findMissionAudits(id);
+  }
+
   /**
    * Updates settlement mission, if it exists.
    */
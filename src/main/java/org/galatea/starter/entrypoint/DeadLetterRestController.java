@@ -0,0 +1,70 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.Arrays;
+import javax.jms.Queue;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.DeadLetterReplayMessage;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST Controller that lets operators move the messages that ended up on the dead letter queue of
+ * an agreement queue back onto it, e.g. once whatever made them fail has been fixed.
+ */
+@Slf4j
+@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Validated
+@RestController
+@RequiredArgsConstructor
+public class DeadLetterRestController {
+
+  @NonNull
+  private DeadLetterReplayer deadLetterReplayer;
+
+  @Value("${jms.agreement-queue-json}")
+  private String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  private String protoQueueName;
+
+  @Value("${jms.agreement-queue-sbe}")
+  private String sbeQueueName;
+
+  @Value("${jms.dead-letter-replay.messages-per-second}")
+  private double defaultMessagesPerSecond;
+
+  /**
+   * Replays up to maxMessages messages from the dead letter queue of the given agreement queue, at
+   * no more than messagesPerSecond messages per second. The request returns once they have all
+   * been replayed.
+   *
+   * @param queue the agreement queue whose dead letters to replay
+   * @param maxMessages the most messages to replay
+   * @param messagesPerSecond the replay rate, jms.dead-letter-replay.messages-per-second if not set
+   */
+  @PostMapping(value = "${mvc.replayDeadLettersPath}{queue:.+}",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  public DeadLetterReplayMessage replayDeadLetters(@PathVariable final String queue,
+      @RequestParam(value = "maxMessages", defaultValue = "1000") final int maxMessages,
+      @RequestParam(value = "messagesPerSecond", required = false)
+      final Double messagesPerSecond) {
+    if (!Arrays.asList(jsonQueueName, protoQueueName, sbeQueueName).contains(queue)) {
+      throw new EntityNotFoundException(Queue.class, queue);
+    }
+
+    double rate = messagesPerSecond != null ? messagesPerSecond : defaultMessagesPerSecond;
+    int replayed = deadLetterReplayer.replay(queue, maxMessages, rate);
+    return DeadLetterReplayMessage.builder().queue(queue).replayed(replayed).build();
+  }
+}
@@ -0,0 +1,79 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.List;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.domain.IexHistoricalPrice;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.galatea.starter.domain.IexSymbol;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexHistoricalPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexLastTradedPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexSymbolProtoMessages;
+import org.galatea.starter.service.IexService;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller that mimics the behavior of IexRestController but returns protobuf messages, with
+ * prices as scaled integers (see ProtobufMessages.proto).
+ */
+@Slf4j
+@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Validated
+@RestController
+@RequiredArgsConstructor
+public class IexProtoRestController {
+
+  private static final String APPLICATION_X_PROTOBUF = "application/x-protobuf";
+
+  @NonNull
+  private IexService iexService;
+
+  @NonNull
+  private ITranslator<List<IexSymbol>, IexSymbolProtoMessages> iexSymbolsProtoTranslator;
+
+  @NonNull
+  private ITranslator<List<IexLastTradedPrice>, IexLastTradedPriceProtoMessages>
+      iexLastTradedPricesProtoTranslator;
+
+  @NonNull
+  private ITranslator<List<IexHistoricalPrice>, IexHistoricalPriceProtoMessages>
+      iexHistoricalPricesProtoTranslator;
+
+  /**
+   * Retrieves all of the symbols available on IEX.
+   */
+  @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = APPLICATION_X_PROTOBUF)
+  public IexSymbolProtoMessages getAllStockSymbols() {
+    return iexSymbolsProtoTranslator.translate(iexService.getAllSymbols());
+  }
+
+  /**
+   * Retrieves the last traded price for each of the symbols passed in.
+   */
+  @GetMapping(value = "${mvc.iex.getLastTradedPricePath}", produces = APPLICATION_X_PROTOBUF)
+  public IexLastTradedPriceProtoMessages getLastTradedPrice(
+      @RequestParam(value = "symbols") final List<String> symbols) {
+    return iexLastTradedPricesProtoTranslator.translate(
+        iexService.getLastTradedPriceForSymbols(symbols));
+  }
+
+  /**
+   * Retrieves historical price data for the given symbol over a time range, like
+   * IexRestController#getHistoricalPrices.
+   */
+  @GetMapping(value = "${mvc.iex.getHistoricalPricesPath}", produces = APPLICATION_X_PROTOBUF)
+  public IexHistoricalPriceProtoMessages getHistoricalPrices(
+      @RequestParam(value = "symbol") final String symbol,
+      @RequestParam(value = "range", defaultValue = "1m") final String range,
+      @RequestParam(value = "date", required = false) final String date) {
+    return iexHistoricalPricesProtoTranslator.translate(
+        iexService.getHistoricalPrices(symbol, range, date));
+  }
+}
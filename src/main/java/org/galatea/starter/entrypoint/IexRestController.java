@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.IexHistoricalPrice;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
@@ -31,7 +32,9 @@ public class IexRestController {
    *
    * @return a list of all IexStockSymbols.
    */
-  @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE,
+      MvcConfig.APPLICATION_SMILE_VALUE, MvcConfig.APPLICATION_CBOR_VALUE,
+      MvcConfig.TEXT_CSV_VALUE})
   public List<IexSymbol> getAllStockSymbols() {
     return iexService.getAllSymbols();
   }
@@ -43,7 +46,8 @@ public class IexRestController {
    * @return a List of IexLastTradedPrice objects for the given symbols.
    */
   @GetMapping(value = "${mvc.iex.getLastTradedPricePath}", produces = {
-      MediaType.APPLICATION_JSON_VALUE})
+      MediaType.APPLICATION_JSON_VALUE, MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE, MvcConfig.TEXT_CSV_VALUE})
   public List<IexLastTradedPrice> getLastTradedPrice(
       @RequestParam(value = "symbols") final List<String> symbols) {
     return iexService.getLastTradedPriceForSymbols(symbols);
@@ -60,7 +64,9 @@ public class IexRestController {
    */
 
   @GetMapping(value = "${mvc.iex.getHistoricalPricesPath}", produces = {
-      MediaType.APPLICATION_JSON_VALUE})
+      MediaType.APPLICATION_JSON_VALUE, MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE, MvcConfig.TEXT_CSV_VALUE,
+      MvcConfig.APPLICATION_PARQUET_VALUE})
   public List<IexHistoricalPrice> getHistoricalPrices(
       @RequestParam(value = "symbol") final String symbol,
       @RequestParam(value = "range", defaultValue = "1m") final String range,
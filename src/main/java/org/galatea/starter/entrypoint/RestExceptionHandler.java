@@ -2,6 +2,8 @@ package org.galatea.starter.entrypoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import javax.validation.ConstraintViolationException;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.springframework.dao.DataAccessException;
@@ -37,6 +39,14 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  @ExceptionHandler({XMLStreamException.class, JAXBException.class})
+  protected ResponseEntity<Object> handleXmlStreamingException(final Exception exception) {
+    log.debug("Error reading streamed XML", exception);
+    String errorMessage = "Incorrectly formatted message.  Please consult the documentation.";
+    ApiError error = new ApiError(HttpStatus.BAD_REQUEST, errorMessage);
+    return buildResponseEntity(error);
+  }
+
   @ExceptionHandler(DataAccessException.class)
   protected ResponseEntity<Object> handleDataAccessException(final DataAccessException exception) {
     log.error("Unexpected data access error", exception);
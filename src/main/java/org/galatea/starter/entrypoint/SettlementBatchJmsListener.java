@@ -0,0 +1,272 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.SettlementReplies.Format;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.jms.BatchJmsListenerEndpoint;
+import org.galatea.starter.utils.jms.JmsReplier;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Batch counterpart of {@link SettlementJmsListener}, used instead of it when jms.batch.enabled is
+ * set. Each batch of agreements pulled off a queue is settled with a single spawnMissions call in
+ * one DB transaction, and the container then commits the whole batch off the queue.
+ *
+ * <p>A message that can't be translated is handed to the failed message consumer and left out of
+ * the batch. If settling the batch fails, its agreements are settled one at a time instead, so that
+ * only the agreements that fail on their own are handed to the failed message consumer.
+ *
+ * <p>Messages with a JMSReplyTo get a reply listing the mission spawned for their agreement, in
+ * the format of the message (see {@link SettlementReplies}).
+ *
+ * <p>Protobuf and binary messages are translated straight to missions, like in
+ * SettlementJmsListener, so their agreements are validated as they are translated rather than
+ * when the batch is settled.
+ */
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class SettlementBatchJmsListener implements JmsListenerConfigurer {
+
+  @NonNull
+  protected SettlementService settlementService;
+
+  @NonNull
+  protected ITranslator<Message, List<TradeAgreement>> tradeAgreementsJmsJsonTranslator;
+
+  @NonNull
+  protected ITranslator<Message, List<SettlementMission>>
+      tradeAgreementsJmsProtobufMissionTranslator;
+
+  @NonNull
+  protected ITranslator<Message, List<SettlementMission>> tradeAgreementsJmsSbeMissionTranslator;
+
+  @NonNull
+  protected PlatformTransactionManager transactionManager;
+
+  @NonNull
+  protected BiConsumer<Message, Exception> failedMessageConsumer;
+
+  @NonNull
+  protected JmsListenerContainerFactory<?> jmsListenerContainerFactory;
+
+  @NonNull
+  protected JmsReplier jmsReplier;
+
+  @NonNull
+  protected SettlementReplies settlementReplies;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  @Value("${jms.agreement-queue-sbe}")
+  protected String sbeQueueName;
+
+  @Value("${jms.listener-concurrency}")
+  protected String listenerConcurrency;
+
+  @Value("${jms.priority.urgent-concurrency}")
+  protected String urgentConcurrency;
+
+  @Value("${jms.priority.bulk-selector}")
+  protected String bulkSelector;
+
+  @Value("${jms.priority.urgent-selector}")
+  protected String urgentSelector;
+
+  /**
+   * Registers a bulk and an urgent listener for each queue, like SettlementJmsListener does.
+   */
+  @Override
+  public void configureJmsListeners(final JmsListenerEndpointRegistrar registrar) {
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder().id("settleAgreementJsonBatch")
+        .destination(jsonQueueName).concurrency(listenerConcurrency).selector(bulkSelector)
+        .messageListener(this::settleAgreementsJson).build(), jmsListenerContainerFactory);
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder()
+        .id("settleAgreementJsonUrgentBatch").destination(jsonQueueName)
+        .concurrency(urgentConcurrency).selector(urgentSelector)
+        .messageListener(this::settleAgreementsJson).build(), jmsListenerContainerFactory);
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder().id("settleAgreementProtoBatch")
+        .destination(protoQueueName).concurrency(listenerConcurrency).selector(bulkSelector)
+        .messageListener(this::settleAgreementsProto).build(), jmsListenerContainerFactory);
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder()
+        .id("settleAgreementProtoUrgentBatch").destination(protoQueueName)
+        .concurrency(urgentConcurrency).selector(urgentSelector)
+        .messageListener(this::settleAgreementsProto).build(), jmsListenerContainerFactory);
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder().id("settleAgreementSbeBatch")
+        .destination(sbeQueueName).concurrency(listenerConcurrency).selector(bulkSelector)
+        .messageListener(this::settleAgreementsSbe).build(), jmsListenerContainerFactory);
+    registrar.registerEndpoint(BatchJmsListenerEndpoint.builder()
+        .id("settleAgreementSbeUrgentBatch").destination(sbeQueueName)
+        .concurrency(urgentConcurrency).selector(urgentSelector)
+        .messageListener(this::settleAgreementsSbe).build(), jmsListenerContainerFactory);
+  }
+
+  /**
+   * Spawns Missions for a batch of TradeAgreements pulled off the jms queue in JSON format.
+   */
+  public void settleAgreementsJson(final List<Message> messages, final Session session)
+      throws JMSException {
+    log.info("Handling batch of {} JSON agreement message(s)", messages.size());
+    settleBatch(messages, tradeAgreementsJmsJsonTranslator, settlementService::spawnMissionIds,
+        Format.JSON);
+  }
+
+  /**
+   * Spawns Missions for a batch of TradeAgreements pulled off the jms queue in protobuf format.
+   */
+  public void settleAgreementsProto(final List<Message> messages, final Session session)
+      throws JMSException {
+    log.info("Handling batch of {} protobuf agreement message(s)", messages.size());
+    settleBatch(messages, tradeAgreementsJmsProtobufMissionTranslator,
+        settlementService::spawnTransformedMissions, Format.PROTO);
+  }
+
+  /**
+   * Spawns Missions for a batch of messages pulled off the jms queue in the fixed-layout binary
+   * encoding, each holding a batch of agreements. They are replied to in protobuf.
+   */
+  public void settleAgreementsSbe(final List<Message> messages, final Session session)
+      throws JMSException {
+    log.info("Handling batch of {} binary agreement message(s)", messages.size());
+    settleBatch(messages, tradeAgreementsJmsSbeMissionTranslator,
+        settlementService::spawnTransformedMissions, Format.PROTO);
+  }
+
+  /*
+   * The replies of the whole batch are sent together once it is settled. They go out on the
+   * batch's session, so they are committed along with the batch. The messages are translated to
+   * agreements or, for protobuf, straight to missions, which the spawner then saves.
+   */
+  private <T> void settleBatch(final List<Message> messages,
+      final ITranslator<Message, List<T>> translator, final Function<List<T>, List<Long>> spawner,
+      final Format format) throws JMSException {
+    Map<Message, MessageCreator> replies = new LinkedHashMap<>();
+    settle(translate(messages, translator, format, replies), spawner, format, replies);
+    jmsReplier.replyAll(replies);
+  }
+
+  private <T> List<ReceivedAgreements<T>> translate(final List<Message> messages,
+      final ITranslator<Message, List<T>> translator, final Format format,
+      final Map<Message, MessageCreator> replies) throws JMSException {
+    List<ReceivedAgreements<T>> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      try {
+        agreements.add(new ReceivedAgreements<>(message, translator.translate(message)));
+      } catch (RuntimeException e) {
+        fail(message, e, format, replies);
+      }
+    }
+    return agreements;
+  }
+
+  private <T> void settle(final List<ReceivedAgreements<T>> received,
+      final Function<List<T>, List<Long>> spawner, final Format format,
+      final Map<Message, MessageCreator> replies) throws JMSException {
+    List<T> agreements = received.stream()
+        .flatMap(message -> message.agreements.stream()).collect(Collectors.toList());
+    if (agreements.isEmpty()) {
+      return;
+    }
+
+    List<Long> missionIds;
+    try {
+      missionIds = spawnMissions(agreements, spawner);
+      log.info("Created missions {}", missionIds);
+    } catch (RuntimeException e) {
+      log.warn("Could not settle batch of {} agreement(s). Settling them one message at a time.",
+          agreements.size(), e);
+      for (ReceivedAgreements<T> message : received) {
+        settleAlone(message, spawner, format, replies);
+      }
+      return;
+    }
+
+    // The missions are in the same order as the agreements they were spawned for
+    int offset = 0;
+    for (ReceivedAgreements<T> message : received) {
+      int count = message.agreements.size();
+      if (JmsReplier.wantsReply(message.message)) {
+        replies.put(message.message,
+            settlementReplies.missions(format, missionIds.subList(offset, offset + count)));
+      }
+      offset += count;
+    }
+  }
+
+  private <T> void settleAlone(final ReceivedAgreements<T> received,
+      final Function<List<T>, List<Long>> spawner, final Format format,
+      final Map<Message, MessageCreator> replies) throws JMSException {
+    try {
+      List<Long> missionIds = spawnMissions(received.agreements, spawner);
+      log.info("Created missions {}", missionIds);
+      if (JmsReplier.wantsReply(received.message)) {
+        replies.put(received.message, settlementReplies.missions(format, missionIds));
+      }
+    } catch (RuntimeException e) {
+      fail(received.message, e, format, replies);
+    }
+  }
+
+  /*
+   * Requests that want a reply get an error back if the request itself is bad. Everything else
+   * goes to the failed message consumer.
+   */
+  private void fail(final Message message, final RuntimeException error, final Format format,
+      final Map<Message, MessageCreator> replies) throws JMSException {
+    if (SettlementReplies.isRejected(error) && JmsReplier.wantsReply(message)) {
+      log.warn("Rejected agreement message {}", message.getJMSMessageID(), error);
+      replies.put(message, settlementReplies.error(format, error));
+    } else {
+      failedMessageConsumer.accept(message, error);
+    }
+  }
+
+  /*
+   * Runs in its own DB transaction, which the missions are saved in directly rather than through
+   * the group committer. It commits right before the container commits the batch off the queue.
+   */
+  private <T> List<Long> spawnMissions(final List<T> agreements,
+      final Function<List<T>, List<Long>> spawner) {
+    return new TransactionTemplate(transactionManager)
+        .execute(status -> spawner.apply(agreements));
+  }
+
+  /*
+   * The agreements held by one message, or the missions built straight from them.
+   */
+  @RequiredArgsConstructor
+  private static class ReceivedAgreements<T> {
+
+    private final Message message;
+
+    private final List<T> agreements;
+  }
+}
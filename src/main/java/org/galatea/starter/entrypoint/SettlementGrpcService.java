@@ -0,0 +1,372 @@
+package org.galatea.starter.entrypoint;
+
+import com.google.common.collect.Lists;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolationException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionChangeProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdsProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementEngineGrpc.SettlementEngineImplBase;
+import org.galatea.starter.service.MissionChange;
+import org.galatea.starter.service.MissionChangePublisher;
+import org.galatea.starter.service.MissionChangePublisher.Subscription;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * gRPC counterpart of SettlementProtoRestController, served on its own port by the server in
+ * GrpcConfig.
+ *
+ * <p>The streaming calls use gRPC flow control rather than buffering. SettleStream only asks for
+ * the next chunk of agreements once the previous one is settled, so a client can't upload faster
+ * than we settle. GetMissions and SubscribeMissionChanges only send while the client keeps up
+ * (isReady) and carry on from the onReady callback. A subscriber that falls more than
+ * grpc.change-buffer-size changes behind is dropped with RESOURCE_EXHAUSTED.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class SettlementGrpcService extends SettlementEngineImplBase {
+
+  @NonNull
+  private SettlementService settlementService;
+
+  @NonNull
+  private MissionChangePublisher missionChangePublisher;
+
+  @NonNull
+  private ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+      tradeAgreementMissionTranslator;
+
+  @NonNull
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage>
+      settlementMissionTranslator;
+
+  @Value("${mvc.getMissionPath}")
+  private String getMissionPath;
+
+  @Value("${grpc.agreements-chunk-size}")
+  private int agreementsChunkSize;
+
+  @Value("${grpc.missions-chunk-size}")
+  private int missionsChunkSize;
+
+  @Value("${grpc.change-buffer-size}")
+  private int changeBufferSize;
+
+  /**
+   * Spawns settlement missions from the supplied trade agreement messages.
+   */
+  @Override
+  public void settle(final TradeAgreementProtoMessages request,
+      final StreamObserver<SettlementResponseProtoMessage> responseObserver) {
+    List<String> missionPaths;
+    try {
+      missionPaths = settleInternal(request.getMessageList());
+    } catch (RuntimeException e) {
+      responseObserver.onError(statusOf(e).asRuntimeException());
+      return;
+    }
+
+    responseObserver.onNext(SettlementResponseProtoMessage.newBuilder()
+        .addAllSpawnedMissionPaths(missionPaths).build());
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * Spawns settlement missions from a stream of trade agreement messages, settling them a chunk at
+   * a time, each in its own transaction. The response lists the missions of all the chunks.
+   */
+  @Override
+  public StreamObserver<TradeAgreementProtoMessage> settleStream(
+      final StreamObserver<SettlementResponseProtoMessage> responseObserver) {
+    ServerCallStreamObserver<SettlementResponseProtoMessage> call =
+        (ServerCallStreamObserver<SettlementResponseProtoMessage>) responseObserver;
+    call.disableAutoInboundFlowControl();
+    call.request(agreementsChunkSize);
+    return new AgreementStream(call);
+  }
+
+  /**
+   * Retrieves an existing settlement mission message.
+   */
+  @Override
+  public void getMission(final MissionIdProtoMessage request,
+      final StreamObserver<SettlementMissionProtoMessage> responseObserver) {
+    Optional<SettlementMission> msn;
+    try {
+      msn = settlementService.findMission(request.getId());
+    } catch (RuntimeException e) {
+      responseObserver.onError(statusOf(e).asRuntimeException());
+      return;
+    }
+
+    if (!msn.isPresent()) {
+      responseObserver.onError(Status.NOT_FOUND
+          .withDescription("Mission " + request.getId() + " was not found").asRuntimeException());
+      return;
+    }
+
+    responseObserver.onNext(settlementMissionTranslator.translate(msn.get()));
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * Streams the settlement mission messages with the given ids, looking them up a chunk at a time.
+   * Unknown ids end the stream with NOT_FOUND once their chunk is reached.
+   */
+  @Override
+  public void getMissions(final MissionIdsProtoMessage request,
+      final StreamObserver<SettlementMissionProtoMessage> responseObserver) {
+    ServerCallStreamObserver<SettlementMissionProtoMessage> call =
+        (ServerCallStreamObserver<SettlementMissionProtoMessage>) responseObserver;
+    MissionStream stream =
+        new MissionStream(call, Lists.partition(request.getIdList(), missionsChunkSize));
+    call.setOnReadyHandler(stream::drain);
+    stream.drain();
+  }
+
+  /**
+   * Streams changes to the missions with the given ids, or to all missions if there are none, as
+   * they are committed. The stream stays open until the client cancels it.
+   */
+  @Override
+  public void subscribeMissionChanges(final MissionIdsProtoMessage request,
+      final StreamObserver<MissionChangeProtoMessage> responseObserver) {
+    ServerCallStreamObserver<MissionChangeProtoMessage> call =
+        (ServerCallStreamObserver<MissionChangeProtoMessage>) responseObserver;
+    ChangeStream stream = new ChangeStream(call);
+    call.setOnReadyHandler(stream::drain);
+    call.setOnCancelHandler(stream::close);
+    stream.attach(missionChangePublisher.subscribe(request.getIdList(), stream::offer));
+  }
+
+  private List<String> settleInternal(final List<TradeAgreementProtoMessage> messages) {
+    List<Long> missionIds = settlementService.spawnTransformedMissions(
+        tradeAgreementMissionTranslator.translate(messages));
+    return missionIds.stream().map(id -> getMissionPath + id).collect(Collectors.toList());
+  }
+
+  /*
+   * Bad requests get the same messages as the REST endpoints give them. Anything else is our
+   * fault, so it is logged here.
+   */
+  private static Status statusOf(final RuntimeException error) {
+    if (error instanceof EntityNotFoundException) {
+      return Status.NOT_FOUND.withDescription(error.getMessage());
+    }
+    if (error instanceof ConstraintViolationException) {
+      return Status.INVALID_ARGUMENT.withDescription(
+          ConstraintViolationMessageFormatter.toMessage((ConstraintViolationException) error));
+    }
+    if (SettlementReplies.isRejected(error)) {
+      return Status.INVALID_ARGUMENT.withDescription(error.getMessage());
+    }
+
+    log.error("gRPC call failed", error);
+    return Status.INTERNAL.withDescription(error.getMessage()).withCause(error);
+  }
+
+  /*
+   * Called on the call's serializing executor, one callback at a time. After the client has sent
+   * a chunk of agreements it gets no more credit until the chunk is settled.
+   */
+  @RequiredArgsConstructor
+  private class AgreementStream implements StreamObserver<TradeAgreementProtoMessage> {
+
+    private final ServerCallStreamObserver<SettlementResponseProtoMessage> call;
+
+    private final SettlementResponseProtoMessage.Builder response =
+        SettlementResponseProtoMessage.newBuilder();
+
+    private List<TradeAgreementProtoMessage> chunk = new ArrayList<>();
+
+    private int settled;
+
+    private boolean failed;
+
+    @Override
+    public void onNext(final TradeAgreementProtoMessage message) {
+      if (failed) {
+        return;
+      }
+
+      chunk.add(message);
+      if (chunk.size() >= agreementsChunkSize && settleChunk()) {
+        call.request(agreementsChunkSize);
+      }
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+      log.info("Agreement stream was aborted after {} settled agreements", settled, error);
+    }
+
+    @Override
+    public void onCompleted() {
+      if (failed || (!chunk.isEmpty() && !settleChunk())) {
+        return;
+      }
+
+      log.info("Settled {} streamed agreements", settled);
+      call.onNext(response.build());
+      call.onCompleted();
+    }
+
+    private boolean settleChunk() {
+      try {
+        response.addAllSpawnedMissionPaths(settleInternal(chunk));
+      } catch (RuntimeException e) {
+        failed = true;
+        call.onError(statusOf(e)
+            .augmentDescription(settled + " agreements were settled before this chunk")
+            .asRuntimeException());
+        return false;
+      }
+
+      settled += chunk.size();
+      chunk = new ArrayList<>();
+      return true;
+    }
+  }
+
+  /*
+   * Called on the call's serializing executor, one callback at a time: first from getMissions and
+   * then whenever the client is ready for more.
+   */
+  private class MissionStream {
+
+    private final ServerCallStreamObserver<SettlementMissionProtoMessage> call;
+
+    private final Iterator<List<Long>> chunks;
+
+    private Iterator<SettlementMission> pending = Collections.emptyIterator();
+
+    private boolean done;
+
+    MissionStream(final ServerCallStreamObserver<SettlementMissionProtoMessage> call,
+        final List<List<Long>> chunks) {
+      this.call = call;
+      this.chunks = chunks.iterator();
+    }
+
+    void drain() {
+      if (done) {
+        return;
+      }
+
+      try {
+        while (call.isReady() && !call.isCancelled()) {
+          if (pending.hasNext()) {
+            call.onNext(settlementMissionTranslator.translate(pending.next()));
+          } else if (chunks.hasNext()) {
+            pending = settlementService.findMissions(chunks.next()).iterator();
+          } else {
+            done = true;
+            call.onCompleted();
+            return;
+          }
+        }
+      } catch (RuntimeException e) {
+        done = true;
+        if (!call.isCancelled()) {
+          call.onError(statusOf(e).asRuntimeException());
+        }
+      }
+    }
+  }
+
+  /*
+   * Changes are offered on the threads that commit them, while drain also runs on the call's
+   * executor when the client is ready for more, so both are synchronized.
+   */
+  private class ChangeStream {
+
+    private final ServerCallStreamObserver<MissionChangeProtoMessage> call;
+
+    private final BlockingQueue<MissionChangeProtoMessage> buffer;
+
+    private Subscription subscription;
+
+    private boolean closed;
+
+    ChangeStream(final ServerCallStreamObserver<MissionChangeProtoMessage> call) {
+      this.call = call;
+      this.buffer = new ArrayBlockingQueue<>(changeBufferSize);
+    }
+
+    synchronized void offer(final MissionChange change) {
+      if (closed) {
+        return;
+      }
+
+      if (!buffer.offer(toMessage(change))) {
+        log.warn("Mission change subscriber fell {} changes behind. Dropping it.",
+            buffer.size());
+        close();
+        call.onError(Status.RESOURCE_EXHAUSTED
+            .withDescription("Fell more than " + changeBufferSize + " changes behind")
+            .asRuntimeException());
+        return;
+      }
+      drain();
+    }
+
+    synchronized void drain() {
+      while (!closed && call.isReady()) {
+        MissionChangeProtoMessage message = buffer.poll();
+        if (message == null) {
+          return;
+        }
+        call.onNext(message);
+      }
+    }
+
+    synchronized void attach(final Subscription subscription) {
+      if (closed) {
+        subscription.close();
+      } else {
+        this.subscription = subscription;
+      }
+    }
+
+    synchronized void close() {
+      closed = true;
+      buffer.clear();
+      if (subscription != null) {
+        subscription.close();
+      }
+    }
+
+    private MissionChangeProtoMessage toMessage(final MissionChange change) {
+      MissionChangeProtoMessage.Builder message = MissionChangeProtoMessage.newBuilder()
+          .setType(MissionChangeProtoMessage.ChangeType.valueOf(change.getType().name()))
+          .setId(change.getMissionId());
+      if (change.getMission() != null) {
+        message.setMission(settlementMissionTranslator.translate(change.getMission()));
+      }
+      return message.build();
+    }
+  }
+}
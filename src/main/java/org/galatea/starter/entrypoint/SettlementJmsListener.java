@@ -1,56 +1,159 @@
 package org.galatea.starter.entrypoint;
 
-import java.util.Arrays;
-import java.util.Set;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
-import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.SettlementReplies.Format;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.jms.JmsReplier;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Settles the agreements pulled off the agreement queues one message at a time. Replaced by
+ * {@link SettlementBatchJmsListener} when jms.batch.enabled is set.
+ *
+ * <p>Messages with a JMSReplyTo get a reply listing the spawned missions, in the format of the
+ * message (see {@link SettlementReplies}).
+ *
+ * <p>The listeners run on lanes (see jms.partitioning), so that the agreements of an instrument are
+ * settled in the order they were sent. Their lanes process the messages in parallel, so each
+ * listener runs a single consumer (see jms.partitioning.concurrency).
+ *
+ * <p>Each queue has a second, urgent listener for messages sent with a high JMSPriority or marked
+ * urgent (see jms.priority). It has containers and threads of its own, so urgent agreements never
+ * wait behind a bulk backlog.
+ */
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 @Component
 public class SettlementJmsListener {
 
+  /* JMSType of protobuf messages that hold a TradeAgreementProtoMessages */
+  public static final String AGREEMENTS_PROTO_TYPE = "TradeAgreementProtoMessages";
+
   @NonNull
   protected SettlementService settlementService;
 
   @NonNull
-  protected ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+  protected ITranslator<Message, List<TradeAgreement>> tradeAgreementsJmsJsonTranslator;
+
+  @NonNull
+  protected ITranslator<Message, List<SettlementMission>>
+      tradeAgreementsJmsProtobufMissionTranslator;
+
+  @NonNull
+  protected ITranslator<Message, List<SettlementMission>> tradeAgreementsJmsSbeMissionTranslator;
+
+  @NonNull
+  protected JmsReplier jmsReplier;
 
   @NonNull
-  protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+  protected SettlementReplies settlementReplies;
 
   /**
    * Spawns Missions for any TradeAgreements pulled off the jms queue in JSON format.
+   *
+   * <p>Both listeners take the raw message and decode its body themselves, which saves the listener
+   * adapter converting it into a String or byte[] first.
    */
-  @JmsListener(destination = "${jms.agreement-queue-json}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementJson(final TradeAgreementMessage agreementMessage) {
-    log.info("Handling agreements {}", agreementMessage);
-
-    TradeAgreement agreement = tradeAgreementMessageTranslator.translate(agreementMessage);
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
-    log.info("Created missions {}", missionIds);
+  @JmsListener(id = "settleAgreementJson", destination = "${jms.agreement-queue-json}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.bulk-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  @JmsListener(id = "settleAgreementJsonUrgent", destination = "${jms.agreement-queue-json}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.urgent-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  public void settleAgreementJson(final Message message) throws JMSException {
+    log.info("Received message. Translating.");
+    settle(() -> {
+      List<TradeAgreement> agreements = tradeAgreementsJmsJsonTranslator.translate(message);
+      log.info("Handling agreements {}", agreements);
+      return settlementService.spawnMissions(agreements);
+    }, message, Format.JSON);
   }
 
   /**
-   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format.
+   * Spawns missions for any TradeAgreements pulled off the jms queue in protobuf format. A message
+   * whose JMSType is {@value #AGREEMENTS_PROTO_TYPE} holds a whole TradeAgreementProtoMessages, and
+   * all of its agreements are settled together. Any other message holds a single
+   * TradeAgreementProtoMessage.
+   *
+   * <p>The missions are built straight from the protobuf messages, skipping the TradeAgreements
+   * (see ProtoMessageTranslationConfig#tradeAgreementProtoMissionTranslator).
    */
-  @JmsListener(destination = "${jms.agreement-queue-proto}",
-      concurrency = "${jms.listener-concurrency}")
-  public void settleAgreementProto(final byte[] message) {
+  @JmsListener(id = "settleAgreementProto", destination = "${jms.agreement-queue-proto}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.bulk-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  @JmsListener(id = "settleAgreementProtoUrgent", destination = "${jms.agreement-queue-proto}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.urgent-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  public void settleAgreementProto(final Message message) throws JMSException {
     log.info("Received message. Translating.");
-    TradeAgreement agreement = tradeAgreementProtoTranslator.translate(message);
+    settle(() -> {
+      List<SettlementMission> missions =
+          tradeAgreementsJmsProtobufMissionTranslator.translate(message);
+      log.info("Handling missions {}", missions);
+      return settlementService.spawnTransformedMissions(missions);
+    }, message, Format.PROTO);
+  }
 
-    log.info("Handling agreement {}", agreement);
+  /**
+   * Spawns missions for the batches of agreements pulled off the jms queue in the fixed-layout
+   * binary encoding (see TradeAgreementsSchema). Every message holds a batch, and all of its
+   * agreements are settled together. Like the protobuf listener, the missions are built straight
+   * from the message body. Replies are protobuf SettlementResponseProtoMessages.
+   */
+  @JmsListener(id = "settleAgreementSbe", destination = "${jms.agreement-queue-sbe}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.bulk-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  @JmsListener(id = "settleAgreementSbeUrgent", destination = "${jms.agreement-queue-sbe}",
+      concurrency = "${jms.partitioning.concurrency}",
+      selector = "${jms.priority.urgent-selector}",
+      containerFactory = "agreementJmsListenerContainerFactory")
+  public void settleAgreementSbe(final Message message) throws JMSException {
+    log.info("Received message. Translating.");
+    settle(() -> {
+      List<SettlementMission> missions = tradeAgreementsJmsSbeMissionTranslator.translate(message);
+      log.debug("Handling {} missions", missions.size());
+      return settlementService.spawnTransformedMissions(missions);
+    }, message, Format.PROTO);
+  }
+
+  /*
+   * Requests that want a reply get the spawned missions back. If the request itself is bad they
+   * get an error back instead of the message being retried.
+   */
+  private void settle(final Supplier<Collection<Long>> settlement, final Message message,
+      final Format format) throws JMSException {
+    boolean wantsReply = JmsReplier.wantsReply(message);
+    try {
+      Collection<Long> missionIds = settlement.get();
+      log.info("Created missions {}", missionIds);
 
-    Set<Long> missionIds = settlementService.spawnMissions(Arrays.asList(agreement));
-    log.info("Created missions {}", missionIds);
+      if (wantsReply) {
+        jmsReplier.reply(message, settlementReplies.missions(format, missionIds));
+      }
+    } catch (RuntimeException e) {
+      if (!wantsReply || !SettlementReplies.isRejected(e)) {
+        throw e;
+      }
+      log.warn("Rejected agreement message {}", message.getJMSMessageID(), e);
+      jmsReplier.reply(message, settlementReplies.error(format, e));
+    }
   }
 }
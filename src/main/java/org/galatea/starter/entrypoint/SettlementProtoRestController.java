@@ -1,22 +1,36 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.Lists;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
-import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdsProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -24,6 +38,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller that mimics the behavior of SettlementRestController but accepts and returns only
@@ -41,7 +56,15 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   private ITranslator<SettlementMission, SettlementMissionProtoMessage> settlementMissionTranslator;
 
   @NonNull
-  private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator;
+  private ITranslator<List<SettlementMission>, SettlementMissionProtoMessages>
+      settlementMissionsTranslator;
+
+  @NonNull
+  private ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+      tradeAgreementMissionTranslator;
+
+  @NonNull
+  private ITranslator<ByteBuffer, List<SettlementMission>> tradeAgreementSbeMissionTranslator;
 
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
@@ -49,18 +72,30 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
+  @Value("${mvc.missions-stream-chunk-size}")
+  private int missionsStreamChunkSize;
+
+  @Value("${mvc.agreements-stream-chunk-size}")
+  private int agreementsStreamChunkSize;
+
   /**
    * Initializes a new instance of this class with the required arguments that will be autowired by
    * spring boot. This constructor was manually added because of the base class that has no default
    * constructor, necessitating a call to super() from here.
    */
   public SettlementProtoRestController(final SettlementService settlementService,
-      final ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator,
+      final ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+          tradeAgreementMissionTranslator,
       final ITranslator<SettlementMission, SettlementMissionProtoMessage>
-          settlementMissionTranslator) {
+          settlementMissionTranslator,
+      final ITranslator<List<SettlementMission>, SettlementMissionProtoMessages>
+          settlementMissionsTranslator,
+      final ITranslator<ByteBuffer, List<SettlementMission>> tradeAgreementSbeMissionTranslator) {
     super(settlementService);
     this.settlementMissionTranslator = settlementMissionTranslator;
-    this.tradeAgreementTranslator = tradeAgreementTranslator;
+    this.settlementMissionsTranslator = settlementMissionsTranslator;
+    this.tradeAgreementMissionTranslator = tradeAgreementMissionTranslator;
+    this.tradeAgreementSbeMissionTranslator = tradeAgreementSbeMissionTranslator;
   }
 
   /**
@@ -74,13 +109,77 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     // if an external request id was provided, grab it
     processRequestId(requestId);
 
-    List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
-    Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
+    // The missions are built straight from the messages, there are no TradeAgreements in between
+    List<SettlementMission> missions =
+        tradeAgreementMissionTranslator.translate(messages.getMessageList());
+    Set<String> missionPaths = settleMissionsInternal(missions, getMissionPath);
+
+    return SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
+        .build();
+  }
+
+  /**
+   * Spawn settlement missions from a batch of trade agreements in the fixed-layout binary encoding
+   * (see TradeAgreementsSchema). The agreements are decoded in place from the request body, and
+   * the response is the same protobuf message settleAgreement returns.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}", consumes = MvcConfig.APPLICATION_FUSE_SBE_VALUE,
+      produces = APPLICATION_X_PROTOBUF)
+  public SettlementResponseProtoMessage settleAgreementSbe(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<SettlementMission> missions = tradeAgreementSbeMissionTranslator.translate(
+        ByteBuffer.wrap(StreamUtils.copyToByteArray(body)));
+    Set<String> missionPaths = settleMissionsInternal(missions, getMissionPath);
 
     return SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
         .build();
   }
 
+  /**
+   * Spawn settlement missions from a stream of length-delimited trade agreement messages, as
+   * written by writeDelimitedTo, and stream back a length-delimited response message per chunk.
+   *
+   * <p>The agreements are read off the request a chunk at a time and each chunk is settled, in its
+   * own transaction, before the next one is read. Only one chunk is ever held in memory, however
+   * large the upload. If a chunk fails the stream ends there: the responses received by then tell
+   * the client which agreements were settled.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}",
+      consumes = MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE,
+      produces = MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+  public void settleAgreementStream(final InputStream body, final HttpServletResponse response,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE);
+    OutputStream out = response.getOutputStream();
+
+    CodedInputStream input = CodedInputStream.newInstance(body);
+    List<TradeAgreementProtoMessage> chunk = new ArrayList<>(agreementsStreamChunkSize);
+    int settled = 0;
+    while (!input.isAtEnd()) {
+      // The size limit applies to everything read from the stream, not to each message
+      input.resetSizeCounter();
+      chunk.add(input.readMessage(TradeAgreementProtoMessage.parser(),
+          ExtensionRegistryLite.getEmptyRegistry()));
+
+      if (chunk.size() == agreementsStreamChunkSize || input.isAtEnd()) {
+        settleChunk(chunk, out);
+        settled += chunk.size();
+        chunk = new ArrayList<>(agreementsStreamChunkSize);
+      }
+    }
+
+    log.info("Settled {} streamed agreements", settled);
+  }
+
   /**
    * Retrieves existing settlement mission messages.
    */
@@ -103,4 +202,94 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     // could add a test for the not-found case in order to meet coverage requirements
     return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
   }
+
+  /**
+   * Retrieves multiple settlement mission messages in a single message.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}", produces = APPLICATION_X_PROTOBUF)
+  public SettlementMissionProtoMessages getMissions(
+      @RequestParam(value = "ids") final List<Long> ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return settlementMissionsTranslator.translate(getMissionsInternal(ids));
+  }
+
+  /**
+   * Retrieves the settlement mission messages with the posted ids in a single message. This takes
+   * any number of ids, where the GET is limited by the length of the url.
+   */
+  @PostMapping(value = "${mvc.getMissionsPath}", consumes = APPLICATION_X_PROTOBUF,
+      produces = APPLICATION_X_PROTOBUF)
+  public SettlementMissionProtoMessages findMissions(
+      @RequestBody final MissionIdsProtoMessage ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return settlementMissionsTranslator.translate(getMissionsInternal(ids.getIdList()));
+  }
+
+  /**
+   * Streams multiple settlement mission messages, each written with writeDelimitedTo. Clients can
+   * read them one at a time with parseDelimitedFrom as they arrive.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}",
+      produces = MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissions(
+      @RequestParam(value = "ids") final List<Long> ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return streamMissionsInternal(ids);
+  }
+
+  /**
+   * Streams the settlement mission messages with the posted ids, like streamMissions.
+   */
+  @PostMapping(value = "${mvc.getMissionsPath}", consumes = APPLICATION_X_PROTOBUF,
+      produces = MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamFoundMissions(
+      @RequestBody final MissionIdsProtoMessage ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return streamMissionsInternal(ids.getIdList());
+  }
+
+  private void settleChunk(final List<TradeAgreementProtoMessage> messages,
+      final OutputStream out) throws IOException {
+    Set<String> missionPaths = settleMissionsInternal(
+        tradeAgreementMissionTranslator.translate(messages), getMissionPath);
+    SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths).build()
+        .writeDelimitedTo(out);
+    out.flush();
+  }
+
+  /*
+   * The missions are looked up a chunk of ids at a time and each chunk is flushed once written, so
+   * neither we nor the client ever hold all of them at once. The first chunk is looked up before
+   * the response starts, so that unknown ids in it still get a not-found response. Unknown ids in
+   * later chunks cut the stream short instead.
+   */
+  private ResponseEntity<StreamingResponseBody> streamMissionsInternal(final List<Long> ids) {
+    List<List<Long>> chunks = Lists.partition(ids, missionsStreamChunkSize);
+    List<SettlementMission> first =
+        chunks.isEmpty() ? Collections.emptyList() : getMissionsInternal(chunks.get(0));
+
+    StreamingResponseBody body = out -> {
+      for (int i = 0; i < chunks.size(); i++) {
+        List<SettlementMission> missions = i == 0 ? first : getMissionsInternal(chunks.get(i));
+        for (SettlementMission mission : missions) {
+          settlementMissionTranslator.translate(mission).writeDelimitedTo(out);
+        }
+        out.flush();
+      }
+    };
+
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_PROTOBUF_DELIMITED).body(body);
+  }
 }
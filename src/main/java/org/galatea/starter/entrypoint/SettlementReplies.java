@@ -0,0 +1,93 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.jms.BytesMessage;
+import javax.validation.ValidationException;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the replies to JMS settle requests, in the format of the request: a JSON
+ * {@link SettlementResponseMessage} for JSON requests and a {@link SettlementResponseProtoMessage}
+ * for protobuf requests. Like the REST responses, they list the paths of the spawned missions.
+ */
+@RequiredArgsConstructor
+@Component
+public class SettlementReplies {
+
+  /**
+   * The format of a settle request, and so of its reply.
+   */
+  public enum Format {
+    JSON, PROTO
+  }
+
+  @NonNull
+  private ObjectMapper objectMapper;
+
+  @Value("${mvc.getMissionPath}")
+  private String getMissionPath;
+
+  /**
+   * Returns whether a request that failed with the given exception should get an error reply
+   * rather than being retried: the request itself is bad, so retrying it won't help.
+   */
+  public static boolean isRejected(final Exception error) {
+    return error instanceof TranslationException || error instanceof ValidationException;
+  }
+
+  /**
+   * Returns a reply listing the missions that were spawned.
+   */
+  public MessageCreator missions(final Format format, final Collection<Long> missionIds) {
+    List<String> paths = missionIds.stream().map(id -> getMissionPath + id)
+        .collect(Collectors.toList());
+
+    if (format == Format.PROTO) {
+      return bytes(SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(paths)
+          .build().toByteArray());
+    }
+    return text(SettlementResponseMessage.builder().spawnedMissions(paths).build());
+  }
+
+  /**
+   * Returns a reply saying why no missions were spawned.
+   */
+  public MessageCreator error(final Format format, final Exception error) {
+    String reason = String.valueOf(error.getMessage());
+
+    if (format == Format.PROTO) {
+      return bytes(SettlementResponseProtoMessage.newBuilder().setError(reason).build()
+          .toByteArray());
+    }
+    return text(SettlementResponseMessage.builder().error(reason).build());
+  }
+
+  private MessageCreator text(final SettlementResponseMessage response) {
+    String json;
+    try {
+      json = objectMapper.writeValueAsString(response);
+    } catch (JsonProcessingException e) {
+      throw new TranslationException("Could not write the settlement response.", e);
+    }
+    return session -> session.createTextMessage(json);
+  }
+
+  private static MessageCreator bytes(final byte[] body) {
+    return session -> {
+      BytesMessage message = session.createBytesMessage();
+      message.writeBytes(body);
+      return message;
+    };
+  }
+}
@@ -1,27 +1,49 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.ParquetSerializer;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.xml.XmlElementReader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +53,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST Controller that generates and listens to http endpoints which allow the caller to create
@@ -42,6 +65,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class SettlementRestController extends BaseSettlementRestController {
 
+  private static final String AGREEMENT_ELEMENT = "tradeAgreement";
+
+  private static final JAXBContext AGREEMENT_CONTEXT = agreementContext();
+
   @NonNull
   ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator;
 
@@ -57,6 +84,18 @@ public class SettlementRestController extends BaseSettlementRestController {
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
+  @Value("${mvc.agreements-stream-chunk-size}")
+  private int agreementsStreamChunkSize;
+
+  @Value("${mvc.missions-stream-chunk-size}")
+  private int missionsStreamChunkSize;
+
+  @Value("${mvc.parquet.row-group-bytes}")
+  private int parquetRowGroupBytes;
+
+  @Value("${mvc.parquet.compression}")
+  private CompressionCodecName parquetCompression;
+
   /**
    * Initializes a new instance of this class with the required arguments that will be autowired by
    * spring boot. This constructor was manually added because of the base class that has no default
@@ -79,8 +118,10 @@ public class SettlementRestController extends BaseSettlementRestController {
   // @PostMapping to link http POST requests to this method
   // @RequestBody to have the post request body deserialized into a list of TradeAgreement objects
   @PostMapping(value = "${mvc.settleMissionPath}", consumes = {MediaType.APPLICATION_JSON_VALUE,
-      MediaType.APPLICATION_XML_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE,
-      MediaType.APPLICATION_XML_VALUE})
+      MediaType.APPLICATION_XML_VALUE, MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE, MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE})
   public SettlementResponseMessage settleAgreement(
       @RequestBody final TradeAgreementMessages messages,
       @RequestParam(value = "requestId", required = false) final String requestId) {
@@ -95,6 +136,60 @@ public class SettlementRestController extends BaseSettlementRestController {
     return SettlementResponseMessage.builder().spawnedMissions(missionPaths).build();
   }
 
+  /**
+   * Generate Missions from an XML document of TradeAgreements of any size, streaming back the
+   * progress. Selected with the stream=true request parameter; without it the whole document is
+   * bound up front by settleAgreement.
+   *
+   * <p>The agreement elements are pulled off the request with StAX a chunk at a time and each chunk
+   * is settled, in its own transaction, before the next one is read. Only one chunk is ever held in
+   * memory. A settlementResponse element with the spawned missions and the number of agreements
+   * settled so far is written and flushed per chunk, inside a settlementResponses root. If a chunk
+   * fails the document ends there, unclosed: the responses received by then tell the client which
+   * agreements were settled.
+   */
+  // No produces: the responses are always XML, and leaving it out lets a malformed document be
+  // rejected with the usual JSON error
+  @PostMapping(value = "${mvc.settleMissionPath}", params = "stream=true",
+      consumes = MediaType.APPLICATION_XML_VALUE)
+  public void settleAgreementXmlStream(final InputStream body,
+      final HttpServletResponse response,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException, XMLStreamException, JAXBException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    XMLStreamWriter writer = null;
+    long settled = 0;
+    try (XmlElementReader<TradeAgreementMessage> reader = new XmlElementReader<>(body,
+        AGREEMENT_CONTEXT, TradeAgreementMessage.class, AGREEMENT_ELEMENT)) {
+      List<TradeAgreementMessage> chunk = nextChunk(reader);
+      while (!chunk.isEmpty()) {
+        List<TradeAgreement> agreements = tradeAgreementTranslator.translate(
+            TradeAgreementMessages.builder().agreements(chunk).build());
+        Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
+        settled += chunk.size();
+
+        // Malformed documents are rejected with a 400 until the first chunk is settled
+        if (writer == null) {
+          writer = startResponses(response);
+        }
+        writeResponse(writer, missionPaths, settled);
+        log.debug("Settled {} streamed XML agreements so far", settled);
+        chunk = nextChunk(reader);
+      }
+    }
+
+    if (writer == null) {
+      writer = startResponses(response);
+    }
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.close();
+    log.info("Settled {} streamed XML agreements", settled);
+  }
+
   /**
    * Retrieve a previously generated Mission.
    */
@@ -103,7 +198,9 @@ public class SettlementRestController extends BaseSettlementRestController {
   // @RequestParam to take a parameter from the url (ex: http://url?requestId=3123)
   @GetMapping(value = "${mvc.getMissionPath}" + "{id}", produces = {
       MediaType.APPLICATION_JSON_VALUE,
-      MediaType.APPLICATION_XML_VALUE})
+      MediaType.APPLICATION_XML_VALUE,
+      MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE})
   public SettlementMissionMessage getMission(@PathVariable final Long id,
       @RequestParam(value = "requestId", required = false) final String requestId) {
 
@@ -119,6 +216,49 @@ public class SettlementRestController extends BaseSettlementRestController {
     throw new EntityNotFoundException(SettlementMission.class, id.toString());
   }
 
+  /**
+   * Retrieve a previously generated Mission as it was at a given version or point in time. The
+   * point in time is an ISO-8601 instant, e.g. 2019-01-02T10:15:30Z. Without either, the latest
+   * recorded version is returned.
+   */
+  @GetMapping(value = "${mvc.getMissionHistoryPath}" + "{id}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE,
+      MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE})
+  public SettlementMissionMessage getMissionHistory(@PathVariable final Long id,
+      @RequestParam(value = "version", required = false) final Long version,
+      @RequestParam(value = "asOf", required = false) final Instant asOf,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Optional<SettlementMission> msn = getMissionHistoryInternal(id, version, asOf);
+
+    if (msn.isPresent()) {
+      return settlementMissionTranslator.translate(msn.get());
+    }
+
+    throw new EntityNotFoundException(SettlementMission.class, id.toString());
+  }
+
+  /**
+   * Retrieve the audit trail of a Mission: the fields changed by each update with their old and new
+   * values, oldest first.
+   */
+  @GetMapping(value = "${mvc.getMissionAuditPath}" + "{id}",
+      produces = {MediaType.APPLICATION_JSON_VALUE, MvcConfig.APPLICATION_SMILE_VALUE,
+          MvcConfig.APPLICATION_CBOR_VALUE, MvcConfig.APPLICATION_PARQUET_VALUE})
+  public List<SettlementMissionAudit> getMissionAudits(@PathVariable final Long id,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return getMissionAuditsInternal(id);
+  }
+
   /**
    * Retrieve multiple previously generated Missions.
    */
@@ -126,6 +266,8 @@ public class SettlementRestController extends BaseSettlementRestController {
   @GetMapping(value = "${mvc.getMissionsPath}", produces = {
       MediaType.APPLICATION_JSON_VALUE,
       MediaType.APPLICATION_XML_VALUE,
+      MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE,
       MvcConfig.TEXT_CSV_VALUE,
       MvcConfig.APPLICATION_EXCEL_VALUE})
   public SettlementMissionList getMissions(
@@ -145,6 +287,46 @@ public class SettlementRestController extends BaseSettlementRestController {
     return new SettlementMissionList(missions);
   }
 
+  /**
+   * Export previously generated Missions as a Parquet file, e.g. with format=parquet.
+   *
+   * <p>The missions are looked up a chunk of ids at a time while the file is written, so only a
+   * chunk of missions and the row group being filled are ever held in memory. The first chunk is
+   * looked up before the response starts, so that unknown ids in it still get a not-found
+   * response (with no body). Unknown ids in later chunks cut the file short instead.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}", produces = MvcConfig.APPLICATION_PARQUET_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportMissions(
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<Long> idLongs = Arrays.stream(ids.split(","))
+        .map(Long::parseLong)
+        .collect(Collectors.toList());
+    List<List<Long>> chunks = Lists.partition(idLongs, missionsStreamChunkSize);
+    List<SettlementMission> first;
+    try {
+      first = chunks.isEmpty() ? Collections.emptyList() : getMissionsInternal(chunks.get(0));
+    } catch (EntityNotFoundException e) {
+      // The error body can't be written as Parquet, so only the status is returned
+      log.info("Not exporting missions: {}", e.getMessage());
+      return ResponseEntity.notFound().build();
+    }
+    // Lazily looks up the remaining chunks as the rows are written
+    Iterable<SettlementMission> missions = Iterables.concat(first, Iterables.concat(
+        Iterables.transform(Iterables.skip(chunks, 1), this::getMissionsInternal)));
+
+    StreamingResponseBody body = out -> ParquetSerializer.serializeToParquet(missions,
+        SettlementMission.class, out, parquetRowGroupBytes, parquetCompression);
+
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_PARQUET)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.parquet")
+        .body(body);
+  }
+
   /**
    * Update an existing mission given an ID.
    */
@@ -152,8 +334,10 @@ public class SettlementRestController extends BaseSettlementRestController {
   // @PathVariable to take the id from the path and make it available as a method argument
   // @RequestParam to take a parameter from the url (ex: http://url?requestId=3123)
   @PutMapping(value = "${mvc.updateMissionPath}" + "{id}",
-      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
-      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+          MvcConfig.APPLICATION_SMILE_VALUE, MvcConfig.APPLICATION_CBOR_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE,
+          MvcConfig.APPLICATION_SMILE_VALUE, MvcConfig.APPLICATION_CBOR_VALUE})
   public void updateMission(@PathVariable final Long id,
       @RequestBody final SettlementMissionMessage settlementMissionMessage,
       @RequestParam(value = "requestId", required = false) final String requestId) {
@@ -181,7 +365,9 @@ public class SettlementRestController extends BaseSettlementRestController {
   // @RequestParam to take a parameter from the url (ex: http://url?requestId=3123)
   @DeleteMapping(value = "${mvc.deleteMissionPath}" + "{id}", produces = {
       MediaType.APPLICATION_JSON_VALUE,
-      MediaType.APPLICATION_XML_VALUE})
+      MediaType.APPLICATION_XML_VALUE,
+      MvcConfig.APPLICATION_SMILE_VALUE,
+      MvcConfig.APPLICATION_CBOR_VALUE})
   public void deleteMission(@PathVariable final Long id,
       @RequestParam(value = "requestId", required = false) final String requestId) {
 
@@ -196,4 +382,49 @@ public class SettlementRestController extends BaseSettlementRestController {
     }
   }
 
+  private List<TradeAgreementMessage> nextChunk(
+      final XmlElementReader<TradeAgreementMessage> reader)
+      throws XMLStreamException, JAXBException {
+    List<TradeAgreementMessage> chunk = new ArrayList<>(agreementsStreamChunkSize);
+    TradeAgreementMessage message;
+    while (chunk.size() < agreementsStreamChunkSize && (message = reader.next()) != null) {
+      chunk.add(message);
+    }
+    return chunk;
+  }
+
+  private static XMLStreamWriter startResponses(final HttpServletResponse response)
+      throws IOException, XMLStreamException {
+    response.setStatus(HttpStatus.OK.value());
+    response.setContentType(MediaType.APPLICATION_XML_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+    XMLStreamWriter writer = XMLOutputFactory.newInstance()
+        .createXMLStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8.name());
+    writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+    writer.writeStartElement("settlementResponses");
+    return writer;
+  }
+
+  private static void writeResponse(final XMLStreamWriter writer, final Set<String> missionPaths,
+      final long settled) throws XMLStreamException {
+    writer.writeStartElement("settlementResponse");
+    writer.writeAttribute("settled", Long.toString(settled));
+    for (String missionPath : missionPaths) {
+      writer.writeStartElement("spawnedMission");
+      writer.writeCharacters(missionPath);
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+    // Flushes through to the client, so it sees the progress as it is made
+    writer.flush();
+  }
+
+  private static JAXBContext agreementContext() {
+    try {
+      return JAXBContext.newInstance(TradeAgreementMessage.class);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Could not create the JAXB context for agreements", e);
+    }
+  }
 }
@@ -0,0 +1,18 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+public class DeadLetterReplayMessage {
+
+  protected String queue;
+
+  protected int replayed;
+}
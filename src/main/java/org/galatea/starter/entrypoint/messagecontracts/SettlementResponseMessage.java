@@ -1,5 +1,7 @@
 package org.galatea.starter.entrypoint.messagecontracts;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import java.util.List;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -25,4 +27,8 @@ public class SettlementResponseMessage {
   @Singular
   @XmlElement(name = "spawnedMission")
   protected List<String> spawnedMissions;
+
+  /* Why no missions were spawned. Only set on JMS replies to requests that failed. */
+  @JsonInclude(Include.NON_NULL)
+  protected String error;
 }
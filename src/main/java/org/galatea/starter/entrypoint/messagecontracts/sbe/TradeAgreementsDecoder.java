@@ -0,0 +1,191 @@
+package org.galatea.starter.entrypoint.messagecontracts.sbe;
+
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.BUY_SELL_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.FLOAT64;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.GROUP_BLOCK_LENGTH_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.HEADER_LENGTH;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.MAX_STRING_LENGTH;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.NUM_IN_GROUP_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.QTY_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.SCHEMA_ID;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.SCHEMA_ID_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.TEMPLATE_ID;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.TEMPLATE_ID_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.UINT16;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flyweight that reads a batch of trade agreements in the {@link TradeAgreementsSchema} layout in
+ * place. Nothing is copied or parsed up front: wrapping checks the header, and each call to
+ * {@link #next()} moves the flyweight onto the next agreement, whose fields are then read straight
+ * from the buffer.
+ *
+ * <p>Reading the fixed fields and the side allocates nothing. Only the string fields that are
+ * asked for are turned into Strings. A decoder holds a small scratch array for direct buffers, so
+ * reuse one per thread rather than creating one per message. Malformed or truncated input is
+ * rejected with an IllegalArgumentException.
+ */
+public final class TradeAgreementsDecoder {
+
+  /* The one-character Strings of the ASCII characters, so reading the side allocates nothing */
+  private static final String[] ASCII = new String[0x80];
+
+  static {
+    for (char c = 0; c < ASCII.length; c++) {
+      ASCII[c] = String.valueOf(c).intern();
+    }
+  }
+
+  private final byte[] scratch = new byte[MAX_STRING_LENGTH];
+
+  private ByteBuffer buffer;
+
+  private int end;
+
+  private int blockLength;
+
+  private int count;
+
+  private int index;
+
+  private int block;
+
+  private int instrument;
+
+  private int internalParty;
+
+  private int externalParty;
+
+  private int limit;
+
+  /**
+   * Moves the decoder onto the batch held in length bytes from offset of the buffer.
+   */
+  public TradeAgreementsDecoder wrap(final ByteBuffer buffer, final int offset, final int length) {
+    if (length < HEADER_LENGTH || offset + length > buffer.limit()) {
+      throw new IllegalArgumentException("Too short for a batch of agreements: " + length
+          + " bytes");
+    }
+
+    int templateId = uint16(buffer, offset + TEMPLATE_ID_OFFSET);
+    int schemaId = uint16(buffer, offset + SCHEMA_ID_OFFSET);
+    if (templateId != TEMPLATE_ID || schemaId != SCHEMA_ID) {
+      throw new IllegalArgumentException("Not a batch of agreements: template " + templateId
+          + " of schema " + schemaId);
+    }
+
+    this.buffer = buffer;
+    this.end = offset + length;
+    // The root block is empty in this version, but may not be in later ones
+    this.limit = offset + HEADER_LENGTH + uint16(buffer, offset);
+    this.blockLength = uint16(buffer, offset + GROUP_BLOCK_LENGTH_OFFSET);
+    this.count = uint16(buffer, offset + NUM_IN_GROUP_OFFSET);
+    this.index = 0;
+    if (blockLength < BUY_SELL_OFFSET + 1) {
+      throw new IllegalArgumentException("Agreement blocks of " + blockLength
+          + " bytes are too short");
+    }
+    return this;
+  }
+
+  /**
+   * Returns the number of agreements in the batch.
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns whether there is another agreement to move onto.
+   */
+  public boolean hasNext() {
+    return index < count;
+  }
+
+  /**
+   * Moves onto the next agreement.
+   */
+  public TradeAgreementsDecoder next() {
+    if (!hasNext()) {
+      throw new IllegalStateException("All " + count + " agreements were read already");
+    }
+
+    block = limit;
+    instrument = checked(block + blockLength);
+    internalParty = checked(skipString(instrument));
+    externalParty = checked(skipString(internalParty));
+    limit = skipString(externalParty);
+    if (limit > end) {
+      throw new IllegalArgumentException("Agreement " + index + " runs past the end of the batch");
+    }
+    index++;
+    return this;
+  }
+
+  /**
+   * Returns the quantity of the current agreement.
+   */
+  public double qty() {
+    return (double) FLOAT64.get(buffer, block + QTY_OFFSET);
+  }
+
+  /**
+   * Returns the side of the current agreement as a one-character String, without allocating for
+   * ASCII sides.
+   */
+  public String buySell() {
+    int c = buffer.get(block + BUY_SELL_OFFSET) & 0xFF;
+    return c < ASCII.length ? ASCII[c] : String.valueOf((char) c);
+  }
+
+  /**
+   * Returns the instrument of the current agreement.
+   */
+  public String instrument() {
+    return string(instrument);
+  }
+
+  /**
+   * Returns the internal party of the current agreement.
+   */
+  public String internalParty() {
+    return string(internalParty);
+  }
+
+  /**
+   * Returns the external party of the current agreement.
+   */
+  public String externalParty() {
+    return string(externalParty);
+  }
+
+  private int checked(final int position) {
+    if (position >= end) {
+      throw new IllegalArgumentException("Agreement " + index + " runs past the end of the batch");
+    }
+    return position;
+  }
+
+  private int skipString(final int position) {
+    return position + 1 + (buffer.get(position) & 0xFF);
+  }
+
+  private String string(final int position) {
+    int length = buffer.get(position) & 0xFF;
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + position + 1, length,
+          StandardCharsets.US_ASCII);
+    }
+
+    for (int i = 0; i < length; i++) {
+      scratch[i] = buffer.get(position + 1 + i);
+    }
+    return new String(scratch, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  private static int uint16(final ByteBuffer buffer, final int position) {
+    return (short) UINT16.get(buffer, position) & 0xFFFF;
+  }
+}
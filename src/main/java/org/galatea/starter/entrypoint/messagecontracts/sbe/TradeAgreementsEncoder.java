@@ -0,0 +1,120 @@
+package org.galatea.starter.entrypoint.messagecontracts.sbe;
+
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.AGREEMENT_BLOCK_LENGTH;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.BUY_SELL_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.FLOAT64;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.GROUP_BLOCK_LENGTH_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.HEADER_LENGTH;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.MAX_AGREEMENTS;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.MAX_STRING_LENGTH;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.NUM_IN_GROUP_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.QTY_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.SCHEMA_ID;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.SCHEMA_ID_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.SCHEMA_VERSION;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.TEMPLATE_ID;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.TEMPLATE_ID_OFFSET;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.UINT16;
+import static org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema.VERSION_OFFSET;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight that writes a batch of trade agreements in the {@link TradeAgreementsSchema} layout
+ * straight into a buffer. The number of agreements is written up front, so it must be known when
+ * the encoder is wrapped. The encoder can be reused by wrapping it again.
+ *
+ * <pre>
+ * TradeAgreementsEncoder encoder = new TradeAgreementsEncoder().wrap(buffer, 0, 2)
+ *     .add("IBM", "INT-1", "EXT-1", 'B', 100)
+ *     .add("AAPL", "INT-1", "EXT-2", 'S', 50);
+ * int length = encoder.encodedLength();
+ * </pre>
+ */
+public final class TradeAgreementsEncoder {
+
+  private ByteBuffer buffer;
+
+  private int offset;
+
+  private int count;
+
+  private int added;
+
+  private int limit;
+
+  /**
+   * Starts a batch of the given number of agreements at the offset of the buffer. The buffer must
+   * have room for up to {@link TradeAgreementsSchema#maxEncodedLength(int)} bytes from there.
+   */
+  public TradeAgreementsEncoder wrap(final ByteBuffer buffer, final int offset, final int count) {
+    if (count < 0 || count > MAX_AGREEMENTS) {
+      throw new IllegalArgumentException("A batch holds up to " + MAX_AGREEMENTS
+          + " agreements, not " + count);
+    }
+
+    this.buffer = buffer;
+    this.offset = offset;
+    this.count = count;
+    this.added = 0;
+    this.limit = offset + HEADER_LENGTH;
+
+    UINT16.set(buffer, offset, (short) 0);
+    UINT16.set(buffer, offset + TEMPLATE_ID_OFFSET, (short) TEMPLATE_ID);
+    UINT16.set(buffer, offset + SCHEMA_ID_OFFSET, (short) SCHEMA_ID);
+    UINT16.set(buffer, offset + VERSION_OFFSET, (short) SCHEMA_VERSION);
+    UINT16.set(buffer, offset + GROUP_BLOCK_LENGTH_OFFSET, (short) AGREEMENT_BLOCK_LENGTH);
+    UINT16.set(buffer, offset + NUM_IN_GROUP_OFFSET, (short) count);
+    return this;
+  }
+
+  /**
+   * Appends the next agreement. The strings must be ASCII and at most
+   * {@value TradeAgreementsSchema#MAX_STRING_LENGTH} characters long.
+   */
+  public TradeAgreementsEncoder add(final String instrument, final String internalParty,
+      final String externalParty, final char buySell, final double qty) {
+    if (added == count) {
+      throw new IllegalStateException("All " + count + " agreements were added already");
+    }
+
+    FLOAT64.set(buffer, limit + QTY_OFFSET, qty);
+    buffer.put(limit + BUY_SELL_OFFSET, ascii(buySell));
+    limit += AGREEMENT_BLOCK_LENGTH;
+    putString(instrument);
+    putString(internalParty);
+    putString(externalParty);
+    added++;
+    return this;
+  }
+
+  /**
+   * Returns the number of bytes written since the encoder was wrapped.
+   */
+  public int encodedLength() {
+    if (added != count) {
+      throw new IllegalStateException("Only " + added + " of " + count + " agreements were added");
+    }
+    return limit - offset;
+  }
+
+  private void putString(final String value) {
+    int length = value.length();
+    if (length > MAX_STRING_LENGTH) {
+      throw new IllegalArgumentException("Strings are at most " + MAX_STRING_LENGTH
+          + " characters long, not " + length);
+    }
+
+    buffer.put(limit++, (byte) length);
+    for (int i = 0; i < length; i++) {
+      buffer.put(limit++, ascii(value.charAt(i)));
+    }
+  }
+
+  private static byte ascii(final char c) {
+    if (c > 0x7F) {
+      throw new IllegalArgumentException("Only ASCII can be encoded, not '" + c + "'");
+    }
+    return (byte) c;
+  }
+}
@@ -0,0 +1,76 @@
+package org.galatea.starter.entrypoint.messagecontracts.sbe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-layout binary encoding of a batch of trade agreements, in the style of Simple Binary
+ * Encoding (SBE). Everything is little-endian and lives at a fixed or computable offset, so it is
+ * read with plain loads rather than parsed. See {@link TradeAgreementsEncoder} and
+ * {@link TradeAgreementsDecoder}.
+ *
+ * <pre>
+ * message header   blockLength  uint16  length of the root block, 0 as it has no fields
+ *                  templateId   uint16  {@value #TEMPLATE_ID}
+ *                  schemaId     uint16  {@value #SCHEMA_ID}
+ *                  version      uint16  {@value #SCHEMA_VERSION}
+ * group header     blockLength  uint16  length of each agreement's fixed block
+ *                  numInGroup   uint16  number of agreements
+ * each agreement   qty          double
+ *                  buySell      char    ASCII, e.g. 'B'
+ *                  (the fixed block ends here, at blockLength)
+ *                  instrument, internalParty, externalParty
+ *                               uint8 length followed by that many ASCII bytes each
+ * </pre>
+ *
+ * <p>Decoders skip to the variable-length fields by the blockLength in the group header, so fields
+ * can be appended to the fixed block in later versions without breaking them.
+ */
+public final class TradeAgreementsSchema {
+
+  public static final int TEMPLATE_ID = 1;
+
+  public static final int SCHEMA_ID = 0x4655;
+
+  public static final int SCHEMA_VERSION = 0;
+
+  /* Message header followed by the group header */
+  public static final int HEADER_LENGTH = 12;
+
+  public static final int AGREEMENT_BLOCK_LENGTH = 9;
+
+  public static final int MAX_STRING_LENGTH = 255;
+
+  public static final int MAX_AGREEMENTS = 0xFFFF;
+
+  static final int TEMPLATE_ID_OFFSET = 2;
+
+  static final int SCHEMA_ID_OFFSET = 4;
+
+  static final int VERSION_OFFSET = 6;
+
+  static final int GROUP_BLOCK_LENGTH_OFFSET = 8;
+
+  static final int NUM_IN_GROUP_OFFSET = 10;
+
+  static final int QTY_OFFSET = 0;
+
+  static final int BUY_SELL_OFFSET = 8;
+
+  /* Little-endian views of any ByteBuffer, whatever its own byte order */
+  static final VarHandle UINT16 =
+      MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+
+  static final VarHandle FLOAT64 =
+      MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private TradeAgreementsSchema() {}
+
+  /**
+   * Returns the most bytes a batch of the given number of agreements can take.
+   */
+  public static int maxEncodedLength(final int agreements) {
+    return HEADER_LENGTH + agreements * (AGREEMENT_BLOCK_LENGTH + 3 * (1 + MAX_STRING_LENGTH));
+  }
+}
@@ -0,0 +1,103 @@
+package org.galatea.starter.service;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.constraints.DecimalMin;
+import lombok.NonNull;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.utils.validation.StringEnumeration;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Checks the fields of an agreement against the constraints declared on {@link TradeAgreement},
+ * without building a TradeAgreement. Used where missions are built straight from agreement
+ * messages, so that those agreements are held to exactly the same rules as the ones validated on
+ * their way into {@link SettlementService#spawnMissions}.
+ *
+ * <p>The allowed sides and the minimum quantity are read once from the
+ * {@code @StringEnumeration} and {@code @DecimalMin} of TradeAgreement. Values that plainly pass
+ * them are accepted without going through the validator, so a valid agreement costs no
+ * allocation. Anything else is handed to the validator, which has the final say and produces the
+ * usual violations. Their property paths are the bare field names (e.g. qty), where method
+ * validation of spawnMissions reports the parameter path (spawnMissions.agreements[0].qty).
+ */
+public class AgreementConstraints {
+
+  private static final String BUY_SELL = "buySell";
+
+  private static final String QTY = "qty";
+
+  @NonNull
+  private final Validator validator;
+
+  /* Null if the field isn't constrained, in which case the validator decides */
+  private final Set<String> sides;
+
+  private final DecimalMin minQty;
+
+  private final double minQtyValue;
+
+  /**
+   * Reads the constraints off TradeAgreement.
+   */
+  public AgreementConstraints(@NonNull final Validator validator) {
+    this.validator = validator;
+
+    StringEnumeration side = field(BUY_SELL).getAnnotation(StringEnumeration.class);
+    this.sides = side == null ? null : Arrays.stream(side.enumClass().getEnumConstants())
+        .map(Enum::name).collect(Collectors.toSet());
+
+    DecimalMin min = field(QTY).getAnnotation(DecimalMin.class);
+    BigDecimal minValue = min == null ? null : new BigDecimal(min.value());
+    // Only take the shortcut if the bound is exactly representable as a double
+    boolean exact = minValue != null
+        && new BigDecimal(minValue.doubleValue()).compareTo(minValue) == 0;
+    this.minQty = exact ? min : null;
+    this.minQtyValue = exact ? minValue.doubleValue() : Double.NaN;
+  }
+
+  /**
+   * Checks the constrained fields of an agreement. The quantity is taken unboxed, as agreement
+   * messages hold it, so that checking it doesn't allocate.
+   *
+   * @return the violations, the same the validator would report for a TradeAgreement with these
+   *     fields, or an empty set if there are none
+   */
+  public Set<ConstraintViolation<TradeAgreement>> validate(final String buySell,
+      final double qty) {
+    if (isPlainlyValidSide(buySell) && isPlainlyValidQty(qty)) {
+      return Collections.emptySet();
+    }
+
+    Set<ConstraintViolation<TradeAgreement>> violations =
+        new LinkedHashSet<>(validator.validateValue(TradeAgreement.class, BUY_SELL, buySell));
+    violations.addAll(validator.validateValue(TradeAgreement.class, QTY, qty));
+    return violations;
+  }
+
+  private boolean isPlainlyValidSide(final String buySell) {
+    return sides != null && sides.contains(buySell);
+  }
+
+  private boolean isPlainlyValidQty(final double qty) {
+    if (minQty == null || !Double.isFinite(qty)) {
+      return false;
+    }
+    return minQty.inclusive() ? qty >= minQtyValue : qty > minQtyValue;
+  }
+
+  private static Field field(final String name) {
+    Field field = ReflectionUtils.findField(TradeAgreement.class, name);
+    if (field == null) {
+      throw new IllegalStateException("TradeAgreement has no field " + name);
+    }
+    return field;
+  }
+}
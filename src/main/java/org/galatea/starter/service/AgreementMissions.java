@@ -0,0 +1,25 @@
+package org.galatea.starter.service;
+
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * How a settlement mission is derived from the fields of a trade agreement. Shared by the agreement
+ * transformer and the translators that build missions straight from agreement messages, so the two
+ * paths can't drift apart.
+ */
+public final class AgreementMissions {
+
+  private static final String DEPOT = "DTC";
+
+  private AgreementMissions() {
+  }
+
+  /**
+   * Creates the mission that settles an agreement with the given fields.
+   */
+  public static SettlementMission missionFor(final String instrument, final String externalParty,
+      final String buySell, final Double qty) {
+    return SettlementMission.builder().instrument(instrument).externalParty(externalParty)
+        .depot(DEPOT).qty(qty).direction("B".equals(buySell) ? "REC" : "DEL").version(0L).build();
+  }
+}
@@ -0,0 +1,109 @@
+package org.galatea.starter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
+import org.galatea.starter.domain.rpsy.ISettlementMissionAuditRpsy;
+import org.galatea.starter.utils.diff.PropertyChange;
+import org.galatea.starter.utils.diff.PropertyDiffer;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Records which fields of a settlement mission each update changed, from what and to what.
+ *
+ * <p>The diff is taken on the caller's thread, since the caller may go on to modify the missions.
+ * Writing the audit records is handed to the audit executor so that updates don't wait on it.
+ */
+@Slf4j
+@Service
+public class MissionAuditService {
+
+  private static final PropertyDiffer<SettlementMission> DIFFER =
+      PropertyDiffer.of(SettlementMission.class);
+
+  private static final String VERSION = "version";
+
+  private final ISettlementMissionAuditRpsy auditRpsy;
+
+  private final TaskExecutor missionAuditExecutor;
+
+  private final Timer diffTimer;
+
+  private final Counter writeFailures;
+
+  /**
+   * Creates the audit service.
+   *
+   * @param auditRpsy the store the audit records are written to
+   * @param missionAuditExecutor the executor that writes the audit records
+   * @param meterRegistry registry that diff timings and write failures are published to
+   */
+  public MissionAuditService(@NonNull final ISettlementMissionAuditRpsy auditRpsy,
+      @NonNull final TaskExecutor missionAuditExecutor,
+      @NonNull final MeterRegistry meterRegistry) {
+    this.auditRpsy = auditRpsy;
+    this.missionAuditExecutor = missionAuditExecutor;
+    this.diffTimer = Timer.builder("fuse.audit.diff")
+        .description("Time taken to diff a mission update").register(meterRegistry);
+    this.writeFailures = Counter.builder("fuse.audit.write.failures")
+        .description("Number of mission updates whose audit records could not be written")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Audits the fields changed by an update. Nothing is recorded for a mission that didn't exist
+   * before, or for an update that only bumped the version.
+   *
+   * @param previous the mission as it was before the update, if known
+   * @param saved the mission as it was saved and flushed, with its new version
+   */
+  public void recordUpdate(final SettlementMission previous, final SettlementMission saved) {
+    if (previous == null) {
+      return;
+    }
+
+    Instant changedAt = Instant.now();
+    List<SettlementMissionAudit> records = diffTimer.record(() -> DIFFER.diff(previous, saved))
+        .stream().filter(change -> !VERSION.equals(change.getProperty()))
+        .map(change -> toAudit(saved, change, changedAt)).collect(Collectors.toList());
+    if (records.isEmpty()) {
+      return;
+    }
+
+    missionAuditExecutor.execute(() -> write(records));
+  }
+
+  /**
+   * Retrieves the audit records of the mission, oldest first.
+   */
+  public List<SettlementMissionAudit> findAudits(final Long missionId) {
+    return auditRpsy.findByMissionIdOrderByVersionAscIdAsc(missionId);
+  }
+
+  private void write(final List<SettlementMissionAudit> records) {
+    try {
+      auditRpsy.saveAll(records);
+      log.debug("Wrote {} audit record(s) for mission {}", records.size(),
+          records.get(0).getMissionId());
+    } catch (RuntimeException e) {
+      writeFailures.increment();
+      log.error("Could not write audit records {}", records, e);
+    }
+  }
+
+  private static SettlementMissionAudit toAudit(final SettlementMission saved,
+      final PropertyChange change, final Instant changedAt) {
+    return SettlementMissionAudit.builder().missionId(saved.getId()).version(saved.getVersion())
+        .field(change.getProperty()).oldValue(Objects.toString(change.getOldValue(), null))
+        .newValue(Objects.toString(change.getNewValue(), null)).changedAt(changedAt).build();
+  }
+}
@@ -0,0 +1,54 @@
+package org.galatea.starter.service;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Puts freshly saved missions into the missions cache, so that the first read after a create or
+ * update doesn't have to go to the database.
+ *
+ * <p>The cache manager is transaction-aware: if a transaction is active, the put is held back
+ * until it commits and dropped if it rolls back, so uncommitted state never reaches the cache.
+ * Outside of a transaction the missions have already been committed by the repository and are
+ * put straight away.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Service
+public class MissionCacheWriter {
+
+  private static final String MISSIONS_CACHE = "missions";
+
+  @NonNull
+  private CacheManager cacheManager;
+
+  @Value("${settlement.cache.write-through}")
+  private boolean writeThrough;
+
+  /**
+   * Caches the saved missions under their IDs, if write-through is enabled.
+   */
+  public void cacheSaved(final Iterable<SettlementMission> missions) {
+    if (!writeThrough) {
+      return;
+    }
+
+    Cache cache = cacheManager.getCache(MISSIONS_CACHE);
+    if (cache == null) {
+      log.warn("No {} cache configured. Not caching saved missions.", MISSIONS_CACHE);
+      return;
+    }
+
+    for (SettlementMission mission : missions) {
+      if (mission != null && mission.getId() != null) {
+        cache.put(mission.getId(), mission);
+      }
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package org.galatea.starter.service;
+
+import lombok.NonNull;
+import lombok.Value;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * A settlement mission that was created, updated or deleted, as published by
+ * {@link MissionChangePublisher}.
+ */
+@Value
+public class MissionChange {
+
+  /**
+   * What happened to the mission.
+   */
+  public enum Type {
+    CREATED, UPDATED, DELETED
+  }
+
+  @NonNull
+  Type type;
+
+  @NonNull
+  Long missionId;
+
+  /* The mission as it was saved. Null for deletes. */
+  SettlementMission mission;
+
+  static MissionChange saved(final Type type, final SettlementMission mission) {
+    return new MissionChange(type, mission.getId(), mission);
+  }
+
+  static MissionChange deleted(final Long missionId) {
+    return new MissionChange(Type.DELETED, missionId, null);
+  }
+}
@@ -0,0 +1,149 @@
+package org.galatea.starter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.service.MissionChange.Type;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tells subscribers about missions that were created, updated or deleted in this process.
+ *
+ * <p>Changes are delivered on the thread that made them, once they are committed: if a
+ * transaction is active they are held back until it commits and dropped if it rolls back. So
+ * listeners must not block, but hand the changes off (e.g. queue them). A listener that throws is
+ * unsubscribed. When nobody is subscribed, publishing costs next to nothing.
+ */
+@Slf4j
+@Service
+public class MissionChangePublisher {
+
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  private final Counter delivered;
+
+  /**
+   * Creates the publisher.
+   *
+   * @param meterRegistry registry that the number of subscribers and delivered changes are
+   *     published to
+   */
+  public MissionChangePublisher(@NonNull final MeterRegistry meterRegistry) {
+    Gauge.builder("fuse.mission-changes.subscribers", subscriptions, List::size)
+        .description("Number of subscribers to mission changes").register(meterRegistry);
+    this.delivered = Counter.builder("fuse.mission-changes.delivered")
+        .description("Number of mission changes delivered to subscribers")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Subscribes to changes of the given missions.
+   *
+   * @param missionIds the ids of the missions to be told about, or empty for all missions
+   * @param listener called with each change, on the thread that made it
+   * @return the subscription, to be closed once the changes are no longer wanted
+   */
+  public Subscription subscribe(@NonNull final Collection<Long> missionIds,
+      @NonNull final Consumer<MissionChange> listener) {
+    Subscription subscription = new Subscription(new HashSet<>(missionIds), listener);
+    subscriptions.add(subscription);
+    log.debug("Subscribed to changes of {} mission(s)",
+        missionIds.isEmpty() ? "all" : missionIds.size());
+    return subscription;
+  }
+
+  /**
+   * Publishes missions that were just saved.
+   */
+  public void publishSaved(final Type type, final Collection<SettlementMission> missions) {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+
+    publish(missions.stream().filter(mission -> mission != null && mission.getId() != null)
+        .map(mission -> MissionChange.saved(type, mission)).collect(Collectors.toList()));
+  }
+
+  /**
+   * Publishes a mission that was just deleted.
+   */
+  public void publishDeleted(final Long missionId) {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+
+    publish(Collections.singletonList(MissionChange.deleted(missionId)));
+  }
+
+  private void publish(final List<MissionChange> changes) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              deliver(changes);
+            }
+          });
+    } else {
+      deliver(changes);
+    }
+  }
+
+  private void deliver(final List<MissionChange> changes) {
+    for (Subscription subscription : subscriptions) {
+      for (MissionChange change : changes) {
+        if (!subscription.wants(change)) {
+          continue;
+        }
+
+        try {
+          subscription.listener.accept(change);
+          delivered.increment();
+        } catch (RuntimeException e) {
+          log.warn("Mission change listener failed. Unsubscribing it.", e);
+          subscription.close();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * A subscription to mission changes. Closing it unsubscribes the listener.
+   */
+  public final class Subscription implements AutoCloseable {
+
+    private final Set<Long> missionIds;
+
+    private final Consumer<MissionChange> listener;
+
+    private Subscription(final Set<Long> missionIds, final Consumer<MissionChange> listener) {
+      this.missionIds = missionIds;
+      this.listener = listener;
+    }
+
+    private boolean wants(final MissionChange change) {
+      return missionIds.isEmpty() || missionIds.contains(change.getMissionId());
+    }
+
+    @Override
+    public void close() {
+      if (subscriptions.remove(this)) {
+        log.debug("Unsubscribed from mission changes");
+      }
+    }
+  }
+}
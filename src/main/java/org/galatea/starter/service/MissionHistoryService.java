@@ -0,0 +1,201 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionHistory;
+import org.galatea.starter.domain.rpsy.ISettlementMissionHistoryRpsy;
+import org.galatea.starter.utils.diff.PropertyChange;
+import org.galatea.starter.utils.diff.PropertyDiffer;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps an append-only version history of settlement missions and rebuilds past versions from it.
+ *
+ * <p>A mission's history starts with a snapshot of it as it was created. Each update is stored as
+ * a delta of the fields that changed since the previous version. Every
+ * snapshot-interval versions a full snapshot is stored instead, which bounds the number of deltas
+ * that have to be applied to rebuild any version. The history lives in its own table, so reads of
+ * the current mission are unaffected.
+ *
+ * <p>History is written in the transaction that creates or updates the mission, so a mission and
+ * its history are always committed (or rolled back) together.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Service
+public class MissionHistoryService {
+
+  private static final String VERSION = "version";
+
+  private static final TypeReference<Map<String, Object>> FIELDS =
+      new TypeReference<Map<String, Object>>() {};
+
+  private static final PropertyDiffer<SettlementMission> DIFFER =
+      PropertyDiffer.of(SettlementMission.class);
+
+  @NonNull
+  private ISettlementMissionHistoryRpsy historyRpsy;
+
+  @NonNull
+  private ObjectMapper objectMapper;
+
+  @Value("${settlement.history.snapshot-interval}")
+  private long snapshotInterval;
+
+  /**
+   * Starts the history of newly created missions with a snapshot of each, recorded now.
+   *
+   * @param created the missions as they were saved, with their ids
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordCreation(final List<SettlementMission> created) {
+    Instant now = Instant.now();
+    List<SettlementMissionHistory> snapshots = new ArrayList<>(created.size());
+    for (SettlementMission mission : created) {
+      snapshots.add(snapshotOf(mission, now));
+    }
+    historyRpsy.saveAll(snapshots);
+    log.debug("Recorded creation snapshots of {} mission(s)", snapshots.size());
+  }
+
+  /**
+   * Appends the saved version of a mission to its history.
+   *
+   * <p>Missions created before their history was kept have none when they are first updated, so
+   * the previous version is recorded as a snapshot first. Its recordedAt is the epoch since we
+   * don't know when it was created. If the previous version doesn't match the last recorded one
+   * (e.g. the mission was updated elsewhere), the saved version is recorded as a snapshot rather
+   * than a delta.
+   *
+   * @param previous the mission as it was before the update, if known
+   * @param saved the mission as it was saved and flushed, with its new version
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordUpdate(final SettlementMission previous, final SettlementMission saved) {
+    Long missionId = saved.getId();
+    Optional<SettlementMissionHistory> last =
+        historyRpsy.findTopByMissionIdOrderByVersionDesc(missionId);
+
+    if (!last.isPresent() && previous != null) {
+      SettlementMissionHistory baseline = snapshotOf(previous, Instant.EPOCH);
+      historyRpsy.save(baseline);
+      last = Optional.of(baseline);
+    }
+
+    boolean chainIntact = previous != null && last.isPresent()
+        && Objects.equals(last.get().getVersion(), previous.getVersion());
+
+    long lastSnapshotVersion = historyRpsy
+        .findTopByMissionIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(missionId,
+            Long.MAX_VALUE)
+        .map(SettlementMissionHistory::getVersion).orElse(Long.MIN_VALUE);
+
+    SettlementMissionHistory entry;
+    if (!chainIntact || saved.getVersion() - lastSnapshotVersion >= snapshotInterval) {
+      entry = snapshotOf(saved, Instant.now());
+    } else {
+      entry = deltaOf(previous, saved);
+    }
+
+    historyRpsy.save(entry);
+    log.debug("Recorded {} for mission {} version {}", entry.isSnapshot() ? "snapshot" : "delta",
+        missionId, saved.getVersion());
+  }
+
+  /**
+   * Rebuilds the mission as it was at the given version.
+   *
+   * @return the mission at that version, or empty if that version is not in the history
+   */
+  public Optional<SettlementMission> findMissionAtVersion(final Long id, final Long version) {
+    Optional<SettlementMissionHistory> snapshot = historyRpsy
+        .findTopByMissionIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(id, version);
+    if (!snapshot.isPresent()) {
+      return Optional.empty();
+    }
+
+    Map<String, Object> fields = readFields(snapshot.get());
+    long rebuiltVersion = snapshot.get().getVersion();
+
+    List<SettlementMissionHistory> deltas = historyRpsy
+        .findByMissionIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(id,
+            rebuiltVersion, version);
+    for (SettlementMissionHistory delta : deltas) {
+      fields.putAll(readFields(delta));
+      fields.put(VERSION, delta.getVersion());
+      rebuiltVersion = delta.getVersion();
+    }
+
+    if (rebuiltVersion != version) {
+      return Optional.empty();
+    }
+
+    return Optional.of(objectMapper.convertValue(fields, SettlementMission.class));
+  }
+
+  /**
+   * Rebuilds the mission as it was at the given time, i.e. the latest version recorded at or
+   * before that time.
+   *
+   * @return the mission at that time, or empty if nothing was recorded for it by then
+   */
+  public Optional<SettlementMission> findMissionAsOf(final Long id, final Instant asOf) {
+    return historyRpsy.findTopByMissionIdAndRecordedAtLessThanEqualOrderByVersionDesc(id, asOf)
+        .flatMap(entry -> findMissionAtVersion(id, entry.getVersion()));
+  }
+
+  private SettlementMissionHistory snapshotOf(final SettlementMission mission,
+      final Instant recordedAt) {
+    return SettlementMissionHistory.builder().missionId(mission.getId())
+        .version(mission.getVersion()).recordedAt(recordedAt).snapshot(true)
+        .payload(writeFields(objectMapper.convertValue(mission, FIELDS))).build();
+  }
+
+  private SettlementMissionHistory deltaOf(final SettlementMission previous,
+      final SettlementMission saved) {
+    // The version is a column of its own, so only the other fields go in the delta
+    Map<String, Object> changed = new LinkedHashMap<>();
+    for (PropertyChange change : DIFFER.diff(previous, saved)) {
+      if (!VERSION.equals(change.getProperty())) {
+        changed.put(change.getProperty(), change.getNewValue());
+      }
+    }
+
+    return SettlementMissionHistory.builder().missionId(saved.getId())
+        .version(saved.getVersion()).recordedAt(Instant.now()).snapshot(false)
+        .payload(writeFields(changed)).build();
+  }
+
+  private String writeFields(final Map<String, Object> fields) {
+    try {
+      return objectMapper.writeValueAsString(fields);
+    } catch (JsonProcessingException e) {
+      throw new TranslationException("Could not write mission history payload.", e);
+    }
+  }
+
+  private Map<String, Object> readFields(final SettlementMissionHistory entry) {
+    try {
+      return objectMapper.readValue(entry.getPayload(), FIELDS);
+    } catch (IOException e) {
+      throw new TranslationException("Could not read mission history payload.", e);
+    }
+  }
+}
@@ -2,22 +2,29 @@ package org.galatea.starter.service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 import javax.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.concurrent.GroupCommitter;
+import org.galatea.starter.utils.lock.StripedLocks;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
 @RequiredArgsConstructor
@@ -33,26 +40,98 @@ public class SettlementService {
   @NonNull
   IAgreementTransformer agreementTransformer;
 
+  /* Serializes in-process mutations of the same mission so they don't race on the version */
+  @NonNull
+  StripedLocks missionLocks;
+
+  /* Saves the missions of concurrent callers together in one transaction */
+  @NonNull
+  GroupCommitter<SettlementMission, SettlementMission> missionGroupCommitter;
+
+  @NonNull
+  MissionHistoryService missionHistoryService;
+
+  @NonNull
+  MissionAuditService missionAuditService;
+
+  /* Puts saved missions into the missions cache once they are committed */
+  @NonNull
+  MissionCacheWriter missionCacheWriter;
+
+  /* Tells subscribers about created, updated and deleted missions once they are committed */
+  @NonNull
+  MissionChangePublisher missionChangePublisher;
+
+  /* Commits each update together with its history */
+  @NonNull
+  PlatformTransactionManager transactionManager;
+
   /**
    * Create missions based on the agreements provided.
    *
+   * <p>Unless the caller is already in a transaction, the missions are saved through the group
+   * committer so that they share a transaction with the missions of any concurrent callers.
+   *
    * @param agreements the agreements used to generate missions
    * @return the ids of the missions that were created
    */
   public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements) {
+    Set<Long> idSet = new HashSet<>(spawnMissionIds(agreements));
+    log.info("Returning {} mission id(s)", idSet.size());
+
+    return idSet;
+  }
+
+  /**
+   * Create missions based on the agreements provided, like {@link #spawnMissions(List)}, but tell
+   * which mission was created for which agreement.
+   *
+   * @param agreements the agreements used to generate missions
+   * @return the id of the mission created for each agreement, in the order of the agreements
+   */
+  public List<Long> spawnMissionIds(@Valid final List<TradeAgreement> agreements) {
 
     // Map each agreement to a mission, collect to a list, and then same in bulk
-    Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
+    List<SettlementMission> savedMissions = saveMissions(agreements.stream()
         .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
     log.debug("The following missions were saved: {}", savedMissions);
 
-    // We have to do all of this StreamSupport crap since the repository returns an iterable instead
-    // of a normal collection
-    Set<Long> idSet = StreamSupport.stream(savedMissions.spliterator(), false)
-        .map(SettlementMission::getId).collect(Collectors.toSet());
-    log.info("Returning {} mission id(s)", idSet.size());
+    return savedMissions.stream().map(SettlementMission::getId).collect(Collectors.toList());
+  }
 
-    return idSet;
+  /**
+   * Save missions that were built straight from agreement messages, skipping the TradeAgreement and
+   * the agreement transformer (see AgreementMissions). There are no agreements left to validate
+   * here, so the caller must have checked them against AgreementConstraints already.
+   *
+   * @param missions the missions to save
+   * @return the ids of the saved missions, in the order of the missions
+   */
+  public List<Long> spawnTransformedMissions(final List<SettlementMission> missions) {
+    List<SettlementMission> savedMissions = saveMissions(missions);
+    log.debug("The following missions were saved: {}", savedMissions);
+
+    return savedMissions.stream().map(SettlementMission::getId).collect(Collectors.toList());
+  }
+
+  /*
+   * A caller that is already in a transaction must have its missions saved as part of that
+   * transaction, so it bypasses the group committer (which commits on its own thread). Its
+   * missions are only cached once that transaction commits. Either way the history of the missions
+   * is started in the transaction that saves them.
+   */
+  private List<SettlementMission> saveMissions(final List<SettlementMission> missions) {
+    List<SettlementMission> savedMissions;
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      savedMissions = Lists.newArrayList(missionrpsy.saveAll(missions));
+      missionHistoryService.recordCreation(savedMissions);
+    } else {
+      savedMissions = missionGroupCommitter.commit(missions);
+    }
+
+    missionCacheWriter.cacheSaved(savedMissions);
+    missionChangePublisher.publishSaved(MissionChange.Type.CREATED, savedMissions);
+    return savedMissions;
   }
 
 
@@ -90,7 +169,10 @@ public class SettlementService {
   }
 
   /**
-   * Update the mission with the given ID.
+   * Update the mission with the given ID. Updates of the same mission from different threads are
+   * applied one at a time, and each one is appended to the mission's version history and audit
+   * trail. The update and its history are committed in one transaction, so an update whose history
+   * can't be written fails.
    *
    * @param id identifier of the mission
    * @param mission the mission to update
@@ -98,11 +180,77 @@ public class SettlementService {
    */
   public Optional<SettlementMission> updateMission(final Long id, final SettlementMission mission) {
     mission.setId(id);
-    SettlementMission savedMission = missionrpsy.save(mission);
+    SettlementMission savedMission = missionLocks.callLocked(id, () -> {
+      // The lock is held until the transaction has committed
+      return new TransactionTemplate(transactionManager).execute(status -> {
+        // Copy the previous state, as the save below may merge into the very same (managed) entity
+        SettlementMission previous = missionrpsy.findById(id)
+            .map(current -> current.toBuilder().build()).orElse(null);
+        // Hibernate only bumps the version when it flushes, and the history and audit records are
+        // stamped with the new one
+        SettlementMission saved = missionrpsy.saveAndFlush(mission);
+        missionCacheWriter.cacheSaved(Collections.singletonList(saved));
+        missionChangePublisher.publishSaved(MissionChange.Type.UPDATED,
+            Collections.singletonList(saved));
+        recordChange(previous, saved);
+        return saved;
+      });
+    });
     log.info("The following mission was updated: {}", savedMission);
     return Optional.ofNullable(savedMission);
   }
 
+  /**
+   * Retrieve a settlement mission as it was at the given version.
+   *
+   * @param id the ID of the mission to retrieve
+   * @param version the version of the mission to rebuild
+   */
+  public Optional<SettlementMission> findMissionAtVersion(final Long id, final Long version) {
+    log.info("Retrieving settlement mission with id {} at version {}", id, version);
+    return missionHistoryService.findMissionAtVersion(id, version);
+  }
+
+  /**
+   * Retrieve a settlement mission as it was at the given time.
+   *
+   * @param id the ID of the mission to retrieve
+   * @param asOf the point in time to rebuild the mission at
+   */
+  public Optional<SettlementMission> findMissionAsOf(final Long id, final Instant asOf) {
+    log.info("Retrieving settlement mission with id {} as of {}", id, asOf);
+    return missionHistoryService.findMissionAsOf(id, asOf);
+  }
+
+  /**
+   * Retrieve the audit trail of a settlement mission: every field changed by an update, oldest
+   * first.
+   *
+   * @param id the ID of the mission
+   */
+  public List<SettlementMissionAudit> findMissionAudits(final Long id) {
+    log.info("Retrieving audit trail of settlement mission with id {}", id);
+    return missionAuditService.findAudits(id);
+  }
+
+  /*
+   * The history is part of the update's transaction. Audit records are written off the updating
+   * thread, so a failure to queue them must not fail the update.
+   */
+  private void recordChange(final SettlementMission previous, final SettlementMission saved) {
+    if (saved == null) {
+      return;
+    }
+
+    missionHistoryService.recordUpdate(previous, saved);
+
+    try {
+      missionAuditService.recordUpdate(previous, saved);
+    } catch (RuntimeException e) {
+      log.error("Could not audit mission {} version {}", saved.getId(), saved.getVersion(), e);
+    }
+  }
+
   /**
    * Return true if a mission with the given ID exists.
    *
@@ -120,7 +268,8 @@ public class SettlementService {
    * @param id identifier of the mission to delete
    */
   public void deleteMission(final Long id) {
-    missionrpsy.deleteById(id);
+    missionLocks.runLocked(id, () -> missionrpsy.deleteById(id));
+    missionChangePublisher.publishDeleted(id);
     log.info("Mission with id '{}' was deleted", id);
   }
 }
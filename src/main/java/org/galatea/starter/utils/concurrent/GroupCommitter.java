@@ -0,0 +1,261 @@
+package org.galatea.starter.utils.concurrent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collects items submitted by concurrent callers and hands them to a batch operation in one go,
+ * e.g. to persist them in a single transaction. A group is closed once it holds maxBatchItems
+ * items or maxWaitMicros have passed since its first request arrived, whichever comes first.
+ *
+ * <p>The batch operation must return exactly one result per item, in the order the items were
+ * given. Each caller gets back the results for its own items only.
+ *
+ * <p>If the batch operation fails for a group of several callers, the group is split in half and
+ * each half is retried on its own. Repeating this isolates the caller(s) whose items cause the
+ * failure; only they see the exception, and everyone else's items are committed.
+ *
+ * <p>Failures are isolated to callers, not to items: the items of one caller are committed all
+ * together or not at all. A caller with one bad item among several good ones fails as a whole, and
+ * none of its items are committed. Callers that want their good items committed regardless must
+ * submit the items separately.
+ *
+ * @param <T> the type of the submitted items
+ * @param <R> the type of the result for each item
+ */
+@Slf4j
+@ToString(of = {"name", "maxBatchItems", "maxWaitMicros"})
+public class GroupCommitter<T, R> implements AutoCloseable {
+
+  private static final long IDLE_POLL_MILLIS = 100;
+
+  private final String name;
+
+  private final Function<List<T>, List<R>> batchOperation;
+
+  private final int maxBatchItems;
+
+  private final long maxWaitMicros;
+
+  private final BlockingQueue<PendingRequest<T, R>> queue = new LinkedBlockingQueue<>();
+
+  private final Thread dispatcher;
+
+  private final DistributionSummary callersPerGroup;
+
+  private final DistributionSummary itemsPerGroup;
+
+  private final Counter isolations;
+
+  private volatile boolean running = true;
+
+  /**
+   * Creates a group committer and starts its dispatcher thread.
+   *
+   * @param name name used for the dispatcher thread and to tag metrics
+   * @param batchOperation the operation applied to every group of items
+   * @param maxBatchItems a group is committed as soon as it holds at least this many items
+   * @param maxWaitMicros the longest a group waits for more callers after its first request
+   * @param meterRegistry registry that group size metrics are published to
+   */
+  public GroupCommitter(final String name, final Function<List<T>, List<R>> batchOperation,
+      final int maxBatchItems, final long maxWaitMicros, final MeterRegistry meterRegistry) {
+    if (maxBatchItems <= 0) {
+      throw new IllegalArgumentException("Max batch items must be positive but was "
+          + maxBatchItems);
+    }
+
+    this.name = name;
+    this.batchOperation = batchOperation;
+    this.maxBatchItems = maxBatchItems;
+    this.maxWaitMicros = Math.max(0, maxWaitMicros);
+
+    this.callersPerGroup = DistributionSummary.builder("fuse.group-commit.callers")
+        .tag("committer", name).description("Number of callers committed together")
+        .register(meterRegistry);
+    this.itemsPerGroup = DistributionSummary.builder("fuse.group-commit.items")
+        .tag("committer", name).description("Number of items committed together")
+        .register(meterRegistry);
+    this.isolations = Counter.builder("fuse.group-commit.isolations").tag("committer", name)
+        .description("Number of failed groups that were split to isolate the failing caller")
+        .register(meterRegistry);
+
+    this.dispatcher = new Thread(this::dispatch, "group-commit-" + name);
+    this.dispatcher.setDaemon(true);
+    this.dispatcher.start();
+  }
+
+  /**
+   * Queues the items to be committed with the next group.
+   *
+   * @return a future completed with the results for these items, or with the exception that
+   *     prevented them from being committed
+   */
+  public CompletableFuture<List<R>> submit(@NonNull final List<T> items) {
+    if (!running) {
+      throw new IllegalStateException("Group committer " + name + " has been shut down");
+    }
+
+    PendingRequest<T, R> request = new PendingRequest<>(items, new CompletableFuture<>());
+    if (items.isEmpty()) {
+      request.future.complete(new ArrayList<>());
+    } else {
+      queue.add(request);
+    }
+    return request.future;
+  }
+
+  /**
+   * Queues the items to be committed with the next group and waits for the group to finish.
+   * Unchecked exceptions raised by the batch operation are rethrown as they are.
+   *
+   * @return the results for these items
+   */
+  public List<R> commit(final List<T> items) {
+    try {
+      return submit(items).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stops accepting new items, commits whatever is still queued and stops the dispatcher thread.
+   */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      dispatcher.join();
+      log.info("Group committer {} shut down", name);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while waiting for group committer {} to shut down", name);
+    }
+  }
+
+  private void dispatch() {
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingRequest<T, R> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          commitGroup(collectGroup(first));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.warn("Group committer {} interrupted. Failing queued requests.", name);
+        failQueued(e);
+        return;
+      }
+    }
+  }
+
+  /*
+   * Keeps adding queued requests to the group until it is full or its wait time is up.
+   */
+  private List<PendingRequest<T, R>> collectGroup(final PendingRequest<T, R> first)
+      throws InterruptedException {
+    List<PendingRequest<T, R>> group = new ArrayList<>();
+    group.add(first);
+    int itemCount = first.items.size();
+
+    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+    while (itemCount < maxBatchItems) {
+      long remaining = deadline - System.nanoTime();
+      PendingRequest<T, R> next = remaining > 0
+          ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+          : queue.poll();
+      if (next == null) {
+        break;
+      }
+      group.add(next);
+      itemCount += next.items.size();
+    }
+
+    return group;
+  }
+
+  private void commitGroup(final List<PendingRequest<T, R>> group) {
+    List<T> items = new ArrayList<>();
+    group.forEach(request -> items.addAll(request.items));
+
+    List<R> results;
+    try {
+      results = batchOperation.apply(items);
+    } catch (RuntimeException e) {
+      isolateFailure(group, e);
+      return;
+    } catch (Throwable e) {
+      group.forEach(request -> request.future.completeExceptionally(e));
+      throw e;
+    }
+
+    if (results == null || results.size() != items.size()) {
+      IllegalStateException err = new IllegalStateException("Batch operation for " + name
+          + " returned " + (results == null ? "null" : results.size()) + " results for "
+          + items.size() + " items");
+      group.forEach(request -> request.future.completeExceptionally(err));
+      return;
+    }
+
+    callersPerGroup.record(group.size());
+    itemsPerGroup.record(items.size());
+    log.debug("Committed {} item(s) for {} caller(s)", items.size(), group.size());
+
+    int offset = 0;
+    for (PendingRequest<T, R> request : group) {
+      int end = offset + request.items.size();
+      request.future.complete(new ArrayList<>(results.subList(offset, end)));
+      offset = end;
+    }
+  }
+
+  /*
+   * A single caller's failure is its own. Otherwise, retry each half of the group separately so
+   * that the caller(s) at fault don't take everyone else down with them.
+   */
+  private void isolateFailure(final List<PendingRequest<T, R>> group, final RuntimeException err) {
+    if (group.size() == 1) {
+      group.get(0).future.completeExceptionally(err);
+      return;
+    }
+
+    log.info("Group of {} caller(s) for {} failed. Splitting to isolate the failure.",
+        group.size(), name, err);
+    isolations.increment();
+    int middle = group.size() / 2;
+    commitGroup(group.subList(0, middle));
+    commitGroup(group.subList(middle, group.size()));
+  }
+
+  private void failQueued(final Throwable err) {
+    PendingRequest<T, R> request;
+    while ((request = queue.poll()) != null) {
+      request.future.completeExceptionally(err);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class PendingRequest<T, R> {
+
+    private final List<T> items;
+
+    private final CompletableFuture<List<R>> future;
+  }
+}
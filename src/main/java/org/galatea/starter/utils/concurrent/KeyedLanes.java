@@ -0,0 +1,124 @@
+package org.galatea.starter.utils.concurrent;
+
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A fixed set of single-threaded lanes that tasks are routed to by key. Tasks with the same key
+ * always run on the same lane, one after the other in the order they were submitted, while tasks
+ * on different lanes run in parallel.
+ *
+ * <p>Keys are mapped to lanes with a consistent hash of their hashCode. Tasks without a key are
+ * spread over the lanes round-robin instead, and keep no order. The number of tasks queued or
+ * running on each lane is published as the fuse.lanes.backlog gauge.
+ */
+@Slf4j
+@ToString(of = {"name", "laneCount"})
+public class KeyedLanes implements AutoCloseable {
+
+  private final String name;
+
+  private final int laneCount;
+
+  private final List<ExecutorService> lanes = new ArrayList<>();
+
+  private final List<AtomicInteger> backlogs = new ArrayList<>();
+
+  private final List<Gauge> gauges = new ArrayList<>();
+
+  private final MeterRegistry meterRegistry;
+
+  private final AtomicInteger nextUnkeyedLane = new AtomicInteger();
+
+  /**
+   * Creates the lanes and starts their threads.
+   *
+   * @param name name used for the lane threads and to tag metrics
+   * @param laneCount number of lanes
+   * @param meterRegistry registry that the backlog of each lane is published to
+   */
+  public KeyedLanes(final String name, final int laneCount, final MeterRegistry meterRegistry) {
+    if (laneCount <= 0) {
+      throw new IllegalArgumentException("Lane count must be positive but was " + laneCount);
+    }
+
+    this.name = name;
+    this.laneCount = laneCount;
+    this.meterRegistry = meterRegistry;
+
+    for (int lane = 0; lane < laneCount; lane++) {
+      String threadName = "lane-" + name + "-" + lane;
+      lanes.add(Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+      }));
+
+      AtomicInteger backlog = new AtomicInteger();
+      backlogs.add(backlog);
+      gauges.add(Gauge.builder("fuse.lanes.backlog", backlog, AtomicInteger::get)
+          .tag("lanes", name).tag("lane", String.valueOf(lane))
+          .description("Number of tasks queued or running on the lane")
+          .register(meterRegistry));
+    }
+  }
+
+  /**
+   * Returns the lane that tasks with the given key run on.
+   */
+  public int laneOf(final Object key) {
+    return Hashing.consistentHash(Objects.hashCode(key), laneCount);
+  }
+
+  /**
+   * Returns the number of tasks queued or running on the lane.
+   */
+  public int backlog(final int lane) {
+    return backlogs.get(lane).get();
+  }
+
+  /**
+   * Queues the task on the lane of its key, or on the next lane in turn if the key is null.
+   *
+   * @return a future completed once the task has run, exceptionally if it threw
+   */
+  public CompletableFuture<Void> submit(final Object key, final Runnable task) {
+    int lane = key != null ? laneOf(key)
+        : Math.floorMod(nextUnkeyedLane.getAndIncrement(), laneCount);
+    AtomicInteger backlog = backlogs.get(lane);
+    backlog.incrementAndGet();
+    try {
+      return CompletableFuture.runAsync(() -> {
+        try {
+          task.run();
+        } finally {
+          backlog.decrementAndGet();
+        }
+      }, lanes.get(lane));
+    } catch (RejectedExecutionException e) {
+      backlog.decrementAndGet();
+      throw new IllegalStateException("Lanes " + name + " have been shut down", e);
+    }
+  }
+
+  /**
+   * Stops the lane threads once the queued tasks have run, and removes the backlog gauges.
+   */
+  @Override
+  public void close() {
+    lanes.forEach(ExecutorService::shutdown);
+    gauges.forEach(meterRegistry::remove);
+    log.debug("Closed {}", this);
+  }
+}
@@ -0,0 +1,16 @@
+package org.galatea.starter.utils.diff;
+
+import lombok.Value;
+
+/**
+ * A bean property whose value differs between two objects.
+ */
+@Value
+public class PropertyChange {
+
+  String property;
+
+  Object oldValue;
+
+  Object newValue;
+}
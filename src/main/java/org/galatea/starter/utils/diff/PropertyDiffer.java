@@ -0,0 +1,152 @@
+package org.galatea.starter.utils.diff;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Compares two beans of the same class property by property.
+ *
+ * <p>Unlike {@link org.galatea.starter.utils.Helpers#diff(Object, Object)}, which looks up and
+ * reflectively invokes the getters on every call, the getters of each class are looked up once and
+ * compiled into {@link Function} instances with {@link LambdaMetafactory}. Comparing two objects
+ * is then just a plain interface call per property. If a getter can't be compiled (e.g. the class
+ * isn't accessible to us) it is called through a {@link MethodHandle} instead.
+ *
+ * @param <T> the type of the compared beans
+ */
+@Slf4j
+@ToString(of = {"type", "propertyNames"})
+public final class PropertyDiffer<T> {
+
+  private static final ClassValue<PropertyDiffer<?>> DIFFERS = new DifferCache();
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private final Class<T> type;
+
+  private final List<String> propertyNames;
+
+  private final List<Accessor> accessors;
+
+  private PropertyDiffer(final Class<T> type) {
+    List<Accessor> compiled = new ArrayList<>();
+    for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(type)) {
+      Method getter = descriptor.getReadMethod();
+      if (getter != null && getter.getDeclaringClass() != Object.class) {
+        compiled.add(new Accessor(descriptor.getName(), compile(type, getter)));
+      }
+    }
+
+    this.type = type;
+    this.accessors = Collections.unmodifiableList(compiled);
+    this.propertyNames = Collections.unmodifiableList(
+        compiled.stream().map(accessor -> accessor.name).collect(Collectors.toList()));
+    log.debug("Compiled {} property accessors for {}", accessors.size(), type.getName());
+  }
+
+  /**
+   * Returns the differ for the given class. The accessors are compiled the first time a class is
+   * asked for and reused from then on.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PropertyDiffer<T> of(@NonNull final Class<T> type) {
+    return (PropertyDiffer<T>) DIFFERS.get(type);
+  }
+
+  /**
+   * Returns the names of the properties that are compared, in the order they are compared in.
+   */
+  public List<String> getPropertyNames() {
+    return propertyNames;
+  }
+
+  /**
+   * Compares the properties of the left-hand-side and right-hand-side.
+   *
+   * @return the properties whose values differ, with the lhs value as the old value and the rhs
+   *     value as the new value
+   */
+  public List<PropertyChange> diff(@NonNull final T lhs, @NonNull final T rhs) {
+    List<PropertyChange> changes = new ArrayList<>();
+    for (Accessor accessor : accessors) {
+      Object oldValue = accessor.getter.apply(lhs);
+      Object newValue = accessor.getter.apply(rhs);
+      if (!Objects.deepEquals(oldValue, newValue)) {
+        changes.add(new PropertyChange(accessor.name, oldValue, newValue));
+      }
+    }
+    return changes;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> compile(final Class<?> type, final Method getter) {
+    // Define the accessors next to the class they read, so they see what it sees
+    MethodHandles.Lookup lookup;
+    try {
+      lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    } catch (IllegalAccessException e) {
+      lookup = MethodHandles.lookup();
+    }
+
+    MethodHandle handle;
+    try {
+      handle = lookup.unreflect(getter);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Getter " + getter + " is not accessible", e);
+    }
+
+    try {
+      // Boxes primitive return values on the way out, same as reflection would
+      CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+          MethodType.methodType(Function.class), GETTER_TYPE.erase(), handle,
+          handle.type().wrap());
+      return (Function<Object, Object>) site.getTarget().invokeExact();
+    } catch (Throwable e) {
+      log.info("Could not compile getter {}. Falling back to a method handle.", getter, e);
+      MethodHandle generic = handle.asType(GETTER_TYPE);
+      return bean -> invoke(generic, bean);
+    }
+  }
+
+  private static Object invoke(final MethodHandle getter, final Object bean) {
+    try {
+      return getter.invokeExact(bean);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException("Getter " + getter + " failed", e);
+    }
+  }
+
+  private static class DifferCache extends ClassValue<PropertyDiffer<?>> {
+
+    @Override
+    protected PropertyDiffer<?> computeValue(final Class<?> type) {
+      return new PropertyDiffer<>(type);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Accessor {
+
+    private final String name;
+
+    private final Function<Object, Object> getter;
+  }
+}
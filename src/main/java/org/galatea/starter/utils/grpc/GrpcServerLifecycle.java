@@ -0,0 +1,87 @@
+package org.galatea.starter.utils.grpc;
+
+import io.grpc.Server;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Runs a gRPC server along with the application context: the server starts listening once the
+ * context is started and is shut down with it.
+ *
+ * <p>On shutdown the server stops taking new calls and gives the calls in flight up to the grace
+ * period to finish. Whatever is still running then (e.g. subscriptions, which never finish on
+ * their own) is cancelled.
+ */
+@Slf4j
+public class GrpcServerLifecycle implements SmartLifecycle {
+
+  private final Server server;
+
+  private final long shutdownGraceMillis;
+
+  private boolean running;
+
+  /**
+   * Creates the lifecycle of a server that hasn't been started yet.
+   *
+   * @param server the server to run
+   * @param shutdownGraceMillis time the calls in flight are given to finish on shutdown
+   */
+  public GrpcServerLifecycle(@NonNull final Server server, final long shutdownGraceMillis) {
+    this.server = server;
+    this.shutdownGraceMillis = shutdownGraceMillis;
+  }
+
+  /**
+   * Returns the port the server listens on, which is only known once it is running if it was
+   * built for port 0.
+   */
+  public int getPort() {
+    return server.getPort();
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+
+    try {
+      server.start();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not start the gRPC server", e);
+    }
+    running = true;
+    log.info("gRPC server listening on port {} with services {}", server.getPort(),
+        server.getServices().stream().map(service -> service.getServiceDescriptor().getName())
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+
+    server.shutdown();
+    try {
+      if (!server.awaitTermination(shutdownGraceMillis, TimeUnit.MILLISECONDS)) {
+        log.info("gRPC calls still running after {}ms. Cancelling them.", shutdownGraceMillis);
+        server.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      server.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    running = false;
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return running;
+  }
+}
@@ -0,0 +1,114 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.MvcConfig;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+
+/**
+ * Custom HttpMessageConverter implementation to automatically convert a List of any of the given
+ * row classes to a CSV document when returning it in an HTTP response. Unlike
+ * SettlementMissionCsvConverter, the document is written straight to the response a row at a time.
+ */
+// See comments throughout SettlementMissionCsvConverter. This is a generic converter so that it can
+// see the element type of the List it is asked to write.
+@Slf4j
+public class CsvHttpMessageConverter extends AbstractGenericHttpMessageConverter<Collection<?>> {
+
+  private final Set<Class<?>> rowClasses;
+
+  /**
+   * Construct a CsvHttpMessageConverter that supports a CSV MediaType.
+   *
+   * @param rowClasses the classes of the rows that can be written. As with CsvSerializer, their
+   *     fields must not hold complex objects.
+   */
+  public CsvHttpMessageConverter(final Class<?>... rowClasses) {
+    super(MvcConfig.TEXT_CSV);
+    this.rowClasses = new HashSet<>(Arrays.asList(rowClasses));
+  }
+
+  @Override
+  protected boolean supports(final Class<?> clazz) {
+    // Only supported through canWrite(Type, ...), where the element type is known
+    return false;
+  }
+
+  @Override
+  public boolean canRead(final Type type, final Class<?> contextClass,
+      final MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canRead(final Class<?> clazz, final MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canWrite(final Type type, final Class<?> clazz, final MediaType mediaType) {
+    return canWrite(mediaType) && rowClass(type) != null;
+  }
+
+  @Override
+  public Collection<?> read(final Type type, final Class<?> contextClass,
+      final HttpInputMessage inputMessage) {
+    throw new UnsupportedOperationException("Reading CSV is not supported");
+  }
+
+  @Override
+  protected Collection<?> readInternal(final Class<? extends Collection<?>> clazz,
+      final HttpInputMessage inputMessage) {
+    throw new UnsupportedOperationException("Reading CSV is not supported");
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void writeInternal(final Collection<?> rows, final Type type,
+      final HttpOutputMessage outputMessage) throws IOException {
+    Class<Object> rowClass = (Class<Object>) rowClass(type);
+    log.info("Converting {} {} rows to CSV for HTTP response", rows.size(),
+        rowClass.getSimpleName());
+    CsvSerializer.serializeToCsv((Collection<Object>) rows, rowClass, outputMessage.getBody());
+    log.info("Converted {} rows to CSV", rowClass.getSimpleName());
+  }
+
+  /**
+   * Add additional headers to the outgoing response when this converter is used.
+   */
+  @Override
+  protected void addDefaultHeaders(final HttpHeaders headers, final Collection<?> rows,
+      final MediaType contentType) throws IOException {
+    super.addDefaultHeaders(headers, rows, contentType);
+    // Named after the rows, e.g. IexSymbols.csv
+    String name = rows.isEmpty() ? "Row" : rows.iterator().next().getClass().getSimpleName();
+    headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + name + "s.csv");
+  }
+
+  /*
+   * Returns the element class of the given Collection type if it is one of the row classes, or null
+   * otherwise.
+   */
+  private Class<?> rowClass(final Type type) {
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterized = (ParameterizedType) type;
+      Type[] arguments = parameterized.getActualTypeArguments();
+      if (parameterized.getRawType() instanceof Class
+          && Collection.class.isAssignableFrom((Class<?>) parameterized.getRawType())
+          && arguments.length == 1 && rowClasses.contains(arguments[0])) {
+        return (Class<?>) arguments[0];
+      }
+    }
+    return null;
+  }
+}
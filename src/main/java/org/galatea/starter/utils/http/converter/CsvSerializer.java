@@ -1,9 +1,13 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator.Feature;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.OutputStream;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -27,6 +31,29 @@ public class CsvSerializer {
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
+    return writer(clazz).writeValueAsString(rows);
+    // See CsvWriterTest for examples of Jackson CSV behavior
+  }
+
+  /**
+   * Serialize the given objects to a CSV document written to the given stream as UTF-8, like
+   * {@link #serializeToCsv(Iterable, Class)} but a row at a time rather than into a String first.
+   * The stream is not closed.
+   *
+   * @param rows the collection of objects that should be serialized into the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the document to
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToCsv(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter writer = writer(clazz).without(Feature.AUTO_CLOSE_TARGET)
+        .writeValues(out)) {
+      writer.writeAll(rows);
+    }
+  }
+
+  private static ObjectWriter writer(final Class<?> clazz) {
     // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
     // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
     CsvMapper mapper = new CsvMapper();
@@ -35,7 +62,6 @@ public class CsvSerializer {
     // for one or more columns, see
     // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
     CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
-    // See CsvWriterTest for examples of Jackson CSV behavior
+    return mapper.writer(schema);
   }
 }
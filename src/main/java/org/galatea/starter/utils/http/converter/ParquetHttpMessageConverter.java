@@ -0,0 +1,140 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Iterator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Custom HttpMessageConverter implementation to automatically convert a SettlementMissionList, or a
+ * List of any other row objects that ParquetSerializer can serialize, to a Parquet file when
+ * returning it in an HTTP response.
+ *
+ * <p>Unlike the CSV and XLSX converters, which serialize into memory first, the file is written to
+ * the response as each row group fills up.
+ */
+// See comments throughout SettlementMissionCsvConverter. This is a generic converter so that it can
+// see the element type of the List it is asked to write.
+@Slf4j
+public class ParquetHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+  private final int rowGroupBytes;
+
+  private final CompressionCodecName codec;
+
+  /**
+   * Construct a ParquetHttpMessageConverter that supports a Parquet MediaType.
+   *
+   * @param rowGroupBytes the size that row groups are buffered up to in memory
+   * @param codec the compression codec of the column chunks
+   */
+  public ParquetHttpMessageConverter(final int rowGroupBytes, final CompressionCodecName codec) {
+    super(MvcConfig.APPLICATION_PARQUET);
+    this.rowGroupBytes = rowGroupBytes;
+    this.codec = codec;
+  }
+
+  @Override
+  protected boolean supports(final Class<?> clazz) {
+    // Lists are only supported through canWrite(Type, ...), where their element type is known
+    return SettlementMissionList.class.equals(clazz);
+  }
+
+  // Parquet is only written, so the read methods are never called
+  @Override
+  public boolean canRead(final Type type, final Class<?> contextClass,
+      final MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canRead(final Class<?> clazz, final MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canWrite(final Type type, final Class<?> clazz, final MediaType mediaType) {
+    return canWrite(mediaType) && rowClass(type != null ? type : clazz) != null;
+  }
+
+  @Override
+  public Object read(final Type type, final Class<?> contextClass,
+      final HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Reading Parquet is not supported", inputMessage);
+  }
+
+  @Override
+  protected Object readInternal(final Class<?> clazz, final HttpInputMessage inputMessage) {
+    throw new HttpMessageNotReadableException("Reading Parquet is not supported", inputMessage);
+  }
+
+  @Override
+  protected void writeInternal(final Object rows, final Type type,
+      final HttpOutputMessage outputMessage) throws IOException {
+    Class<?> rowClass = rowClass(type != null ? type : rows.getClass());
+    log.info("Converting {} rows to Parquet for HTTP response", rowClass.getSimpleName());
+    serialize(rows, rowClass, outputMessage.getBody());
+    log.info("Converted {} rows to Parquet", rowClass.getSimpleName());
+  }
+
+  /**
+   * Add additional headers to the outgoing response when this converter is used.
+   */
+  @Override
+  protected void addDefaultHeaders(final HttpHeaders headers, final Object rows,
+      final MediaType contentType) throws IOException {
+    super.addDefaultHeaders(headers, rows, contentType);
+    // Named after the rows, e.g. SettlementMissions.parquet
+    Iterator<?> iterator = rowsOf(rows).iterator();
+    String name = rows instanceof SettlementMissionList ? SettlementMission.class.getSimpleName()
+        : iterator.hasNext() ? iterator.next().getClass().getSimpleName() : "Row";
+    headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + name + "s.parquet");
+  }
+
+  // canWrite only lets through rows of rowClass
+  @SuppressWarnings("unchecked")
+  private <T> void serialize(final Object rows, final Class<T> rowClass, final OutputStream out)
+      throws IOException {
+    ParquetSerializer.serializeToParquet((Iterable<T>) rowsOf(rows), rowClass, out, rowGroupBytes,
+        codec);
+  }
+
+  private static Iterable<?> rowsOf(final Object rows) {
+    return rows instanceof SettlementMissionList
+        ? ((SettlementMissionList) rows).getSettlementMissions() : (Iterable<?>) rows;
+  }
+
+  /*
+   * Returns the class of the rows held by an object of the given type, or null if it holds no rows
+   * that can be serialized.
+   */
+  private static Class<?> rowClass(final Type type) {
+    if (SettlementMissionList.class.equals(type)) {
+      return SettlementMission.class;
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterized = (ParameterizedType) type;
+      Type[] arguments = parameterized.getActualTypeArguments();
+      if (parameterized.getRawType() instanceof Class
+          && Collection.class.isAssignableFrom((Class<?>) parameterized.getRawType())
+          && arguments.length == 1 && arguments[0] instanceof Class
+          && ParquetSerializer.canSerialize((Class<?>) arguments[0])) {
+        return (Class<?>) arguments[0];
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,324 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type.Repetition;
+import org.apache.parquet.schema.Types;
+import org.apache.parquet.schema.Types.MessageTypeBuilder;
+
+@Slf4j
+// See ParquetSerializerTest for example output
+public class ParquetSerializer {
+
+  private ParquetSerializer() {}
+
+  /**
+   * Check whether objects of the given class can be serialized to Parquet, i.e. whether every field
+   * that would be serialized has a column type.
+   */
+  public static boolean canSerialize(final Class<?> clazz) {
+    return getFieldsToSerialize(clazz).stream()
+        .allMatch(field -> ColumnType.of(field.getType()) != null);
+  }
+
+  /**
+   * Serialize the given objects to a Parquet file written to the given stream, one column per
+   * field (the same fields, with the same names, as XlsxSerializer). Columns are dictionary-encoded
+   * and compressed with the given codec.
+   *
+   * <p>Rows are taken from the Iterable one at a time and buffered until a row group is full,
+   * which is then written out. So at most one row group is held in memory, and the Iterable can
+   * fetch its rows lazily. The stream is flushed but not closed.
+   *
+   * <p>Strings and enums are written as UTF-8 strings, Instants as millisecond timestamps and other
+   * Numbers as the nearest primitive column type. BigDecimals are written as doubles.
+   *
+   * @param rows the row data that the file should hold
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the file to
+   * @param rowGroupBytes the size that row groups are buffered up to in memory
+   * @param codec the compression codec of the column chunks
+   * @param <T> the type of the row data
+   * @throws IllegalArgumentException if a field of the class has no column type
+   */
+  public static <T> void serializeToParquet(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out, final int rowGroupBytes, final CompressionCodecName codec)
+      throws IOException {
+    List<Column> columns = getColumns(clazz);
+    MessageTypeBuilder schema = Types.buildMessage();
+    for (Column column : columns) {
+      schema.primitive(column.type.primitiveType, column.repetition)
+          .as(column.type.originalType).named(column.name);
+    }
+
+    long written = 0;
+    try (ParquetWriter<T> writer = new Builder<>(new StreamOutputFile(out),
+        new BeanWriteSupport<T>(schema.named(clazz.getSimpleName()), columns))
+        .withRowGroupSize(rowGroupBytes)
+        .withCompressionCodec(codec)
+        .withDictionaryEncoding(true)
+        .build()) {
+      for (T row : rows) {
+        writer.write(row);
+        written++;
+      }
+    }
+    log.debug("Wrote {} {} rows to Parquet", written, clazz.getSimpleName());
+  }
+
+  private static List<Field> getFieldsToSerialize(final Class<?> clazz) {
+    List<Field> fields = new ArrayList<>();
+    for (Field field : XlsxSerializer.getFieldsToSerialize(clazz)) {
+      // e.g. the log field of @Slf4j classes
+      if (!Modifier.isStatic(field.getModifiers())) {
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  private static List<Column> getColumns(final Class<?> clazz) {
+    List<Field> fields = getFieldsToSerialize(clazz);
+    List<String> names = XlsxSerializer.getHeaderValues(fields);
+    List<Column> columns = new ArrayList<>(fields.size());
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      ColumnType type = ColumnType.of(field.getType());
+      if (type == null) {
+        throw new IllegalArgumentException("Field " + field + " can't be written to Parquet");
+      }
+
+      field.setAccessible(true);
+      columns.add(new Column(names.get(i), i, field, type,
+          field.getType().isPrimitive() ? Repetition.REQUIRED : Repetition.OPTIONAL));
+    }
+    return columns;
+  }
+
+  private enum ColumnType {
+    STRING(PrimitiveTypeName.BINARY, OriginalType.UTF8) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addBinary(Binary.fromString(value.toString()));
+      }
+    },
+    INT32(PrimitiveTypeName.INT32, null) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addInteger(((Number) value).intValue());
+      }
+    },
+    INT64(PrimitiveTypeName.INT64, null) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addLong(((Number) value).longValue());
+      }
+    },
+    DOUBLE(PrimitiveTypeName.DOUBLE, null) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addDouble(((Number) value).doubleValue());
+      }
+    },
+    BOOLEAN(PrimitiveTypeName.BOOLEAN, null) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addBoolean((Boolean) value);
+      }
+    },
+    TIMESTAMP(PrimitiveTypeName.INT64, OriginalType.TIMESTAMP_MILLIS) {
+      @Override
+      void write(final RecordConsumer consumer, final Object value) {
+        consumer.addLong(((Instant) value).toEpochMilli());
+      }
+    };
+
+    private final PrimitiveTypeName primitiveType;
+
+    private final OriginalType originalType;
+
+    ColumnType(final PrimitiveTypeName primitiveType, final OriginalType originalType) {
+      this.primitiveType = primitiveType;
+      this.originalType = originalType;
+    }
+
+    abstract void write(RecordConsumer consumer, Object value);
+
+    /*
+     * Returns the column type of fields of the given type, or null if there is none.
+     */
+    static ColumnType of(final Class<?> type) {
+      if (type == String.class || type.isEnum()) {
+        return STRING;
+      } else if (type == Integer.class || type == int.class || type == Short.class
+          || type == short.class) {
+        return INT32;
+      } else if (type == Long.class || type == long.class) {
+        return INT64;
+      } else if (type == Double.class || type == double.class || type == Float.class
+          || type == float.class || type == BigDecimal.class) {
+        return DOUBLE;
+      } else if (type == Boolean.class || type == boolean.class) {
+        return BOOLEAN;
+      } else if (type == Instant.class) {
+        return TIMESTAMP;
+      }
+      return null;
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Column {
+
+    private final String name;
+
+    private final int index;
+
+    private final Field field;
+
+    private final ColumnType type;
+
+    private final Repetition repetition;
+  }
+
+  /*
+   * Writes the fields of each row straight to the record consumer, with no intermediate record
+   * objects.
+   */
+  @RequiredArgsConstructor
+  private static class BeanWriteSupport<T> extends WriteSupport<T> {
+
+    private final MessageType schema;
+
+    private final List<Column> columns;
+
+    private RecordConsumer consumer;
+
+    @Override
+    public WriteContext init(final Configuration configuration) {
+      return new WriteContext(schema, Collections.emptyMap());
+    }
+
+    @Override
+    public void prepareForWrite(final RecordConsumer recordConsumer) {
+      this.consumer = recordConsumer;
+    }
+
+    @Override
+    @SneakyThrows(IllegalAccessException.class)
+    public void write(final T row) {
+      consumer.startMessage();
+      for (Column column : columns) {
+        Object value = column.field.get(row);
+        // Null values of optional columns are written by leaving the field out
+        if (value != null) {
+          consumer.startField(column.name, column.index);
+          column.type.write(consumer, value);
+          consumer.endField(column.name, column.index);
+        }
+      }
+      consumer.endMessage();
+    }
+  }
+
+  private static class Builder<T> extends ParquetWriter.Builder<T, Builder<T>> {
+
+    private final WriteSupport<T> writeSupport;
+
+    Builder(final OutputFile file, final WriteSupport<T> writeSupport) {
+      super(file);
+      this.writeSupport = writeSupport;
+    }
+
+    @Override
+    protected Builder<T> self() {
+      return this;
+    }
+
+    @Override
+    protected WriteSupport<T> getWriteSupport(final Configuration conf) {
+      return writeSupport;
+    }
+  }
+
+  /*
+   * A Parquet output "file" that is just a stream, e.g. an HTTP response body. Parquet files are
+   * written front to back with the footer last, so no seeking is needed.
+   */
+  @RequiredArgsConstructor
+  private static class StreamOutputFile implements OutputFile {
+
+    private final OutputStream out;
+
+    @Override
+    public PositionOutputStream create(final long blockSizeHint) {
+      return new PositionOutputStream() {
+        private long position;
+
+        @Override
+        public long getPos() {
+          return position;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+          out.write(b);
+          position++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+          out.write(b, off, len);
+          position += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+          out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+          // The stream belongs to the caller
+          out.flush();
+        }
+      };
+    }
+
+    @Override
+    public PositionOutputStream createOrOverwrite(final long blockSizeHint) {
+      return create(blockSizeHint);
+    }
+
+    @Override
+    public boolean supportsBlockSize() {
+      return false;
+    }
+
+    @Override
+    public long defaultBlockSize() {
+      return 0;
+    }
+  }
+}
@@ -51,9 +51,10 @@ public class XlsxSerializer {
 
   /*
    * Get a list of all fields in the given class, including inherited and private fields, but
-   * excluding any @JsonIgnore'd fields.
+   * excluding any @JsonIgnore'd fields. Also used by ParquetSerializer, so both write the same
+   * columns.
    */
-  private static List<Field> getFieldsToSerialize(final Class<?> clazz) {
+  static List<Field> getFieldsToSerialize(final Class<?> clazz) {
     List<Field> fields = new ArrayList<>();
     // Class#getFields() gets all public fields in a class including inherited fields, while
     // Class#getDeclaredFields() gets all fields in a class excluding inherited fields
@@ -95,7 +96,7 @@ public class XlsxSerializer {
    * is present on a given field, use that annotation's value as the header, otherwise use the field
    * name.
    */
-  private static List<String> getHeaderValues(final List<Field> fields) {
+  static List<String> getHeaderValues(final List<Field> fields) {
     List<String> headers = new ArrayList<>();
     for (Field field : fields) {
       // Could also use a custom annotation instead of JsonProperty if different configuration is
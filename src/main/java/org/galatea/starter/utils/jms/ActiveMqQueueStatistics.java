@@ -0,0 +1,72 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.OptionalLong;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asks an ActiveMQ broker how many messages are waiting on a queue, through the broker's
+ * statistics plugin. The plugin answers a message sent to ActiveMQ.Statistics.Destination.[queue]
+ * with a map message holding the queue's statistics, including its size.
+ *
+ * <p>The plugin has to be enabled on the broker ({@code <statisticsBrokerPlugin/>}). Without it
+ * nobody answers and the depth is reported as unknown. The requests expire on their own so that
+ * they don't pile up on the broker in that case.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveMqQueueStatistics {
+
+  private static final String STATISTICS_PREFIX = "ActiveMQ.Statistics.Destination.";
+
+  private static final String SIZE = "size";
+
+  @NonNull
+  private final ConnectionFactory connectionFactory;
+
+  private final long timeoutMillis;
+
+  /**
+   * Returns the number of messages waiting on the queue, or empty if the broker didn't say.
+   */
+  public OptionalLong queueDepth(final String queueName) {
+    try (Connection connection = connectionFactory.createConnection()) {
+      connection.start();
+      try (Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE)) {
+        TemporaryQueue replyQueue = session.createTemporaryQueue();
+        try (MessageConsumer consumer = session.createConsumer(replyQueue);
+            MessageProducer producer =
+                session.createProducer(session.createQueue(STATISTICS_PREFIX + queueName))) {
+          Message request = session.createMessage();
+          request.setJMSReplyTo(replyQueue);
+          producer.setTimeToLive(timeoutMillis);
+          producer.send(request);
+
+          Message reply = consumer.receive(timeoutMillis);
+          if (reply instanceof MapMessage && ((MapMessage) reply).itemExists(SIZE)) {
+            return OptionalLong.of(((MapMessage) reply).getLong(SIZE));
+          }
+        } finally {
+          replyQueue.delete();
+        }
+      }
+    } catch (JMSException e) {
+      log.warn("Could not get the depth of queue {}", queueName, e);
+      return OptionalLong.empty();
+    }
+
+    log.debug("No statistics for queue {}. Is the statistics plugin enabled on the broker?",
+        queueName);
+    return OptionalLong.empty();
+  }
+}
@@ -0,0 +1,179 @@
+package org.galatea.starter.utils.jms;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.MessageListenerContainer;
+
+/**
+ * Periodically resizes the listener containers built by {@link FuseJmsListenerContainerFactory}.
+ * Every interval each running container is sampled (queue depth, processing latency and how many
+ * messages it processed) together with the DB connection pool, and its consumers are set to what
+ * the {@link AimdConcurrencyPolicy} asks for.
+ *
+ * <p>Both the concurrent and max concurrent consumers of a container are set to that number, so
+ * the container no longer scales on its own in between. Extra consumers are started as messages
+ * arrive; surplus consumers stop once they finish their current message.
+ *
+ * <p>The consumers of a partitioned container only hand messages to its lanes, so it is never given
+ * more consumers than it has lanes. Containers that have to keep to a single consumer (see
+ * {@link FuseMessageListenerContainer#isSingleConsumer()}) are never resized.
+ */
+@Slf4j
+@ToString(of = {"policy", "intervalMillis"})
+public class AdaptiveConcurrencyController implements SmartLifecycle {
+
+  private final JmsListenerEndpointRegistry registry;
+
+  private final AimdConcurrencyPolicy policy;
+
+  private final ActiveMqQueueStatistics queueStatistics;
+
+  private final DoubleSupplier dbPoolUtilisation;
+
+  private final long intervalMillis;
+
+  private final MeterRegistry meterRegistry;
+
+  /* Messages processed by each container as of the last sample, by container id */
+  private final Map<String, Long> lastProcessed = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a controller. It starts sampling once the application context is started.
+   *
+   * @param registry the registry holding the listener containers to resize
+   * @param policy decides the number of consumers from each sample
+   * @param queueStatistics asks the broker for the depth of each container's queue
+   * @param dbPoolUtilisation share of the DB connection pool in use, between 0 and 1
+   * @param intervalMillis time between two samples
+   * @param meterRegistry registry that the consumer count of each container is published to
+   */
+  public AdaptiveConcurrencyController(@NonNull final JmsListenerEndpointRegistry registry,
+      @NonNull final AimdConcurrencyPolicy policy,
+      @NonNull final ActiveMqQueueStatistics queueStatistics,
+      @NonNull final DoubleSupplier dbPoolUtilisation, final long intervalMillis,
+      @NonNull final MeterRegistry meterRegistry) {
+    if (intervalMillis <= 0) {
+      throw new IllegalArgumentException("Interval must be positive but was " + intervalMillis);
+    }
+
+    this.registry = registry;
+    this.policy = policy;
+    this.queueStatistics = queueStatistics;
+    this.dbPoolUtilisation = dbPoolUtilisation;
+    this.intervalMillis = intervalMillis;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (scheduler != null) {
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "adaptive-jms-concurrency");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::adjustSafely, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+    log.info("Started {}", this);
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  @Override
+  public synchronized boolean isRunning() {
+    return scheduler != null;
+  }
+
+  /**
+   * Starts after, and stops before, the listener containers.
+   */
+  @Override
+  public int getPhase() {
+    return Integer.MAX_VALUE;
+  }
+
+  /**
+   * Samples every running container once and resizes it if needed.
+   */
+  void adjustConsumers() {
+    for (String id : registry.getListenerContainerIds()) {
+      MessageListenerContainer container = registry.getListenerContainer(id);
+      if (container instanceof FuseMessageListenerContainer && container.isRunning()
+          && !((FuseMessageListenerContainer) container).isSingleConsumer()) {
+        adjustConsumers(id, (FuseMessageListenerContainer) container);
+      }
+    }
+  }
+
+  private void adjustConsumers(final String id, final FuseMessageListenerContainer container) {
+    if (!lastProcessed.containsKey(id)) {
+      Gauge.builder("fuse.jms.consumers", container,
+          FuseMessageListenerContainer::getActiveConsumerCount).tag("container", id)
+          .description("Number of consumers running in the listener container")
+          .register(meterRegistry);
+    }
+
+    long processed = container.getProcessedMessages();
+    long processedSinceLast = processed - lastProcessed.getOrDefault(id, processed);
+    lastProcessed.put(id, processed);
+
+    AimdConcurrencyPolicy.Sample sample = AimdConcurrencyPolicy.Sample.builder()
+        .queueDepth(queueDepth(container).orElse(-1))
+        .latencyMillis(container.getAverageProcessingMillis())
+        .processedMessages(processedSinceLast).intervalMillis(intervalMillis)
+        .dbPoolUtilisation(dbPoolUtilisation.getAsDouble()).build();
+
+    int current = container.getConcurrentConsumers();
+    int next = policy.nextConsumers(current, sample);
+    if (container.isPartitioned()) {
+      // More consumers than lanes would only queue more messages on the lanes
+      next = Math.min(next, container.getPartitionLanes());
+    }
+    if (next != current || container.getMaxConcurrentConsumers() != next) {
+      log.info("Resizing listener container {} from {} to {} consumer(s) after {}", id, current,
+          next, sample);
+      // Setting the consumers first lets the max follow both up and down
+      container.setConcurrentConsumers(next);
+      container.setMaxConcurrentConsumers(next);
+    }
+  }
+
+  private OptionalLong queueDepth(final FuseMessageListenerContainer container) {
+    if (container.isPubSubDomain() || container.getDestinationName() == null) {
+      return OptionalLong.empty();
+    }
+    return queueStatistics.queueDepth(container.getDestinationName());
+  }
+
+  private void adjustSafely() {
+    // An exception would cancel the schedule, so log it and try again next interval
+    try {
+      adjustConsumers();
+    } catch (RuntimeException e) {
+      log.warn("Could not adjust the listener concurrency", e);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.galatea.starter.utils.jms;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Decides how many consumers a listener container should run next, using additive increase and
+ * multiplicative decrease (AIMD): consumers are added a few at a time while there is a backlog,
+ * and cut by a factor as soon as the database or the listener shows signs of overload. Cutting
+ * hard and growing slowly lets the consumers settle just below the point where the database
+ * saturates.
+ *
+ * <p>Overload takes precedence over backlog. When the queue depth is unknown (e.g. the broker
+ * doesn't have the statistics plugin), how busy the current consumers were stands in for it.
+ */
+@Builder
+@Value
+public class AimdConcurrencyPolicy {
+
+  /* Consumers that were busy more than this share of the interval could use help */
+  private static final double BUSY_UTILISATION = 0.8;
+
+  /* Consumers that were busy less than this share of the interval are more than enough */
+  private static final double IDLE_UTILISATION = 0.3;
+
+  int minConsumers;
+
+  int maxConsumers;
+
+  /* Consumers added per interval while there is a backlog */
+  int increaseStep;
+
+  /* Consumers are multiplied by this (between 0 and 1) when overloaded */
+  double decreaseFactor;
+
+  /* Average processing time per message above which the listener counts as overloaded */
+  double maxLatencyMillis;
+
+  /* Share of the DB pool in use above which the database counts as overloaded */
+  double maxDbPoolUtilisation;
+
+  /* Queue depth per consumer above which there counts as a backlog */
+  long backlogPerConsumer;
+
+  /**
+   * Returns the number of consumers to run for the next interval, within the configured bounds.
+   *
+   * @param current the number of consumers running now
+   * @param sample what was observed over the last interval
+   */
+  public int nextConsumers(final int current, final Sample sample) {
+    int next;
+    if (isOverloaded(sample)) {
+      next = Math.min(current - 1, (int) Math.floor(current * decreaseFactor));
+    } else if (hasBacklog(current, sample)) {
+      next = current + increaseStep;
+    } else if (isIdle(current, sample)) {
+      next = current - 1;
+    } else {
+      next = current;
+    }
+
+    return Math.max(minConsumers, Math.min(maxConsumers, next));
+  }
+
+  private boolean isOverloaded(final Sample sample) {
+    return sample.getDbPoolUtilisation() >= maxDbPoolUtilisation
+        || (sample.getProcessedMessages() > 0 && sample.getLatencyMillis() > maxLatencyMillis);
+  }
+
+  private boolean hasBacklog(final int current, final Sample sample) {
+    if (sample.getQueueDepth() >= 0) {
+      return sample.getQueueDepth() > current * backlogPerConsumer;
+    }
+    return consumerUtilisation(current, sample) > BUSY_UTILISATION;
+  }
+
+  private boolean isIdle(final int current, final Sample sample) {
+    if (sample.getQueueDepth() > 0) {
+      return false;
+    }
+    return consumerUtilisation(current, sample) < IDLE_UTILISATION;
+  }
+
+  /*
+   * Share of the interval the consumers spent processing messages.
+   */
+  private static double consumerUtilisation(final int current, final Sample sample) {
+    if (current <= 0 || sample.getIntervalMillis() <= 0) {
+      return 0;
+    }
+    return sample.getProcessedMessages() * sample.getLatencyMillis()
+        / (current * (double) sample.getIntervalMillis());
+  }
+
+  /**
+   * What was observed about a listener container and its surroundings over one interval.
+   */
+  @Builder
+  @Value
+  public static class Sample {
+
+    /* Messages waiting on the queue, or -1 if unknown */
+    @Builder.Default
+    long queueDepth = -1;
+
+    /* Average processing time per message */
+    double latencyMillis;
+
+    /* Messages processed during the interval */
+    long processedMessages;
+
+    long intervalMillis;
+
+    /* Share of the DB connection pool in use, between 0 and 1 */
+    double dbPoolUtilisation;
+  }
+}
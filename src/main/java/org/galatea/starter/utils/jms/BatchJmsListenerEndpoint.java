@@ -0,0 +1,59 @@
+package org.galatea.starter.utils.jms;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+import org.springframework.jms.config.JmsListenerEndpoint;
+import org.springframework.jms.listener.MessageListenerContainer;
+
+/**
+ * Endpoint that registers a {@link BatchMessageListener} for a queue with the JMS listener
+ * registry, the programmatic counterpart of a method annotated with
+ * {@link org.springframework.jms.annotation.JmsListener}.
+ *
+ * <p>It must be registered with a {@link FuseJmsListenerContainerFactory}, since only its
+ * containers know how to receive messages in batches.
+ */
+@Builder
+@ToString
+public class BatchJmsListenerEndpoint implements JmsListenerEndpoint {
+
+  @NonNull
+  private final String id;
+
+  @NonNull
+  private final String destination;
+
+  /* Optional. Falls back to the concurrency of the container factory when null. */
+  private final String concurrency;
+
+  /* Optional. Only messages matching this selector are consumed when set. */
+  private final String selector;
+
+  @NonNull
+  private final BatchMessageListener messageListener;
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void setupListenerContainer(final MessageListenerContainer listenerContainer) {
+    if (!(listenerContainer instanceof FuseMessageListenerContainer)) {
+      throw new IllegalArgumentException("Batch listener " + id + " needs a "
+          + FuseMessageListenerContainer.class.getSimpleName() + " but was given a "
+          + listenerContainer.getClass().getName());
+    }
+
+    FuseMessageListenerContainer container = (FuseMessageListenerContainer) listenerContainer;
+    container.setDestinationName(destination);
+    if (concurrency != null) {
+      container.setConcurrency(concurrency);
+    }
+    if (selector != null) {
+      container.setMessageSelector(selector);
+    }
+    container.setupMessageListener(messageListener);
+  }
+}
@@ -0,0 +1,35 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import org.springframework.jms.listener.SessionAwareMessageListener;
+
+/**
+ * Listener that is handed every message a {@link FuseMessageListenerContainer} received in one
+ * batch, so that it can process them together, e.g. in a single database transaction.
+ *
+ * <p>The container commits (or acknowledges) the whole batch once this listener returns, and rolls
+ * the whole batch back if it throws. A listener that doesn't want one bad message to cause the
+ * others to be redelivered must deal with that message itself.
+ */
+public interface BatchMessageListener extends SessionAwareMessageListener<Message> {
+
+  /**
+   * Processes a batch of messages received on the given session.
+   *
+   * @param messages the messages of the batch, in the order they were received. Never empty.
+   * @param session the session the messages were received on
+   */
+  void onMessages(List<Message> messages, Session session) throws JMSException;
+
+  /**
+   * Processes a single message as a batch of one, for containers that don't batch.
+   */
+  @Override
+  default void onMessage(final Message message, final Session session) throws JMSException {
+    onMessages(Collections.singletonList(message), session);
+  }
+}
@@ -0,0 +1,81 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Moves messages from a dead letter queue back to the queue they originally failed on, at a
+ * limited rate so that a large replay doesn't swamp the listeners. Replayed messages start over
+ * with a fresh set of redeliveries.
+ *
+ * <p>Each message is taken off the dead letter queue and sent to its original queue in one local
+ * transaction, so a replay that fails half way through neither loses nor duplicates messages.
+ * Messages keep their priority, and so go back to the listener they were first sent to.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterReplayer {
+
+  /* How long to wait for the next dead letter before concluding the queue is drained */
+  private static final long RECEIVE_TIMEOUT_MILLIS = 1000;
+
+  /* Must have a transacted session */
+  @NonNull
+  private final JmsTemplate jmsTemplate;
+
+  @NonNull
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Replays up to maxMessages messages from the dead letter queue of the given queue, at no more
+   * than messagesPerSecond messages per second. Blocks the calling thread until done.
+   *
+   * @return the number of messages replayed
+   */
+  public int replay(final String queueName, final int maxMessages,
+      final double messagesPerSecond) {
+    if (messagesPerSecond <= 0) {
+      throw new IllegalArgumentException("Replay rate must be positive but was "
+          + messagesPerSecond);
+    }
+
+    String deadLetterQueue = JmsMessages.deadLetterQueue(queueName);
+    RateLimiter rateLimiter = RateLimiter.create(messagesPerSecond);
+
+    Integer replayed = jmsTemplate.execute(session -> {
+      int count = 0;
+      try (MessageConsumer consumer = session.createConsumer(session.createQueue(deadLetterQueue));
+          MessageProducer producer = session.createProducer(session.createQueue(queueName))) {
+        while (count < maxMessages) {
+          rateLimiter.acquire();
+          Message deadLetter = consumer.receive(RECEIVE_TIMEOUT_MILLIS);
+          if (deadLetter == null) {
+            break;
+          }
+
+          JmsMessages.sendCopy(producer,
+              JmsMessages.copy(deadLetter, session, JmsMessages.FAILURE_PROPERTIES), deadLetter);
+          session.commit();
+          count++;
+        }
+      } catch (JMSException | RuntimeException e) {
+        session.rollback();
+        throw e;
+      }
+      return count;
+    }, true);
+
+    meterRegistry.counter("fuse.jms.dead-letters.replayed", "queue", queueName)
+        .increment(replayed);
+    log.info("Replayed {} message(s) from {} to {}", replayed, deadLetterQueue, queueName);
+    return replayed;
+  }
+}
@@ -0,0 +1,176 @@
+package org.galatea.starter.utils.jms;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ScheduledMessage;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.connection.ConnectionFactoryUtils;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * Failed message consumer that schedules failed messages to be redelivered later instead of
+ * holding a consumer thread while it waits. The n-th redelivery is delayed by
+ * initialDelayMillis * multiplier^(n-1), capped at maxDelayMillis, using the broker's scheduled
+ * delivery. Once a message has failed maxAttempts redeliveries it is moved to the dead letter
+ * queue of its original queue ([queue].DLQ), with the reason of the last failure as headers.
+ *
+ * <p>When called from a listener container with a transacted session, the copy is sent on the
+ * listener's session and so only goes out if the failed message is taken off its queue, on the
+ * lanes of a partitioned container as much as on a consumer thread. If the copy can't be sent, the
+ * exception is rethrown so that the failed message is rolled back instead of lost.
+ *
+ * <p>Redeliveries and dead letters keep the priority of the failed message, so that urgent messages
+ * are redelivered to the urgent listeners.
+ *
+ * <p>The broker needs scheduler support enabled, otherwise the redeliveries are not delayed.
+ */
+@Slf4j
+@ToString(of = {"maxAttempts", "initialDelayMillis", "multiplier", "maxDelayMillis"})
+public class DelayedRedeliveryHandler implements BiConsumer<Message, Exception> {
+
+  /* Failure reasons are cut to this length so that a huge message doesn't bloat the headers */
+  private static final int MAX_REASON_LENGTH = 1000;
+
+  private final JmsTemplate jmsTemplate;
+
+  private final int maxAttempts;
+
+  private final long initialDelayMillis;
+
+  private final double multiplier;
+
+  private final long maxDelayMillis;
+
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Creates a handler.
+   *
+   * @param jmsTemplate template used to send the redeliveries and dead letters
+   * @param maxAttempts number of delayed redeliveries before a message is dead-lettered
+   * @param initialDelayMillis delay before the first redelivery
+   * @param multiplier factor the delay grows by with each redelivery
+   * @param maxDelayMillis longest delay before any redelivery
+   * @param meterRegistry registry that redelivery and dead letter counts are published to
+   */
+  public DelayedRedeliveryHandler(@NonNull final JmsTemplate jmsTemplate, final int maxAttempts,
+      final long initialDelayMillis, final double multiplier, final long maxDelayMillis,
+      @NonNull final MeterRegistry meterRegistry) {
+    if (maxAttempts < 0 || initialDelayMillis < 0 || multiplier < 1) {
+      throw new IllegalArgumentException("Invalid redelivery settings: maxAttempts=" + maxAttempts
+          + ", initialDelayMillis=" + initialDelayMillis + ", multiplier=" + multiplier);
+    }
+
+    this.jmsTemplate = jmsTemplate;
+    this.maxAttempts = maxAttempts;
+    this.initialDelayMillis = initialDelayMillis;
+    this.multiplier = multiplier;
+    this.maxDelayMillis = Math.max(initialDelayMillis, maxDelayMillis);
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void accept(final Message message, final Exception error) {
+    try {
+      String queue = JmsMessages.originalQueue(message);
+      if (queue == null) {
+        log.error("Message {} failed to process and was not sent to a queue. Dropping it.",
+            message, error);
+        return;
+      }
+
+      int attempt = message.propertyExists(JmsMessages.RETRY_ATTEMPT)
+          ? message.getIntProperty(JmsMessages.RETRY_ATTEMPT) + 1 : 1;
+      if (attempt <= maxAttempts) {
+        redeliver(message, queue, attempt);
+      } else {
+        deadLetter(message, queue, attempt - 1, error);
+      }
+    } catch (JMSException | JmsException e) {
+      log.error("Message {} failed to process and could not be redelivered", message, error);
+      throw new IllegalStateException("Could not redeliver failed message " + message, e);
+    }
+  }
+
+  /**
+   * Returns the delay before the given redelivery (starting at 1).
+   */
+  public long delayMillis(final int attempt) {
+    double delay = initialDelayMillis * Math.pow(multiplier, attempt - 1);
+    return (long) Math.min(delay, maxDelayMillis);
+  }
+
+  private void redeliver(final Message message, final String queue, final int attempt)
+      throws JMSException {
+    long delay = delayMillis(attempt);
+    send(queue, message, session -> {
+      Message copy = JmsMessages.copy(message, session);
+      copy.setStringProperty(JmsMessages.ORIGINAL_QUEUE, queue);
+      copy.setIntProperty(JmsMessages.RETRY_ATTEMPT, attempt);
+      copy.setLongProperty(ScheduledMessage.AMQ_SCHEDULED_DELAY, delay);
+      return copy;
+    });
+
+    meterRegistry.counter("fuse.jms.redeliveries", "queue", queue).increment();
+    log.warn("Message {} failed to process. Redelivery {} of {} to {} scheduled in {}ms.",
+        message.getJMSMessageID(), attempt, maxAttempts, queue, delay);
+  }
+
+  private void deadLetter(final Message message, final String queue, final int attempts,
+      final Exception error) throws JMSException {
+    String deadLetterQueue = JmsMessages.deadLetterQueue(queue);
+    Throwable cause = rootCause(error);
+    send(deadLetterQueue, message, session -> {
+      Message copy = JmsMessages.copy(message, session);
+      copy.setStringProperty(JmsMessages.ORIGINAL_QUEUE, queue);
+      copy.setIntProperty(JmsMessages.RETRY_ATTEMPT, attempts);
+      copy.setStringProperty(JmsMessages.FAILURE_EXCEPTION, cause.getClass().getName());
+      copy.setStringProperty(JmsMessages.FAILURE_REASON, reason(cause));
+      copy.setLongProperty(JmsMessages.FAILED_AT, System.currentTimeMillis());
+      return copy;
+    });
+
+    meterRegistry.counter("fuse.jms.dead-letters", "queue", queue).increment();
+    log.error("Message {} failed to process after {} redeliveries. Moved it to {}.",
+        message.getJMSMessageID(), attempts, deadLetterQueue, error);
+  }
+
+  /*
+   * Like JmsTemplate#send, but the copy goes out with the priority of the failed message rather
+   * than the template's.
+   */
+  private void send(final String queue, final Message message, final MessageCreator creator) {
+    jmsTemplate.execute(session -> {
+      try (MessageProducer producer = session.createProducer(session.createQueue(queue))) {
+        JmsMessages.sendCopy(producer, creator.createMessage(session), message);
+      }
+      // Sessions of the listener's transaction are committed along with it
+      if (session.getTransacted() && !ConnectionFactoryUtils.isSessionTransactional(session,
+          jmsTemplate.getConnectionFactory())) {
+        JmsUtils.commitIfNecessary(session);
+      }
+      return null;
+    }, false);
+  }
+
+  private static Throwable rootCause(final Throwable error) {
+    Throwable cause = error;
+    while (cause.getCause() != null && cause.getCause() != cause) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  private static String reason(final Throwable cause) {
+    String reason = String.valueOf(cause.getMessage());
+    return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+  }
+}
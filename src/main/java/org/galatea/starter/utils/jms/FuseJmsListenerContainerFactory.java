@@ -1,13 +1,19 @@
 package org.galatea.starter.utils.jms;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import javax.jms.Message;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpoint;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 
 
@@ -20,9 +26,58 @@ public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainer
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  /* Only applies to containers whose listener is a BatchMessageListener */
+  @Getter
+  @Setter
+  protected int maxBatchMessages = 1;
+
+  @Getter
+  @Setter
+  protected long maxBatchWaitMillis = 0;
+
+  /* Only applies to containers whose listener is not a BatchMessageListener */
+  @Getter
+  @Setter
+  protected int partitionLanes = 1;
+
+  @Setter
+  protected PartitionKeyExtractor partitionKeyExtractor;
+
+  @Setter
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  protected MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+  /* Looks up the thread pool settings of a listener by its endpoint id */
+  @Setter
+  protected Function<String, ListenerExecutorSettings> listenerExecutorSettings;
+
+  /**
+   * Names the container after its endpoint, which its threads and metrics are named after, and
+   * gives it the thread pool settings of that endpoint.
+   */
+  @Override
+  public DefaultMessageListenerContainer createListenerContainer(
+      final JmsListenerEndpoint endpoint) {
+    DefaultMessageListenerContainer container = super.createListenerContainer(endpoint);
+    container.setBeanName(endpoint.getId());
+    if (listenerExecutorSettings != null) {
+      ((FuseMessageListenerContainer) container)
+          .setListenerExecutorSettings(listenerExecutorSettings.apply(endpoint.getId()));
+    }
+    return container;
+  }
+
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
-    return new FuseMessageListenerContainer(failedMessageConsumer);
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer(failedMessageConsumer);
+    container.setMaxBatchMessages(maxBatchMessages);
+    container.setMaxBatchWaitMillis(maxBatchWaitMillis);
+    container.setPartitionLanes(partitionLanes);
+    container.setPartitionKeyExtractor(partitionKeyExtractor);
+    container.setMeterRegistry(meterRegistry);
+    return container;
   }
 
 }
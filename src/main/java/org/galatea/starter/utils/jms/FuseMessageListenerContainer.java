@@ -1,40 +1,470 @@
 package org.galatea.starter.utils.jms;
 
+import com.google.common.base.Throwables;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageConsumer;
 import javax.jms.Session;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.concurrent.KeyedLanes;
+import org.springframework.jms.connection.JmsResourceHolder;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+/**
+ * Listener container that hands failed messages to a failed message consumer, publishes metrics of
+ * its listener and can receive messages in batches and process them on lanes.
+ *
+ * <p>The listeners of a partitioned container run on its lanes, and so on several threads at once,
+ * but each consumer has only one session, which JMS only lets one thread use at a time. The lanes
+ * are handed a view of the session that makes their calls to it one at a time (see
+ * {@link SharedSessions}), so listeners can still use it, e.g. to send replies. The view is exposed
+ * on the lanes like the session is on the consumer thread, so what listeners send through a
+ * JmsTemplate is part of the transaction of their batch.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @ToString(callSuper = true)
 @EqualsAndHashCode(callSuper = true)
 public class FuseMessageListenerContainer extends DefaultMessageListenerContainer {
 
+  /* Set by producers that want messages with the same value processed in order */
+  private static final String GROUP_ID = "JMSXGroupID";
+
+  /* Weight of the latest sample in the moving average of the processing time */
+  private static final double LATENCY_SMOOTHING = 0.2;
+
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  /*
+   * Batch listeners are handed up to this many messages at once. Once the first message of a batch
+   * has arrived we wait at most maxBatchWaitMillis for the rest.
+   */
+  @Getter
+  @Setter
+  protected int maxBatchMessages = 1;
+
+  @Getter
+  @Setter
+  protected long maxBatchWaitMillis = 0;
+
+  /*
+   * Regular listeners run on this many single-threaded lanes when there is more than one. Messages
+   * are routed to a lane by their JMSXGroupID, or by the key partitionKeyExtractor picks if they
+   * don't have one. Messages with neither are spread over the lanes. Partitioned containers receive
+   * messages in batches like batch listeners do. Containers with a partitionKeyExtractor must run
+   * a single consumer (see initialize).
+   */
+  @Getter
+  @Setter
+  protected int partitionLanes = 1;
+
+  @Setter
+  protected PartitionKeyExtractor partitionKeyExtractor;
+
+  @Setter
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  protected MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private KeyedLanes lanes;
+
+  /*
+   * The consumers run on a pool of their own sized by these settings, rather than on a new thread
+   * each. Without settings the container keeps its default executor.
+   */
+  @Setter
+  protected ListenerExecutorSettings listenerExecutorSettings;
+
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private ThreadPoolTaskExecutor listenerExecutor;
+
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Timer executionTimer;
+
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Timer queueWaitTimer;
+
+  /* Processing stats, sampled by the adaptive concurrency controller */
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private double averageProcessingMillis = 0;
+
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private long processedMessages = 0;
+
   @Override
   @SneakyThrows
   protected void invokeListener(final Session session, final Message message) {
 
-    // We expect the listener to handle any retryable exceptions internally. If the exception
-    // reaches the catch block, then we assume that the message has failed processing and should
-    // NOT be
-    // retried. That being said, the failed message consumer could decide to throw a
-    // RuntimeException, which would result in the message being placed back on the queue. While
-    // this is not encouraged, there may be certain circumstances where that is necessary.
+    // If the exception reaches the catch block, then we assume that the message has failed
+    // processing and should NOT be put back on the queue. The failed message consumer decides what
+    // happens to it instead, e.g. schedules it to be redelivered later, so that the consumer thread
+    // doesn't sit out the redelivery delay. That being said, the failed message consumer could
+    // decide to throw a RuntimeException, which would result in the message being placed back on
+    // the queue. While this is not encouraged, there may be certain circumstances where that is
+    // necessary.
+    long start = System.nanoTime();
     try {
       super.invokeListener(session, message);
-    } catch (JMSException e) {
+    } catch (JMSException | RuntimeException e) {
       failedMessageConsumer.accept(message, e);
+    } finally {
+      recordProcessingTime(System.nanoTime() - start, 1);
+    }
+  }
+
+  /**
+   * Sets up the metrics, thread pool and lanes of the container. The execution time of each message
+   * is published as the fuse.jms.listener.execution histogram, the time from it being sent to it
+   * being received as the fuse.jms.queue.wait histogram and the thread pool as the executor.*
+   * metrics, all tagged by listener and destination.
+   *
+   * <p>The consumers of a partitioned container share its lanes. The broker hands all messages with
+   * the same JMSXGroupID to the same consumer, so they are processed in order whatever the
+   * concurrency. Messages keyed by the partitionKeyExtractor are only kept in order among those
+   * received by the same consumer, so a container with an extractor must run a single consumer and
+   * fails to start otherwise. Its lanes are what process its messages in parallel.
+   */
+  @Override
+  public void initialize() {
+    Tags tags = Tags.of("listener", listenerName(),
+        "destination", String.valueOf(getDestinationDescription()));
+    executionTimer = Timer.builder("fuse.jms.listener.execution").tags(tags)
+        .description("Time the listener took to process a message")
+        .publishPercentileHistogram().register(meterRegistry);
+    queueWaitTimer = Timer.builder("fuse.jms.queue.wait").tags(tags)
+        .description("Time from a message being sent to the listener receiving it")
+        .publishPercentileHistogram().register(meterRegistry);
+
+    if (partitionLanes > 1 && !(getMessageListener() instanceof BatchMessageListener)) {
+      if (partitionKeyExtractor != null && getMaxConcurrentConsumers() > 1) {
+        throw new IllegalStateException("Listener " + listenerName() + " keys its messages by "
+            + partitionKeyExtractor + ", which only keeps them in order with a single consumer, but"
+            + " is set up for up to " + getMaxConcurrentConsumers() + " consumers");
+      }
+      lanes = new KeyedLanes(String.valueOf(getDestinationDescription()), partitionLanes,
+          meterRegistry);
+    }
+
+    if (listenerExecutorSettings != null) {
+      listenerExecutor = createListenerExecutor(listenerExecutorSettings);
+      new ExecutorServiceMetrics(listenerExecutor.getThreadPoolExecutor(), "jms.listener", tags)
+          .bindTo(meterRegistry);
+      setTaskExecutor(listenerExecutor);
+    }
+
+    super.initialize();
+  }
+
+  /**
+   * Closes the lanes and the thread pool once the consumers are done.
+   */
+  @Override
+  protected void doShutdown() throws JMSException {
+    try {
+      super.doShutdown();
+    } finally {
+      if (lanes != null) {
+        lanes.close();
+      }
+      if (listenerExecutor != null) {
+        listenerExecutor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Returns whether the listener runs on lanes.
+   */
+  public boolean isPartitioned() {
+    return lanes != null;
+  }
+
+  /**
+   * Returns whether the container has to keep to a single consumer, which is the case when it
+   * runs on lanes keyed by its partitionKeyExtractor.
+   */
+  public boolean isSingleConsumer() {
+    return lanes != null && partitionKeyExtractor != null;
+  }
+
+  /**
+   * Returns the exponentially weighted moving average of the time it took the listener to process
+   * a message, in milliseconds. Messages of a batch are counted as taking an equal share of the
+   * time the batch took.
+   */
+  public synchronized double getAverageProcessingMillis() {
+    return averageProcessingMillis;
+  }
+
+  /**
+   * Returns the number of messages the listener has processed so far.
+   */
+  public synchronized long getProcessedMessages() {
+    return processedMessages;
+  }
+
+  /**
+   * Receives and processes a whole batch of messages when the listener is a
+   * {@link BatchMessageListener}. The batch is committed (or acknowledged) in one go once the
+   * listener returns.
+   *
+   * <p>Regular listeners of a partitioned container are handed the messages of a batch on their
+   * lanes instead (see {@link #doReceiveAndExecutePartitioned}).
+   *
+   * <p>Batching needs the session and consumer to be cached across receives and no external
+   * transaction manager, which is how Boot sets up our listener containers. In any other setup, or
+   * for regular listeners, messages are received one at a time as usual.
+   */
+  @Override
+  protected boolean doReceiveAndExecute(final Object invoker, final Session session,
+      final MessageConsumer consumer, final TransactionStatus status) throws JMSException {
+    if (lanes != null && session != null && consumer != null
+        && getTransactionManager() == null) {
+      return doReceiveAndExecutePartitioned(invoker, session, consumer);
+    }
+
+    if (maxBatchMessages <= 1 || session == null || consumer == null
+        || getTransactionManager() != null
+        || !(getMessageListener() instanceof BatchMessageListener)) {
+      return super.doReceiveAndExecute(invoker, session, consumer, status);
+    }
+
+    List<Message> batch = receiveBatch(consumer);
+    if (batch.isEmpty()) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+
+    messageReceived(invoker, session);
+    if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+      log.info("Rejecting batch of {} message(s) because the container is stopping",
+          batch.size());
+      rollbackIfNecessary(session);
+      return false;
+    }
+
+    log.debug("Received batch of {} message(s) from {}", batch.size(), getDestinationDescription());
+    // Expose the session like the container does for single messages, so that anything the
+    // listener sends through a JmsTemplate is part of the batch's transaction
+    boolean exposeSession = isExposeListenerSession()
+        && !TransactionSynchronizationManager.hasResource(obtainConnectionFactory());
+    if (exposeSession) {
+      TransactionSynchronizationManager.bindResource(obtainConnectionFactory(),
+          new JmsResourceHolder(session));
+    }
+
+    long start = System.nanoTime();
+    try {
+      ((BatchMessageListener) getMessageListener()).onMessages(batch, session);
+    } catch (JMSException | RuntimeException | Error e) {
+      rollbackOnExceptionIfNecessary(session, e);
+      throw e;
+    } finally {
+      recordProcessingTime(System.nanoTime() - start, batch.size());
+      if (exposeSession) {
+        TransactionSynchronizationManager.unbindResource(obtainConnectionFactory());
+      }
+    }
+
+    commitIfNecessary(session, batch.get(batch.size() - 1));
+    return true;
+  }
+
+  /**
+   * Receives a batch of messages, runs the listener for each of them on the lane of its key and
+   * commits (or acknowledges) the batch once every lane is done with it. The consumer only receives
+   * its next batch after that, so the messages with the same key that it receives are never
+   * processed concurrently or out of order. Failed messages are handed to the failed message
+   * consumer as usual; the batch is only rolled back if that throws.
+   *
+   * <p>The lanes are handed a shared view of the session rather than the session itself (see
+   * {@link SharedSessions}). The view is exposed to the lanes, so anything the listener sends
+   * through a JmsTemplate is only sent if the batch is committed.
+   */
+  protected boolean doReceiveAndExecutePartitioned(final Object invoker, final Session session,
+      final MessageConsumer consumer) throws JMSException {
+    List<Message> batch = receiveBatch(consumer);
+    if (batch.isEmpty()) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+
+    messageReceived(invoker, session);
+    if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+      log.info("Rejecting batch of {} message(s) because the container is stopping",
+          batch.size());
+      rollbackIfNecessary(session);
+      return false;
+    }
+
+    log.debug("Received batch of {} message(s) from {} for {}", batch.size(),
+        getDestinationDescription(), lanes);
+    Session laneSession = SharedSessions.share(session);
+    List<CompletableFuture<Void>> processed = new ArrayList<>(batch.size());
+    for (Message message : batch) {
+      processed.add(lanes.submit(partitionKey(message),
+          () -> invokeOnLane(laneSession, message)));
+    }
+
+    try {
+      CompletableFuture.allOf(processed.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      rollbackOnExceptionIfNecessary(session, e.getCause());
+      Throwables.throwIfUnchecked(e.getCause());
+      Throwables.throwIfInstanceOf(e.getCause(), JMSException.class);
+      throw e;
+    }
+
+    commitIfNecessary(session, batch.get(batch.size() - 1));
+    return true;
+  }
+
+  /*
+   * Exposes the session on the lane while the listener runs, like the container does on the
+   * consumer thread.
+   */
+  private void invokeOnLane(final Session session, final Message message) {
+    boolean exposeSession = isExposeListenerSession()
+        && !TransactionSynchronizationManager.hasResource(obtainConnectionFactory());
+    if (exposeSession) {
+      TransactionSynchronizationManager.bindResource(obtainConnectionFactory(),
+          new JmsResourceHolder(session));
+    }
+
+    try {
+      invokeListener(session, message);
+    } finally {
+      if (exposeSession) {
+        TransactionSynchronizationManager.unbindResource(obtainConnectionFactory());
+      }
+    }
+  }
+
+  /*
+   * Returns null for messages without a key, or whose key can't be read, so that the lanes spread
+   * them out rather than queue them all on one lane.
+   */
+  private Object partitionKey(final Message message) {
+    try {
+      String groupId = message.getStringProperty(GROUP_ID);
+      if (groupId != null) {
+        return groupId;
+      }
+      return partitionKeyExtractor == null ? null : partitionKeyExtractor.partitionKey(message);
+    } catch (JMSException | RuntimeException e) {
+      log.warn("Could not read the partition key of message {}", message, e);
+      return null;
+    }
+  }
+
+  /*
+   * Threads are named after the listener. Idle consumers give their thread back, so the pool
+   * shrinks again once the container scales its consumers down.
+   */
+  private ThreadPoolTaskExecutor createListenerExecutor(final ListenerExecutorSettings settings) {
+    if (settings.getThreads() < getMaxConcurrentConsumers()) {
+      log.warn("Listener {} has {} thread(s) for up to {} consumers. The rest will queue.",
+          listenerName(), settings.getThreads(), getMaxConcurrentConsumers());
+    }
+
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(listenerName() + "-");
+    executor.setThreadPriority(settings.getThreadPriority());
+    executor.setCorePoolSize(settings.getThreads());
+    executor.setMaxPoolSize(settings.getThreads());
+    executor.setQueueCapacity(settings.getQueueCapacity());
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.initialize();
+    return executor;
+  }
+
+  /*
+   * Containers created by the listener container factory are named after their endpoint's id.
+   */
+  private String listenerName() {
+    return getBeanName() != null ? getBeanName() : String.valueOf(getDestinationDescription());
+  }
+
+  private synchronized void recordProcessingTime(final long nanos, final int messages) {
+    if (executionTimer != null) {
+      for (int i = 0; i < messages; i++) {
+        executionTimer.record(nanos / messages, TimeUnit.NANOSECONDS);
+      }
     }
+
+    double millisPerMessage = nanos / 1e6 / messages;
+    averageProcessingMillis = processedMessages == 0 ? millisPerMessage
+        : LATENCY_SMOOTHING * millisPerMessage + (1 - LATENCY_SMOOTHING) * averageProcessingMillis;
+    processedMessages += messages;
+  }
+
+  /**
+   * Records how long each received message waited on the queue, going by its JMSTimestamp. Clocks
+   * of producers that run ahead count as no wait.
+   */
+  @Override
+  protected Message receiveFromConsumer(final MessageConsumer consumer, final long timeout)
+      throws JMSException {
+    Message message = super.receiveFromConsumer(consumer, timeout);
+    if (message != null && queueWaitTimer != null && message.getJMSTimestamp() > 0) {
+      queueWaitTimer.record(Math.max(0, System.currentTimeMillis() - message.getJMSTimestamp()),
+          TimeUnit.MILLISECONDS);
+    }
+    return message;
+  }
+
+  /*
+   * Waits the usual receive timeout for the first message, then keeps receiving until the batch is
+   * full or maxBatchWaitMillis have passed since the first message arrived.
+   */
+  private List<Message> receiveBatch(final MessageConsumer consumer) throws JMSException {
+    List<Message> batch = new ArrayList<>(maxBatchMessages);
+    Message first = receiveFromConsumer(consumer, getReceiveTimeout());
+    if (first == null) {
+      return batch;
+    }
+    batch.add(first);
+
+    long deadline = System.currentTimeMillis() + maxBatchWaitMillis;
+    while (batch.size() < maxBatchMessages) {
+      long remaining = deadline - System.currentTimeMillis();
+      // A negative timeout only takes what the broker has already pushed to us
+      Message next = receiveFromConsumer(consumer, remaining > 0 ? remaining : -1);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+
+    return batch;
   }
 }
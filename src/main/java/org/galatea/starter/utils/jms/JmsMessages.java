@@ -0,0 +1,174 @@
+package org.galatea.starter.utils.jms;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.apache.activemq.ScheduledMessage;
+
+/**
+ * Header names and helpers shared by the components that move messages between queues.
+ */
+public final class JmsMessages {
+
+  /* Number of delayed redeliveries the message has been through */
+  public static final String RETRY_ATTEMPT = "FUSE_RETRY_ATTEMPT";
+
+  /* Queue the message was originally sent to, before it was redelivered or dead-lettered */
+  public static final String ORIGINAL_QUEUE = "FUSE_ORIGINAL_QUEUE";
+
+  public static final String FAILURE_EXCEPTION = "FUSE_FAILURE_EXCEPTION";
+
+  public static final String FAILURE_REASON = "FUSE_FAILURE_REASON";
+
+  /* Epoch millis of the last failure */
+  public static final String FAILED_AT = "FUSE_FAILED_AT";
+
+  /* Everything the redelivery of a failed message adds to it */
+  public static final Collection<String> FAILURE_PROPERTIES = Collections.unmodifiableList(
+      Arrays.asList(RETRY_ATTEMPT, ORIGINAL_QUEUE, FAILURE_EXCEPTION, FAILURE_REASON, FAILED_AT));
+
+  public static final String DEAD_LETTER_SUFFIX = ".DLQ";
+
+  /* Set to URGENT by producers to have the message consumed by the urgent listeners */
+  public static final String PRIORITY_LANE = "FUSE_PRIORITY_LANE";
+
+  public static final String URGENT = "urgent";
+
+  /* JMSX properties are set by the provider, except for these */
+  private static final String JMSX_PREFIX = "JMSX";
+  private static final String JMSX_GROUP_ID = "JMSXGroupID";
+  private static final String JMSX_GROUP_SEQ = "JMSXGroupSeq";
+
+  /* Scheduling properties of ActiveMQ. A copied job id would stop the copy from being scheduled */
+  private static final String SCHEDULED_PREFIX = "AMQ_SCHEDULED_";
+
+  private JmsMessages() {}
+
+  /**
+   * Returns the name of the queue the message was originally sent to, or null if it wasn't sent to
+   * a queue.
+   */
+  public static String originalQueue(final Message message) throws JMSException {
+    if (message.propertyExists(ORIGINAL_QUEUE)) {
+      return message.getStringProperty(ORIGINAL_QUEUE);
+    }
+    Destination destination = message.getJMSDestination();
+    return destination instanceof Queue ? ((Queue) destination).getQueueName() : null;
+  }
+
+  /**
+   * Returns the name of the dead letter queue of the given queue.
+   */
+  public static String deadLetterQueue(final String queueName) {
+    return queueName + DEAD_LETTER_SUFFIX;
+  }
+
+  /**
+   * Creates a copy of a received message in the given session: same body, properties, correlation
+   * id, reply-to and type. Properties set by the provider or the broker's scheduler are left out.
+   */
+  public static Message copy(final Message source, final Session session) throws JMSException {
+    return copy(source, session, Collections.emptySet());
+  }
+
+  /**
+   * Same as {@link #copy(Message, Session)}, but also leaves out the given properties.
+   */
+  public static Message copy(final Message source, final Session session,
+      final Collection<String> excludedProperties) throws JMSException {
+    return copyHeaders(source, copyBody(source, session), excludedProperties);
+  }
+
+  /**
+   * Sends a copy of a received message with the delivery mode and priority of the original, which
+   * the producer would otherwise replace with its own. The copy doesn't expire.
+   */
+  public static void sendCopy(final MessageProducer producer, final Message copy,
+      final Message source) throws JMSException {
+    producer.send(copy, source.getJMSDeliveryMode(), source.getJMSPriority(),
+        Message.DEFAULT_TIME_TO_LIVE);
+  }
+
+  /**
+   * Copies the properties, correlation id, reply-to and type of a message onto another one, e.g. a
+   * message with the same headers but a different body. Properties set by the provider or the
+   * broker's scheduler are left out.
+   *
+   * @return the target
+   */
+  public static <T extends Message> T copyHeaders(final Message source, final T target)
+      throws JMSException {
+    return copyHeaders(source, target, Collections.emptySet());
+  }
+
+  private static <T extends Message> T copyHeaders(final Message source, final T target,
+      final Collection<String> excludedProperties) throws JMSException {
+    Enumeration<?> names = source.getPropertyNames();
+    while (names.hasMoreElements()) {
+      String name = (String) names.nextElement();
+      if (isCopiedProperty(name) && !excludedProperties.contains(name)) {
+        target.setObjectProperty(name, source.getObjectProperty(name));
+      }
+    }
+
+    target.setJMSCorrelationID(source.getJMSCorrelationID());
+    target.setJMSReplyTo(source.getJMSReplyTo());
+    target.setJMSType(source.getJMSType());
+    return target;
+  }
+
+  private static Message copyBody(final Message source, final Session session)
+      throws JMSException {
+    if (source instanceof TextMessage) {
+      return session.createTextMessage(((TextMessage) source).getText());
+    }
+
+    if (source instanceof BytesMessage) {
+      // The listener may have read the body already
+      BytesMessage bytesSource = (BytesMessage) source;
+      bytesSource.reset();
+      byte[] body = new byte[(int) bytesSource.getBodyLength()];
+      bytesSource.readBytes(body);
+      BytesMessage copy = session.createBytesMessage();
+      copy.writeBytes(body);
+      return copy;
+    }
+
+    if (source instanceof MapMessage) {
+      MapMessage mapSource = (MapMessage) source;
+      MapMessage copy = session.createMapMessage();
+      Enumeration<?> names = mapSource.getMapNames();
+      while (names.hasMoreElements()) {
+        String name = (String) names.nextElement();
+        copy.setObject(name, mapSource.getObject(name));
+      }
+      return copy;
+    }
+
+    if (source instanceof ObjectMessage) {
+      Serializable body = ((ObjectMessage) source).getObject();
+      return session.createObjectMessage(body);
+    }
+
+    return session.createMessage();
+  }
+
+  private static boolean isCopiedProperty(final String name) {
+    if (name.startsWith(JMSX_PREFIX)) {
+      return JMSX_GROUP_ID.equals(name) || JMSX_GROUP_SEQ.equals(name);
+    }
+    return !name.startsWith(SCHEDULED_PREFIX) && !ScheduledMessage.AMQ_SCHEDULED_ID.equals(name);
+  }
+}
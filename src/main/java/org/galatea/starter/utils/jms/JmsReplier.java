@@ -0,0 +1,81 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+
+/**
+ * Sends replies to request messages: each reply goes to the request's JMSReplyTo and carries the
+ * request's JMSCorrelationID, or its JMSMessageID if it has none.
+ *
+ * <p>All the replies given in one call are sent through a single producer. Called from a listener,
+ * the template sends them on the listener's session, so they only go out if the requests are
+ * committed off their queue. That holds on the lanes of a partitioned container too, which expose
+ * the session of their batch. The session and producer come from the connection factory's cache
+ * rather than being created for every reply.
+ *
+ * <p>Replies to compressed requests are compressed the same way (see {@link PayloadCompression}).
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class JmsReplier {
+
+  @NonNull
+  private final JmsTemplate jmsTemplate;
+
+  @NonNull
+  private final PayloadCompression compression;
+
+  /**
+   * Returns whether the sender of the message asked for a reply.
+   */
+  public static boolean wantsReply(final Message request) throws JMSException {
+    return request.getJMSReplyTo() != null;
+  }
+
+  /**
+   * Sends a reply to the request.
+   */
+  public void reply(final Message request, final MessageCreator reply) {
+    replyAll(Collections.singletonMap(request, reply));
+  }
+
+  /**
+   * Sends a reply to each of the requests, in the order of the map.
+   *
+   * @param replies the reply to send for each request
+   */
+  public void replyAll(final Map<Message, MessageCreator> replies) {
+    if (replies.isEmpty()) {
+      return;
+    }
+
+    jmsTemplate.execute(session -> {
+      // Unidentified producer, since the replies may go to different destinations
+      try (MessageProducer producer = session.createProducer(null)) {
+        for (Map.Entry<Message, MessageCreator> entry : replies.entrySet()) {
+          Message request = entry.getKey();
+          Destination replyTo = request.getJMSReplyTo();
+          Message reply = entry.getValue().createMessage(session);
+          if (PayloadCompression.isCompressed(request)) {
+            reply = compression.compress(reply, session);
+          }
+          reply.setJMSCorrelationID(request.getJMSCorrelationID() != null
+              ? request.getJMSCorrelationID() : request.getJMSMessageID());
+          producer.send(replyTo, reply);
+        }
+      }
+      return null;
+    }, false);
+
+    log.debug("Sent {} reply(ies)", replies.size());
+  }
+}
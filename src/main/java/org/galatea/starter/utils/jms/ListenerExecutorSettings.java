@@ -0,0 +1,22 @@
+package org.galatea.starter.utils.jms;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Sizes the thread pool a {@link FuseMessageListenerContainer} runs its consumers on. Each consumer
+ * holds on to a thread for as long as it runs, so the pool should have at least as many threads as
+ * the container has consumers. Consumers beyond that wait in the queue for a thread to free up.
+ */
+@Builder
+@Value
+public class ListenerExecutorSettings {
+
+  int threads;
+
+  /* Consumers waiting for a thread */
+  int queueCapacity;
+
+  /* Between Thread.MIN_PRIORITY and Thread.MAX_PRIORITY */
+  int threadPriority;
+}
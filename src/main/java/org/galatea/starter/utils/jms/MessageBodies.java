@@ -0,0 +1,127 @@
+package org.galatea.starter.utils.jms;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.protobuf.CodedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.util.ByteSequence;
+
+/**
+ * Decodes message bodies straight from the buffer the provider received them into, rather than
+ * copying them into a byte[] (or String) first the way the listener adapters' converters do.
+ *
+ * <p>The body of a received ActiveMQ bytes message is read in place unless the broker compressed
+ * it. The bodies of other messages are copied as usual. Bodies that the producer compressed (see
+ * {@link PayloadCompression}) are decompressed first.
+ */
+public final class MessageBodies {
+
+  private MessageBodies() {}
+
+  /**
+   * Returns a protobuf input over the body of the message. The input reads the body in place, so
+   * it must be done with before the message is.
+   */
+  public static CodedInputStream codedInput(final BytesMessage message) throws JMSException,
+      IOException {
+    return codedInput(message, null);
+  }
+
+  /**
+   * Same as {@link #codedInput(BytesMessage)}, decompressing the body with the given compression
+   * if it is compressed.
+   */
+  public static CodedInputStream codedInput(final BytesMessage message,
+      final PayloadCompression compression) throws JMSException, IOException {
+    ByteSequence body = decompressed(message, compression);
+    return CodedInputStream.newInstance(body.getData(), body.getOffset(), body.getLength());
+  }
+
+  /**
+   * Returns a buffer over the body of the message, between its position and limit. Like
+   * {@link #codedInput(BytesMessage, PayloadCompression)}, the buffer reads the body in place, so
+   * it must be done with before the message is.
+   */
+  public static ByteBuffer byteBuffer(final BytesMessage message,
+      final PayloadCompression compression) throws JMSException, IOException {
+    ByteSequence body = decompressed(message, compression);
+    return ByteBuffer.wrap(body.getData(), body.getOffset(), body.getLength());
+  }
+
+  /**
+   * Binds the JSON body of a text or bytes message with the given reader. Bytes messages are taken
+   * to hold UTF-8.
+   */
+  public static <T> T readJson(final ObjectReader reader, final Message message)
+      throws JMSException, IOException {
+    return readJson(reader, message, null);
+  }
+
+  /**
+   * Same as {@link #readJson(ObjectReader, Message)}, decompressing the body with the given
+   * compression if it is compressed.
+   */
+  public static <T> T readJson(final ObjectReader reader, final Message message,
+      final PayloadCompression compression) throws JMSException, IOException {
+    if (message instanceof TextMessage && !PayloadCompression.isCompressed(message)) {
+      return reader.readValue(((TextMessage) message).getText());
+    }
+
+    if (message instanceof BytesMessage) {
+      ByteSequence body = decompressed((BytesMessage) message, compression);
+      return reader.readValue(body.getData(), body.getOffset(), body.getLength());
+    }
+
+    throw new MessageFormatException("Can't read JSON from a " + message.getClass().getName());
+  }
+
+  /*
+   * Without a compression to decompress with, compressed bodies are decompressed unmetered.
+   */
+  private static ByteSequence decompressed(final BytesMessage message,
+      final PayloadCompression compression) throws JMSException, IOException {
+    ByteSequence body = body(message);
+    if (!PayloadCompression.isCompressed(message)) {
+      return body;
+    }
+
+    PayloadCompression inflater = compression != null ? compression : PayloadCompression.UNMETERED;
+    return new ByteSequence(inflater.inflate(body.getData(), body.getOffset(), body.getLength()));
+  }
+
+  private static ByteSequence body(final BytesMessage message) throws JMSException {
+    ByteSequence content = rawContent(message);
+    return content != null ? content : new ByteSequence(copyBody(message));
+  }
+
+  /*
+   * A body that is still being written or was compressed by the broker has to go through the
+   * message's own read methods.
+   */
+  private static ByteSequence rawContent(final BytesMessage message) {
+    if (!(message instanceof ActiveMQBytesMessage)) {
+      return null;
+    }
+    ActiveMQBytesMessage activeMqMessage = (ActiveMQBytesMessage) message;
+    if (!activeMqMessage.isReadOnlyBody() || activeMqMessage.isCompressed()) {
+      return null;
+    }
+    return activeMqMessage.getContent();
+  }
+
+  /*
+   * Leaves the message reset, so that it can be read again.
+   */
+  private static byte[] copyBody(final BytesMessage message) throws JMSException {
+    byte[] body = new byte[(int) message.getBodyLength()];
+    message.readBytes(body);
+    message.reset();
+    return body;
+  }
+}
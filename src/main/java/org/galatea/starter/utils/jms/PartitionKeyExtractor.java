@@ -0,0 +1,20 @@
+package org.galatea.starter.utils.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Picks the key that a partitioned {@link FuseMessageListenerContainer} routes a message by when
+ * its producer didn't set a JMSXGroupID. Messages with equal keys are processed in the order they
+ * were received.
+ */
+@FunctionalInterface
+public interface PartitionKeyExtractor {
+
+  /**
+   * Returns the key of the message, or null if it has none. This runs on the consumer thread for
+   * every message, ahead of the lanes, so implementations should read no more of the message than
+   * they need to find its key rather than decode its whole body.
+   */
+  Object partitionKey(Message message) throws JMSException;
+}
@@ -0,0 +1,160 @@
+package org.galatea.starter.utils.jms;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deflate compression of message bodies. A compressed message is a bytes message whose
+ * {@value #CONTENT_ENCODING} property is {@value #DEFLATE}; the text of a compressed text message
+ * is sent as UTF-8.
+ *
+ * <p>The ratio of uncompressed to compressed size of every body that goes through here is
+ * published as the fuse.jms.compression.ratio summary, tagged by direction.
+ */
+@Slf4j
+@ToString(of = "minBytes")
+public class PayloadCompression {
+
+  public static final String CONTENT_ENCODING = "FUSE_CONTENT_ENCODING";
+
+  public static final String DEFLATE = "deflate";
+
+  /* For decompressing where nobody is interested in the ratio, e.g. to peek at a body */
+  static final PayloadCompression UNMETERED =
+      new PayloadCompression(Integer.MAX_VALUE, new SimpleMeterRegistry());
+
+  private static final int BUFFER_SIZE = 4096;
+
+  private final int minBytes;
+
+  private final DistributionSummary inboundRatio;
+
+  private final DistributionSummary outboundRatio;
+
+  /**
+   * Creates the compression and registers its metrics.
+   *
+   * @param minBytes bodies smaller than this are sent uncompressed
+   * @param meterRegistry registry that the compression ratio is published to
+   */
+  public PayloadCompression(final int minBytes, final MeterRegistry meterRegistry) {
+    this.minBytes = minBytes;
+    this.inboundRatio = ratio("inbound", meterRegistry);
+    this.outboundRatio = ratio("outbound", meterRegistry);
+  }
+
+  /**
+   * Returns whether the body of the message is compressed.
+   *
+   * @param message the received message, whose {@value #CONTENT_ENCODING} property is checked
+   * @return true if the body is Deflate-compressed, false if it isn't compressed at all
+   * @throws MessageFormatException if the body is encoded in a way we don't support
+   * @throws JMSException if the property can't be read
+   */
+  public static boolean isCompressed(final Message message)
+      throws MessageFormatException, JMSException {
+    String encoding = message.getStringProperty(CONTENT_ENCODING);
+    if (encoding == null) {
+      return false;
+    }
+    if (!DEFLATE.equalsIgnoreCase(encoding)) {
+      throw new MessageFormatException("Unsupported content encoding " + encoding);
+    }
+    return true;
+  }
+
+  /**
+   * Decompresses a received body.
+   */
+  public byte[] inflate(final byte[] data, final int offset, final int length)
+      throws ZipException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, offset, length);
+      ByteArrayOutputStream inflated = new ByteArrayOutputStream(Math.max(length * 4, 64));
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!inflater.finished()) {
+        int count = inflater.inflate(buffer);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new ZipException("Compressed body is truncated");
+        }
+        inflated.write(buffer, 0, count);
+      }
+      inboundRatio.record(inflated.size() / (double) Math.max(length, 1));
+      return inflated.toByteArray();
+    } catch (DataFormatException e) {
+      throw new ZipException("Compressed body is corrupt: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Returns a compressed copy of the text or bytes message, with the same properties and headers
+   * that replies carry. Other messages, and bodies smaller than minBytes, are returned as they are.
+   */
+  public Message compress(final Message message, final Session session) throws JMSException {
+    byte[] body;
+    if (message instanceof TextMessage) {
+      String text = ((TextMessage) message).getText();
+      body = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    } else if (message instanceof BytesMessage) {
+      BytesMessage bytesMessage = (BytesMessage) message;
+      bytesMessage.reset();
+      body = new byte[(int) bytesMessage.getBodyLength()];
+      bytesMessage.readBytes(body);
+    } else {
+      return message;
+    }
+
+    if (body.length < minBytes) {
+      return message;
+    }
+
+    byte[] deflated = deflate(body);
+    outboundRatio.record(body.length / (double) Math.max(deflated.length, 1));
+
+    BytesMessage compressed = JmsMessages.copyHeaders(message, session.createBytesMessage());
+    compressed.writeBytes(deflated);
+    compressed.setStringProperty(CONTENT_ENCODING, DEFLATE);
+    return compressed;
+  }
+
+  private static byte[] deflate(final byte[] body) {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(body);
+      deflater.finish();
+      ByteArrayOutputStream deflated = new ByteArrayOutputStream(body.length / 2 + 64);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!deflater.finished()) {
+        deflated.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return deflated.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static DistributionSummary ratio(final String direction,
+      final MeterRegistry meterRegistry) {
+    return DistributionSummary.builder("fuse.jms.compression.ratio").tag("direction", direction)
+        .description("Uncompressed size of message bodies over their compressed size")
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,61 @@
+package org.galatea.starter.utils.jms;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.TopicSubscriber;
+
+/**
+ * Lets several threads share a session, which JMS only allows one thread at a time to use. Calls
+ * to the shared session, and to the producers, consumers and browsers created from it, are made one
+ * at a time under a lock of the session.
+ */
+final class SharedSessions {
+
+  private SharedSessions() {}
+
+  /**
+   * Returns a view of the session that can be used from any thread. Views are only equal to
+   * themselves.
+   */
+  static Session share(final Session session) {
+    return (Session) lock(Session.class, session, new Object());
+  }
+
+  private static Object lock(final Class<?> type, final Object target, final Object lock) {
+    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+        (proxy, method, args) -> {
+          if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+            return proxy == args[0];
+          }
+          if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+            return System.identityHashCode(proxy);
+          }
+
+          Object result;
+          synchronized (lock) {
+            result = invoke(method, target, args);
+          }
+          return isShared(method.getReturnType()) && result != null
+              ? lock(method.getReturnType(), result, lock) : result;
+        });
+  }
+
+  private static boolean isShared(final Class<?> type) {
+    return type == MessageProducer.class || type == MessageConsumer.class
+        || type == QueueBrowser.class || type == TopicSubscriber.class;
+  }
+
+  private static Object invoke(final Method method, final Object target, final Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
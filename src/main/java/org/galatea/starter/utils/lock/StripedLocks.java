@@ -0,0 +1,154 @@
+package org.galatea.starter.utils.lock;
+
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.Runner;
+
+/**
+ * Hands out one of a fixed number of locks for a given key so that work on the same key is
+ * serialized in-process, while work on keys that map to different stripes runs in parallel.
+ *
+ * <p>Every lock acquisition is counted, and acquisitions that have to wait for another thread are
+ * counted and timed separately so that contention shows up in the metrics registry.
+ */
+@Slf4j
+@ToString(of = {"name", "stripeCount"})
+public class StripedLocks {
+
+  private final String name;
+
+  private final int stripeCount;
+
+  private final Striped<Lock> stripes;
+
+  private final Counter acquisitions;
+
+  private final Counter contendedAcquisitions;
+
+  private final Timer contendedWait;
+
+  /**
+   * Creates a set of lock stripes.
+   *
+   * @param name the name used to tag this set of stripes in the metrics registry
+   * @param stripeCount the minimum number of stripes. Guava rounds this up to a power of two.
+   * @param meterRegistry registry that acquisition and contention metrics are published to
+   */
+  public StripedLocks(final String name, final int stripeCount,
+      final MeterRegistry meterRegistry) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("Stripe count must be positive but was " + stripeCount);
+    }
+
+    this.name = name;
+    this.stripeCount = stripeCount;
+    this.stripes = Striped.lock(stripeCount);
+    this.acquisitions = Counter.builder("fuse.lock.acquisitions").tag("locks", name)
+        .description("Number of times a lock stripe was acquired").register(meterRegistry);
+    this.contendedAcquisitions = Counter.builder("fuse.lock.contended").tag("locks", name)
+        .description("Number of lock acquisitions that had to wait for another thread")
+        .register(meterRegistry);
+    this.contendedWait = Timer.builder("fuse.lock.wait").tag("locks", name)
+        .description("Time spent waiting for a contended lock stripe").register(meterRegistry);
+
+    log.info("Created {} lock stripes for {}", stripes.size(), name);
+  }
+
+  /**
+   * Returns the lock guarding the given key. Equal keys always map to the same lock.
+   */
+  public Lock get(@NonNull final Object key) {
+    return new InstrumentedLock(stripes.get(key));
+  }
+
+  /**
+   * Runs the operation while holding the lock for the given key, and returns its result.
+   */
+  public <T> T callLocked(@NonNull final Object key, final Supplier<T> op) {
+    AtomicReference<T> result = new AtomicReference<>();
+    Runner.of(() -> result.set(op.get())).lock(get(key)).taskName(name + "-" + key).run();
+    return result.get();
+  }
+
+  /**
+   * Runs the operation while holding the lock for the given key.
+   */
+  public void runLocked(@NonNull final Object key, final Runnable op) {
+    Runner.of(op).lock(get(key)).taskName(name + "-" + key).run();
+  }
+
+  /**
+   * Wraps a stripe so that we can tell contended acquisitions from uncontended ones. We try the
+   * lock without blocking first, and only start the timer if that fails.
+   */
+  @RequiredArgsConstructor
+  private class InstrumentedLock implements Lock {
+
+    private final Lock delegate;
+
+    @Override
+    public void lock() {
+      acquisitions.increment();
+      if (delegate.tryLock()) {
+        return;
+      }
+
+      contendedAcquisitions.increment();
+      long start = System.nanoTime();
+      delegate.lock();
+      contendedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      acquisitions.increment();
+      if (delegate.tryLock()) {
+        return;
+      }
+
+      contendedAcquisitions.increment();
+      long start = System.nanoTime();
+      delegate.lockInterruptibly();
+      contendedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean tryLock() {
+      boolean locked = delegate.tryLock();
+      if (locked) {
+        acquisitions.increment();
+      }
+      return locked;
+    }
+
+    @Override
+    public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+      boolean locked = delegate.tryLock(time, unit);
+      if (locked) {
+        acquisitions.increment();
+      }
+      return locked;
+    }
+
+    @Override
+    public void unlock() {
+      delegate.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+      return delegate.newCondition();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.galatea.starter.utils.rest;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.github.luben.zstd.util.Native;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The HTTP content codings that responses can be compressed with. Every compressing stream flushes
+ * what it has compressed so far when it is flushed, so streamed responses still reach the client as
+ * they are written. Closing one writes the end of the compressed data but leaves the stream it
+ * writes to open.
+ */
+@Slf4j
+public enum ContentCoding {
+  ZSTD("zstd") {
+    @Override
+    public OutputStream compress(final OutputStream out) throws IOException {
+      return new ZstdOutputStream(new KeepOpen(out), ZSTD_LEVEL);
+    }
+
+    @Override
+    public boolean isAvailable() {
+      try {
+        Native.load();
+        return true;
+      } catch (UnsatisfiedLinkError | RuntimeException e) {
+        log.warn("zstd is not available on this platform", e);
+        return false;
+      }
+    }
+  },
+  GZIP("gzip") {
+    @Override
+    public OutputStream compress(final OutputStream out) throws IOException {
+      return new GZIPOutputStream(new KeepOpen(out), BUFFER_SIZE, true);
+    }
+  },
+  DEFLATE("deflate") {
+    @Override
+    public OutputStream compress(final OutputStream out) {
+      // HTTP deflate is zlib-wrapped, which is what Deflater writes by default
+      Deflater deflater = new Deflater();
+      return new DeflaterOutputStream(new KeepOpen(out), deflater, BUFFER_SIZE, true) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // A Deflater that was passed in isn't ended by the stream
+            deflater.end();
+          }
+        }
+      };
+    }
+  };
+
+  /* Fast, with most of the ratio of the higher levels on the text formats we serve */
+  private static final int ZSTD_LEVEL = 3;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String token;
+
+  ContentCoding(final String token) {
+    this.token = token;
+  }
+
+  /**
+   * Returns the name of the coding in Accept-Encoding and Content-Encoding headers.
+   */
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * Returns a stream that compresses what is written to it into the given stream.
+   */
+  public abstract OutputStream compress(OutputStream out) throws IOException;
+
+  /**
+   * Returns whether responses can be compressed with this coding here.
+   */
+  public boolean isAvailable() {
+    return true;
+  }
+
+  /**
+   * Picks the coding to compress a response with, given the Accept-Encoding header of the request.
+   * That is the coding with the highest quality value the client gave it, or gave "*", of those
+   * that the client accepts. Ties go to the coding that comes first in the given order.
+   *
+   * @param acceptEncoding the Accept-Encoding header, or null if there is none
+   * @param codings the codings that the server may use, most preferred first
+   * @return the coding, or null if the response should not be compressed
+   */
+  public static ContentCoding negotiate(final String acceptEncoding,
+      final List<ContentCoding> codings) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    Map<String, Double> qualities = new HashMap<>();
+    for (String element : acceptEncoding.split(",")) {
+      String[] parts = element.split(";");
+      String name = parts[0].trim().toLowerCase(Locale.ROOT);
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String param = parts[i].trim();
+        if (param.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(param.substring(2));
+          } catch (NumberFormatException e) {
+            // Unparseable, so don't assume the client wants it
+            quality = 0;
+          }
+        }
+      }
+      if (!name.isEmpty()) {
+        qualities.put(name, quality);
+      }
+    }
+
+    ContentCoding chosen = null;
+    double chosenQuality = 0;
+    for (ContentCoding coding : codings) {
+      Double quality = qualities.getOrDefault(coding.token, qualities.get("*"));
+      if (quality != null && quality > chosenQuality) {
+        chosen = coding;
+        chosenQuality = quality;
+      }
+    }
+    return chosen;
+  }
+
+  /*
+   * Passes everything through but only flushes on close, so that finishing the compressed data
+   * leaves the response open for whoever owns it.
+   */
+  private static class KeepOpen extends FilterOutputStream {
+
+    KeepOpen(final OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
@@ -5,6 +5,8 @@ import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST
 import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.function.Predicate;
 import javax.servlet.FilterChain;
@@ -20,6 +22,9 @@ import org.slf4j.MDC;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
@@ -43,6 +48,10 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   @NonNull
   protected final Predicate<String> pathsToSkip;
 
+  /* Requests and responses of these types are streamed, so their bodies are never cached */
+  @NonNull
+  protected final List<MediaType> streamedMediaTypes;
+
   /**
    * Sadly we have to write our own constructor since lombok can't call super with args.
    *
@@ -52,8 +61,30 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
    */
   public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
       final Predicate<String> pathsToSkip) {
+    this(repository, tracer, pathsToSkip, Collections.emptyList());
+  }
+
+  /**
+   * Creates a filter that leaves request and response bodies of the given types alone.
+   *
+   * <p>Caching a body holds all of it in memory until the request completes. That would stop a
+   * streamed response from reaching the client before it is fully written, and would grow with the
+   * size of a streamed upload. Such requests are still traced and still get the audit headers, as
+   * long as the response hasn't been committed by the time the handler returns.
+   *
+   * @param streamedMediaTypes the types of bodies that are read and written as they go
+   */
+  public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
+      final Predicate<String> pathsToSkip, final List<MediaType> streamedMediaTypes) {
     super(repository, tracer);
     this.pathsToSkip = pathsToSkip;
+    this.streamedMediaTypes = streamedMediaTypes;
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    // A cached body of an async response is only complete once it's done
+    return false;
   }
 
   @Override
@@ -61,6 +92,17 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       final HttpServletResponse response, final FilterChain filterChain)
       throws ServletException, IOException {
 
+    // The exchange was traced and given its headers by the first dispatch. Async responses (e.g. a
+    // StreamingResponseBody) are written after that, so a cached body can only be sent now.
+    if (isAsyncDispatch(request)) {
+      try {
+        filterChain.doFilter(request, response);
+      } finally {
+        updateResponse(response);
+      }
+      return;
+    }
+
     // generate the internal request Id
     // we want positive numbers only, so use nextInt(upperBound)
     String internallyGeneratedId =
@@ -85,10 +127,12 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
 
     // We need to do this for the request and response since you can only read the stream that holds
     // the payload once
-    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)) {
+    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)
+        && !isStreamedType(request.getContentType())) {
       requestToUse = new ContentCachingRequestWrapper(request);
     }
-    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)) {
+    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)
+        && !isStreamedType(request.getHeader(HttpHeaders.ACCEPT))) {
       responseToUse = new ContentCachingResponseWrapper(response);
     }
 
@@ -105,11 +149,40 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       super.doFilterInternal(request, response, filterChain);
     } finally {
       addAuditHeaders(requestReceivedTime.toString(), response);
-      updateResponse(response);
+      // Otherwise the body is still being written, and is sent on the async dispatch
+      if (!request.isAsyncStarted()) {
+        updateResponse(response);
+      }
       MDC.clear();
     }
   }
 
+  /**
+   * Checks a Content-Type or Accept header against the streamed types.
+   */
+  private boolean isStreamedType(final String header) {
+    if (header == null || streamedMediaTypes.isEmpty()) {
+      return false;
+    }
+
+    try {
+      // Only an exact match counts, a client accepting */* gets a regular response
+      return MediaType.parseMediaTypes(header).stream().anyMatch(
+          type -> streamedMediaTypes.stream().anyMatch(streamed -> sameTypes(type, streamed)));
+    } catch (InvalidMediaTypeException e) {
+      log.debug("Could not parse the media types {}", header, e);
+      return false;
+    }
+  }
+
+  /*
+   * Compares the type and subtype only, so that parameters such as charset or q are ignored.
+   */
+  private static boolean sameTypes(final MediaType type, final MediaType other) {
+    return type.getType().equalsIgnoreCase(other.getType())
+        && type.getSubtype().equalsIgnoreCase(other.getSubtype());
+  }
+
   private void addAuditHeaders(final String requestReceivedTime,
       final HttpServletResponse response) {
     log.info("Attempting to add audit headers");
@@ -152,6 +225,9 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   private void updateResponse(final HttpServletResponse response) throws IOException {
     ContentCachingResponseWrapper responseWrapper =
         WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
-    responseWrapper.copyBodyToResponse();
+    // Streamed responses aren't wrapped, their body has gone out already
+    if (responseWrapper != null) {
+      responseWrapper.copyBodyToResponse();
+    }
   }
 }
@@ -0,0 +1,378 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Compresses response bodies with the best content coding that the client accepts
+ * (Accept-Encoding), as they are written. Nothing is held back beyond the first minBytes of a body:
+ * a body that ends before reaching that size is sent as it is, and any bigger body is compressed
+ * from then on. Flushes are held back until then too, after which they flush the compressed data.
+ *
+ * <p>Bodies of the excluded media types (e.g. spreadsheets and Parquet files, which are compressed
+ * already), bodies that already have a Content-Encoding, bodies whose Content-Length is below
+ * minBytes and the error pages of sendError are left alone, as are HEAD requests.
+ *
+ * <p>Runs inside FuseHttpTraceFilter. A response whose body that filter caches is compressed into
+ * the cache, so the cache only ever holds the compressed body and the Content-Length it sets is
+ * that of the compressed body. Streamed responses are compressed on their way to the client.
+ */
+@ToString
+@Slf4j
+public class ResponseCompressionFilter extends OncePerRequestFilter implements Ordered {
+
+  /* Inside the trace filter, which is at Ordered.LOWEST_PRECEDENCE - 10 */
+  public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 5;
+
+  private static final String RESPONSE_ATTRIBUTE =
+      ResponseCompressionFilter.class.getName() + ".RESPONSE";
+
+  @NonNull
+  private final List<ContentCoding> codings;
+
+  private final int minBytes;
+
+  @NonNull
+  private final List<MediaType> excludedMediaTypes;
+
+  /**
+   * Creates the filter.
+   *
+   * @param codings the codings to compress with, most preferred first. Those that aren't
+   *     available on this platform are left out.
+   * @param minBytes bodies smaller than this are sent uncompressed
+   * @param excludedMediaTypes the types of bodies that are never compressed. Wildcards are allowed.
+   */
+  public ResponseCompressionFilter(final List<ContentCoding> codings, final int minBytes,
+      final List<MediaType> excludedMediaTypes) {
+    this.codings = new ArrayList<>();
+    for (ContentCoding coding : codings) {
+      if (coding.isAvailable()) {
+        this.codings.add(coding);
+      }
+    }
+    this.minBytes = minBytes;
+    this.excludedMediaTypes = excludedMediaTypes;
+  }
+
+  @Override
+  public int getOrder() {
+    return ORDER;
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    // The body of an async response is only complete, and can only be finished, once it's done
+    return false;
+  }
+
+  @Override
+  protected void doFilterInternal(final HttpServletRequest request,
+      final HttpServletResponse response, final FilterChain filterChain)
+      throws ServletException, IOException {
+
+    CompressingResponse compressing = null;
+    if (isAsyncDispatch(request)) {
+      // The body was written to the response of the first dispatch
+      compressing = (CompressingResponse) request.getAttribute(RESPONSE_ATTRIBUTE);
+    } else if (!HttpMethod.HEAD.matches(request.getMethod())) {
+      // Caches must key compressible responses on the encoding the client accepts
+      response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      ContentCoding coding =
+          ContentCoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING), codings);
+      if (coding != null) {
+        compressing = new CompressingResponse(response, coding);
+        request.setAttribute(RESPONSE_ATTRIBUTE, compressing);
+      }
+    }
+
+    if (compressing == null) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    filterChain.doFilter(request, isAsyncDispatch(request) ? response : compressing);
+    if (!request.isAsyncStarted()) {
+      compressing.finish();
+    }
+  }
+
+  private boolean isExcluded(final String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    try {
+      MediaType type = MediaType.parseMediaType(contentType);
+      return excludedMediaTypes.stream().anyMatch(excluded -> excluded.includes(type));
+    } catch (InvalidMediaTypeException e) {
+      log.debug("Could not parse the media type {}", contentType, e);
+      return false;
+    }
+  }
+
+  /*
+   * Holds on to the start of the body, and its Content-Length, until it's known whether the body
+   * will be compressed.
+   */
+  private class CompressingResponse extends HttpServletResponseWrapper {
+
+    private final ContentCoding coding;
+
+    private CompressingOutputStream stream;
+
+    private PrintWriter writer;
+
+    private long contentLength = -1;
+
+    private boolean disabled;
+
+    CompressingResponse(final HttpServletResponse response, final ContentCoding coding) {
+      super(response);
+      this.coding = coding;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (stream == null) {
+        stream = new CompressingOutputStream(super.getOutputStream());
+      }
+      return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    @Override
+    public void setContentLength(final int len) {
+      setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(final long len) {
+      if (stream != null && stream.isCompressing()) {
+        return;
+      }
+      contentLength = len;
+      if (len < minBytes) {
+        disabled = true;
+      }
+      // Otherwise it's held back until the body is known to be sent as it is
+      if (disabled || (stream != null && stream.isDecided())) {
+        super.setContentLengthLong(len);
+      }
+    }
+
+    @Override
+    public void setHeader(final String name, final String value) {
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+        setContentLengthLong(Long.parseLong(value));
+      } else {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(final String name, final String value) {
+      if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && value != null) {
+        setContentLengthLong(Long.parseLong(value));
+      } else {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public void sendError(final int sc) throws IOException {
+      disabled = true;
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(final int sc, final String msg) throws IOException {
+      disabled = true;
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      // Committing the response would fix the headers before it's known whether to compress
+      if (stream == null || stream.isDecided()) {
+        if (stream != null) {
+          stream.flush();
+        }
+        super.flushBuffer();
+      }
+    }
+
+    @Override
+    public void resetBuffer() {
+      if (stream != null && !stream.isDecided()) {
+        stream.count = 0;
+      }
+      super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+      resetBuffer();
+      contentLength = -1;
+      super.reset();
+    }
+
+    void finish() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (stream != null) {
+        stream.finish();
+      } else if (contentLength >= 0 && !disabled) {
+        // Nothing was written, so the length that was held back can go out after all
+        super.setContentLengthLong(contentLength);
+      }
+    }
+
+    private boolean shouldCompress() {
+      return !disabled && !isCommitted() && getHeader(HttpHeaders.CONTENT_ENCODING) == null
+          && !isExcluded(getContentType());
+    }
+
+    private class CompressingOutputStream extends ServletOutputStream {
+
+      private final ServletOutputStream target;
+
+      private byte[] buffer = new byte[minBytes];
+
+      private int count;
+
+      /* Where the body goes once it's decided whether to compress it */
+      private OutputStream out;
+
+      private boolean compressing;
+
+      private boolean finished;
+
+      CompressingOutputStream(final ServletOutputStream target) {
+        this.target = target;
+      }
+
+      boolean isDecided() {
+        return out != null;
+      }
+
+      boolean isCompressing() {
+        return compressing;
+      }
+
+      @Override
+      public void write(final int b) throws IOException {
+        if (out == null && !disabled && count < buffer.length) {
+          buffer[count++] = (byte) b;
+          return;
+        }
+        decide(false);
+        out.write(b);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (out == null && !disabled && count + len <= buffer.length) {
+          System.arraycopy(b, off, buffer, count, len);
+          count += len;
+          return;
+        }
+        decide(false);
+        out.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        // Below the threshold, a flush may well be the last thing written before the end
+        if (out != null) {
+          out.flush();
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        finish();
+        target.close();
+      }
+
+      @Override
+      public boolean isReady() {
+        return target.isReady();
+      }
+
+      @Override
+      public void setWriteListener(final WriteListener writeListener) {
+        target.setWriteListener(writeListener);
+      }
+
+      /*
+       * Picks where the body goes, and writes out what has been held back. A body that has ended
+       * by now is too small to compress.
+       */
+      private void decide(final boolean ended) throws IOException {
+        if (out != null) {
+          return;
+        }
+
+        if (!ended && shouldCompress()) {
+          CompressingResponse.super.setHeader(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+          out = coding.compress(target);
+          compressing = true;
+        } else {
+          if (contentLength >= 0) {
+            CompressingResponse.super.setContentLengthLong(contentLength);
+          } else if (ended && !isCommitted()) {
+            CompressingResponse.super.setContentLengthLong(count);
+          }
+          out = target;
+        }
+        out.write(buffer, 0, count);
+        buffer = null;
+      }
+
+      void finish() throws IOException {
+        if (finished) {
+          return;
+        }
+        finished = true;
+        decide(true);
+        if (compressing) {
+          // Writes the end of the compressed data, leaving the target open
+          out.close();
+        } else {
+          out.flush();
+        }
+      }
+    }
+  }
+}
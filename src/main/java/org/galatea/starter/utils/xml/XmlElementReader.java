@@ -0,0 +1,95 @@
+package org.galatea.starter.utils.xml;
+
+import java.io.InputStream;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pulls the elements with a given name out of an XML document one at a time with StAX, binding
+ * each with JAXB as it is reached. Only the element being bound is ever held in memory, so
+ * documents of any size can be read. Everything else in the document (e.g. the root element) is
+ * skipped.
+ *
+ * <p>DTDs and external entities are not supported, so documents that declare them are rejected
+ * rather than resolved (no XXE). Not thread-safe: a reader is meant for one document.
+ *
+ * @param <T> the type the elements are bound to
+ */
+@Slf4j
+public class XmlElementReader<T> implements AutoCloseable {
+
+  private final XMLStreamReader reader;
+
+  private final Unmarshaller unmarshaller;
+
+  private final Class<T> type;
+
+  private final String elementName;
+
+  private long read;
+
+  /**
+   * Starts reading a document.
+   *
+   * @param in the document. It is not closed by the reader.
+   * @param context a JAXB context that knows the type
+   * @param type the type to bind the elements to
+   * @param elementName the local name of the elements to bind
+   */
+  public XmlElementReader(@NonNull final InputStream in, @NonNull final JAXBContext context,
+      @NonNull final Class<T> type, @NonNull final String elementName)
+      throws XMLStreamException, JAXBException {
+    this.reader = secureInputFactory().createXMLStreamReader(in);
+    this.unmarshaller = context.createUnmarshaller();
+    this.type = type;
+    this.elementName = elementName;
+  }
+
+  /**
+   * Binds the next element with the name, reading up to the end of it.
+   *
+   * @return the bound element, or null once the document has no more of them
+   */
+  public T next() throws XMLStreamException, JAXBException {
+    while (reader.hasNext()) {
+      if (reader.isStartElement() && elementName.equals(reader.getLocalName())) {
+        // Leaves the reader on the event after the end of the element
+        T element = unmarshaller.unmarshal(reader, type).getValue();
+        read++;
+        return element;
+      }
+      reader.next();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of elements bound so far.
+   */
+  public long getRead() {
+    return read;
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    log.debug("Read {} {} elements", read, elementName);
+    reader.close();
+  }
+
+  /*
+   * Factories aren't guaranteed to be thread-safe, so each reader gets its own. That is cheap next
+   * to the documents this is meant for.
+   */
+  private static XMLInputFactory secureInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+}
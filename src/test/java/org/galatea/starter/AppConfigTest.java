@@ -1,18 +1,27 @@
 package org.galatea.starter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.sf.ehcache.Cache;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
-@ContextConfiguration(classes = AppConfig.class)
+@ContextConfiguration(classes = {AppConfig.class, AppConfigTest.MetricsConfig.class})
 @RunWith(SpringRunner.class)
 @SpringBootTest
 public class AppConfigTest {
@@ -20,6 +29,22 @@ public class AppConfigTest {
     @Autowired
     CacheManager springCacheManager;
 
+    // Dependencies of the AppConfig beans that would otherwise come from auto-configuration
+    @MockBean
+    ISettlementMissionRpsy mockSettlementMissionRpsy;
+
+    @MockBean
+    PlatformTransactionManager mockTransactionManager;
+
+    @Configuration
+    static class MetricsConfig {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
     /**
      * Simple test to confirm that EhCache will be created/configured as expected.
      */
@@ -32,4 +57,13 @@ public class AppConfigTest {
         Cache springCacheHashMap = (Cache) springCache.getNativeCache();
         assertEquals(1200L, springCacheHashMap.getCacheConfiguration().getTimeToLiveSeconds());
     }
+
+    /**
+     * Puts and evictions made inside a transaction must wait for it to commit.
+     */
+    @Test
+    public void cacheManagerIsTransactionAware() {
+        assertTrue(springCacheManager.getCache("missions")
+            instanceof TransactionAwareCacheDecorator);
+    }
 }
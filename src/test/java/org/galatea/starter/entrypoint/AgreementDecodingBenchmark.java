@@ -0,0 +1,152 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.jms.MessageBodies;
+import org.galatea.starter.utils.jms.PayloadCompression;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jms.support.converter.SimpleMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Decoding cost of an agreement message the way the listener adapter used to hand it to the
+ * listeners (body copied into a String or byte[], JSON bound by the messaging converter) against
+ * the translators that decode the received body in place. Run the main method (from the IDE or
+ * with the test classpath) to get the time and, from the gc profiler, the bytes allocated per
+ * message (gc.alloc.rate.norm) of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgreementDecodingBenchmark {
+
+  private final SimpleMessageConverter jmsConverter = new SimpleMessageConverter();
+
+  private final MappingJackson2MessageConverter jsonConverter =
+      new MappingJackson2MessageConverter();
+
+  private ActiveMQBytesMessage protoMessage;
+
+  private ActiveMQTextMessage jsonTextMessage;
+
+  private ActiveMQBytesMessage jsonBytesMessage;
+
+  private ITranslator<byte[], TradeAgreement> copyingProtoTranslator;
+
+  private ITranslator<TradeAgreementMessage, TradeAgreement> agreementMessageTranslator;
+
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> protoTranslator;
+
+  private PayloadCompression compression;
+
+  private ITranslator<Message, List<TradeAgreement>> jsonTranslator;
+
+  /**
+   * Builds the received messages and the translators, the same way the app config does.
+   */
+  @Setup
+  public void setup() throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    compression = new PayloadCompression(256, new SimpleMeterRegistry());
+    String json = objectMapper.writeValueAsString(TradeAgreementMessage.builder()
+        .instrument("IBM").internalParty("INT-1").externalParty("EXT-1").buySell("B").qty(100d)
+        .build());
+
+    protoMessage = bytesMessage(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build().toByteArray());
+    jsonBytesMessage = bytesMessage(json.getBytes(StandardCharsets.UTF_8));
+    jsonTextMessage = new ActiveMQTextMessage();
+    jsonTextMessage.setText(json);
+
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+    copyingProtoTranslator = protoConfig.tradeAgreementBinaryProtobufTranslator(
+        protoConfig.tradeAgreementProtoTranslator());
+    protoTranslator = protoConfig.tradeAgreementProtoTranslator();
+
+    MessageTranslationConfig jsonConfig = new MessageTranslationConfig();
+    agreementMessageTranslator = jsonConfig.tradeAgreementMessageTranslator();
+    jsonTranslator = jsonConfig.tradeAgreementsJmsJsonTranslator(objectMapper,
+        agreementMessageTranslator, compression);
+  }
+
+  @Benchmark
+  public List<TradeAgreement> protoCopied() throws JMSException {
+    byte[] body = (byte[]) jmsConverter.fromMessage(protoMessage);
+    protoMessage.reset();
+    return Collections.singletonList(copyingProtoTranslator.translate(body));
+  }
+
+  /**
+   * Parses the body in place like the protobuf listeners do (see
+   * ProtoMessageTranslationConfig#tradeAgreementsJmsProtobufMissionTranslator), but stops at the
+   * TradeAgreement to compare like with like.
+   */
+  @Benchmark
+  public List<TradeAgreement> protoInPlace() throws JMSException, IOException {
+    return Collections.singletonList(protoTranslator.translate(TradeAgreementProtoMessage
+        .parseFrom(MessageBodies.codedInput(protoMessage, compression))));
+  }
+
+  @Benchmark
+  public List<TradeAgreement> jsonConverted() throws JMSException {
+    Object text = jmsConverter.fromMessage(jsonTextMessage);
+    TradeAgreementMessage agreementMessage = (TradeAgreementMessage) jsonConverter.fromMessage(
+        MessageBuilder.withPayload(text).build(), TradeAgreementMessage.class);
+    return Collections.singletonList(agreementMessageTranslator.translate(agreementMessage));
+  }
+
+  @Benchmark
+  public List<TradeAgreement> jsonTextWithCachedReader() {
+    return jsonTranslator.translate(jsonTextMessage);
+  }
+
+  @Benchmark
+  public List<TradeAgreement> jsonBytesInPlace() {
+    return jsonTranslator.translate(jsonBytesMessage);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AgreementDecodingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private static ActiveMQBytesMessage bytesMessage(final byte[] body) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(body);
+    message.reset();
+    return message;
+  }
+}
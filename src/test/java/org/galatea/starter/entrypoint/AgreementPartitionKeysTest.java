@@ -0,0 +1,100 @@
+package org.galatea.starter.entrypoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsEncoder;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+public class AgreementPartitionKeysTest {
+
+  private static final String JSON_QUEUE = "agreement.json";
+
+  private static final String PROTO_QUEUE = "agreement.proto";
+
+  private static final String SBE_QUEUE = "agreement.sbe";
+
+  private static final String JSON = "{\"qty\":100.0,\"parties\":{\"instrument\":\"AAPL\"},"
+      + "\"instrument\":\"IBM\",\"buySell\":\"B\"}";
+
+  private final AgreementPartitionKeys keys =
+      new AgreementPartitionKeys(new ObjectMapper(), JSON_QUEUE, SBE_QUEUE);
+
+  @Test
+  public void partitionKey_readsTopLevelInstrumentOfJsonText() throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText(JSON);
+    message.setJMSDestination(new ActiveMQQueue(JSON_QUEUE));
+
+    assertEquals("IBM", keys.partitionKey(message));
+  }
+
+  @Test
+  public void partitionKey_readsInstrumentOfJsonBytes() throws JMSException {
+    assertEquals("IBM", keys.partitionKey(
+        bytesMessage(JSON_QUEUE, JSON.getBytes(StandardCharsets.UTF_8), null)));
+  }
+
+  @Test
+  public void partitionKey_readsInstrumentOfProto() throws JMSException {
+    byte[] body = TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("AAPL")
+        .build().toByteArray();
+
+    assertEquals("AAPL", keys.partitionKey(bytesMessage(PROTO_QUEUE, body, null)));
+  }
+
+  @Test
+  public void partitionKey_readsFirstInstrumentOfWrappedProto() throws JMSException {
+    byte[] body = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("AAPL").build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build())
+        .build().toByteArray();
+
+    assertEquals("AAPL", keys.partitionKey(
+        bytesMessage(PROTO_QUEUE, body, SettlementJmsListener.AGREEMENTS_PROTO_TYPE)));
+  }
+
+  @Test
+  public void partitionKey_readsFirstInstrumentOfSbe() throws JMSException {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(2));
+    TradeAgreementsEncoder encoder = new TradeAgreementsEncoder().wrap(buffer, 0, 2);
+    for (String instrument : Arrays.asList("MSFT", "IBM")) {
+      encoder.add(instrument, "INT-1", "EXT-1", 'B', 100);
+    }
+
+    assertEquals("MSFT", keys.partitionKey(bytesMessage(SBE_QUEUE,
+        Arrays.copyOf(buffer.array(), encoder.encodedLength()), null)));
+  }
+
+  @Test
+  public void partitionKey_hasNoKeyForUnreadableBody() throws JMSException {
+    byte[] garbage = new byte[] {1, 2, 3, 4, 5, 6};
+
+    assertNull(keys.partitionKey(bytesMessage(JSON_QUEUE, garbage, null)));
+    assertNull(keys.partitionKey(bytesMessage(PROTO_QUEUE, garbage, null)));
+    assertNull(keys.partitionKey(bytesMessage(SBE_QUEUE, garbage, null)));
+  }
+
+  private static Message bytesMessage(final String queue, final byte[] body, final String type)
+      throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(body);
+    message.setJMSType(type);
+    message.setJMSDestination(new ActiveMQQueue(queue));
+    message.reset();
+    return message;
+  }
+}
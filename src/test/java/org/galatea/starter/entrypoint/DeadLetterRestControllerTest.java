@@ -0,0 +1,95 @@
+package org.galatea.starter.entrypoint;
+
+import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.restassured.module.mockmvc.RestAssuredMockMvc;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+public class DeadLetterRestControllerTest {
+
+  private static final String REPLAY_PATH = "/jms/deadLetters/replay/";
+
+  private final DeadLetterReplayer mockReplayer = Mockito.mock(DeadLetterReplayer.class);
+
+  @Before
+  public void setup() {
+    DeadLetterRestController controller = new DeadLetterRestController(mockReplayer);
+    ReflectionTestUtils.setField(controller, "jsonQueueName", "sandbox.agreement");
+    ReflectionTestUtils.setField(controller, "protoQueueName", "sandbox.agreement.proto");
+    ReflectionTestUtils.setField(controller, "sbeQueueName", "sandbox.agreement.sbe");
+    ReflectionTestUtils.setField(controller, "defaultMessagesPerSecond", 50d);
+
+    RestAssuredMockMvc.standaloneSetup(
+        MockMvcBuilders.standaloneSetup(controller)
+            .addPlaceholderValue("mvc.replayDeadLettersPath", REPLAY_PATH)
+            .setMessageConverters(new MappingJackson2HttpMessageConverter())
+            .setControllerAdvice(new RestExceptionHandler()));
+  }
+
+  @Test
+  public void testReplayDeadLetters() {
+    when(mockReplayer.replay("sandbox.agreement.proto", 10, 50d)).thenReturn(7);
+
+    given()
+        .when()
+        .post(REPLAY_PATH + "sandbox.agreement.proto?maxMessages=10")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("queue", is("sandbox.agreement.proto"))
+        .body("replayed", is(7));
+  }
+
+  @Test
+  public void testReplayDeadLettersWithRate() {
+    when(mockReplayer.replay("sandbox.agreement", 1000, 5d)).thenReturn(3);
+
+    given()
+        .when()
+        .post(REPLAY_PATH + "sandbox.agreement?messagesPerSecond=5")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("replayed", is(3));
+  }
+
+  @Test
+  public void testReplayDeadLettersSbeQueue() {
+    when(mockReplayer.replay("sandbox.agreement.sbe", 1000, 50d)).thenReturn(2);
+
+    given()
+        .when()
+        .post(REPLAY_PATH + "sandbox.agreement.sbe")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("queue", is("sandbox.agreement.sbe"))
+        .body("replayed", is(2));
+  }
+
+  @Test
+  public void testReplayDeadLettersUnknownQueue() {
+    given()
+        .when()
+        .post(REPLAY_PATH + "some.other.queue")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+
+    verify(mockReplayer, never()).replay(anyString(), anyInt(), anyDouble());
+  }
+}
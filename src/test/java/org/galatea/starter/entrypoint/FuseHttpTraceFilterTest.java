@@ -5,32 +5,48 @@ import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.BDDMockito.given;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Joiner;
 import com.google.common.collect.Sets;
 import io.restassured.RestAssured;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.http.Headers;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.response.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import junitparams.FileParameters;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.ParquetFiles;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.junit.Before;
@@ -44,6 +60,7 @@ import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -300,6 +317,93 @@ public class FuseHttpTraceFilterTest extends ASpringTest {
     verifyHeadersPresent(response);
   }
 
+  @Test
+  public void testStreamMissions_ProtobufDelimited() throws IOException {
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build());
+
+    BDDMockito.given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(missions);
+
+    Response response =
+        RestAssured.given()
+            .log().ifValidationFails()
+            .accept(MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+            .when()
+            .get("/settlementEngine/missions?ids=1,2&requestId=1234")
+            .then()
+            .statusCode(200)
+            .extract().response();
+
+    // The body isn't cached by the filter, so it must reach the client as written
+    InputStream body = new ByteArrayInputStream(response.asByteArray());
+    assertEquals(1L, SettlementMissionProtoMessage.parseDelimitedFrom(body).getId());
+    assertEquals(2L, SettlementMissionProtoMessage.parseDelimitedFrom(body).getId());
+    assertNull(SettlementMissionProtoMessage.parseDelimitedFrom(body));
+  }
+
+  @Test
+  public void testGetMissionsFound_Gzip() throws IOException {
+    List<SettlementMission> missions = new ArrayList<>();
+    List<Long> ids = new ArrayList<>();
+    for (long id = 1; id <= 50; id++) {
+      missions.add(TestDataGenerator.defaultSettlementMissionData().id(id).build());
+      ids.add(id);
+    }
+
+    BDDMockito.given(this.mockSettlementService.findMissions(ids))
+        .willReturn(missions);
+
+    Response response =
+        RestAssured.given()
+            .log().ifValidationFails()
+            // Read the body as it was sent
+            .config(RestAssuredConfig.config()
+                .decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+            .when()
+            .get("/settlementEngine/missions?ids=" + Joiner.on(',').join(ids)
+                + "&format=json&requestId=1234")
+            .then()
+            .statusCode(200)
+            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+            .extract().response();
+
+    verifyHeadersPresent(response);
+    // The cached body is the compressed one, so this is the length of what was sent
+    byte[] compressed = response.asByteArray();
+    assertEquals(String.valueOf(compressed.length),
+        response.getHeader(HttpHeaders.CONTENT_LENGTH));
+    String json = IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(compressed)),
+        StandardCharsets.UTF_8);
+    assertEquals(objectMapper.writeValueAsString(new SettlementMissionList(missions)), json);
+  }
+
+  @Test
+  public void testGetMissionsFound_PARQUET() throws IOException {
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build());
+
+    BDDMockito.given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(missions);
+
+    // Written asynchronously, after the filter has first returned
+    Response response =
+        RestAssured.given()
+            .log().ifValidationFails()
+            .when()
+            .get("/settlementEngine/missions?ids=1,2&format=parquet&requestId=1234")
+            .then()
+            .statusCode(200)
+            .extract().response();
+
+    verifyHeadersPresent(response);
+    assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(2, ParquetFiles.readRows(response.asByteArray()).size());
+  }
+
   /**
    * Verifies required audit fields are present
    */
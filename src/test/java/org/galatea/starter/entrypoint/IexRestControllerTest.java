@@ -2,21 +2,36 @@ package org.galatea.starter.entrypoint;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.List;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.parquet.example.data.Group;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexHistoricalPriceProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexHistoricalPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexLastTradedPriceProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.IexSymbolProtoMessages;
+import org.galatea.starter.testutils.ParquetFiles;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -38,6 +53,8 @@ import org.springframework.test.web.servlet.MvcResult;
 @RunWith(JUnitParamsRunner.class)
 public class IexRestControllerTest extends ASpringTest {
 
+  private static final String APPLICATION_X_PROTOBUF = "application/x-protobuf";
+
   @Autowired
   private MockMvc mvc;
 
@@ -56,6 +73,22 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetSymbolsProtobuf() throws Exception {
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get("/iex/symbols")
+            .accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    IexSymbolProtoMessages symbols =
+        IexSymbolProtoMessages.parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals("A", symbols.getMessage(0).getSymbol());
+    assertEquals("Agilent Technologies Inc.", symbols.getMessage(0).getName());
+    assertEquals("2", symbols.getMessage(0).getIexId());
+    assertEquals("AA", symbols.getMessage(1).getSymbol());
+  }
+
   @Test
   public void testGetLastTradedPrice() throws Exception {
 
@@ -71,6 +104,42 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetLastTradedPriceSmile() throws Exception {
+
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/lastTradedPrice?symbols=FB&format=smile"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MvcConfig.APPLICATION_SMILE))
+        .andReturn();
+
+    JsonNode prices = new ObjectMapper(new SmileFactory())
+        .readTree(result.getResponse().getContentAsByteArray());
+    assertEquals("FB", prices.get(0).get("symbol").asText());
+    assertEquals(new BigDecimal("186.3011"), prices.get(0).get("price").decimalValue());
+  }
+
+  @Test
+  public void testGetLastTradedPriceProtobuf() throws Exception {
+
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/lastTradedPrice?symbols=FB")
+            .accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    IexLastTradedPriceProtoMessages prices =
+        IexLastTradedPriceProtoMessages.parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(4, prices.getPriceScale());
+    assertEquals("FB", prices.getMessage(0).getSymbol());
+    // 186.3011 scaled by four decimal places
+    assertEquals(1863011L, prices.getMessage(0).getPrice());
+    assertEquals(100, prices.getMessage(0).getSize());
+    assertEquals(1565273330617L, prices.getMessage(0).getTime());
+  }
+
   @Test
   public void testGetLastTradedPriceEmpty() throws Exception {
 
@@ -101,6 +170,61 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetHistoricalPricesProtobuf() throws Exception {
+
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbol=FB&range=date&date=20211018")
+            .accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    IexHistoricalPriceProtoMessages prices =
+        IexHistoricalPriceProtoMessages.parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(4, prices.getPriceScale());
+    IexHistoricalPriceProtoMessage price = prices.getMessage(0);
+    assertEquals("FB", price.getSymbol());
+    assertEquals("2021-10-18", price.getDate());
+    assertEquals(3353400L, price.getClose());
+    assertEquals(3358900L, price.getHigh());
+    assertEquals(3275000L, price.getLow());
+    assertEquals(3289500L, price.getOpen());
+    assertEquals(21585018L, price.getVolume());
+  }
+
+  @Test
+  public void testGetHistoricalPricesCsv() throws Exception {
+
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbol=FB&range=date&date=20211018&format=csv"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MvcConfig.TEXT_CSV))
+        .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=IexHistoricalPrices.csv"))
+        .andExpect(content().string(
+            "symbol,date,open,low,high,close,volume\n"
+            + "FB,2021-10-18,328.95,327.5,335.89,335.34,21585018\n"));
+  }
+
+  @Test
+  public void testGetHistoricalPricesParquet() throws Exception {
+
+    MvcResult result = this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/historicalPrices?symbol=FB&range=date&date=20211018&format=parquet"))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MvcConfig.APPLICATION_PARQUET))
+        .andReturn();
+
+    List<Group> prices = ParquetFiles.readRows(result.getResponse().getContentAsByteArray());
+    assertEquals("FB", prices.get(0).getString("symbol", 0));
+    assertEquals(335.34, prices.get(0).getDouble("close", 0), 0);
+    assertEquals(21585018, prices.get(0).getInteger("volume", 0));
+    assertEquals("2021-10-18", prices.get(0).getString("date", 0));
+  }
+
   @Test
   public void testGetHistoricalPricesEmptySymbol() throws Exception {
 
@@ -0,0 +1,110 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Cost of writing and reading a large mission list, as the getMissions endpoint returns it, in
+ * JSON against the binary JSON formats (Smile and CBOR). The object mappers are built the way the
+ * message converters in MvcConfig build theirs. Run the main method (from the IDE or with the test
+ * classpath) to print the encoded size of the list in each format and then get the time and, from
+ * the gc profiler, the bytes allocated per list (gc.alloc.rate.norm) of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MissionListEncodingBenchmark {
+
+  private static final int MISSIONS = 1000;
+
+  @Param({"json", "smile", "cbor"})
+  private String format;
+
+  private SettlementMissionList missions;
+
+  private ObjectWriter writer;
+
+  private ObjectReader reader;
+
+  private byte[] encoded;
+
+  /**
+   * Builds the mission list and encodes it once, so there is something to read.
+   */
+  @Setup
+  public void setup() throws IOException {
+    missions = missionList();
+    ObjectMapper mapper = objectMapper(format);
+    writer = mapper.writerFor(SettlementMissionList.class);
+    reader = mapper.readerFor(SettlementMissionList.class);
+    encoded = writer.writeValueAsBytes(missions);
+  }
+
+  @Benchmark
+  public byte[] write() throws IOException {
+    return writer.writeValueAsBytes(missions);
+  }
+
+  @Benchmark
+  public SettlementMissionList read() throws IOException {
+    return reader.readValue(encoded);
+  }
+
+  public static void main(final String[] args) throws IOException, RunnerException {
+    SettlementMissionList missions = missionList();
+    for (String format : new String[] {"json", "smile", "cbor"}) {
+      System.out.printf("%s: %d bytes for %d missions%n", format,
+          objectMapper(format).writeValueAsBytes(missions).length, MISSIONS);
+    }
+
+    new Runner(new OptionsBuilder().include(MissionListEncodingBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private static ObjectMapper objectMapper(final String format) {
+    switch (format) {
+      case "smile":
+        return Jackson2ObjectMapperBuilder.smile().build();
+      case "cbor":
+        return Jackson2ObjectMapperBuilder.cbor().build();
+      default:
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+  }
+
+  private static SettlementMissionList missionList() {
+    List<SettlementMission> missions = new ArrayList<>(MISSIONS);
+    for (long id = 0; id < MISSIONS; id++) {
+      missions.add(TestDataGenerator.defaultSettlementMissionData().id(id)
+          .instrument("INS" + id).qty(id + 0.5).build());
+    }
+    return new SettlementMissionList(missions);
+  }
+}
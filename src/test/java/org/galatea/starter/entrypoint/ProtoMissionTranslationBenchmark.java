@@ -0,0 +1,111 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of turning protobuf agreements into missions the way the REST and JMS proto endpoints used
+ * to (agreement messages translated to TradeAgreements, validated by the service and transformed
+ * into missions) against the fused translator that builds the missions straight from the
+ * messages. Both include validation. Run the main method (from the IDE or with the test classpath)
+ * to get the time and, from the gc profiler, the bytes allocated per agreement
+ * (gc.alloc.rate.norm) of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtoMissionTranslationBenchmark {
+
+  private static final int AGREEMENTS = 100;
+
+  private List<TradeAgreementProtoMessage> messages;
+
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> agreementTranslator;
+
+  private IAgreementTransformer agreementTransformer;
+
+  private Validator validator;
+
+  private ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>> missionTranslator;
+
+  /**
+   * Builds the messages, parsed from the wire like the endpoints get them, and the translators the
+   * same way the app config does.
+   */
+  @Setup
+  public void setup() throws Exception {
+    TradeAgreementProtoMessages.Builder builder = TradeAgreementProtoMessages.newBuilder();
+    for (int i = 0; i < AGREEMENTS; i++) {
+      builder.addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+          .setInstrument("INS" + i).setQty(i + 1));
+    }
+    messages = TradeAgreementProtoMessages.parseFrom(builder.build().toByteArray())
+        .getMessageList();
+
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+    agreementTranslator = protoConfig.tradeAgreementProtoTranslator();
+    agreementTransformer = new AppConfig().agreementTransformer();
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+    missionTranslator = protoConfig.tradeAgreementProtoMissionTranslator(
+        protoConfig.agreementConstraints(validator));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AGREEMENTS)
+  public List<SettlementMission> viaTradeAgreements() {
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (TradeAgreementProtoMessage message : messages) {
+      agreements.add(agreementTranslator.translate(message));
+    }
+
+    List<SettlementMission> missions = new ArrayList<>(agreements.size());
+    for (TradeAgreement agreement : agreements) {
+      if (!validator.validate(agreement).isEmpty()) {
+        throw new IllegalStateException("Invalid agreement " + agreement);
+      }
+      missions.add(agreementTransformer.transform(agreement));
+    }
+    return missions;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AGREEMENTS)
+  public List<SettlementMission> fused() {
+    return missionTranslator.translate(messages);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ProtoMissionTranslationBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
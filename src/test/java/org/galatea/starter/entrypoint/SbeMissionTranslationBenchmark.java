@@ -0,0 +1,157 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.SbeMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsEncoder;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema;
+import org.galatea.starter.service.AgreementConstraints;
+import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.jms.PayloadCompression;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of turning a received batch of agreements into missions from each of the wire formats:
+ * JSON (bound to TradeAgreementMessages, translated, validated and transformed), protobuf (parsed
+ * and run through the fused translator) and the fixed-layout binary encoding (decoded in place by
+ * the SBE translator). All three start from the raw bytes and include validation. Run the main
+ * method (from the IDE or with the test classpath) to get the time and, from the gc profiler, the
+ * bytes allocated per agreement (gc.alloc.rate.norm) of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SbeMissionTranslationBenchmark {
+
+  private static final int AGREEMENTS = 100;
+
+  private byte[] json;
+
+  private byte[] proto;
+
+  private ByteBuffer sbe;
+
+  private ObjectReader jsonReader;
+
+  private ITranslator<TradeAgreementMessages, List<TradeAgreement>> jsonTranslator;
+
+  private IAgreementTransformer agreementTransformer;
+
+  private Validator validator;
+
+  private ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+      protoMissionTranslator;
+
+  private ITranslator<ByteBuffer, List<SettlementMission>> sbeMissionTranslator;
+
+  /**
+   * Encodes the same agreements in each format, and builds the translators the same way the app
+   * config does.
+   */
+  @Setup
+  public void setup() throws Exception {
+    TradeAgreementMessages.TradeAgreementMessagesBuilder jsonBuilder =
+        TradeAgreementMessages.builder();
+    TradeAgreementProtoMessages.Builder protoBuilder = TradeAgreementProtoMessages.newBuilder();
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(AGREEMENTS));
+    TradeAgreementsEncoder encoder = new TradeAgreementsEncoder().wrap(buffer, 0, AGREEMENTS);
+    for (int i = 0; i < AGREEMENTS; i++) {
+      TradeAgreementProtoMessage message = TestDataGenerator
+          .defaultTradeAgreementProtoMessageData().setInstrument("INS" + i).setQty(i + 1).build();
+      jsonBuilder.agreement(TradeAgreementMessage.builder().instrument(message.getInstrument())
+          .internalParty(message.getInternalParty()).externalParty(message.getExternalParty())
+          .buySell(message.getBuySell()).qty(message.getQty()).build());
+      protoBuilder.addMessage(message);
+      encoder.add(message.getInstrument(), message.getInternalParty(),
+          message.getExternalParty(), message.getBuySell().charAt(0), message.getQty());
+    }
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    json = objectMapper.writeValueAsBytes(jsonBuilder.build());
+    proto = protoBuilder.build().toByteArray();
+    sbe = ByteBuffer.wrap(buffer.array(), 0, encoder.encodedLength()).slice();
+
+    MessageTranslationConfig jsonConfig = new MessageTranslationConfig();
+    jsonReader = objectMapper.readerFor(TradeAgreementMessages.class);
+    jsonTranslator = jsonConfig.tradeAgreementMessagesTranslator(
+        jsonConfig.tradeAgreementMessageTranslator(),
+        new PayloadCompression(256, new SimpleMeterRegistry()));
+    agreementTransformer = new AppConfig().agreementTransformer();
+    validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+    AgreementConstraints constraints = protoConfig.agreementConstraints(validator);
+    protoMissionTranslator = protoConfig.tradeAgreementProtoMissionTranslator(constraints);
+    sbeMissionTranslator =
+        new SbeMessageTranslationConfig().tradeAgreementSbeMissionTranslator(constraints);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AGREEMENTS)
+  public List<SettlementMission> json() throws IOException {
+    List<TradeAgreement> agreements = jsonTranslator.translate(jsonReader.readValue(json));
+
+    List<SettlementMission> missions = new ArrayList<>(agreements.size());
+    for (TradeAgreement agreement : agreements) {
+      if (!validator.validate(agreement).isEmpty()) {
+        throw new IllegalStateException("Invalid agreement " + agreement);
+      }
+      missions.add(agreementTransformer.transform(agreement));
+    }
+    return missions;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AGREEMENTS)
+  public List<SettlementMission> proto() throws IOException {
+    return protoMissionTranslator.translate(
+        TradeAgreementProtoMessages.parseFrom(proto).getMessageList());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(AGREEMENTS)
+  public List<SettlementMission> sbe() {
+    return sbeMissionTranslator.translate(sbe);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SbeMissionTranslationBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
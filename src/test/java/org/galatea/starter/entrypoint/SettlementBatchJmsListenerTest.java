@@ -0,0 +1,228 @@
+package org.galatea.starter.entrypoint;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+
+/*
+ * The base class shuts the listener containers down after each test, so every test gets a fresh
+ * context (see SettlementJmsListenerTest).
+ */
+@Slf4j
+@SpringBootTest
+@TestPropertySource(properties = "jms.batch.enabled=true")
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class SettlementBatchJmsListenerTest extends ASpringTest {
+
+  @Autowired
+  protected JmsTemplate jmsTemplate;
+
+  @Autowired
+  protected SettlementBatchJmsListener listener;
+
+  @MockBean
+  private SettlementService mockSettlementService;
+
+  @MockBean(name = "failedMessageConsumer")
+  private BiConsumer<Message, Exception> mockFailedMessageConsumer;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Test
+  public void testSettleAgreementsFromQueue() {
+    List<TradeAgreement> settled = new CopyOnWriteArrayList<>();
+    given(mockSettlementService.spawnMissionIds(any())).willAnswer(invocation -> {
+      settled.addAll(invocation.getArgument(0));
+      return Collections.emptyList();
+    });
+
+    Set<TradeAgreement> expected = new HashSet<>();
+    for (String instrument : Arrays.asList("IBM", "AAPL", "MSFT")) {
+      expected.add(TestDataGenerator.defaultTradeAgreementData().instrument(instrument).build());
+      jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(json(instrument)));
+    }
+
+    // However the messages were batched, every agreement must be settled exactly once
+    await().atMost(10, TimeUnit.SECONDS).until(() -> settled.size() >= expected.size());
+    assertEquals(expected.size(), settled.size());
+    assertEquals(expected, new HashSet<>(settled));
+  }
+
+  @Test
+  public void testSettleAgreementsJsonInOneCall() throws JMSException {
+    List<Message> messages = Arrays.asList(textMessage(json("IBM")), textMessage(json("AAPL")));
+
+    listener.settleAgreementsJson(messages, null);
+
+    verify(mockSettlementService).spawnMissionIds(Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build()));
+    verify(mockFailedMessageConsumer, never()).accept(any(), any());
+  }
+
+  @Test
+  public void testSettleAgreementsProtoInOneCall() throws JMSException {
+    List<Message> messages = Arrays.asList(bytesMessage("IBM"), bytesMessage("AAPL"));
+
+    listener.settleAgreementsProto(messages, null);
+
+    verify(mockSettlementService).spawnTransformedMissions(
+        Arrays.asList(mission("IBM"), mission("AAPL")));
+  }
+
+  @Test
+  public void testSettleWrappedProtoWithRestOfBatch() throws JMSException {
+    ActiveMQBytesMessage wrapped = new ActiveMQBytesMessage();
+    wrapped.writeBytes(TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("AAPL").build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("MSFT").build())
+        .build().toByteArray());
+    wrapped.setJMSType(SettlementJmsListener.AGREEMENTS_PROTO_TYPE);
+    wrapped.reset();
+
+    listener.settleAgreementsProto(Arrays.asList(bytesMessage("IBM"), wrapped), null);
+
+    verify(mockSettlementService).spawnTransformedMissions(
+        Arrays.asList(mission("IBM"), mission("AAPL"), mission("MSFT")));
+    verify(mockFailedMessageConsumer, never()).accept(any(), any());
+  }
+
+  @Test
+  public void testInvalidProtoLeftOutOfBatch() throws JMSException {
+    ActiveMQBytesMessage invalid = new ActiveMQBytesMessage();
+    invalid.writeBytes(TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("X")
+        .build().toByteArray());
+    invalid.reset();
+
+    listener.settleAgreementsProto(Arrays.asList(bytesMessage("IBM"), invalid), null);
+
+    // Missions are validated as they are translated, so the invalid one never reaches the batch
+    verify(mockSettlementService).spawnTransformedMissions(
+        Collections.singletonList(mission("IBM")));
+    verify(mockFailedMessageConsumer).accept(same(invalid),
+        any(ConstraintViolationException.class));
+  }
+
+  @Test
+  public void testPoisonMessageLeftOutOfBatch() throws JMSException {
+    Message poison = textMessage("{not json");
+    List<Message> messages = Arrays.asList(textMessage(json("IBM")), poison);
+
+    listener.settleAgreementsJson(messages, null);
+
+    verify(mockSettlementService).spawnMissionIds(Collections.singletonList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build()));
+    verify(mockFailedMessageConsumer).accept(same(poison), any());
+  }
+
+  @Test
+  public void testFailedBatchSettledOneAtATime() throws JMSException {
+    TradeAgreement good = TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build();
+    TradeAgreement bad = TestDataGenerator.defaultTradeAgreementData().instrument("BAD").build();
+    Message badMessage = textMessage(json("BAD"));
+
+    given(mockSettlementService.spawnMissionIds(Arrays.asList(good, bad)))
+        .willThrow(new ConstraintViolationException("bad agreement", null));
+    given(mockSettlementService.spawnMissionIds(Collections.singletonList(bad)))
+        .willThrow(new ConstraintViolationException("bad agreement", null));
+
+    listener.settleAgreementsJson(Arrays.asList(textMessage(json("IBM")), badMessage), null);
+
+    verify(mockSettlementService).spawnMissionIds(Collections.singletonList(good));
+    verify(mockFailedMessageConsumer).accept(same(badMessage),
+        any(ConstraintViolationException.class));
+  }
+
+  @Test
+  public void testRepliesSentForBatch() throws Exception {
+    ActiveMQQueue replyTo = new ActiveMQQueue("batch.replies");
+    Message ibm = textMessage(json("IBM"));
+    ibm.setJMSReplyTo(replyTo);
+    ibm.setJMSCorrelationID("ibm-request");
+    Message poison = textMessage("{not json");
+    poison.setJMSReplyTo(replyTo);
+    poison.setJMSCorrelationID("poison-request");
+    Message noReply = textMessage(json("AAPL"));
+
+    given(mockSettlementService.spawnMissionIds(any())).willReturn(Arrays.asList(11L, 12L));
+
+    listener.settleAgreementsJson(Arrays.asList(ibm, poison, noReply), null);
+
+    jmsTemplate.setReceiveTimeout(5000);
+    Map<String, String> replies = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      Message reply = jmsTemplate.receive(replyTo);
+      replies.put(reply.getJMSCorrelationID(), ((TextMessage) reply).getText());
+    }
+
+    assertEquals("{\"spawnedMissions\":[\"/settlementEngine/mission/11\"]}",
+        replies.get("ibm-request"));
+    assertTrue(replies.get("poison-request").contains("\"error\""));
+    verify(mockFailedMessageConsumer, never()).accept(any(), any());
+  }
+
+  private static SettlementMission mission(final String instrument) {
+    return TestDataGenerator.defaultSettlementMissionData().id(null).instrument(instrument).build();
+  }
+
+  private static String json(final String instrument) {
+    return "{\"instrument\":\"" + instrument + "\",\"internalParty\":\"INT-1\","
+        + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100.0}";
+  }
+
+  private static Message textMessage(final String text) throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText(text);
+    return message;
+  }
+
+  private static Message bytesMessage(final String instrument) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+        .setInstrument(instrument).build().toByteArray());
+    message.reset();
+    return message;
+  }
+}
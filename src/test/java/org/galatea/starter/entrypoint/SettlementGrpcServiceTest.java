@@ -0,0 +1,240 @@
+package org.galatea.starter.entrypoint;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionChangeProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionChangeProtoMessage.ChangeType;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdsProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementEngineGrpc;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementEngineGrpc.SettlementEngineBlockingStub;
+import org.galatea.starter.service.AgreementConstraints;
+import org.galatea.starter.service.MissionChange;
+import org.galatea.starter.service.MissionChangePublisher;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for the gRPC service, called through an in-process server and channel.
+ */
+public class SettlementGrpcServiceTest {
+
+  private static final String GET_MISSION_PATH = "/settlementEngine/mission/";
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private final MissionChangePublisher publisher = new MissionChangePublisher(registry);
+
+  private final SettlementService mockSettlementService = Mockito.mock(SettlementService.class);
+
+  private Server server;
+
+  private ManagedChannel channel;
+
+  private SettlementEngineBlockingStub blockingStub;
+
+  @Before
+  public void setup() throws Exception {
+    ProtoMessageTranslationConfig translationConfig = new ProtoMessageTranslationConfig();
+    SettlementGrpcService service = new SettlementGrpcService(mockSettlementService, publisher,
+        translationConfig.tradeAgreementProtoMissionTranslator(new AgreementConstraints(
+            Validation.buildDefaultValidatorFactory().getValidator())),
+        translationConfig.settlementMissionProtoTranslator());
+    ReflectionTestUtils.setField(service, "getMissionPath", GET_MISSION_PATH);
+    ReflectionTestUtils.setField(service, "agreementsChunkSize", 2);
+    ReflectionTestUtils.setField(service, "missionsChunkSize", 2);
+    ReflectionTestUtils.setField(service, "changeBufferSize", 100);
+
+    String name = "settlement-engine-" + UUID.randomUUID();
+    server = InProcessServerBuilder.forName(name).addService(service).build().start();
+    channel = InProcessChannelBuilder.forName(name).build();
+    blockingStub = SettlementEngineGrpc.newBlockingStub(channel);
+  }
+
+  @After
+  public void tearDown() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+
+  @Test
+  public void testSettle() {
+    given(mockSettlementService.spawnTransformedMissions(anyList()))
+        .willReturn(Arrays.asList(1L, 2L));
+
+    SettlementResponseProtoMessage response = blockingStub.settle(agreements(2));
+
+    assertEquals(Arrays.asList(GET_MISSION_PATH + 1, GET_MISSION_PATH + 2),
+        response.getSpawnedMissionPathsList());
+  }
+
+  @Test
+  public void testSettleInvalidAgreement() {
+    TradeAgreementProtoMessages request = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("X"))
+        .build();
+
+    try {
+      blockingStub.settle(request);
+      fail("The invalid agreement should have been rejected");
+    } catch (StatusRuntimeException e) {
+      assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+    }
+    Mockito.verify(mockSettlementService, Mockito.never()).spawnTransformedMissions(anyList());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSettleStream() throws Exception {
+    given(mockSettlementService.spawnTransformedMissions(anyList()))
+        .willReturn(Arrays.asList(1L, 2L), Collections.singletonList(3L));
+
+    CompletableFuture<SettlementResponseProtoMessage> response = new CompletableFuture<>();
+    StreamObserver<TradeAgreementProtoMessage> requests =
+        SettlementEngineGrpc.newStub(channel).settleStream(futureObserver(response));
+    agreements(3).getMessageList().forEach(requests::onNext);
+    requests.onCompleted();
+
+    assertEquals(Arrays.asList(GET_MISSION_PATH + 1, GET_MISSION_PATH + 2, GET_MISSION_PATH + 3),
+        response.get(5, TimeUnit.SECONDS).getSpawnedMissionPathsList());
+
+    // The agreements are settled a chunk at a time
+    ArgumentCaptor<List<SettlementMission>> chunks = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(mockSettlementService, Mockito.times(2))
+        .spawnTransformedMissions(chunks.capture());
+    assertEquals(2, chunks.getAllValues().get(0).size());
+    assertEquals(1, chunks.getAllValues().get(1).size());
+  }
+
+  @Test
+  public void testGetMission() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(7L).build();
+    given(mockSettlementService.findMission(7L)).willReturn(Optional.of(mission));
+
+    SettlementMissionProtoMessage message =
+        blockingStub.getMission(MissionIdProtoMessage.newBuilder().setId(7L).build());
+
+    assertEquals(7L, message.getId());
+    assertEquals(mission.getInstrument(), message.getInstrument());
+  }
+
+  @Test
+  public void testGetMissionNotFound() {
+    given(mockSettlementService.findMission(7L)).willReturn(Optional.empty());
+
+    try {
+      blockingStub.getMission(MissionIdProtoMessage.newBuilder().setId(7L).build());
+      fail("An unknown mission should not have been found");
+    } catch (StatusRuntimeException e) {
+      assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+    }
+  }
+
+  @Test
+  public void testGetMissions() {
+    given(mockSettlementService.findMissions(Arrays.asList(1L, 2L))).willReturn(Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build()));
+    given(mockSettlementService.findMissions(Collections.singletonList(3L))).willReturn(
+        Collections.singletonList(TestDataGenerator.defaultSettlementMissionData().id(3L).build()));
+
+    List<Long> ids = new ArrayList<>();
+    blockingStub.getMissions(MissionIdsProtoMessage.newBuilder().addId(1L).addId(2L).addId(3L)
+        .build()).forEachRemaining(message -> ids.add(message.getId()));
+
+    assertEquals(Arrays.asList(1L, 2L, 3L), ids);
+  }
+
+  @Test
+  public void testSubscribeMissionChanges() {
+    Iterator<MissionChangeProtoMessage> changes = blockingStub.subscribeMissionChanges(
+        MissionIdsProtoMessage.newBuilder().addId(2L).build());
+    await().atMost(5, TimeUnit.SECONDS).until(() -> subscribers() == 1);
+
+    publisher.publishSaved(MissionChange.Type.UPDATED, Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).version(1L).build()));
+    publisher.publishDeleted(2L);
+
+    MissionChangeProtoMessage updated = changes.next();
+    assertEquals(ChangeType.UPDATED, updated.getType());
+    assertEquals(2L, updated.getId());
+    assertEquals(1L, updated.getMission().getVersion());
+    MissionChangeProtoMessage deleted = changes.next();
+    assertEquals(ChangeType.DELETED, deleted.getType());
+    assertFalse(deleted.hasMission());
+
+    // Closing the channel cancels the call, which ends the subscription
+    channel.shutdownNow();
+    await().atMost(5, TimeUnit.SECONDS).until(() -> subscribers() == 0);
+    assertTrue(registry.get("fuse.mission-changes.delivered").counter().count() >= 2);
+  }
+
+  private double subscribers() {
+    return registry.get("fuse.mission-changes.subscribers").gauge().value();
+  }
+
+  private static TradeAgreementProtoMessages agreements(final int count) {
+    TradeAgreementProtoMessages.Builder agreements = TradeAgreementProtoMessages.newBuilder();
+    for (int i = 0; i < count; i++) {
+      agreements.addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData());
+    }
+    return agreements.build();
+  }
+
+  private static <T> StreamObserver<T> futureObserver(final CompletableFuture<T> future) {
+    return new StreamObserver<T>() {
+      @Override
+      public void onNext(final T value) {
+        future.complete(value);
+      }
+
+      @Override
+      public void onError(final Throwable error) {
+        future.completeExceptionally(error);
+      }
+
+      @Override
+      public void onCompleted() {
+        // The value completed the future already
+      }
+    };
+  }
+}
@@ -1,21 +1,44 @@
 package org.galatea.starter.entrypoint;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.TextMessage;
 import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsEncoder;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.jms.JmsMessages;
+import org.galatea.starter.utils.jms.PayloadCompression;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +58,9 @@ public class SettlementJmsListenerTest extends ASpringTest {
   @Autowired
   protected JmsTemplate jmsTemplate;
 
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   @MockBean
   private SettlementService mockSettlementService;
 
@@ -44,6 +70,9 @@ public class SettlementJmsListenerTest extends ASpringTest {
   @Value("${jms.agreement-queue-proto}")
   protected String protoQueueName;
 
+  @Value("${jms.agreement-queue-sbe}")
+  protected String sbeQueueName;
+
   /*
   The ActiveMQ broker doesn't get shutdown after each test so we have the cleanup method in the base
   class to kill it manually. The side effect of that method is that it kills the listener containers
@@ -79,14 +108,256 @@ public class SettlementJmsListenerTest extends ASpringTest {
   public void testSettleOneAgreementProto() {
     TradeAgreementProtoMessage message
         = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
-    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
 
     log.info("Agreement message to put on queue {}", message);
-    List<TradeAgreement> agreements = Collections.singletonList(agreement);
-    log.info("Agreement objects that the service will expect {}", agreements);
+    List<SettlementMission> missions = Collections.singletonList(defaultMission().build());
+    log.info("Mission objects that the service will expect {}", missions);
 
     jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
 
-    verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
+    verify(mockSettlementService, timeout(10000)).spawnTransformedMissions(missions);
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleWrappedAgreementsProto() {
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("AAPL").build())
+        .build();
+    List<SettlementMission> missions = Arrays.asList(defaultMission().build(),
+        defaultMission().instrument("AAPL").build());
+
+    jmsTemplate.send(protoQueueName, s -> {
+      BytesMessage msg = s.createBytesMessage();
+      msg.writeBytes(messages.toByteArray());
+      msg.setJMSType(SettlementJmsListener.AGREEMENTS_PROTO_TYPE);
+      return msg;
+    });
+
+    verify(mockSettlementService, timeout(10000)).spawnTransformedMissions(missions);
+  }
+
+  @Test
+  @DirtiesContext
+  public void testReplyToJsonRequest() throws Exception {
+    String message = readData("Test_IBM_Agreement.json").replace("\n", "")
+        .replace("[", "").replace("]", "");
+    TradeAgreement agreement = TradeAgreement.builder().instrument("IBM").internalParty("INT-1")
+        .externalParty("EXT-1").buySell("B").qty(100d).build();
+    given(mockSettlementService.spawnMissions(Collections.singletonList(agreement)))
+        .willReturn(Collections.singleton(7L));
+
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(jsonQueueName, s -> {
+      Message request = s.createTextMessage(message);
+      request.setJMSCorrelationID("json-request");
+      return request;
+    });
+
+    assertNotNull(reply);
+    assertEquals("json-request", reply.getJMSCorrelationID());
+    assertEquals("{\"spawnedMissions\":[\"/settlementEngine/mission/7\"]}",
+        ((TextMessage) reply).getText());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testReplyToProtoRequest() throws Exception {
+    TradeAgreementProtoMessage message
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+    given(mockSettlementService.spawnTransformedMissions(
+        Collections.singletonList(defaultMission().build())))
+        .willReturn(Collections.singletonList(8L));
+
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(protoQueueName, s -> {
+      BytesMessage request = s.createBytesMessage();
+      request.writeBytes(message.toByteArray());
+      return request;
+    });
+
+    assertNotNull(reply);
+    SettlementResponseProtoMessage response = SettlementResponseProtoMessage.parseFrom(
+        readBody((BytesMessage) reply));
+    assertEquals(Collections.singletonList("/settlementEngine/mission/8"),
+        response.getSpawnedMissionPathsList());
+    assertEquals("", response.getError());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testErrorReplyToBadProtoRequest() throws Exception {
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(protoQueueName, s -> {
+      BytesMessage request = s.createBytesMessage();
+      request.writeBytes(new byte[] {(byte) 0xFF, 0x01, 0x02});
+      return request;
+    });
+
+    assertNotNull(reply);
+    SettlementResponseProtoMessage response = SettlementResponseProtoMessage.parseFrom(
+        readBody((BytesMessage) reply));
+    assertEquals(0, response.getSpawnedMissionPathsCount());
+    assertFalse(response.getError().isEmpty());
+    verify(mockSettlementService, never()).spawnTransformedMissions(any());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testErrorReplyToInvalidProtoAgreement() throws Exception {
+    TradeAgreementProtoMessage message = TestDataGenerator.defaultTradeAgreementProtoMessageData()
+        .setQty(0).build();
+
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(protoQueueName, s -> {
+      BytesMessage request = s.createBytesMessage();
+      request.writeBytes(message.toByteArray());
+      return request;
+    });
+
+    assertNotNull(reply);
+    SettlementResponseProtoMessage response = SettlementResponseProtoMessage.parseFrom(
+        readBody((BytesMessage) reply));
+    assertEquals(0, response.getSpawnedMissionPathsCount());
+    assertTrue(response.getError().contains("Quantity must be greater than 0"));
+    verify(mockSettlementService, never()).spawnTransformedMissions(any());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleCompressedAgreementJson() throws IOException {
+    String message = readData("Test_IBM_Agreement.json").replace("\n", "")
+        .replace("[", "").replace("]", "");
+    byte[] body = deflate(message.getBytes(StandardCharsets.UTF_8));
+    TradeAgreement agreement = TradeAgreement.builder().instrument("IBM").internalParty("INT-1")
+        .externalParty("EXT-1").buySell("B").qty(100d).build();
+
+    jmsTemplate.send(jsonQueueName, s -> {
+      BytesMessage msg = s.createBytesMessage();
+      msg.writeBytes(body);
+      msg.setStringProperty(PayloadCompression.CONTENT_ENCODING, PayloadCompression.DEFLATE);
+      return msg;
+    });
+
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(Collections.singletonList(agreement));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleCompressedWrappedAgreementsProto() throws IOException {
+    TradeAgreementProtoMessages.Builder messages = TradeAgreementProtoMessages.newBuilder();
+    for (int i = 0; i < 50; i++) {
+      messages.addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build());
+    }
+    byte[] body = deflate(messages.build().toByteArray());
+
+    jmsTemplate.send(protoQueueName, s -> {
+      BytesMessage msg = s.createBytesMessage();
+      msg.writeBytes(body);
+      msg.setJMSType(SettlementJmsListener.AGREEMENTS_PROTO_TYPE);
+      msg.setStringProperty(PayloadCompression.CONTENT_ENCODING, PayloadCompression.DEFLATE);
+      return msg;
+    });
+
+    verify(mockSettlementService, timeout(10000)).spawnTransformedMissions(
+        Collections.nCopies(50, defaultMission().build()));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleUrgentAgreementProto() {
+    TradeAgreementProtoMessage message =
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+
+    jmsTemplate.send(protoQueueName, s -> {
+      BytesMessage msg = s.createBytesMessage();
+      msg.writeBytes(message.toByteArray());
+      msg.setStringProperty(JmsMessages.PRIORITY_LANE, JmsMessages.URGENT);
+      return msg;
+    });
+
+    verify(mockSettlementService, timeout(10000)).spawnTransformedMissions(
+        Collections.singletonList(defaultMission().build()));
+    assertEquals(1, meterRegistry.get("fuse.jms.queue.wait")
+        .tag("listener", "settleAgreementProtoUrgent").timer().count());
+    assertEquals(0, meterRegistry.get("fuse.jms.queue.wait")
+        .tag("listener", "settleAgreementProto").timer().count());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testReplyToSbeRequest() throws Exception {
+    given(mockSettlementService.spawnTransformedMissions(Arrays.asList(defaultMission().build(),
+        defaultMission().instrument("AAPL").build()))).willReturn(Arrays.asList(8L, 9L));
+
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(sbeQueueName, s -> {
+      BytesMessage request = s.createBytesMessage();
+      request.writeBytes(sbeAgreements("IBM", "AAPL"));
+      return request;
+    });
+
+    assertNotNull(reply);
+    SettlementResponseProtoMessage response = SettlementResponseProtoMessage.parseFrom(
+        readBody((BytesMessage) reply));
+    assertEquals(Arrays.asList("/settlementEngine/mission/8", "/settlementEngine/mission/9"),
+        response.getSpawnedMissionPathsList());
+  }
+
+  @Test
+  @DirtiesContext
+  public void testErrorReplyToTruncatedSbeRequest() throws Exception {
+    byte[] agreements = sbeAgreements("IBM");
+
+    jmsTemplate.setReceiveTimeout(10000);
+    Message reply = jmsTemplate.sendAndReceive(sbeQueueName, s -> {
+      BytesMessage request = s.createBytesMessage();
+      request.writeBytes(agreements, 0, agreements.length - 2);
+      return request;
+    });
+
+    assertNotNull(reply);
+    SettlementResponseProtoMessage response = SettlementResponseProtoMessage.parseFrom(
+        readBody((BytesMessage) reply));
+    assertFalse(response.getError().isEmpty());
+    verify(mockSettlementService, never()).spawnTransformedMissions(any());
+  }
+
+  /*
+   * The mission built from the default agreement message, which hasn't been saved yet.
+   */
+  private static SettlementMission.SettlementMissionBuilder defaultMission() {
+    return TestDataGenerator.defaultSettlementMissionData().id(null);
+  }
+
+  /*
+   * Default agreements of the given instruments in the fixed-layout binary encoding.
+   */
+  private static byte[] sbeAgreements(final String... instruments) {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(
+        instruments.length));
+    TradeAgreementsEncoder encoder = new TradeAgreementsEncoder().wrap(buffer, 0,
+        instruments.length);
+    for (String instrument : instruments) {
+      encoder.add(instrument, "INT-1", "EXT-1", 'B', 100);
+    }
+    return Arrays.copyOf(buffer.array(), encoder.encodedLength());
+  }
+
+  private static byte[] deflate(final byte[] body) throws IOException {
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+      out.write(body);
+    }
+    return deflated.toByteArray();
+  }
+
+  private static byte[] readBody(final BytesMessage message) throws JMSException {
+    byte[] body = new byte[(int) message.getBodyLength()];
+    message.readBytes(body);
+    return body;
   }
 }
@@ -2,25 +2,42 @@ package org.galatea.starter.entrypoint;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.SbeMessageTranslationConfig;
 import org.galatea.starter.domain.SettlementMission;
-import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdsProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsEncoder;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.utils.translation.ITranslator;
@@ -30,6 +47,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -42,7 +61,8 @@ import org.springframework.test.web.servlet.MvcResult;
 // We don't load the entire spring application context for this test.
 @WebMvcTest(SettlementProtoRestController.class)
 // Import Beans from Configuration, enabling them to be Autowired
-@Import({ProtoMessageTranslationConfig.class, RestExceptionHandler.class})
+@Import({ProtoMessageTranslationConfig.class, SbeMessageTranslationConfig.class,
+    RestExceptionHandler.class})
 // Use this runner since we want to parameterize certain tests.
 // See runner's javadoc for more usage.
 @RunWith(JUnitParamsRunner.class)
@@ -53,6 +73,9 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
   @Autowired
   private ITranslator<SettlementMission, SettlementMissionProtoMessage> settlementMissionTranslator;
 
+  @Autowired
+  private SettlementProtoRestController controller;
+
   @Autowired
   private MockMvc mvc;
 
@@ -63,19 +86,19 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
 
   @Test
   public void testSettleAgreement() throws Exception {
-    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(null).build();
     TradeAgreementProtoMessage message
         = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
     Long expectedId = 1L;
 
-    log.info("Agreement to post {}. Proto message {}. Expected id {}", agreement, message,
+    log.info("Mission to spawn {}. Proto message {}. Expected id {}", mission, message,
         expectedId);
 
     TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
         .addMessage(message).build();
 
-    given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
-        .willReturn(Sets.newTreeSet(singletonList(expectedId)));
+    given(this.mockSettlementService.spawnTransformedMissions(singletonList(mission)))
+        .willReturn(singletonList(expectedId));
 
     MvcResult result = this.mvc.perform(
         post("/settlementEngine?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
@@ -89,6 +112,36 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
         .contains("/settlementEngine/mission/" + expectedId));
   }
 
+  @Test
+  public void testSettleAgreementSbe() throws Exception {
+    SettlementMission ibm = TestDataGenerator.defaultSettlementMissionData().id(null).build();
+    SettlementMission aapl = TestDataGenerator.defaultSettlementMissionData().id(null)
+        .instrument("AAPL").build();
+    TradeAgreementProtoMessage message
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+
+    byte[] body = new byte[512];
+    int length = new TradeAgreementsEncoder().wrap(ByteBuffer.wrap(body), 0, 2)
+        .add(message.getInstrument(), message.getInternalParty(), message.getExternalParty(),
+            message.getBuySell().charAt(0), message.getQty())
+        .add("AAPL", message.getInternalParty(), message.getExternalParty(),
+            message.getBuySell().charAt(0), message.getQty())
+        .encodedLength();
+
+    given(this.mockSettlementService.spawnTransformedMissions(Arrays.asList(ibm, aapl)))
+        .willReturn(Arrays.asList(1L, 2L));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine?requestId=1234").contentType(MvcConfig.APPLICATION_FUSE_SBE)
+            .accept(APPLICATION_X_PROTOBUF).content(Arrays.copyOf(body, length)))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementResponseProtoMessage received = SettlementResponseProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(Sets.newHashSet("/settlementEngine/mission/1", "/settlementEngine/mission/2"),
+        new HashSet<>(received.getSpawnedMissionPathsList()));
+  }
+
   @Test
   public void testGetMission() throws Exception {
     SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
@@ -116,4 +169,130 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
             .accept(APPLICATION_X_PROTOBUF))
         .andExpect(status().is4xxClientError());
   }
+
+  @Test
+  public void testGetMissions() throws Exception {
+    List<SettlementMission> missions = missions(1L, 2L);
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L))).willReturn(missions);
+
+    MvcResult result = this.mvc.perform(
+        get("/settlementEngine/missions?ids=1,2&requestId=1234").accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementMissionProtoMessages received = SettlementMissionProtoMessages
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(translate(missions), received.getMessageList());
+  }
+
+  @Test
+  public void testFindMissions() throws Exception {
+    List<SettlementMission> missions = missions(1L, 2L);
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L))).willReturn(missions);
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine/missions?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF)
+            .content(MissionIdsProtoMessage.newBuilder().addId(1L).addId(2L).build().toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementMissionProtoMessages received = SettlementMissionProtoMessages
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(translate(missions), received.getMessageList());
+  }
+
+  @Test
+  public void testStreamMissions() throws Exception {
+    // Three missions with a chunk size of two, so the stream is written in two chunks
+    Object chunkSize = setControllerField("missionsStreamChunkSize", 2);
+    try {
+      streamMissionsInChunks();
+    } finally {
+      setControllerField("missionsStreamChunkSize", chunkSize);
+    }
+  }
+
+  private void streamMissionsInChunks() throws Exception {
+    List<SettlementMission> missions = missions(1L, 2L, 3L);
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(missions.subList(0, 2));
+    given(this.mockSettlementService.findMissions(singletonList(3L)))
+        .willReturn(missions.subList(2, 3));
+
+    MvcResult started = this.mvc.perform(
+        post("/settlementEngine/missions").contentType(APPLICATION_X_PROTOBUF)
+            .accept(MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+            .content(MissionIdsProtoMessage.newBuilder().addId(1L).addId(2L).addId(3L).build()
+                .toByteArray()))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult result = this.mvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MvcConfig.APPLICATION_PROTOBUF_DELIMITED)).andReturn();
+
+    InputStream body = new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    List<SettlementMissionProtoMessage> received = new ArrayList<>();
+    SettlementMissionProtoMessage message;
+    while ((message = SettlementMissionProtoMessage.parseDelimitedFrom(body)) != null) {
+      received.add(message);
+    }
+    assertEquals(translate(missions), received);
+  }
+
+  @Test
+  public void testSettleAgreementStream() throws Exception {
+    // Three agreements with a chunk size of two, so they are settled in two chunks
+    Object chunkSize = setControllerField("agreementsStreamChunkSize", 2);
+    try {
+      settleAgreementsInChunks();
+    } finally {
+      setControllerField("agreementsStreamChunkSize", chunkSize);
+    }
+  }
+
+  private void settleAgreementsInChunks() throws Exception {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(null).build();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (int i = 0; i < 3; i++) {
+      TestDataGenerator.defaultTradeAgreementProtoMessageData().build().writeDelimitedTo(body);
+    }
+
+    given(this.mockSettlementService.spawnTransformedMissions(Arrays.asList(mission, mission)))
+        .willReturn(Arrays.asList(1L, 2L));
+    given(this.mockSettlementService.spawnTransformedMissions(singletonList(mission)))
+        .willReturn(singletonList(3L));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine?requestId=1234")
+            .contentType(MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE)
+            .accept(MvcConfig.APPLICATION_PROTOBUF_DELIMITED_VALUE).content(body.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    InputStream received = new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    assertEquals(Sets.newHashSet("/settlementEngine/mission/1", "/settlementEngine/mission/2"),
+        new HashSet<>(SettlementResponseProtoMessage.parseDelimitedFrom(received)
+            .getSpawnedMissionPathsList()));
+    assertEquals(singletonList("/settlementEngine/mission/3"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+    assertNull(SettlementResponseProtoMessage.parseDelimitedFrom(received));
+  }
+
+  /*
+   * Sets a field of the controller bean, returning its previous value so it can be put back.
+   */
+  private Object setControllerField(final String name, final Object value) {
+    Object target = AopTestUtils.getTargetObject(controller);
+    Object previous = ReflectionTestUtils.getField(target, name);
+    ReflectionTestUtils.setField(target, name, value);
+    return previous;
+  }
+
+  private static List<SettlementMission> missions(final Long... ids) {
+    return Arrays.stream(ids)
+        .map(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .collect(Collectors.toList());
+  }
+
+  private List<SettlementMissionProtoMessage> translate(final List<SettlementMission> missions) {
+    return missions.stream().map(settlementMissionTranslator::translate)
+        .collect(Collectors.toList());
+  }
 }
@@ -2,10 +2,17 @@ package org.galatea.starter.entrypoint;
 
 import static io.restassured.module.mockmvc.RestAssuredMockMvc.given;
 import static java.util.Collections.singletonList;
+import static org.galatea.starter.MvcConfig.APPLICATION_CBOR;
+import static org.galatea.starter.MvcConfig.APPLICATION_CBOR_VALUE;
 import static org.galatea.starter.MvcConfig.APPLICATION_EXCEL;
+import static org.galatea.starter.MvcConfig.APPLICATION_PARQUET;
+import static org.galatea.starter.MvcConfig.APPLICATION_PARQUET_VALUE;
+import static org.galatea.starter.MvcConfig.APPLICATION_SMILE;
+import static org.galatea.starter.MvcConfig.APPLICATION_SMILE_VALUE;
 import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
@@ -13,10 +20,14 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.collect.Sets;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.module.mockmvc.response.MockMvcResponse;
 import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,19 +40,26 @@ import javax.xml.bind.Marshaller;
 import junitparams.FileParameters;
 import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.ParquetFiles;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.testutils.XlsxComparator;
+import org.galatea.starter.utils.http.converter.ParquetHttpMessageConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.jms.PayloadCompression;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.junit.Before;
 import org.junit.Test;
@@ -59,11 +77,16 @@ import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.accept.ParameterContentNegotiationStrategy;
@@ -83,6 +106,12 @@ public class SettlementRestControllerTest
   @Value("${mvc.getMissionsPath}")
   private String getMissionsPath;
 
+  @Value("${mvc.getMissionHistoryPath}")
+  private String getMissionHistoryPath;
+
+  @Value("${mvc.getMissionAuditPath}")
+  private String getMissionAuditPath;
+
   @Value("${mvc.deleteMissionPath}")
   private String deleteMissionPath;
 
@@ -101,6 +130,10 @@ public class SettlementRestControllerTest
   @MockBean
   private SettlementService mockSettlementService;
 
+  // Needed by the JMS translators of MessageTranslationConfig, which the REST endpoints don't use
+  @MockBean
+  private PayloadCompression payloadCompression;
+
   @Autowired
   private SettlementRestController settlementRestController;
 
@@ -122,6 +155,9 @@ public class SettlementRestControllerTest
     mediaTypes.put("xml", MediaType.APPLICATION_XML);
     mediaTypes.put("csv", TEXT_CSV);
     mediaTypes.put("xlsx", APPLICATION_EXCEL);
+    mediaTypes.put("smile", APPLICATION_SMILE);
+    mediaTypes.put("cbor", APPLICATION_CBOR);
+    mediaTypes.put("parquet", APPLICATION_PARQUET);
 
     ParameterContentNegotiationStrategy parameterContentNegotiationStrategy =
         new ParameterContentNegotiationStrategy(mediaTypes);
@@ -136,11 +172,16 @@ public class SettlementRestControllerTest
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
             addPlaceholderValue("mvc.getMissionPath", getMissionPath).
+            addPlaceholderValue("mvc.getMissionHistoryPath", getMissionHistoryPath).
+            addPlaceholderValue("mvc.getMissionAuditPath", getMissionAuditPath).
             setContentNegotiationManager(manager).
             setMessageConverters(new MappingJackson2HttpMessageConverter(),
+                new MappingJackson2SmileHttpMessageConverter(),
+                new MappingJackson2CborHttpMessageConverter(),
                 new Jaxb2RootElementHttpMessageConverter(),
                 new SettlementMissionCsvConverter(),
-                new SettlementMissionXlsxConverter()).
+                new SettlementMissionXlsxConverter(),
+                new ParquetHttpMessageConverter(1024 * 1024, CompressionCodecName.SNAPPY)).
             setControllerAdvice(new RestExceptionHandler()));
   }
 
@@ -216,6 +257,98 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.OK.value());
   }
 
+  @Test
+  public void testSettleAgreement_SMILE() throws Exception {
+    TradeAgreementMessages messages = TradeAgreementMessages.builder().agreement(
+        TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(100d).build())
+        .build();
+    ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(toTradeAgreements(messages)))
+        .willReturn(Sets.newTreeSet(singletonList(MISSION_ID_1)));
+
+    MockMvcResponse response =
+    given()
+        .log().ifValidationFails()
+        .contentType(APPLICATION_SMILE_VALUE)
+        .accept(APPLICATION_SMILE_VALUE)
+        .body(smileMapper.writeValueAsBytes(messages))
+        .when()
+        .post("/settlementEngine?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(APPLICATION_SMILE_VALUE)
+        .extract()
+        .response();
+
+    assertEquals(objectMapper.readTree("{\"spawnedMissions\":[\"/settlementEngine/mission/"
+        + MISSION_ID_1 + "\"]}"), smileMapper.readTree(response.asByteArray()));
+  }
+
+  @Test
+  public void testSettleAgreementXmlStream() throws Exception {
+    // Three agreements with a chunk size of two, so they are settled in two chunks
+    Object target = AopTestUtils.getTargetObject(settlementRestController);
+    Object chunkSize = ReflectionTestUtils.getField(target, "agreementsStreamChunkSize");
+    ReflectionTestUtils.setField(target, "agreementsStreamChunkSize", 2);
+    try {
+      settleXmlAgreementsInChunks();
+    } finally {
+      ReflectionTestUtils.setField(target, "agreementsStreamChunkSize", chunkSize);
+    }
+  }
+
+  private void settleXmlAgreementsInChunks() throws Exception {
+    TradeAgreementMessage message = TradeAgreementMessage.builder().instrument("IBM")
+        .internalParty("INT-1").externalParty("EXT-1").buySell("B").qty(100d).build();
+    TradeAgreementMessages messages = TradeAgreementMessages.builder().agreement(message)
+        .agreement(message).agreement(message).build();
+
+    StringWriter xml = new StringWriter();
+    JAXBContext.newInstance(TradeAgreementMessages.class).createMarshaller()
+        .marshal(messages, xml);
+
+    TradeAgreement agreement = TradeAgreement.builder().instrument("IBM").internalParty("INT-1")
+        .externalParty("EXT-1").buySell("B").qty(100d).build();
+    BDDMockito.given(this.mockSettlementService.spawnMissions(
+        Arrays.asList(agreement, agreement))).willReturn(Sets.newTreeSet(Arrays.asList(1L, 2L)));
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
+        .willReturn(Sets.newTreeSet(singletonList(3L)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_XML_VALUE)
+        .accept(MediaType.APPLICATION_XML_VALUE)
+        .body(xml.toString())
+        .when()
+        .post("/settlementEngine?stream=true&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body(hasXPath("count(//settlementResponse)", is("2")))
+        .body(hasXPath("(//settlementResponse)[1]/@settled", is("2")))
+        .body(hasXPath("count((//settlementResponse)[1]/spawnedMission)", is("2")))
+        .body(hasXPath("(//settlementResponse)[2]/@settled", is("3")))
+        .body(hasXPath("(//settlementResponse)[2]/spawnedMission",
+            is("/settlementEngine/mission/3")));
+  }
+
+  @Test
+  public void testSettleAgreementXmlStreamMalformed() {
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_XML_VALUE)
+        .body("<tradeAgreements><tradeAgreement><instrument>IBM</tradeAgreement>")
+        .when()
+        .post("/settlementEngine?stream=true&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value())
+        .body("message", is("Incorrectly formatted message.  Please consult the documentation."));
+  }
+
   private List<TradeAgreement> toTradeAgreements(TradeAgreementMessages messages) {
     return tradeAgreementTranslator.translate(messages);
   }
@@ -283,6 +416,83 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.NOT_FOUND.value());
   }
 
+  @Test
+  public void testGetMissionHistoryAtVersion() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().version(3L)
+        .build();
+
+    BDDMockito.given(this.mockSettlementService.findMissionAtVersion(MISSION_ID_1, 3L))
+        .willReturn(Optional.of(mission));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/missionHistory/" + MISSION_ID_1 + "?version=3")
+        .then()
+        .log().ifValidationFails()
+        .body("id", is(mission.getId().intValue()))
+        .body("version", is(3))
+        .statusCode(HttpStatus.OK.value());
+  }
+
+  @Test
+  public void testGetMissionHistoryAsOf() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+    Instant asOf = Instant.parse("2019-01-02T10:15:30Z");
+
+    BDDMockito.given(this.mockSettlementService.findMissionAsOf(MISSION_ID_1, asOf))
+        .willReturn(Optional.of(mission));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/missionHistory/" + MISSION_ID_1 + "?asOf=" + asOf)
+        .then()
+        .log().ifValidationFails()
+        .body("id", is(mission.getId().intValue()))
+        .statusCode(HttpStatus.OK.value());
+  }
+
+  @Test
+  public void testGetMissionAudits() {
+    SettlementMissionAudit audit = SettlementMissionAudit.builder().id(1L)
+        .missionId(MISSION_ID_1).version(1L).field("qty").oldValue("100.0").newValue("250.0")
+        .changedAt(Instant.parse("2019-01-02T10:15:30Z")).build();
+
+    BDDMockito.given(this.mockSettlementService.findMissionAudits(MISSION_ID_1))
+        .willReturn(singletonList(audit));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/missionAudit/" + MISSION_ID_1)
+        .then()
+        .log().ifValidationFails()
+        .body("[0].missionId", is(MISSION_ID_1.intValue()))
+        .body("[0].field", is("qty"))
+        .body("[0].oldValue", is("100.0"))
+        .body("[0].newValue", is("250.0"))
+        .statusCode(HttpStatus.OK.value());
+  }
+
+  @Test
+  public void testGetMissionHistoryNotFound() {
+    BDDMockito.given(this.mockSettlementService.findMissionAtVersion(MISSION_ID_1, 3L))
+        .willReturn(Optional.empty());
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/missionHistory/" + MISSION_ID_1 + "?version=3")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+  }
+
   @Test
   public void testGetMissionsFound_JSON() throws Exception {
     SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData()
@@ -336,6 +546,33 @@ public class SettlementRestControllerTest
         .body(hasXPath("(//qty)[2]", is(String.valueOf(mission2.getQty()))));
   }
 
+  @Test
+  public void testGetMissionsFound_CBOR() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+    List<SettlementMission> missions = Arrays.asList(mission1, mission2);
+
+    BDDMockito.given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(missions);
+
+    MockMvcResponse response =
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions?ids=1,2&format=cbor&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(APPLICATION_CBOR_VALUE)
+        .extract()
+        .response();
+
+    assertEquals(objectMapper.valueToTree(new SettlementMissionList(missions)),
+        new ObjectMapper(new CBORFactory()).readTree(response.asByteArray()));
+  }
+
   @Test
   public void testGetMissionsFound_CSV() throws Exception {
     SettlementMission mission1 = SettlementMission.builder()
@@ -393,6 +630,71 @@ public class SettlementRestControllerTest
     assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
   }
 
+  @Test
+  public void testGetMissionsFound_PARQUET() throws Exception {
+    // Three missions with a chunk size of two, so they are looked up in two chunks
+    Object target = AopTestUtils.getTargetObject(settlementRestController);
+    Object chunkSize = ReflectionTestUtils.getField(target, "missionsStreamChunkSize");
+    ReflectionTestUtils.setField(target, "missionsStreamChunkSize", 2);
+    try {
+      exportMissionsInChunks();
+    } finally {
+      ReflectionTestUtils.setField(target, "missionsStreamChunkSize", chunkSize);
+    }
+  }
+
+  private void exportMissionsInChunks() throws Exception {
+    List<SettlementMission> missions = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      missions.add(SettlementMission.builder().id(id).instrument("ABC").externalParty("EXT-1")
+          .depot("DEPOT-1").direction("REC").qty(100.0 * id).version(0L).build());
+    }
+
+    BDDMockito.given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(missions.subList(0, 2));
+    BDDMockito.given(this.mockSettlementService.findMissions(singletonList(3L)))
+        .willReturn(missions.subList(2, 3));
+
+    MockMvcResponse response =
+    given()
+        .log().ifValidationFails()
+        .when()
+        .async()
+        .get("/settlementEngine/missions?ids=1,2,3&format=parquet&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(APPLICATION_PARQUET_VALUE)
+        .header(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=SettlementMissions.parquet")
+        .extract()
+        .response();
+
+    List<Group> rows = ParquetFiles.readRows(response.asByteArray());
+    assertEquals(3, rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      assertEquals(i + 1, rows.get(i).getLong("id", 0));
+      assertEquals("ABC", rows.get(i).getString("instrument", 0));
+      assertEquals("DEPOT-1", rows.get(i).getString("depot", 0));
+      assertEquals(100.0 * (i + 1), rows.get(i).getDouble("qty", 0), 0);
+    }
+  }
+
+  @Test
+  public void testGetMissionsNotFound_PARQUET() {
+    BDDMockito.given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willThrow(new EntityNotFoundException(SettlementMission.class,
+            Collections.singleton(2L)));
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions?ids=1,2&format=parquet&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+  }
+
   @Test
   public void testIncorrectlyFormattedAgreement() {
     String expectedMessage = "Incorrectly formatted message.  Please consult the documentation.";
@@ -1,13 +1,32 @@
 package org.galatea.starter.entrypoint;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.command.ActiveMQBytesMessage;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsEncoder;
+import org.galatea.starter.entrypoint.messagecontracts.sbe.TradeAgreementsSchema;
+import org.galatea.starter.service.IAgreementTransformer;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.galatea.starter.utils.translation.TranslationException;
@@ -27,6 +46,23 @@ public class TradeAgreementTranslatorTest extends ASpringTest {
   @Autowired
   protected ITranslator<byte[], TradeAgreement> translator;
 
+  @Autowired
+  protected ITranslator<Message, List<SettlementMission>>
+      tradeAgreementsJmsProtobufMissionTranslator;
+
+  @Autowired
+  protected ITranslator<TradeAgreementProtoMessage, TradeAgreement> tradeAgreementProtoTranslator;
+
+  @Autowired
+  protected ITranslator<List<TradeAgreementProtoMessage>, List<SettlementMission>>
+      tradeAgreementProtoMissionTranslator;
+
+  @Autowired
+  protected ITranslator<ByteBuffer, List<SettlementMission>> tradeAgreementSbeMissionTranslator;
+
+  @Autowired
+  protected IAgreementTransformer agreementTransformer;
+
   @Test
   public void translateGoodMessage() {
     TradeAgreementProtoMessage message
@@ -43,4 +79,148 @@ public class TradeAgreementTranslatorTest extends ASpringTest {
     byte[] nullBuffer = new byte[] {1, 2, 3, 4, 5, 6};
     translator.translate(nullBuffer);
   }
+
+  @Test
+  public void translateGoodJmsMessage() throws JMSException {
+    Message message = bytesMessage(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build().toByteArray(), null);
+
+    assertEquals(Collections.singletonList(
+        agreementTransformer.transform(TestDataGenerator.defaultTradeAgreementData().build())),
+        tradeAgreementsJmsProtobufMissionTranslator.translate(message));
+  }
+
+  @Test
+  public void translateGoodWrappedJmsMessage() throws JMSException {
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData().build())
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setInstrument("AAPL").build())
+        .build();
+    Message message =
+        bytesMessage(messages.toByteArray(), SettlementJmsListener.AGREEMENTS_PROTO_TYPE);
+
+    assertEquals(Arrays.asList(
+        agreementTransformer.transform(TestDataGenerator.defaultTradeAgreementData().build()),
+        agreementTransformer.transform(
+            TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build())),
+        tradeAgreementsJmsProtobufMissionTranslator.translate(message));
+  }
+
+  @Test(expected = TranslationException.class)
+  public void translateBadJmsMessage() throws JMSException {
+    tradeAgreementsJmsProtobufMissionTranslator.translate(
+        bytesMessage(new byte[] {1, 2, 3, 4, 5, 6}, null));
+  }
+
+  @Test
+  public void translateToMissionsLikeTranslatorAndTransformer() {
+    for (String side : Arrays.asList("B", "S", "SS")) {
+      TradeAgreementProtoMessage message = TestDataGenerator.defaultTradeAgreementProtoMessageData()
+          .setBuySell(side).setQty(0.5).build();
+
+      assertEquals(Collections.singletonList(
+          agreementTransformer.transform(tradeAgreementProtoTranslator.translate(message))),
+          tradeAgreementProtoMissionTranslator.translate(Collections.singletonList(message)));
+    }
+  }
+
+  @Test
+  public void translateToMissionsWithSameViolationsAsValidator() {
+    Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    List<TradeAgreementProtoMessage> messages = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("X").build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(0).build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(-0.0).build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(Double.MIN_VALUE).build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(Double.NaN).build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData()
+            .setQty(Double.NEGATIVE_INFINITY).build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("")
+            .setQty(-1).build());
+
+    for (TradeAgreementProtoMessage message : messages) {
+      Set<String> expected = validator.validate(tradeAgreementProtoTranslator.translate(message))
+          .stream().map(ConstraintViolation::getMessage).collect(Collectors.toSet());
+
+      Set<String> actual = Collections.emptySet();
+      try {
+        tradeAgreementProtoMissionTranslator.translate(Collections.singletonList(message));
+      } catch (ConstraintViolationException e) {
+        actual = e.getConstraintViolations().stream().map(ConstraintViolation::getMessage)
+            .collect(Collectors.toSet());
+      }
+      assertEquals("Violations of " + message, expected, actual);
+    }
+  }
+
+  @Test
+  public void translateToMissionsReportsEveryInvalidAgreement() {
+    List<TradeAgreementProtoMessage> messages = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("X").build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(0).build());
+
+    try {
+      tradeAgreementProtoMissionTranslator.translate(messages);
+      fail("The invalid agreements should have been rejected");
+    } catch (ConstraintViolationException e) {
+      assertEquals(2, e.getConstraintViolations().size());
+    }
+  }
+
+  @Test
+  public void translateSbeToMissionsLikeProto() {
+    List<TradeAgreementProtoMessage> messages = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("AAPL")
+            .setExternalParty("EXT-2").setBuySell("S").setQty(0.5).build());
+
+    assertEquals(tradeAgreementProtoMissionTranslator.translate(messages),
+        tradeAgreementSbeMissionTranslator.translate(sbe(messages)));
+  }
+
+  @Test
+  public void translateSbeReportsEveryInvalidAgreement() {
+    List<TradeAgreementProtoMessage> messages = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setBuySell("X").build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build(),
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().setQty(0).build());
+
+    try {
+      tradeAgreementSbeMissionTranslator.translate(sbe(messages));
+      fail("The invalid agreements should have been rejected");
+    } catch (ConstraintViolationException e) {
+      assertEquals(2, e.getConstraintViolations().size());
+    }
+  }
+
+  @Test(expected = TranslationException.class)
+  public void translateBadSbe() {
+    ByteBuffer agreements = sbe(Collections.singletonList(
+        TestDataGenerator.defaultTradeAgreementProtoMessageData().build()));
+    agreements.limit(agreements.limit() - 1);
+    tradeAgreementSbeMissionTranslator.translate(agreements);
+  }
+
+  private static ByteBuffer sbe(final List<TradeAgreementProtoMessage> messages) {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(
+        messages.size()));
+    TradeAgreementsEncoder encoder = new TradeAgreementsEncoder().wrap(buffer, 0, messages.size());
+    for (TradeAgreementProtoMessage msg : messages) {
+      encoder.add(msg.getInstrument(), msg.getInternalParty(), msg.getExternalParty(),
+          msg.getBuySell().charAt(0), msg.getQty());
+    }
+    buffer.limit(encoder.encodedLength());
+    return buffer;
+  }
+
+  private static Message bytesMessage(final byte[] body, final String type)
+      throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(body);
+    message.setJMSType(type);
+    message.reset();
+    return message;
+  }
 }
@@ -0,0 +1,114 @@
+package org.galatea.starter.entrypoint.messagecontracts.sbe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+
+public class TradeAgreementsCodecTest {
+
+  private final TradeAgreementsDecoder decoder = new TradeAgreementsDecoder();
+
+  @Test
+  public void roundTrip_heapBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(2));
+    int length = encodeTwo(buffer, 0);
+
+    assertDecodesTwo(decoder.wrap(buffer, 0, length));
+  }
+
+  @Test
+  public void roundTrip_directBufferAtOffsetIgnoresByteOrder() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(TradeAgreementsSchema.maxEncodedLength(2) + 7)
+        .order(ByteOrder.BIG_ENDIAN);
+    int length = encodeTwo(buffer, 7);
+
+    assertDecodesTwo(decoder.wrap(buffer, 7, length));
+  }
+
+  @Test
+  public void roundTrip_emptyBatch() {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.HEADER_LENGTH);
+    int length = new TradeAgreementsEncoder().wrap(buffer, 0, 0).encodedLength();
+
+    assertEquals(TradeAgreementsSchema.HEADER_LENGTH, length);
+    assertFalse(decoder.wrap(buffer, 0, length).hasNext());
+  }
+
+  @Test
+  public void decode_skipsFieldsAddedToLaterVersions() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    int length = new TradeAgreementsEncoder().wrap(buffer, 0, 1).add("IBM", "INT-1", "EXT-1", 'B',
+        100).encodedLength();
+
+    // Pretend a later version appended a 4 byte field to the fixed block
+    int strings =
+        TradeAgreementsSchema.HEADER_LENGTH + TradeAgreementsSchema.AGREEMENT_BLOCK_LENGTH;
+    ByteBuffer later = ByteBuffer.allocate(length + 4);
+    later.put(buffer.array(), 0, strings).put(new byte[4]);
+    later.put(buffer.array(), strings, length - strings);
+    later.put(TradeAgreementsSchema.GROUP_BLOCK_LENGTH_OFFSET,
+        (byte) (TradeAgreementsSchema.AGREEMENT_BLOCK_LENGTH + 4));
+
+    decoder.wrap(later, 0, length + 4).next();
+    assertEquals(100d, decoder.qty(), 0);
+    assertEquals("IBM", decoder.instrument());
+    assertEquals("EXT-1", decoder.externalParty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_rejectsTruncatedBatch() {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(2));
+    int length = encodeTwo(buffer, 0);
+
+    decoder.wrap(buffer, 0, length - 1);
+    decoder.next();
+    decoder.next();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_rejectsOtherTemplates() {
+    ByteBuffer buffer = ByteBuffer.allocate(TradeAgreementsSchema.maxEncodedLength(2));
+    int length = encodeTwo(buffer, 0);
+    buffer.put(TradeAgreementsSchema.TEMPLATE_ID_OFFSET, (byte) 9);
+
+    decoder.wrap(buffer, 0, length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void encode_rejectsNonAscii() {
+    new TradeAgreementsEncoder().wrap(ByteBuffer.allocate(64), 0, 1).add("IBM", "INT-1",
+        "EXT-\u00e9", 'B', 100);
+  }
+
+  private static int encodeTwo(final ByteBuffer buffer, final int offset) {
+    return new TradeAgreementsEncoder().wrap(buffer, offset, 2)
+        .add("IBM", "INT-1", "EXT-1", 'B', 100)
+        .add("AAPL", "", "EXT-2", 'S', 0.25)
+        .encodedLength();
+  }
+
+  private static void assertDecodesTwo(final TradeAgreementsDecoder decoder) {
+    assertEquals(2, decoder.count());
+
+    assertTrue(decoder.hasNext());
+    decoder.next();
+    assertEquals(100d, decoder.qty(), 0);
+    assertSame("B", decoder.buySell());
+    assertEquals("IBM", decoder.instrument());
+    assertEquals("INT-1", decoder.internalParty());
+    assertEquals("EXT-1", decoder.externalParty());
+
+    decoder.next();
+    assertEquals(0.25, decoder.qty(), 0);
+    assertSame("S", decoder.buySell());
+    assertEquals("AAPL", decoder.instrument());
+    assertEquals("", decoder.internalParty());
+    assertEquals("EXT-2", decoder.externalParty());
+    assertFalse(decoder.hasNext());
+  }
+}
@@ -0,0 +1,83 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
+import org.galatea.starter.domain.rpsy.ISettlementMissionAuditRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class MissionAuditServiceTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private ISettlementMissionAuditRpsy mockAuditRpsy;
+
+  private MissionAuditService service;
+
+  @Before
+  public void setup() {
+    mockAuditRpsy = Mockito.mock(ISettlementMissionAuditRpsy.class);
+    // Write the audit records on the calling thread so the test can check them straight away
+    service = new MissionAuditService(mockAuditRpsy, Runnable::run, registry);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void recordUpdate_writesChangedFields() {
+    SettlementMission previous = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMission saved = TestDataGenerator.defaultSettlementMissionData().depot("FED")
+        .qty(250d).version(1L).build();
+
+    service.recordUpdate(previous, saved);
+
+    ArgumentCaptor<List<SettlementMissionAudit>> captor = ArgumentCaptor.forClass(List.class);
+    verify(mockAuditRpsy).saveAll(captor.capture());
+    List<SettlementMissionAudit> records = captor.getValue();
+
+    assertEquals(2, records.size());
+    assertEquals("depot", records.get(0).getField());
+    assertEquals("DTC", records.get(0).getOldValue());
+    assertEquals("FED", records.get(0).getNewValue());
+    assertEquals("qty", records.get(1).getField());
+    assertEquals("100.0", records.get(1).getOldValue());
+    assertEquals("250.0", records.get(1).getNewValue());
+    assertEquals((Long) 1L, records.get(1).getVersion());
+    assertEquals(1, registry.get("fuse.audit.diff").timer().count());
+  }
+
+  @Test
+  public void recordUpdate_skipsVersionOnlyUpdates() {
+    SettlementMission previous = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMission saved = TestDataGenerator.defaultSettlementMissionData().version(1L).build();
+
+    service.recordUpdate(previous, saved);
+    service.recordUpdate(null, saved);
+
+    verify(mockAuditRpsy, never()).saveAll(anyList());
+  }
+
+  @Test
+  public void recordUpdate_countsWriteFailures() {
+    SettlementMission previous = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMission saved = TestDataGenerator.defaultSettlementMissionData().qty(250d)
+        .version(1L).build();
+    given(mockAuditRpsy.saveAll(any())).willThrow(new IllegalStateException("db down"));
+
+    service.recordUpdate(previous, saved);
+
+    assertEquals(1, registry.get("fuse.audit.write.failures").counter().count(), 0);
+  }
+}
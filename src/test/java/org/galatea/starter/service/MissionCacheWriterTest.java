@@ -0,0 +1,96 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+public class MissionCacheWriterTest {
+
+  private final CacheManager cacheManager =
+      new TransactionAwareCacheManagerProxy(new ConcurrentMapCacheManager("missions"));
+
+  private final Cache cache = cacheManager.getCache("missions");
+
+  private MissionCacheWriter writer;
+
+  @Before
+  public void setup() {
+    writer = new MissionCacheWriter(cacheManager);
+    ReflectionTestUtils.setField(writer, "writeThrough", true);
+  }
+
+  @After
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void cacheSaved_putsOutsideTransaction() {
+    SettlementMission first = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission second = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    writer.cacheSaved(Arrays.asList(first, second));
+
+    assertEquals(first, cache.get(1L).get());
+    assertEquals(second, cache.get(2L).get());
+  }
+
+  @Test
+  public void cacheSaved_disabled() {
+    ReflectionTestUtils.setField(writer, "writeThrough", false);
+
+    writer.cacheSaved(missions(1L));
+
+    assertNull(cache.get(1L));
+  }
+
+  @Test
+  public void cacheSaved_waitsForCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+    writer.cacheSaved(missions(1L));
+    assertNull(cache.get(1L));
+
+    List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+    TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+        TransactionSynchronization.STATUS_COMMITTED);
+
+    assertEquals((Long) 1L, ((SettlementMission) cache.get(1L).get()).getId());
+  }
+
+  @Test
+  public void cacheSaved_droppedOnRollback() {
+    TransactionSynchronizationManager.initSynchronization();
+    writer.cacheSaved(missions(1L));
+
+    TransactionSynchronizationUtils.invokeAfterCompletion(
+        TransactionSynchronizationManager.getSynchronizations(),
+        TransactionSynchronization.STATUS_ROLLED_BACK);
+
+    assertNull(cache.get(1L));
+  }
+
+  private static List<SettlementMission> missions(final Long id) {
+    return Collections.singletonList(
+        TestDataGenerator.defaultSettlementMissionData().id(id).build());
+  }
+}
@@ -0,0 +1,103 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.service.MissionChange.Type;
+import org.galatea.starter.service.MissionChangePublisher.Subscription;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class MissionChangePublisherTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private final MissionChangePublisher publisher = new MissionChangePublisher(registry);
+
+  private final List<MissionChange> received = new CopyOnWriteArrayList<>();
+
+  @After
+  public void tearDown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void publish_deliversWantedChanges() {
+    publisher.subscribe(Arrays.asList(1L, 3L), received::add);
+
+    publisher.publishSaved(Type.CREATED, Arrays.asList(mission(1L), mission(2L)));
+    publisher.publishSaved(Type.UPDATED, Collections.singletonList(mission(3L)));
+    publisher.publishDeleted(1L);
+
+    assertEquals(3, received.size());
+    assertEquals(new MissionChange(Type.CREATED, 1L, mission(1L)), received.get(0));
+    assertEquals(new MissionChange(Type.UPDATED, 3L, mission(3L)), received.get(1));
+    assertEquals(Type.DELETED, received.get(2).getType());
+    assertNull(received.get(2).getMission());
+    assertEquals(3, registry.get("fuse.mission-changes.delivered").counter().count(), 0);
+  }
+
+  @Test
+  public void publish_allMissionsWhenNoIds() {
+    publisher.subscribe(Collections.emptyList(), received::add);
+
+    publisher.publishSaved(Type.CREATED, Arrays.asList(mission(1L), mission(2L)));
+
+    assertEquals(2, received.size());
+  }
+
+  @Test
+  public void publish_nothingAfterClose() {
+    Subscription subscription = publisher.subscribe(Collections.emptyList(), received::add);
+    subscription.close();
+
+    publisher.publishDeleted(1L);
+
+    assertTrue(received.isEmpty());
+    assertEquals(0, registry.get("fuse.mission-changes.subscribers").gauge().value(), 0);
+  }
+
+  @Test
+  public void publish_unsubscribesFailingListener() {
+    publisher.subscribe(Collections.emptyList(), change -> {
+      throw new IllegalStateException("listener down");
+    });
+    publisher.subscribe(Collections.emptyList(), received::add);
+
+    publisher.publishDeleted(1L);
+    publisher.publishDeleted(2L);
+
+    assertEquals(2, received.size());
+    assertEquals(1, registry.get("fuse.mission-changes.subscribers").gauge().value(), 0);
+  }
+
+  @Test
+  public void publish_heldBackUntilCommit() {
+    publisher.subscribe(Collections.emptyList(), received::add);
+    TransactionSynchronizationManager.initSynchronization();
+
+    publisher.publishDeleted(1L);
+    assertTrue(received.isEmpty());
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    assertEquals(Collections.singletonList(new MissionChange(Type.DELETED, 1L, null)), received);
+  }
+
+  private static SettlementMission mission(final Long id) {
+    return TestDataGenerator.defaultSettlementMissionData().id(id).build();
+  }
+}
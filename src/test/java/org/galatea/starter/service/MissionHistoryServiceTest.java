@@ -0,0 +1,157 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionHistory;
+import org.galatea.starter.domain.rpsy.ISettlementMissionHistoryRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class MissionHistoryServiceTest {
+
+  private static final Long MISSION_ID = 35L;
+
+  private final List<SettlementMissionHistory> history = new ArrayList<>();
+
+  private MissionHistoryService service;
+
+  @Before
+  public void setup() {
+    // Back the mocked repository with a list so that the service reads what it wrote
+    ISettlementMissionHistoryRpsy rpsy = Mockito.mock(ISettlementMissionHistoryRpsy.class);
+    given(rpsy.save(any(SettlementMissionHistory.class))).willAnswer(invocation -> {
+      history.add(invocation.getArgument(0));
+      return invocation.getArgument(0);
+    });
+    given(rpsy.saveAll(anyList())).willAnswer(invocation -> {
+      history.addAll(invocation.getArgument(0));
+      return invocation.getArgument(0);
+    });
+    given(rpsy.findTopByMissionIdOrderByVersionDesc(anyLong()))
+        .willAnswer(invocation -> history.stream()
+            .max(Comparator.comparing(SettlementMissionHistory::getVersion)));
+    given(rpsy.findTopByMissionIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(
+        anyLong(), anyLong())).willAnswer(invocation -> history.stream()
+            .filter(h -> h.isSnapshot() && h.getVersion() <= (Long) invocation.getArgument(1))
+            .max(Comparator.comparing(SettlementMissionHistory::getVersion)));
+    given(rpsy.findByMissionIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(
+        anyLong(), anyLong(), anyLong())).willAnswer(invocation -> history.stream()
+            .filter(h -> h.getVersion() > (Long) invocation.getArgument(1)
+                && h.getVersion() <= (Long) invocation.getArgument(2))
+            .sorted(Comparator.comparing(SettlementMissionHistory::getVersion))
+            .collect(Collectors.toList()));
+    given(rpsy.findTopByMissionIdAndRecordedAtLessThanEqualOrderByVersionDesc(anyLong(),
+        any(Instant.class))).willAnswer(invocation -> history.stream()
+            .filter(h -> !h.getRecordedAt().isAfter(invocation.getArgument(1)))
+            .max(Comparator.comparing(SettlementMissionHistory::getVersion)));
+
+    service = new MissionHistoryService(rpsy, new ObjectMapper());
+    ReflectionTestUtils.setField(service, "snapshotInterval", 3L);
+  }
+
+  @Test
+  public void recordUpdate_storesBaselineThenDeltas() {
+    applyUpdates(2);
+
+    assertEquals(3, history.size());
+    assertTrue(history.get(0).isSnapshot());
+    assertFalse(history.get(1).isSnapshot());
+    assertFalse(history.get(2).isSnapshot());
+    assertFalse(history.get(1).getPayload().contains("depot"));
+  }
+
+  @Test
+  public void recordUpdate_snapshotsEveryInterval() {
+    applyUpdates(4);
+
+    assertTrue(history.get(3).isSnapshot());
+    assertFalse(history.get(4).isSnapshot());
+  }
+
+  @Test
+  public void recordUpdate_snapshotsWhenChainBroken() {
+    applyUpdates(1);
+
+    SettlementMission previous = mission(5L, 500d);
+    service.recordUpdate(previous, mission(6L, 600d));
+
+    assertTrue(history.get(history.size() - 1).isSnapshot());
+  }
+
+  @Test
+  public void findMissionAtVersion_rebuildsEveryVersion() {
+    applyUpdates(7);
+
+    for (long version = 0; version <= 7; version++) {
+      Optional<SettlementMission> rebuilt = service.findMissionAtVersion(MISSION_ID, version);
+      assertTrue(rebuilt.isPresent());
+      assertEquals(mission(version, qtyAt(version)), rebuilt.get());
+    }
+  }
+
+  @Test
+  public void findMissionAtVersion_unknownVersion() {
+    applyUpdates(2);
+
+    assertFalse(service.findMissionAtVersion(MISSION_ID, 9L).isPresent());
+  }
+
+  @Test
+  public void findMissionAsOf_returnsLatestRecorded() {
+    applyUpdates(2);
+
+    assertEquals(mission(2L, qtyAt(2)), service.findMissionAsOf(MISSION_ID, Instant.now()).get());
+    assertEquals(mission(0L, qtyAt(0)),
+        service.findMissionAsOf(MISSION_ID, Instant.EPOCH).get());
+  }
+
+  @Test
+  public void recordCreation_startsHistoryAtCreationTime() throws Exception {
+    Instant beforeCreation = Instant.now();
+    Thread.sleep(5);
+    service.recordCreation(Collections.singletonList(mission(0L, qtyAt(0))));
+    applyUpdates(2);
+
+    // The creation snapshot is the chain the updates build on, so no baseline is added
+    assertEquals(3, history.size());
+    assertTrue(history.get(0).isSnapshot());
+    assertFalse(history.get(1).isSnapshot());
+    assertFalse(service.findMissionAsOf(MISSION_ID, beforeCreation).isPresent());
+    assertEquals(mission(0L, qtyAt(0)), service.findMissionAtVersion(MISSION_ID, 0L).get());
+    assertEquals(mission(2L, qtyAt(2)), service.findMissionAsOf(MISSION_ID, Instant.now()).get());
+  }
+
+  private void applyUpdates(final int count) {
+    for (long version = 1; version <= count; version++) {
+      service.recordUpdate(mission(version - 1, qtyAt(version - 1)),
+          mission(version, qtyAt(version)));
+    }
+  }
+
+  private static double qtyAt(final long version) {
+    return 100d + version;
+  }
+
+  private static SettlementMission mission(final long version, final double qty) {
+    return TestDataGenerator.defaultSettlementMissionData().id(MISSION_ID).version(version)
+        .qty(qty).build();
+  }
+}
@@ -0,0 +1,74 @@
+package org.galatea.starter.service;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionAudit;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs updates through the real repositories, since the version of a mission is only bumped when
+ * Hibernate flushes it.
+ */
+@SpringBootTest
+public class SettlementServiceHistoryTest extends ASpringTest {
+
+  @Autowired
+  private SettlementService settlementService;
+
+  @Test
+  public void testUpdatesAreRecordedAtTheirNewVersion() {
+    List<SettlementMission> versions = new ArrayList<>();
+    versions.add(spawnMission());
+    Long id = versions.get(0).getId();
+
+    for (int i = 1; i <= 3; i++) {
+      SettlementMission updated = versions.get(i - 1).toBuilder().qty(100d + i).build();
+      SettlementMission saved = settlementService.updateMission(id, updated).get();
+      assertEquals(Long.valueOf(i), saved.getVersion());
+      versions.add(saved.toBuilder().build());
+    }
+
+    for (SettlementMission expected : versions) {
+      assertEquals(expected,
+          settlementService.findMissionAtVersion(id, expected.getVersion()).get());
+    }
+    assertEquals(versions.get(3), settlementService.findMissionAsOf(id, Instant.now()).get());
+  }
+
+  @Test
+  public void testAuditsAreRecordedAtTheirNewVersion() {
+    SettlementMission mission = spawnMission();
+    Long id = mission.getId();
+
+    mission = settlementService.updateMission(id, mission.toBuilder().qty(200d).build()).get();
+    settlementService.updateMission(id, mission.toBuilder().qty(300d).build());
+
+    // Audit records are written off the updating thread
+    await().atMost(5, TimeUnit.SECONDS)
+        .until(() -> settlementService.findMissionAudits(id).size() == 2);
+    List<SettlementMissionAudit> audits = settlementService.findMissionAudits(id);
+    assertEquals(Arrays.asList(1L, 2L),
+        audits.stream().map(SettlementMissionAudit::getVersion).collect(Collectors.toList()));
+    assertEquals(Arrays.asList("200.0", "300.0"),
+        audits.stream().map(SettlementMissionAudit::getNewValue).collect(Collectors.toList()));
+  }
+
+  private SettlementMission spawnMission() {
+    Long id = settlementService.spawnMissionIds(Collections.singletonList(
+        TestDataGenerator.defaultTradeAgreementData().build())).get(0);
+    return settlementService.findMission(id).get().toBuilder().build();
+  }
+}
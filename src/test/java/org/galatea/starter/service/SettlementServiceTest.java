@@ -7,6 +7,8 @@ import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -18,10 +20,14 @@ import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.concurrent.GroupCommitter;
+import org.galatea.starter.utils.lock.StripedLocks;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.PlatformTransactionManager;
 
 public class SettlementServiceTest extends ASpringTest {
 
@@ -31,11 +37,42 @@ public class SettlementServiceTest extends ASpringTest {
   @MockBean
   private IAgreementTransformer mockAgreementTransformer;
 
+  @MockBean
+  private MissionHistoryService mockMissionHistoryService;
+
+  @MockBean
+  private MissionAuditService mockMissionAuditService;
+
+  @MockBean
+  private MissionCacheWriter mockMissionCacheWriter;
+
+  @MockBean
+  private MissionChangePublisher mockMissionChangePublisher;
+
+  private final PlatformTransactionManager mockTransactionManager =
+      Mockito.mock(PlatformTransactionManager.class);
+
+  private final StripedLocks missionLocks =
+      new StripedLocks("missions", 4, new SimpleMeterRegistry());
+
+  private GroupCommitter<SettlementMission, SettlementMission> missionGroupCommitter;
+
   private SettlementService service;
 
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    missionGroupCommitter = new GroupCommitter<>("missions",
+        missions -> Lists.newArrayList(mockSettlementMissionRpsy.saveAll(missions)), 10, 0,
+        new SimpleMeterRegistry());
+    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer,
+        missionLocks, missionGroupCommitter, mockMissionHistoryService,
+        mockMissionAuditService, mockMissionCacheWriter, mockMissionChangePublisher,
+        mockTransactionManager);
+  }
+
+  @After
+  public void tearDown() {
+    missionGroupCommitter.close();
   }
 
   @Test
@@ -112,6 +149,39 @@ public class SettlementServiceTest extends ASpringTest {
 
     Set<Long> missionIds = service.spawnMissions(Collections.singletonList(testTradeAgreement));
     assertEquals(1, missionIds.size());
+    Mockito.verify(this.mockMissionCacheWriter)
+        .cacheSaved(Collections.singletonList(testSettlementMission));
+  }
+
+  @Test
+  public void testSpawnMissionIdsInAgreementOrder() {
+    given(this.mockSettlementMissionRpsy.saveAll(Mockito.anyList())).willReturn(Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(3L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build()));
+
+    List<Long> missionIds = service.spawnMissionIds(Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().instrument("IBM").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("AAPL").build(),
+        TestDataGenerator.defaultTradeAgreementData().instrument("MSFT").build()));
+
+    assertEquals(Arrays.asList(3L, 1L, 2L), missionIds);
+  }
+
+  @Test
+  public void testSpawnTransformedMissions() {
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(null).instrument("IBM").build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).instrument("AAPL").build());
+    List<SettlementMission> saved = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(4L).instrument("IBM").build(),
+        TestDataGenerator.defaultSettlementMissionData().id(5L).instrument("AAPL").build());
+    given(this.mockSettlementMissionRpsy.saveAll(missions)).willReturn(saved);
+
+    assertEquals(Arrays.asList(4L, 5L), service.spawnTransformedMissions(missions));
+    Mockito.verify(this.mockMissionCacheWriter).cacheSaved(saved);
+    Mockito.verify(this.mockMissionChangePublisher)
+        .publishSaved(MissionChange.Type.CREATED, saved);
   }
 
   @Test
@@ -120,16 +190,58 @@ public class SettlementServiceTest extends ASpringTest {
     SettlementMission testSettlementMission = SettlementMission.builder().depot("DTC")
         .externalParty("EXT-1").instrument("IBM").direction("REC").qty(100d).version(0L).build();
 
-    given(this.mockSettlementMissionRpsy.save(testSettlementMission))
+    given(this.mockSettlementMissionRpsy.saveAndFlush(testSettlementMission))
         .willReturn(testSettlementMission);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionLocks, this.missionGroupCommitter, this.mockMissionHistoryService,
+            this.mockMissionAuditService, this.mockMissionCacheWriter,
+            this.mockMissionChangePublisher, this.mockTransactionManager);
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
   }
 
+  @Test
+  public void testUpdateMissionRecordsHistory() {
+    SettlementMission previous = TestDataGenerator.defaultSettlementMissionData().id(35L)
+        .version(0L).build();
+    SettlementMission updated = TestDataGenerator.defaultSettlementMissionData().qty(200d)
+        .version(0L).build();
+    SettlementMission saved = TestDataGenerator.defaultSettlementMissionData().id(35L)
+        .qty(200d).version(1L).build();
+
+    given(this.mockSettlementMissionRpsy.findById(35L)).willReturn(Optional.of(previous));
+    given(this.mockSettlementMissionRpsy.saveAndFlush(updated)).willReturn(saved);
+
+    service.updateMission(35L, updated);
+    Mockito.verify(this.mockMissionCacheWriter).cacheSaved(Collections.singletonList(saved));
+    Mockito.verify(this.mockMissionHistoryService).recordUpdate(previous, saved);
+    Mockito.verify(this.mockMissionAuditService).recordUpdate(previous, saved);
+    Mockito.verify(this.mockMissionChangePublisher)
+        .publishSaved(MissionChange.Type.UPDATED, Collections.singletonList(saved));
+  }
+
+  @Test
+  public void testUpdateMissionRolledBackWithHistory() {
+    SettlementMission updated = TestDataGenerator.defaultSettlementMissionData().build();
+
+    given(this.mockSettlementMissionRpsy.saveAndFlush(updated)).willReturn(updated);
+    IllegalStateException historyDown = new IllegalStateException("history down");
+    Mockito.doThrow(historyDown).when(this.mockMissionHistoryService)
+        .recordUpdate(Mockito.any(), Mockito.any());
+
+    try {
+      service.updateMission(35L, updated);
+      fail("The update was expected to fail with its history");
+    } catch (IllegalStateException e) {
+      assertEquals(historyDown, e);
+    }
+    Mockito.verify(this.mockTransactionManager).rollback(Mockito.any());
+    Mockito.verify(this.mockTransactionManager, Mockito.never()).commit(Mockito.any());
+  }
+
   @Test
   public void testMissionExists() {
 
@@ -137,7 +249,10 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(true);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionLocks, this.missionGroupCommitter, this.mockMissionHistoryService,
+            this.mockMissionAuditService, this.mockMissionCacheWriter,
+            this.mockMissionChangePublisher, this.mockTransactionManager);
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -149,10 +264,14 @@ public class SettlementServiceTest extends ASpringTest {
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer,
+            this.missionLocks, this.missionGroupCommitter, this.mockMissionHistoryService,
+            this.mockMissionAuditService, this.mockMissionCacheWriter,
+            this.mockMissionChangePublisher, this.mockTransactionManager);
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
     assertFalse(missionExists);
+    Mockito.verify(this.mockMissionChangePublisher).publishDeleted(35L);
   }
 }
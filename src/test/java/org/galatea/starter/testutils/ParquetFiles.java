@@ -0,0 +1,106 @@
+package org.galatea.starter.testutils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.DelegatingSeekableInputStream;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.MessageType;
+
+public class ParquetFiles {
+
+  private ParquetFiles() {}
+
+  /**
+   * Open a Parquet file held in memory.
+   *
+   * @param file the binary content of the file
+   * @return a reader of the file, which the caller should close
+   */
+  public static ParquetFileReader open(final byte[] file) throws IOException {
+    return ParquetFileReader.open(new BytesInputFile(file));
+  }
+
+  /**
+   * Read the rows of every remaining row group of a Parquet file.
+   *
+   * @param reader a reader of the file
+   * @return the rows, in file order
+   */
+  public static List<Group> readRows(final ParquetFileReader reader) throws IOException {
+    MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+    List<Group> rows = new ArrayList<>();
+    PageReadStore pages;
+    while ((pages = reader.readNextRowGroup()) != null) {
+      RecordReader<Group> records = new ColumnIOFactory().getColumnIO(schema)
+          .getRecordReader(pages, new GroupRecordConverter(schema));
+      for (long i = 0; i < pages.getRowCount(); i++) {
+        rows.add(records.read());
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Read all the rows of a Parquet file held in memory.
+   *
+   * @param file the binary content of the file
+   * @return the rows, in file order
+   */
+  public static List<Group> readRows(final byte[] file) throws IOException {
+    try (ParquetFileReader reader = open(file)) {
+      return readRows(reader);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class BytesInputFile implements InputFile {
+
+    private final byte[] bytes;
+
+    @Override
+    public long getLength() {
+      return bytes.length;
+    }
+
+    @Override
+    public SeekableInputStream newStream() {
+      SeekableByteArrayInputStream in = new SeekableByteArrayInputStream(bytes);
+      return new DelegatingSeekableInputStream(in) {
+        @Override
+        public long getPos() {
+          return in.getPos();
+        }
+
+        @Override
+        public void seek(final long newPos) {
+          in.seek(newPos);
+        }
+      };
+    }
+  }
+
+  private static class SeekableByteArrayInputStream extends ByteArrayInputStream {
+
+    SeekableByteArrayInputStream(final byte[] bytes) {
+      super(bytes);
+    }
+
+    long getPos() {
+      return pos;
+    }
+
+    void seek(final long newPos) {
+      pos = (int) newPos;
+    }
+  }
+}
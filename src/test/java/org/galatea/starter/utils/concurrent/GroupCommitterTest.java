@@ -0,0 +1,177 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+@Slf4j
+public class GroupCommitterTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  @Test
+  public void commit_returnsOwnResults() {
+    Function<List<Integer>, List<String>> op =
+        items -> items.stream().map(i -> "r" + i).collect(Collectors.toList());
+
+    GroupCommitter<Integer, String> committer = new GroupCommitter<>("test", op, 10, 0, registry);
+    try {
+      assertEquals(Arrays.asList("r1", "r2"), committer.commit(Arrays.asList(1, 2)));
+      assertEquals(Collections.emptyList(), committer.commit(Collections.emptyList()));
+    } finally {
+      committer.close();
+    }
+  }
+
+  @Test
+  public void submit_groupsQueuedCallers() throws Exception {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+
+    Function<List<Integer>, List<Integer>> op = items -> {
+      batches.add(items);
+      firstBatchStarted.countDown();
+      awaitLatch(releaseFirstBatch);
+      return items;
+    };
+
+    GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test", op, 10, 0, registry);
+    try {
+      // Hold the dispatcher inside the first batch so that the next callers queue up behind it
+      CompletableFuture<List<Integer>> first = committer.submit(Collections.singletonList(1));
+      assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+      CompletableFuture<List<Integer>> second = committer.submit(Arrays.asList(2, 3));
+      CompletableFuture<List<Integer>> third = committer.submit(Collections.singletonList(4));
+      releaseFirstBatch.countDown();
+
+      assertEquals(Collections.singletonList(1), first.get(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(2, 3), second.get(5, TimeUnit.SECONDS));
+      assertEquals(Collections.singletonList(4), third.get(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(Collections.singletonList(1), Arrays.asList(2, 3, 4)), batches);
+    } finally {
+      committer.close();
+    }
+  }
+
+  @Test
+  public void submit_isolatesFailingCaller() throws Exception {
+    CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+
+    Function<List<Integer>, List<Integer>> op = items -> {
+      firstBatchStarted.countDown();
+      awaitLatch(releaseFirstBatch);
+      if (items.contains(-1)) {
+        throw new IllegalArgumentException("negative item");
+      }
+      return items;
+    };
+
+    GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test", op, 10, 0, registry);
+    try {
+      CompletableFuture<List<Integer>> first = committer.submit(Collections.singletonList(1));
+      assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+      CompletableFuture<List<Integer>> good1 = committer.submit(Collections.singletonList(2));
+      CompletableFuture<List<Integer>> bad = committer.submit(Arrays.asList(3, -1));
+      CompletableFuture<List<Integer>> good2 = committer.submit(Collections.singletonList(4));
+      releaseFirstBatch.countDown();
+
+      assertEquals(Collections.singletonList(1), first.get(5, TimeUnit.SECONDS));
+      assertEquals(Collections.singletonList(2), good1.get(5, TimeUnit.SECONDS));
+      assertEquals(Collections.singletonList(4), good2.get(5, TimeUnit.SECONDS));
+      try {
+        bad.get(5, TimeUnit.SECONDS);
+        fail("The caller with the failing item should have seen the exception");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+      assertTrue(registry.get("fuse.group-commit.isolations").counter().count() > 0);
+    } finally {
+      committer.close();
+    }
+  }
+
+  @Test
+  public void submit_failsWholeCallerForOneBadItem() throws Exception {
+    CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+    List<Integer> committed = new CopyOnWriteArrayList<>();
+
+    Function<List<Integer>, List<Integer>> op = items -> {
+      firstBatchStarted.countDown();
+      awaitLatch(releaseFirstBatch);
+      if (items.contains(-1)) {
+        throw new IllegalArgumentException("negative item");
+      }
+      committed.addAll(items);
+      return items;
+    };
+
+    GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test", op, 10, 0, registry);
+    try {
+      CompletableFuture<List<Integer>> first = committer.submit(Collections.singletonList(1));
+      assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+      CompletableFuture<List<Integer>> bad = committer.submit(Arrays.asList(2, 3, -1, 4, 5));
+      CompletableFuture<List<Integer>> good = committer.submit(Arrays.asList(6, 7));
+      releaseFirstBatch.countDown();
+
+      assertEquals(Collections.singletonList(1), first.get(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(6, 7), good.get(5, TimeUnit.SECONDS));
+      try {
+        bad.get(5, TimeUnit.SECONDS);
+        fail("The caller with the bad item should have seen the exception");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+      // The good items of the failing caller went down with its bad one
+      assertEquals(Arrays.asList(1, 6, 7), committed);
+    } finally {
+      committer.close();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void commit_rethrowsUnwrapped() {
+    GroupCommitter<Integer, Integer> committer = new GroupCommitter<>("test", items -> {
+      throw new IllegalArgumentException("bad");
+    }, 10, 0, registry);
+    try {
+      committer.commit(Collections.singletonList(1));
+    } finally {
+      committer.close();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void submit_rejectedAfterClose() {
+    GroupCommitter<Integer, Integer> committer =
+        new GroupCommitter<>("test", items -> items, 10, 0, registry);
+    committer.close();
+    committer.submit(Collections.singletonList(1));
+  }
+
+  private void awaitLatch(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+}
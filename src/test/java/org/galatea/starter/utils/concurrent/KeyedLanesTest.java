@@ -0,0 +1,128 @@
+package org.galatea.starter.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeyedLanesTest {
+
+  private final MeterRegistry registry = new SimpleMeterRegistry();
+
+  private KeyedLanes lanes;
+
+  @Before
+  public void setup() {
+    lanes = new KeyedLanes("test", 4, registry);
+  }
+
+  @After
+  public void cleanup() {
+    lanes.close();
+  }
+
+  @Test
+  public void submit_keepsOrderPerKey() throws Exception {
+    Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String key = "IBM" + i % 7;
+      int sequence = i;
+      done.add(lanes.submit(key, () ->
+          seen.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(sequence)));
+    }
+    CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+    assertEquals(7, seen.size());
+    seen.values().forEach(sequences -> {
+      for (int i = 1; i < sequences.size(); i++) {
+        assertTrue(sequences.get(i - 1) < sequences.get(i));
+      }
+    });
+  }
+
+  @Test
+  public void submit_runsLanesInParallel() throws Exception {
+    String key1 = "IBM";
+    String key2 = keyOnOtherLane(key1);
+    CountDownLatch bothRunning = new CountDownLatch(2);
+
+    // Each task waits for the other, so this only completes if they run at the same time
+    CompletableFuture<Void> first = lanes.submit(key1, () -> awaitOther(bothRunning));
+    CompletableFuture<Void> second = lanes.submit(key2, () -> awaitOther(bothRunning));
+
+    CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void submit_spreadsTasksWithoutKey() throws Exception {
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      done.add(lanes.submit(null, () -> threads.add(Thread.currentThread().getName())));
+    }
+    CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+    assertEquals(4, threads.size());
+  }
+
+  @Test
+  public void backlog_countsQueuedTasks() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    int lane = lanes.laneOf("IBM");
+    CompletableFuture<Void> blocking = lanes.submit("IBM", () -> awaitLatch(release));
+    CompletableFuture<Void> queued = lanes.submit("IBM", () -> { });
+
+    assertEquals(2, lanes.backlog(lane));
+    assertEquals(2, registry.get("fuse.lanes.backlog").tag("lanes", "test")
+        .tag("lane", String.valueOf(lane)).gauge().value(), 0);
+
+    release.countDown();
+    CompletableFuture.allOf(blocking, queued).get(5, TimeUnit.SECONDS);
+    assertEquals(0, lanes.backlog(lane));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void submit_rejectedAfterClose() {
+    lanes.close();
+    lanes.submit("IBM", () -> { });
+  }
+
+  private String keyOnOtherLane(final String key) {
+    for (int i = 0; ; i++) {
+      String other = key + i;
+      if (lanes.laneOf(other) != lanes.laneOf(key)) {
+        return other;
+      }
+    }
+  }
+
+  private static void awaitOther(final CountDownLatch bothRunning) {
+    bothRunning.countDown();
+    awaitLatch(bothRunning);
+  }
+
+  private static void awaitLatch(final CountDownLatch latch) {
+    try {
+      if (!latch.await(5, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Timed out waiting for the latch");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.galatea.starter.utils.diff;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.builder.DiffResult;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.Helpers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Diff throughput of the reflective {@link Helpers#diff(Object, Object)} against the compiled
+ * accessors of {@link PropertyDiffer}, for a typical mission update. Run the main method (from the
+ * IDE or with the test classpath) to get the ops/ms of each.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PropertyDifferBenchmark {
+
+  private SettlementMission previous;
+
+  private SettlementMission updated;
+
+  private PropertyDiffer<SettlementMission> differ;
+
+  /**
+   * Builds the two versions of the mission that are compared.
+   */
+  @Setup
+  public void setup() {
+    previous = TestDataGenerator.defaultSettlementMissionData().build();
+    updated = TestDataGenerator.defaultSettlementMissionData().qty(250d).version(1L).build();
+    differ = PropertyDiffer.of(SettlementMission.class);
+  }
+
+  @Benchmark
+  public DiffResult reflectiveDiff() {
+    return Helpers.diff(previous, updated);
+  }
+
+  @Benchmark
+  public List<PropertyChange> compiledDiff() {
+    return differ.diff(previous, updated);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PropertyDifferBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
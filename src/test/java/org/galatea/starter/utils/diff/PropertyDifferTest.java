@@ -0,0 +1,100 @@
+package org.galatea.starter.utils.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+
+@Slf4j
+public class PropertyDifferTest {
+
+  public static class SimpleObject {
+
+    private String x = "X";
+
+    private long count = 1;
+
+    private boolean active = true;
+
+    private int[] values = {1, 2};
+
+    public String getX() {
+      return x;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public int[] getValues() {
+      return values;
+    }
+
+    // Starts with "get" but is private, so it shouldn't be compared
+    private long getNanoTime() {
+      return System.nanoTime();
+    }
+  }
+
+  @Test
+  public void testNoDiff() {
+    PropertyDiffer<SimpleObject> differ = PropertyDiffer.of(SimpleObject.class);
+
+    assertEquals(Collections.emptyList(), differ.diff(new SimpleObject(), new SimpleObject()));
+  }
+
+  @Test
+  public void testDiffIncludesPrimitives() {
+    SimpleObject lhs = new SimpleObject();
+    SimpleObject rhs = new SimpleObject();
+    rhs.x = "Y";
+    rhs.count = 2;
+    rhs.active = false;
+    rhs.values = new int[] {1, 3};
+
+    List<PropertyChange> changes = PropertyDiffer.of(SimpleObject.class).diff(lhs, rhs);
+    log.info("Changes: {}", changes);
+
+    assertEquals(Arrays.asList("active", "count", "values", "x"),
+        changes.stream().map(PropertyChange::getProperty).collect(Collectors.toList()));
+    assertEquals(new PropertyChange("count", 1L, 2L), changes.get(1));
+    assertEquals(new PropertyChange("active", true, false), changes.get(0));
+  }
+
+  @Test
+  public void testMissionDiff() {
+    SettlementMission lhs = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMission rhs = TestDataGenerator.defaultSettlementMissionData().qty(250d)
+        .version(1L).build();
+
+    List<PropertyChange> changes = PropertyDiffer.of(SettlementMission.class).diff(lhs, rhs);
+
+    assertEquals(Arrays.asList(new PropertyChange("qty", 100d, 250d),
+        new PropertyChange("version", 0L, 1L)), changes);
+  }
+
+  @Test
+  public void testDifferIsCachedPerClass() {
+    PropertyDiffer<SettlementMission> differ = PropertyDiffer.of(SettlementMission.class);
+
+    assertSame(differ, PropertyDiffer.of(SettlementMission.class));
+    assertTrue(differ.getPropertyNames().contains("externalParty"));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullRejected() {
+    PropertyDiffer.of(SimpleObject.class).diff(new SimpleObject(), null);
+  }
+}
@@ -0,0 +1,190 @@
+package org.galatea.starter.utils.http.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import org.apache.parquet.column.Encoding;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.OriginalType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Type.Repetition;
+import org.galatea.starter.testutils.ParquetFiles;
+import org.junit.Test;
+
+public class ParquetSerializerTest {
+
+  private static final int ROW_GROUP_BYTES = 1024 * 1024;
+
+  @Test
+  public void serializeToParquet_basic() throws Exception {
+    Instant instant = Instant.parse("2019-01-02T03:04:05.678Z");
+    List<TypedClass> rows = Arrays.asList(
+        new TypedClass("foo", 1, 2L, 3.5, new BigDecimal("4.25"), true, instant, Side.BUY),
+        new TypedClass(null, 5, null, null, null, null, null, null));
+
+    byte[] parquet = serialize(rows, TypedClass.class, ROW_GROUP_BYTES,
+        CompressionCodecName.SNAPPY);
+
+    try (ParquetFileReader reader = ParquetFiles.open(parquet)) {
+      MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+      assertEquals("TypedClass", schema.getName());
+      assertEquals(OriginalType.UTF8, schema.getType("string").getOriginalType());
+      assertEquals(Repetition.REQUIRED, schema.getType("primitive").getRepetition());
+      assertEquals(PrimitiveTypeName.INT32,
+          schema.getType("primitive").asPrimitiveType().getPrimitiveTypeName());
+      assertEquals(Repetition.OPTIONAL, schema.getType("boxed").getRepetition());
+      assertEquals(PrimitiveTypeName.DOUBLE,
+          schema.getType("decimal").asPrimitiveType().getPrimitiveTypeName());
+      assertEquals(OriginalType.TIMESTAMP_MILLIS, schema.getType("instant").getOriginalType());
+      assertEquals(OriginalType.UTF8, schema.getType("side").getOriginalType());
+
+      List<Group> groups = ParquetFiles.readRows(reader);
+      assertEquals(2, groups.size());
+
+      Group first = groups.get(0);
+      assertEquals("foo", first.getString("string", 0));
+      assertEquals(1, first.getInteger("primitive", 0));
+      assertEquals(2L, first.getLong("boxed", 0));
+      assertEquals(3.5, first.getDouble("dbl", 0), 0);
+      assertEquals(4.25, first.getDouble("decimal", 0), 0);
+      assertTrue(first.getBoolean("bool", 0));
+      assertEquals(instant.toEpochMilli(), first.getLong("instant", 0));
+      assertEquals("BUY", first.getString("side", 0));
+
+      // Null values are left out of the row
+      Group second = groups.get(1);
+      assertEquals(0, second.getFieldRepetitionCount("string"));
+      assertEquals(5, second.getInteger("primitive", 0));
+      assertEquals(0, second.getFieldRepetitionCount("instant"));
+    }
+  }
+
+  @Test
+  public void serializeToParquet_compressedAndDictionaryEncoded() throws Exception {
+    List<TypedClass> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(new TypedClass("INS" + i % 10, i, (long) i, 100.0, BigDecimal.ONE, false,
+          Instant.EPOCH, Side.SELL));
+    }
+
+    byte[] parquet = serialize(rows, TypedClass.class, ROW_GROUP_BYTES,
+        CompressionCodecName.GZIP);
+
+    try (ParquetFileReader reader = ParquetFiles.open(parquet)) {
+      BlockMetaData block = reader.getFooter().getBlocks().get(0);
+      for (ColumnChunkMetaData column : block.getColumns()) {
+        assertEquals(CompressionCodecName.GZIP, column.getCodec());
+      }
+      ColumnChunkMetaData string = block.getColumns().get(0);
+      assertEquals("string", string.getPath().toDotString());
+      assertTrue(string.getEncodings().contains(Encoding.PLAIN_DICTIONARY));
+    }
+  }
+
+  @Test
+  public void serializeToParquet_rowGroups() throws Exception {
+    List<TypedClass> rows = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      rows.add(new TypedClass("INS" + i, i, (long) i, (double) i, null, null, null, null));
+    }
+
+    // Small enough that the rows can't all fit in one row group
+    byte[] parquet = serialize(rows, TypedClass.class, 16 * 1024,
+        CompressionCodecName.UNCOMPRESSED);
+
+    try (ParquetFileReader reader = ParquetFiles.open(parquet)) {
+      assertTrue(reader.getFooter().getBlocks().size() > 1);
+
+      List<Group> groups = ParquetFiles.readRows(reader);
+      assertEquals(rows.size(), groups.size());
+      assertEquals("INS9999", groups.get(9999).getString("string", 0));
+    }
+  }
+
+  @Test
+  public void serializeToParquet_customHeaders() throws Exception {
+    byte[] parquet = serialize(Arrays.asList(new CustomHeadersClass("foo", "bar", "baz")),
+        CustomHeadersClass.class, ROW_GROUP_BYTES, CompressionCodecName.SNAPPY);
+
+    try (ParquetFileReader reader = ParquetFiles.open(parquet)) {
+      MessageType schema = reader.getFooter().getFileMetaData().getSchema();
+      // Has custom column names, and field2 is ignored
+      assertEquals(2, schema.getFieldCount());
+      assertEquals("Header 1", schema.getFieldName(0));
+      assertEquals("Header 3", schema.getFieldName(1));
+
+      Group row = ParquetFiles.readRows(reader).get(0);
+      assertEquals("foo", row.getString("Header 1", 0));
+      assertEquals("baz", row.getString("Header 3", 0));
+    }
+  }
+
+  @Test
+  public void canSerialize() {
+    assertTrue(ParquetSerializer.canSerialize(TypedClass.class));
+    assertFalse(ParquetSerializer.canSerialize(ClassWithList.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void serializeToParquet_unsupportedField() throws Exception {
+    serialize(Arrays.asList(new ClassWithList(Arrays.asList("foo"))), ClassWithList.class,
+        ROW_GROUP_BYTES, CompressionCodecName.SNAPPY);
+  }
+
+  private static <T> byte[] serialize(final List<T> rows, final Class<T> clazz,
+      final int rowGroupBytes, final CompressionCodecName codec) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ParquetSerializer.serializeToParquet(rows, clazz, out, rowGroupBytes, codec);
+    return out.toByteArray();
+  }
+
+  private enum Side {
+    BUY, SELL
+  }
+
+  @AllArgsConstructor
+  private static class TypedClass {
+
+    private String string;
+    private int primitive;
+    private Long boxed;
+    private Double dbl;
+    private BigDecimal decimal;
+    private Boolean bool;
+    private Instant instant;
+    private Side side;
+  }
+
+  @AllArgsConstructor
+  private static class ClassWithList {
+
+    private List<String> field1;
+  }
+
+  @AllArgsConstructor
+  private static class CustomHeadersClass {
+
+    @JsonProperty("Header 1")
+    private String field1;
+    @JsonIgnore
+    private String field2;
+    @JsonProperty("Header 3")
+    private String field3;
+  }
+}
@@ -0,0 +1,154 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Collections;
+import java.util.OptionalLong;
+import javax.jms.MessageListener;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+
+public class AdaptiveConcurrencyControllerTest {
+
+  private static final String CONTAINER_ID = "settleAgreement";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final JmsListenerEndpointRegistry registry = mock(JmsListenerEndpointRegistry.class);
+
+  private final ActiveMqQueueStatistics statistics = mock(ActiveMqQueueStatistics.class);
+
+  private FuseMessageListenerContainer container;
+
+  private AdaptiveConcurrencyController controller;
+
+  @Before
+  public void setup() {
+    container = new FuseMessageListenerContainer((msg, err) -> { });
+    container.setConnectionFactory(
+        new ActiveMQConnectionFactory("vm://adaptive-test?broker.persistent=false"));
+    container.setDestinationName("adaptive.test");
+    MessageListener listener = msg -> { };
+    container.setMessageListener(listener);
+    container.setConcurrentConsumers(2);
+    container.setMaxConcurrentConsumers(2);
+    container.initialize();
+    container.start();
+
+    given(registry.getListenerContainerIds()).willReturn(Collections.singleton(CONTAINER_ID));
+    given(registry.getListenerContainer(CONTAINER_ID)).willReturn(container);
+
+    controller = new AdaptiveConcurrencyController(registry, policy(), statistics, () -> 0.1, 1000,
+        meterRegistry);
+  }
+
+  @After
+  public void cleanup() {
+    container.shutdown();
+  }
+
+  @Test
+  public void adjustConsumers_growsOnBacklog() {
+    given(statistics.queueDepth("adaptive.test")).willReturn(OptionalLong.of(500));
+
+    controller.adjustConsumers();
+
+    assertEquals(4, container.getConcurrentConsumers());
+    assertEquals(4, container.getMaxConcurrentConsumers());
+    assertEquals(1, meterRegistry.get("fuse.jms.consumers").tag("container", CONTAINER_ID)
+        .gauges().size());
+  }
+
+  @Test
+  public void adjustConsumers_shrinksWhenDbSaturated() {
+    given(statistics.queueDepth("adaptive.test")).willReturn(OptionalLong.of(500));
+    controller = new AdaptiveConcurrencyController(registry, policy(), statistics, () -> 1, 1000,
+        meterRegistry);
+
+    controller.adjustConsumers();
+
+    assertEquals(1, container.getConcurrentConsumers());
+    assertEquals(1, container.getMaxConcurrentConsumers());
+  }
+
+  @Test
+  public void adjustConsumers_holdsWhenSteady() {
+    given(statistics.queueDepth("adaptive.test")).willReturn(OptionalLong.of(50));
+
+    controller.adjustConsumers();
+
+    assertEquals(2, container.getConcurrentConsumers());
+    assertEquals(2, container.getMaxConcurrentConsumers());
+  }
+
+  @Test
+  public void adjustConsumers_resizesPartitionedContainersUpToLanes() {
+    container.shutdown();
+    container = new FuseMessageListenerContainer((msg, err) -> { });
+    container.setConnectionFactory(
+        new ActiveMQConnectionFactory("vm://adaptive-test?broker.persistent=false"));
+    container.setDestinationName("adaptive.test");
+    MessageListener listener = msg -> { };
+    container.setMessageListener(listener);
+    container.setPartitionLanes(3);
+    container.setConcurrentConsumers(2);
+    container.setMaxConcurrentConsumers(2);
+    container.initialize();
+    container.start();
+    given(registry.getListenerContainer(CONTAINER_ID)).willReturn(container);
+    given(statistics.queueDepth("adaptive.test")).willReturn(OptionalLong.of(500));
+
+    controller.adjustConsumers();
+
+    assertEquals(3, container.getConcurrentConsumers());
+    assertEquals(3, container.getMaxConcurrentConsumers());
+  }
+
+  @Test
+  public void adjustConsumers_keepsKeyedPartitionedContainersToOneConsumer() {
+    container.shutdown();
+    container = new FuseMessageListenerContainer((msg, err) -> { });
+    container.setConnectionFactory(
+        new ActiveMQConnectionFactory("vm://adaptive-test?broker.persistent=false"));
+    container.setDestinationName("adaptive.test");
+    MessageListener listener = msg -> { };
+    container.setMessageListener(listener);
+    container.setPartitionLanes(3);
+    container.setPartitionKeyExtractor(msg -> msg.getStringProperty("instrument"));
+    container.setConcurrency("1");
+    container.initialize();
+    container.start();
+    given(registry.getListenerContainer(CONTAINER_ID)).willReturn(container);
+    given(statistics.queueDepth("adaptive.test")).willReturn(OptionalLong.of(500));
+
+    controller.adjustConsumers();
+
+    assertEquals(1, container.getConcurrentConsumers());
+    assertEquals(1, container.getMaxConcurrentConsumers());
+  }
+
+  @Test
+  public void adjustConsumers_skipsStoppedContainers() {
+    container.stop();
+
+    controller.adjustConsumers();
+
+    verify(statistics, never()).queueDepth(anyString());
+  }
+
+  private static AimdConcurrencyPolicy policy() {
+    return AimdConcurrencyPolicy.builder().minConsumers(1).maxConsumers(10).increaseStep(2)
+        .decreaseFactor(0.5).maxLatencyMillis(100).maxDbPoolUtilisation(0.9)
+        .backlogPerConsumer(50).build();
+  }
+}
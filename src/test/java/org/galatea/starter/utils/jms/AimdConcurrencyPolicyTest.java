@@ -0,0 +1,59 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+
+import org.galatea.starter.utils.jms.AimdConcurrencyPolicy.Sample;
+import org.junit.Test;
+
+public class AimdConcurrencyPolicyTest {
+
+  private final AimdConcurrencyPolicy policy = AimdConcurrencyPolicy.builder().minConsumers(1)
+      .maxConsumers(10).increaseStep(2).decreaseFactor(0.5).maxLatencyMillis(100)
+      .maxDbPoolUtilisation(0.9).backlogPerConsumer(50).build();
+
+  @Test
+  public void nextConsumers_growsAdditivelyWithBacklog() {
+    assertEquals(6, policy.nextConsumers(4, healthy().queueDepth(1000).build()));
+  }
+
+  @Test
+  public void nextConsumers_shrinksMultiplicativelyWhenDbSaturated() {
+    assertEquals(4, policy.nextConsumers(8, healthy().queueDepth(1000).dbPoolUtilisation(0.95)
+        .build()));
+  }
+
+  @Test
+  public void nextConsumers_shrinksWhenLatencyTooHigh() {
+    assertEquals(4, policy.nextConsumers(8, healthy().latencyMillis(500).build()));
+    assertEquals(1, policy.nextConsumers(2, healthy().latencyMillis(500).build()));
+  }
+
+  @Test
+  public void nextConsumers_shrinksByOneWhenIdle() {
+    assertEquals(3, policy.nextConsumers(4, healthy().queueDepth(0).processedMessages(0)
+        .build()));
+  }
+
+  @Test
+  public void nextConsumers_holdsWhenSteady() {
+    assertEquals(4, policy.nextConsumers(4, healthy().queueDepth(100).build()));
+  }
+
+  @Test
+  public void nextConsumers_usesUtilisationWhenDepthUnknown() {
+    // 4 consumers busy 90% of a 1s interval at 10ms per message
+    assertEquals(6, policy.nextConsumers(4, healthy().processedMessages(360).build()));
+    assertEquals(3, policy.nextConsumers(4, healthy().processedMessages(10).build()));
+  }
+
+  @Test
+  public void nextConsumers_staysWithinBounds() {
+    assertEquals(10, policy.nextConsumers(9, healthy().queueDepth(100_000).build()));
+    assertEquals(1, policy.nextConsumers(1, healthy().dbPoolUtilisation(1).build()));
+  }
+
+  private static Sample.SampleBuilder healthy() {
+    return Sample.builder().latencyMillis(10).processedMessages(200).intervalMillis(1000)
+        .dbPoolUtilisation(0.2);
+  }
+}
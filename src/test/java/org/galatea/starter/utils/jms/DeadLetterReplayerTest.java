@@ -0,0 +1,92 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.connection.SingleConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+public class DeadLetterReplayerTest {
+
+  private static final String QUEUE = "replay.test";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  // Keeps the connection, and with it the embedded broker, open across template calls
+  private SingleConnectionFactory connectionFactory;
+
+  private JmsTemplate jmsTemplate;
+
+  private DeadLetterReplayer replayer;
+
+  @Before
+  public void setup() {
+    connectionFactory = new SingleConnectionFactory(
+        new ActiveMQConnectionFactory("vm://replay-test?broker.persistent=false"));
+    jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.setReceiveTimeout(5000);
+
+    JmsTemplate transactedTemplate = new JmsTemplate(connectionFactory);
+    transactedTemplate.setSessionTransacted(true);
+    replayer = new DeadLetterReplayer(transactedTemplate, meterRegistry);
+  }
+
+  @After
+  public void cleanup() {
+    connectionFactory.destroy();
+  }
+
+  @Test
+  public void replay_movesDeadLettersBackWithoutFailureHeaders() throws JMSException {
+    for (int i = 0; i < 3; i++) {
+      String body = "agreement" + i;
+      jmsTemplate.send(JmsMessages.deadLetterQueue(QUEUE), session -> {
+        Message deadLetter = session.createTextMessage(body);
+        deadLetter.setIntProperty(JmsMessages.RETRY_ATTEMPT, 5);
+        deadLetter.setStringProperty(JmsMessages.FAILURE_REASON, "boom");
+        deadLetter.setStringProperty("custom", "kept");
+        return deadLetter;
+      });
+    }
+
+    assertEquals(2, replayer.replay(QUEUE, 2, 100));
+
+    for (int i = 0; i < 2; i++) {
+      Message replayed = jmsTemplate.receive(QUEUE);
+      assertEquals("agreement" + i, ((TextMessage) replayed).getText());
+      assertFalse(replayed.propertyExists(JmsMessages.RETRY_ATTEMPT));
+      assertFalse(replayed.propertyExists(JmsMessages.FAILURE_REASON));
+      assertEquals("kept", replayed.getStringProperty("custom"));
+    }
+    assertNotNull(jmsTemplate.receive(JmsMessages.deadLetterQueue(QUEUE)));
+    assertEquals(2, meterRegistry.get("fuse.jms.dead-letters.replayed").counter().count(), 0);
+  }
+
+  @Test
+  public void replay_keepsPriority() throws JMSException {
+    JmsTemplate urgentTemplate = new JmsTemplate(connectionFactory);
+    urgentTemplate.setExplicitQosEnabled(true);
+    urgentTemplate.setPriority(9);
+    urgentTemplate.send(JmsMessages.deadLetterQueue(QUEUE),
+        session -> session.createTextMessage("agreement"));
+
+    assertEquals(1, replayer.replay(QUEUE, 1, 100));
+
+    assertEquals(9, jmsTemplate.receive(QUEUE).getJMSPriority());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void replay_rejectsNonPositiveRate() {
+    replayer.replay(QUEUE, 1, 0);
+  }
+}
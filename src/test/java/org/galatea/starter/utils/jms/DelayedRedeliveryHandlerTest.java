@@ -0,0 +1,105 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.connection.SingleConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+public class DelayedRedeliveryHandlerTest {
+
+  private static final String QUEUE = "redelivery.test";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  // Keeps the connection, and with it the embedded broker, open across template calls
+  private SingleConnectionFactory connectionFactory;
+
+  private JmsTemplate jmsTemplate;
+
+  private DelayedRedeliveryHandler handler;
+
+  @Before
+  public void setup() {
+    connectionFactory = new SingleConnectionFactory(new ActiveMQConnectionFactory(
+        "vm://redelivery-test?broker.persistent=false&broker.schedulerSupport=true"));
+    jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.setReceiveTimeout(5000);
+    handler = new DelayedRedeliveryHandler(jmsTemplate, 2, 200, 2, 1000, meterRegistry);
+  }
+
+  @After
+  public void cleanup() {
+    connectionFactory.destroy();
+  }
+
+  @Test
+  public void delayMillis_growsExponentiallyUpToMax() {
+    assertEquals(200, handler.delayMillis(1));
+    assertEquals(400, handler.delayMillis(2));
+    assertEquals(800, handler.delayMillis(3));
+    assertEquals(1000, handler.delayMillis(4));
+  }
+
+  @Test
+  public void accept_redeliversWithDelayThenDeadLetters() throws JMSException {
+    jmsTemplate.send(QUEUE, session -> session.createTextMessage("agreement"));
+    Message message = jmsTemplate.receive(QUEUE);
+
+    for (int attempt = 1; attempt <= 2; attempt++) {
+      long start = System.currentTimeMillis();
+      handler.accept(message, new IllegalStateException("boom"));
+
+      message = jmsTemplate.receive(QUEUE);
+      assertNotNull(message);
+      assertTrue(System.currentTimeMillis() - start >= handler.delayMillis(attempt) / 2);
+      assertEquals(attempt, message.getIntProperty(JmsMessages.RETRY_ATTEMPT));
+      assertEquals("agreement", ((TextMessage) message).getText());
+    }
+
+    handler.accept(message, new RuntimeException(new IllegalArgumentException("bad qty")));
+
+    jmsTemplate.setReceiveTimeout(500);
+    assertNull(jmsTemplate.receive(QUEUE));
+    Message deadLetter = jmsTemplate.receive(JmsMessages.deadLetterQueue(QUEUE));
+    assertNotNull(deadLetter);
+    assertEquals("agreement", ((TextMessage) deadLetter).getText());
+    assertEquals(2, deadLetter.getIntProperty(JmsMessages.RETRY_ATTEMPT));
+    assertEquals(QUEUE, deadLetter.getStringProperty(JmsMessages.ORIGINAL_QUEUE));
+    assertEquals(IllegalArgumentException.class.getName(),
+        deadLetter.getStringProperty(JmsMessages.FAILURE_EXCEPTION));
+    assertEquals("bad qty", deadLetter.getStringProperty(JmsMessages.FAILURE_REASON));
+    assertTrue(deadLetter.propertyExists(JmsMessages.FAILED_AT));
+
+    assertEquals(2, meterRegistry.get("fuse.jms.redeliveries").counter().count(), 0);
+    assertEquals(1, meterRegistry.get("fuse.jms.dead-letters").counter().count(), 0);
+  }
+
+  @Test
+  public void accept_keepsPriority() throws JMSException {
+    JmsTemplate urgentTemplate = new JmsTemplate(connectionFactory);
+    urgentTemplate.setExplicitQosEnabled(true);
+    urgentTemplate.setPriority(9);
+    urgentTemplate.send(QUEUE, session -> session.createTextMessage("agreement"));
+    Message message = jmsTemplate.receive(QUEUE);
+
+    handler.accept(message, new IllegalStateException("boom"));
+    Message redelivered = jmsTemplate.receive(QUEUE);
+    assertEquals(9, redelivered.getJMSPriority());
+
+    handler = new DelayedRedeliveryHandler(jmsTemplate, 0, 200, 2, 1000, meterRegistry);
+    handler.accept(redelivered, new IllegalStateException("boom"));
+    assertEquals(9, jmsTemplate.receive(JmsMessages.deadLetterQueue(QUEUE)).getJMSPriority());
+  }
+}
@@ -0,0 +1,362 @@
+package org.galatea.starter.utils.jms;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import lombok.SneakyThrows;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.connection.SingleConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+public class FuseMessageListenerContainerTest {
+
+  private static final String QUEUE = "partition.test";
+
+  private static final String INSTRUMENT = "instrument";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  /* Sequence numbers processed per instrument, and the lane threads that processed them */
+  private final Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+
+  private final Map<String, List<String>> threads = new ConcurrentHashMap<>();
+
+  // Keeps the connection, and with it the embedded broker, open across template calls
+  private SingleConnectionFactory connectionFactory;
+
+  private JmsTemplate jmsTemplate;
+
+  private FuseMessageListenerContainer container;
+
+  @Before
+  public void setup() {
+    connectionFactory = new SingleConnectionFactory(
+        new ActiveMQConnectionFactory("vm://partition-test?broker.persistent=false"));
+    jmsTemplate = new JmsTemplate(connectionFactory);
+
+    container = new FuseMessageListenerContainer((msg, err) -> { });
+    container.setConnectionFactory(connectionFactory);
+    container.setDestinationName(QUEUE);
+    container.setSessionTransacted(true);
+    // Keys that aren't group ids are only kept in order within a consumer
+    container.setConcurrency("1");
+    container.setPartitionLanes(4);
+    container.setPartitionKeyExtractor(msg -> msg.getStringProperty(INSTRUMENT));
+    container.setMeterRegistry(meterRegistry);
+    container.setMaxBatchMessages(50);
+    container.setMaxBatchWaitMillis(10);
+    MessageListener listener = this::record;
+    container.setMessageListener(listener);
+    container.initialize();
+    container.start();
+  }
+
+  @After
+  public void cleanup() {
+    container.shutdown();
+    connectionFactory.destroy();
+  }
+
+  @Test
+  public void partitioned_keepsOrderPerInstrument() {
+    for (int i = 0; i < 100; i++) {
+      send("IBM" + i % 5, i, null);
+    }
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> count() == 100);
+
+    assertTrue(container.isPartitioned());
+    assertEquals(5, processed.size());
+    processed.values().forEach(sequences -> {
+      for (int i = 1; i < sequences.size(); i++) {
+        assertTrue(sequences.get(i - 1) < sequences.get(i));
+      }
+    });
+    threads.values().forEach(names -> assertEquals(1, names.stream().distinct().count()));
+    assertEquals(4, meterRegistry.get("fuse.lanes.backlog").gauges().size());
+  }
+
+  @Test
+  public void partitioned_routesByGroupIdFirst() {
+    for (int i = 0; i < 20; i++) {
+      send("IBM" + i, i, "group");
+    }
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> count() == 20);
+
+    assertEquals(1, threads.values().stream().flatMap(List::stream).distinct().count());
+  }
+
+  @Test
+  public void partitioned_spreadsMessagesWithoutKey() {
+    for (int i = 0; i < 20; i++) {
+      send(null, i, null);
+    }
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> threads.containsKey("none")
+        && threads.get("none").size() == 20);
+
+    assertEquals(4, threads.get("none").stream().distinct().count());
+  }
+
+  @Test
+  public void partitioned_keepsOrderPerGroupAcrossConsumers() {
+    FuseMessageListenerContainer concurrent = new FuseMessageListenerContainer((msg, err) -> { });
+    concurrent.setConnectionFactory(connectionFactory);
+    concurrent.setDestinationName("groups.test");
+    concurrent.setSessionTransacted(true);
+    // The broker hands each group to one consumer, so group ids stay in order at any concurrency
+    concurrent.setConcurrency("3");
+    concurrent.setPartitionLanes(4);
+    concurrent.setMeterRegistry(meterRegistry);
+    concurrent.setMaxBatchMessages(50);
+    concurrent.setMaxBatchWaitMillis(10);
+    MessageListener listener = this::record;
+    concurrent.setMessageListener(listener);
+    concurrent.initialize();
+    concurrent.start();
+    try {
+      for (int i = 0; i < 100; i++) {
+        send("groups.test", "IBM" + i % 5, i, "IBM" + i % 5);
+      }
+
+      await().atMost(10, TimeUnit.SECONDS).until(() -> count() == 100);
+
+      assertEquals(3, concurrent.getActiveConsumerCount());
+      assertEquals(5, processed.size());
+      processed.values().forEach(sequences -> {
+        for (int i = 1; i < sequences.size(); i++) {
+          assertTrue(sequences.get(i - 1) < sequences.get(i));
+        }
+      });
+    } finally {
+      concurrent.shutdown();
+    }
+  }
+
+  @Test
+  public void partitioned_sendsOnlyOnceTheBatchCommits() throws JMSException {
+    FuseMessageListenerContainer replying = new FuseMessageListenerContainer((msg, err) -> {
+      throw new IllegalStateException("Roll back the batch", err);
+    });
+    replying.setConnectionFactory(connectionFactory);
+    replying.setDestinationName("replying.test");
+    replying.setSessionTransacted(true);
+    replying.setPartitionLanes(2);
+    replying.setPartitionKeyExtractor(msg -> msg.getStringProperty(INSTRUMENT));
+    replying.setMeterRegistry(meterRegistry);
+    replying.setMaxBatchMessages(10);
+    replying.setMaxBatchWaitMillis(200);
+    MessageListener listener = this::reply;
+    replying.setMessageListener(listener);
+    // Both messages are waiting when the consumer starts, so they arrive in one batch
+    send("replying.test", "IBM", 0, null);
+    send("replying.test", "AAPL", 1, null);
+    replying.initialize();
+    replying.start();
+    try {
+      JmsTemplate replies = new JmsTemplate(connectionFactory);
+      replies.setReceiveTimeout(10_000);
+      Set<Integer> sequences = new HashSet<>();
+      sequences.add(replies.receive("replies.test").getIntProperty("sequence"));
+      sequences.add(replies.receive("replies.test").getIntProperty("sequence"));
+
+      // The replies sent before the first batch was rolled back never went out
+      assertEquals(new HashSet<>(Arrays.asList(0, 1)), sequences);
+      replies.setReceiveTimeout(1000);
+      assertNull(replies.receive("replies.test"));
+    } finally {
+      replying.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void partitioned_rejectsSeveralConsumersWithExtractor() {
+    FuseMessageListenerContainer concurrent = new FuseMessageListenerContainer((msg, err) -> { });
+    concurrent.setConnectionFactory(connectionFactory);
+    concurrent.setDestinationName("concurrent.test");
+    concurrent.setConcurrency("1-2");
+    concurrent.setPartitionLanes(4);
+    concurrent.setPartitionKeyExtractor(msg -> msg.getStringProperty(INSTRUMENT));
+    concurrent.setMeterRegistry(meterRegistry);
+    MessageListener listener = this::record;
+    concurrent.setMessageListener(listener);
+    concurrent.initialize();
+  }
+
+  @Test
+  public void partitioned_keepsConfiguredConcurrency() {
+    FuseMessageListenerContainer concurrent = new FuseMessageListenerContainer((msg, err) -> { });
+    concurrent.setConnectionFactory(connectionFactory);
+    concurrent.setDestinationName("concurrent.test");
+    concurrent.setConcurrency("2-4");
+    concurrent.setPartitionLanes(4);
+    concurrent.setMeterRegistry(meterRegistry);
+    MessageListener listener = this::record;
+    concurrent.setMessageListener(listener);
+    concurrent.initialize();
+    try {
+      assertTrue(concurrent.isPartitioned());
+      assertEquals(2, concurrent.getConcurrentConsumers());
+      assertEquals(4, concurrent.getMaxConcurrentConsumers());
+    } finally {
+      concurrent.shutdown();
+    }
+  }
+
+  @Test
+  public void listenerExecutor_namesThreadsAndPublishesMetrics() {
+    FuseMessageListenerContainer pooled = new FuseMessageListenerContainer((msg, err) -> { });
+    pooled.setConnectionFactory(connectionFactory);
+    pooled.setDestinationName("pooled.test");
+    pooled.setBeanName("pooledListener");
+    pooled.setConcurrency("2");
+    pooled.setMeterRegistry(meterRegistry);
+    pooled.setListenerExecutorSettings(ListenerExecutorSettings.builder().threads(2)
+        .queueCapacity(10).threadPriority(Thread.NORM_PRIORITY + 1).build());
+    MessageListener listener = this::record;
+    pooled.setMessageListener(listener);
+    pooled.initialize();
+    pooled.start();
+    try {
+      for (int i = 0; i < 10; i++) {
+        jmsTemplate.send("pooled.test", session -> {
+          Message message = session.createMessage();
+          message.setStringProperty(INSTRUMENT, "IBM");
+          message.setIntProperty("sequence", 0);
+          return message;
+        });
+      }
+
+      await().atMost(10, TimeUnit.SECONDS).until(() -> count() == 10);
+
+      assertTrue(threads.get("IBM").stream().allMatch(name -> name.startsWith("pooledListener-")));
+      assertEquals(10, meterRegistry.get("fuse.jms.listener.execution")
+          .tag("listener", "pooledListener").timer().count());
+      // Consumers hand their thread back every few messages, so only the bounds are fixed
+      assertTrue(meterRegistry.get("executor.active").tag("listener", "pooledListener")
+          .gauge().value() <= 2);
+      assertEquals(0, meterRegistry.get("executor.queued").tag("listener", "pooledListener")
+          .gauge().value(), 0);
+      assertTrue(meterRegistry.get("executor.completed").tag("listener", "pooledListener")
+          .functionCounter().count() >= 0);
+    } finally {
+      pooled.shutdown();
+    }
+  }
+
+  @Test
+  public void selectors_splitUrgentFromBulkAndTimeQueueWait() {
+    String urgent = "JMSPriority >= 7 OR " + JmsMessages.PRIORITY_LANE + " = 'urgent'";
+    String bulk = "JMSPriority < 7 AND (" + JmsMessages.PRIORITY_LANE + " IS NULL OR "
+        + JmsMessages.PRIORITY_LANE + " <> 'urgent')";
+    FuseMessageListenerContainer urgentContainer = selecting("urgentListener", urgent);
+    FuseMessageListenerContainer bulkContainer = selecting("bulkListener", bulk);
+    try {
+      jmsTemplate.setExplicitQosEnabled(true);
+      jmsTemplate.setPriority(9);
+      jmsTemplate.send("lanes.test", session -> session.createMessage());
+      jmsTemplate.setPriority(4);
+      jmsTemplate.send("lanes.test", session -> {
+        Message message = session.createMessage();
+        message.setStringProperty(JmsMessages.PRIORITY_LANE, JmsMessages.URGENT);
+        return message;
+      });
+      jmsTemplate.send("lanes.test", session -> session.createMessage());
+
+      await().atMost(10, TimeUnit.SECONDS).until(() -> count() == 3);
+
+      assertEquals(2, processed.get("urgentListener").size());
+      assertEquals(1, processed.get("bulkListener").size());
+      assertEquals(2, meterRegistry.get("fuse.jms.queue.wait").tag("listener", "urgentListener")
+          .timer().count());
+      assertEquals(1, meterRegistry.get("fuse.jms.queue.wait").tag("listener", "bulkListener")
+          .timer().count());
+    } finally {
+      urgentContainer.shutdown();
+      bulkContainer.shutdown();
+    }
+  }
+
+  private FuseMessageListenerContainer selecting(final String name, final String selector) {
+    FuseMessageListenerContainer selecting = new FuseMessageListenerContainer((msg, err) -> { });
+    selecting.setConnectionFactory(connectionFactory);
+    selecting.setDestinationName("lanes.test");
+    selecting.setBeanName(name);
+    selecting.setMessageSelector(selector);
+    selecting.setMeterRegistry(meterRegistry);
+    MessageListener listener = message -> processed
+        .computeIfAbsent(name, k -> new CopyOnWriteArrayList<>()).add(0);
+    selecting.setMessageListener(listener);
+    selecting.initialize();
+    selecting.start();
+    return selecting;
+  }
+
+  private void send(final String instrument, final int sequence, final String groupId) {
+    send(QUEUE, instrument, sequence, groupId);
+  }
+
+  private void send(final String queue, final String instrument, final int sequence,
+      final String groupId) {
+    jmsTemplate.send(queue, session -> {
+      Message message = session.createMessage();
+      if (instrument != null) {
+        message.setStringProperty(INSTRUMENT, instrument);
+      }
+      message.setIntProperty("sequence", sequence);
+      if (groupId != null) {
+        message.setStringProperty("JMSXGroupID", groupId);
+      }
+      return message;
+    });
+  }
+
+  @SneakyThrows(JMSException.class)
+  private void record(final Message message) {
+    String instrument = message.propertyExists(INSTRUMENT)
+        ? message.getStringProperty(INSTRUMENT) : "none";
+    processed.computeIfAbsent(instrument, k -> new CopyOnWriteArrayList<>())
+        .add(message.getIntProperty("sequence"));
+    threads.computeIfAbsent(instrument, k -> new CopyOnWriteArrayList<>())
+        .add(Thread.currentThread().getName());
+  }
+
+  /*
+   * Replies to every message, then fails the second message the first time it is received
+   */
+  @SneakyThrows(JMSException.class)
+  private void reply(final Message message) {
+    int sequence = message.getIntProperty("sequence");
+    jmsTemplate.send("replies.test", session -> {
+      Message reply = session.createMessage();
+      reply.setIntProperty("sequence", sequence);
+      return reply;
+    });
+    if (sequence == 1 && !message.getJMSRedelivered()) {
+      throw new IllegalStateException("Failed the first time");
+    }
+  }
+
+  private int count() {
+    return processed.values().stream().mapToInt(List::size).sum();
+  }
+}
@@ -0,0 +1,72 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Test;
+
+public class MessageBodiesTest {
+
+  private static final String JSON = "{\"instrument\":\"IBM\"}";
+
+  private final ObjectReader reader = new ObjectMapper().readerFor(Map.class);
+
+  @Test
+  public void codedInput_readsReceivedBodyInPlace() throws Exception {
+    ActiveMQBytesMessage message = bytesMessage(new byte[] {1, 2, 3});
+
+    assertArrayEquals(new byte[] {1, 2, 3}, MessageBodies.codedInput(message).readRawBytes(3));
+    // The message itself hasn't been read, so the listener can still read it from the start
+    assertEquals(1, message.readByte());
+  }
+
+  @Test
+  public void codedInput_copiesOtherBodies() throws Exception {
+    BytesMessage message = mock(BytesMessage.class);
+    given(message.getBodyLength()).willReturn(2L);
+
+    assertEquals(2, MessageBodies.codedInput(message).readRawBytes(2).length);
+    verify(message).readBytes(any(byte[].class));
+    verify(message).reset();
+  }
+
+  @Test
+  public void readJson_readsTextAndBytes() throws Exception {
+    ActiveMQTextMessage textMessage = new ActiveMQTextMessage();
+    textMessage.setText(JSON);
+
+    Map<?, ?> fromText = MessageBodies.readJson(reader, textMessage);
+    Map<?, ?> fromBytes =
+        MessageBodies.readJson(reader, bytesMessage(JSON.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals("IBM", fromText.get("instrument"));
+    assertEquals(fromText, fromBytes);
+  }
+
+  @Test(expected = MessageFormatException.class)
+  public void readJson_rejectsOtherMessages() throws JMSException, IOException {
+    MessageBodies.readJson(reader, new ActiveMQMapMessage());
+  }
+
+  private static ActiveMQBytesMessage bytesMessage(final byte[] body) throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.writeBytes(body);
+    message.reset();
+    return message;
+  }
+}
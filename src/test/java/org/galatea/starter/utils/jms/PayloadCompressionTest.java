@@ -0,0 +1,88 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.base.Strings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipException;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PayloadCompressionTest {
+
+  private static final String TEXT =
+      Strings.repeat("{\"instrument\":\"IBM\",\"buySell\":\"B\"}", 20);
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final Session session = mock(Session.class);
+
+  private PayloadCompression compression;
+
+  @Before
+  public void setup() throws JMSException {
+    compression = new PayloadCompression(64, meterRegistry);
+    given(session.createBytesMessage()).willAnswer(invocation -> new ActiveMQBytesMessage());
+  }
+
+  @Test
+  public void compress_roundTripsTextWithHeaders() throws Exception {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText(TEXT);
+    message.setStringProperty("custom", "kept");
+    message.setJMSCorrelationID("request-1");
+
+    BytesMessage compressed = (BytesMessage) compression.compress(message, session);
+    compressed.reset();
+    byte[] body = new byte[(int) compressed.getBodyLength()];
+    compressed.readBytes(body);
+
+    assertTrue(PayloadCompression.isCompressed(compressed));
+    assertEquals("kept", compressed.getStringProperty("custom"));
+    assertEquals("request-1", compressed.getJMSCorrelationID());
+    assertTrue(body.length < TEXT.length());
+    assertEquals(TEXT, new String(compression.inflate(body, 0, body.length),
+        StandardCharsets.UTF_8));
+    assertTrue(meterRegistry.get("fuse.jms.compression.ratio").tag("direction", "outbound")
+        .summary().mean() > 1);
+    assertEquals(1, meterRegistry.get("fuse.jms.compression.ratio").tag("direction", "inbound")
+        .summary().count());
+  }
+
+  @Test
+  public void compress_leavesSmallBodies() throws JMSException {
+    ActiveMQTextMessage message = new ActiveMQTextMessage();
+    message.setText("small");
+
+    Message result = compression.compress(message, session);
+
+    assertSame(message, result);
+    assertFalse(PayloadCompression.isCompressed(result));
+  }
+
+  @Test(expected = ZipException.class)
+  public void inflate_rejectsCorruptBody() throws ZipException {
+    compression.inflate(new byte[] {1, 2, 3, 4}, 0, 4);
+  }
+
+  @Test(expected = MessageFormatException.class)
+  public void isCompressed_rejectsUnknownEncoding() throws JMSException {
+    ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+    message.setStringProperty(PayloadCompression.CONTENT_ENCODING, "lz4");
+    PayloadCompression.isCompressed(message);
+  }
+}
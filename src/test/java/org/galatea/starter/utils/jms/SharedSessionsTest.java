@@ -0,0 +1,76 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import org.junit.Test;
+
+public class SharedSessionsTest {
+
+  @Test
+  public void share_makesCallsOneAtATime() throws Exception {
+    AtomicInteger inside = new AtomicInteger();
+    AtomicInteger mostInside = new AtomicInteger();
+    MessageProducer producer = mock(MessageProducer.class);
+    Session session = mock(Session.class);
+    when(session.createProducer(any())).thenAnswer(invocation -> {
+      mostInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+      Thread.sleep(5);
+      inside.decrementAndGet();
+      return producer;
+    });
+
+    Session shared = SharedSessions.share(session);
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> calls = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        calls.add(threads.submit(() -> shared.createProducer(null)));
+      }
+      for (Future<?> call : calls) {
+        call.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+
+    assertEquals(1, mostInside.get());
+  }
+
+  @Test
+  public void share_sharesTheProducersOfTheSession() throws Exception {
+    MessageProducer producer = mock(MessageProducer.class);
+    Session session = mock(Session.class);
+    when(session.createProducer(any())).thenReturn(producer);
+    Message message = mock(Message.class);
+
+    MessageProducer shared = SharedSessions.share(session).createProducer(null);
+    shared.send(message);
+
+    assertNotEquals(producer, shared);
+    verify(producer).send(message);
+  }
+
+  @Test
+  public void share_isOnlyEqualToItself() {
+    Session session = mock(Session.class);
+    Session shared = SharedSessions.share(session);
+
+    assertEquals(shared, shared);
+    assertNotEquals(shared, session);
+    assertNotEquals(shared, SharedSessions.share(session));
+  }
+}
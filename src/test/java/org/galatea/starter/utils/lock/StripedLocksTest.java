@@ -0,0 +1,92 @@
+package org.galatea.starter.utils.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+@Slf4j
+public class StripedLocksTest {
+
+  @Test
+  public void callLocked_returnsResult() {
+    StripedLocks locks = new StripedLocks("test", 4, new SimpleMeterRegistry());
+
+    assertEquals("result", locks.callLocked(1L, () -> "result"));
+  }
+
+  @Test
+  public void get_sameKeySameStripe() throws Exception {
+    StripedLocks locks = new StripedLocks("test", 4, new SimpleMeterRegistry());
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    Lock lock = locks.get(35L);
+    lock.lock();
+    try {
+      // Another thread must not be able to take the lock for an equal key while we hold it
+      Future<Boolean> acquired = executor.submit(() -> locks.get(35L).tryLock());
+      assertFalse(acquired.get());
+    } finally {
+      lock.unlock();
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void callLocked_countsContention() throws Exception {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    StripedLocks locks = new StripedLocks("test", 4, registry);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicBoolean secondRan = new AtomicBoolean(false);
+
+    executor.submit(() -> locks.runLocked(35L, () -> {
+      holding.countDown();
+      awaitLatch(release);
+    }));
+    assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+    Thread waiter = new Thread(() -> locks.runLocked(35L, () -> secondRan.set(true)));
+    waiter.start();
+
+    // Give the waiter a chance to block on the stripe before we let the first thread go
+    while (registry.get("fuse.lock.contended").counter().count() < 1) {
+      Thread.yield();
+    }
+    assertFalse(secondRan.get());
+
+    release.countDown();
+    waiter.join(5000);
+    executor.shutdown();
+
+    assertTrue(secondRan.get());
+    assertEquals(2, registry.get("fuse.lock.acquisitions").counter().count(), 0);
+    assertEquals(1, registry.get("fuse.lock.wait").timer().count());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsNonPositiveStripes() {
+    new StripedLocks("test", 0, new SimpleMeterRegistry());
+  }
+
+  private void awaitLatch(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+}
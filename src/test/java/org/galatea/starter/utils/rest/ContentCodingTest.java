@@ -0,0 +1,99 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ContentCodingTest {
+
+  private static final List<ContentCoding> ALL =
+      Arrays.asList(ContentCoding.ZSTD, ContentCoding.GZIP, ContentCoding.DEFLATE);
+
+  @Test
+  public void negotiate_noHeader() {
+    assertNull(ContentCoding.negotiate(null, ALL));
+  }
+
+  @Test
+  public void negotiate_serverOrderBreaksTies() {
+    assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("deflate, gzip", ALL));
+    assertEquals(ContentCoding.ZSTD, ContentCoding.negotiate("gzip, deflate, br, zstd", ALL));
+  }
+
+  @Test
+  public void negotiate_qualityValues() {
+    assertEquals(ContentCoding.DEFLATE,
+        ContentCoding.negotiate("gzip;q=0.5, deflate;q=0.8", ALL));
+    // q=0 means the client does not accept it
+    assertEquals(ContentCoding.DEFLATE, ContentCoding.negotiate("gzip;q=0, deflate", ALL));
+    assertNull(ContentCoding.negotiate("gzip;q=0", ALL));
+  }
+
+  @Test
+  public void negotiate_wildcard() {
+    assertEquals(ContentCoding.ZSTD, ContentCoding.negotiate("*", ALL));
+    assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("zstd;q=0, *", ALL));
+  }
+
+  @Test
+  public void negotiate_unsupportedOrIdentity() {
+    assertNull(ContentCoding.negotiate("identity", ALL));
+    assertNull(ContentCoding.negotiate("br", ALL));
+    assertNull(ContentCoding.negotiate("gzip", Arrays.asList(ContentCoding.ZSTD)));
+  }
+
+  @Test
+  public void compress_roundTrips() throws IOException {
+    byte[] body = body();
+
+    assertArrayEquals(body,
+        IOUtils.toByteArray(new GZIPInputStream(compressed(ContentCoding.GZIP, body))));
+    assertArrayEquals(body,
+        IOUtils.toByteArray(new InflaterInputStream(compressed(ContentCoding.DEFLATE, body))));
+    assertArrayEquals(body,
+        IOUtils.toByteArray(new ZstdInputStream(compressed(ContentCoding.ZSTD, body))));
+  }
+
+  @Test
+  public void compress_leavesTargetOpen() throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        throw new AssertionError("Target was closed");
+      }
+    };
+
+    ContentCoding.GZIP.compress(target).close();
+  }
+
+  private static InputStream compressed(final ContentCoding coding, final byte[] body)
+      throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    try (OutputStream out = coding.compress(target)) {
+      out.write(body);
+    }
+    return new ByteArrayInputStream(target.toByteArray());
+  }
+
+  private static byte[] body() {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      body.append("{\"id\":").append(i).append(",\"instrument\":\"IBM\"}");
+    }
+    return body.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,205 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ResponseCompressionFilterTest {
+
+  private static final int MIN_BYTES = 1024;
+
+  private static final MediaType XLSX = MediaType.parseMediaType("application/vnd.ms-excel");
+
+  private final ResponseCompressionFilter filter = new ResponseCompressionFilter(
+      Arrays.asList(ContentCoding.ZSTD, ContentCoding.GZIP, ContentCoding.DEFLATE), MIN_BYTES,
+      Arrays.asList(XLSX, MediaType.parseMediaType("image/*")));
+
+  @Test
+  public void compressesLargeBody() throws Exception {
+    byte[] body = body(10 * MIN_BYTES);
+    MockHttpServletResponse response = filter("gzip", MediaType.APPLICATION_JSON_VALUE, body);
+
+    assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+    // The length of the uncompressed body must not go out
+    assertNull(response.getHeader(HttpHeaders.CONTENT_LENGTH));
+    byte[] compressed = response.getContentAsByteArray();
+    assertTrue(compressed.length < body.length);
+    assertArrayEquals(body,
+        IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+  }
+
+  @Test
+  public void compressesWithNegotiatedCoding() throws Exception {
+    byte[] body = body(10 * MIN_BYTES);
+
+    MockHttpServletResponse zstd =
+        filter("gzip, deflate, zstd", MediaType.APPLICATION_JSON_VALUE, body);
+    assertEquals("zstd", zstd.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, IOUtils.toByteArray(
+        new ZstdInputStream(new ByteArrayInputStream(zstd.getContentAsByteArray()))));
+
+    MockHttpServletResponse deflate =
+        filter("deflate", MediaType.APPLICATION_JSON_VALUE, body);
+    assertEquals("deflate", deflate.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, IOUtils.toByteArray(
+        new InflaterInputStream(new ByteArrayInputStream(deflate.getContentAsByteArray()))));
+  }
+
+  @Test
+  public void leavesSmallBodyAlone() throws Exception {
+    byte[] body = body(MIN_BYTES / 2);
+    MockHttpServletResponse response = filter("gzip", MediaType.APPLICATION_JSON_VALUE, body);
+
+    assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(body.length, response.getContentLength());
+    assertArrayEquals(body, response.getContentAsByteArray());
+  }
+
+  @Test
+  public void leavesBodyWithSmallContentLengthAlone() throws Exception {
+    byte[] body = body(MIN_BYTES / 2);
+    MockHttpServletRequest request = request("gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, (req, res) -> {
+      res.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      res.setContentLength(body.length);
+      res.getOutputStream().write(body);
+    });
+
+    assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(body.length, response.getContentLength());
+    assertArrayEquals(body, response.getContentAsByteArray());
+  }
+
+  @Test
+  public void leavesExcludedTypesAlone() throws Exception {
+    byte[] body = body(10 * MIN_BYTES);
+
+    MockHttpServletResponse xlsx = filter("gzip", XLSX.toString(), body);
+    assertNull(xlsx.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, xlsx.getContentAsByteArray());
+
+    MockHttpServletResponse png = filter("gzip", MediaType.IMAGE_PNG_VALUE, body);
+    assertNull(png.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, png.getContentAsByteArray());
+  }
+
+  @Test
+  public void leavesBodyAloneWithoutAcceptEncoding() throws Exception {
+    byte[] body = body(10 * MIN_BYTES);
+
+    MockHttpServletResponse none = filter(null, MediaType.APPLICATION_JSON_VALUE, body);
+    assertNull(none.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, none.getContentAsByteArray());
+
+    MockHttpServletResponse identity =
+        filter("identity", MediaType.APPLICATION_JSON_VALUE, body);
+    assertNull(identity.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, identity.getContentAsByteArray());
+  }
+
+  @Test
+  public void leavesEncodedBodyAlone() throws Exception {
+    byte[] body = body(10 * MIN_BYTES);
+    MockHttpServletRequest request = request("gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, (req, res) -> {
+      res.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+      ((HttpServletResponse) res).setHeader(HttpHeaders.CONTENT_ENCODING, "br");
+      res.getOutputStream().write(body);
+    });
+
+    assertEquals("br", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(body, response.getContentAsByteArray());
+  }
+
+  @Test
+  public void streamsPastThreshold() throws Exception {
+    MockHttpServletRequest request = request("gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    FilterChain chain = (req, res) -> {
+      res.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      ServletOutputStream out = res.getOutputStream();
+
+      // Flushing below the threshold must not commit the response
+      out.write(body(MIN_BYTES / 2));
+      res.flushBuffer();
+      assertFalse(response.isCommitted());
+      assertEquals(0, response.getContentAsByteArray().length);
+
+      // Past it, what was written so far reaches the client when flushed
+      out.write(body(MIN_BYTES));
+      res.flushBuffer();
+      assertTrue(response.isCommitted());
+      assertTrue(response.getContentAsByteArray().length > 0);
+    };
+    filter.doFilter(request, response, chain);
+
+    assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    byte[] expected = new byte[MIN_BYTES / 2 + MIN_BYTES];
+    System.arraycopy(body(MIN_BYTES / 2), 0, expected, 0, MIN_BYTES / 2);
+    System.arraycopy(body(MIN_BYTES), 0, expected, MIN_BYTES / 2, MIN_BYTES);
+    assertArrayEquals(expected, IOUtils.toByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))));
+  }
+
+  @Test
+  public void leavesHeadRequestsAlone() throws Exception {
+    MockHttpServletRequest request = request("gzip");
+    request.setMethod("HEAD");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, (req, res) -> res.setContentLength(10 * MIN_BYTES));
+
+    assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(10 * MIN_BYTES, response.getContentLength());
+  }
+
+  private MockHttpServletResponse filter(final String acceptEncoding, final String contentType,
+      final byte[] body) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request(acceptEncoding), response, (req, res) -> {
+      res.setContentType(contentType);
+      res.getOutputStream().write(body);
+    });
+    return response;
+  }
+
+  private static MockHttpServletRequest request(final String acceptEncoding) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/settlementEngine");
+    if (acceptEncoding != null) {
+      request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+    }
+    return request;
+  }
+
+  private static byte[] body(final int size) {
+    StringBuilder body = new StringBuilder(size);
+    while (body.length() < size) {
+      body.append("{\"instrument\":\"IBM\",\"qty\":100.0},");
+    }
+    return body.substring(0, size).getBytes(StandardCharsets.US_ASCII);
+  }
+}
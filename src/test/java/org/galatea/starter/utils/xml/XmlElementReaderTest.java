@@ -0,0 +1,76 @@
+package org.galatea.starter.utils.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.junit.Test;
+
+public class XmlElementReaderTest {
+
+  private static final String AGREEMENTS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<tradeAgreements>"
+      + "<tradeAgreement><instrument>IBM</instrument><internalParty>INT-1</internalParty>"
+      + "<externalParty>EXT-1</externalParty><buySell>B</buySell><qty>100.0</qty>"
+      + "</tradeAgreement>"
+      + "<comment>skipped</comment>"
+      + "<tradeAgreement><instrument>AAPL</instrument><buySell>S</buySell><qty>0.5</qty>"
+      + "</tradeAgreement>"
+      + "</tradeAgreements>";
+
+  @Test
+  public void next_bindsTheElementsOneAtATime() throws Exception {
+    try (XmlElementReader<TradeAgreementMessage> reader = reader(AGREEMENTS)) {
+      TradeAgreementMessage first = reader.next();
+      assertEquals("IBM", first.getInstrument());
+      assertEquals("EXT-1", first.getExternalParty());
+      assertEquals(100d, first.getQty(), 0);
+      assertEquals(1, reader.getRead());
+
+      TradeAgreementMessage second = reader.next();
+      assertEquals("AAPL", second.getInstrument());
+      assertNull(second.getInternalParty());
+      assertEquals("S", second.getBuySell());
+
+      assertNull(reader.next());
+      assertNull(reader.next());
+      assertEquals(2, reader.getRead());
+    }
+  }
+
+  @Test
+  public void next_rejectsExternalEntities() throws Exception {
+    File secret = File.createTempFile("secret", ".txt");
+    secret.deleteOnExit();
+    Files.write(secret.toPath(), "top secret".getBytes(StandardCharsets.UTF_8));
+
+    String xxe = "<?xml version=\"1.0\"?>"
+        + "<!DOCTYPE tradeAgreements [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+        + "<tradeAgreements><tradeAgreement><instrument>&xxe;</instrument></tradeAgreement>"
+        + "</tradeAgreements>";
+
+    try (XmlElementReader<TradeAgreementMessage> reader = reader(xxe)) {
+      TradeAgreementMessage message = reader.next();
+      fail("The external entity should not have been resolved, but was read as "
+          + message.getInstrument());
+    } catch (XMLStreamException | JAXBException e) {
+      // Expected: the entity is undeclared as far as the reader is concerned
+    }
+  }
+
+  private static XmlElementReader<TradeAgreementMessage> reader(final String xml)
+      throws Exception {
+    InputStream in = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    return new XmlElementReader<>(in, JAXBContext.newInstance(TradeAgreementMessage.class),
+        TradeAgreementMessage.class, "tradeAgreement");
+  }
+}